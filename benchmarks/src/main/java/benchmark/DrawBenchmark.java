@@ -0,0 +1,67 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: DrawBenchmark.java
+ *
+ *  Klasa DrawBenchmark mierzy rysowanie grafu
+ *  w obrazie poza ekranem.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Test wydajności <code>Graph.draw</code> - rysowanie całej syntetycznej sieci w obrazie
+ * <code>BufferedImage</code> (bez okna, w trybie headless).
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import data.Graph;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class DrawBenchmark {
+
+    /**Bok obrazu w pikselach*/
+    private static final int IMAGE_SIZE = 2048;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int stops;
+
+    private Graph graph;
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        graph = Networks.merged(Networks.lines(stops, Networks.SEED));
+        image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Benchmark
+    public BufferedImage draw(){
+        Graphics2D g = image.createGraphics();
+        try {
+            // cała sieć mieści się w obrazie
+            double scale = (double) IMAGE_SIZE / Networks.side(stops);
+            g.scale(scale, scale);
+            graph.draw(g);
+        }
+        finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
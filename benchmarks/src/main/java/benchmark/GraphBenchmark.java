@@ -0,0 +1,71 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: GraphBenchmark.java
+ *
+ *  Klasa GraphBenchmark mierzy pobieranie przystanków
+ *  i połączeń grafu.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Test wydajności <code>Graph.getNodes</code> i <code>Graph.getConnections</code>. <br>
+ * Graf zawiera wszystkie przystanki syntetycznej sieci. Wariant "po zmianie" przesuwa przed każdym
+ * wywołaniem jeden przystanek i dodaje połączenie, aby zmierzyć tworzenie tablicy po zmianie grafu.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import data.Connection;
+import data.Graph;
+import data.Node;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class GraphBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int stops;
+
+    private Graph graph;
+    private Node first;
+    private Node second;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        graph = Networks.merged(Networks.lines(stops, Networks.SEED));
+        first = graph.getNode(0);
+        second = graph.getNode(graph.getNodeCount() - 1);
+    }
+
+    @Benchmark
+    public Node[] getNodes(){
+        return graph.getNodes();
+    }
+
+    @Benchmark
+    public Connection[] getConnections(){
+        return graph.getConnections();
+    }
+
+    @Benchmark
+    public Connection[] getConnectionsAfterChange(){
+        Connection connection = new Connection(first, second);
+        graph.addConnection(connection);
+        Connection[] result = graph.getConnections();
+        graph.removeConnection(connection);
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Networks.java
+ *
+ *  Klasa Networks tworzy syntetyczne sieci o zadanej liczbie
+ *  przystanków na potrzeby testów wydajności.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Syntetyczne sieci testów wydajności. <br>
+ * Sieci tworzone są przez <code>NetworkGenerator</code> z ustalonym ziarnem - każdy przebieg testu
+ * dostaje tę samą sieć, a gęstość przystanków nie zależy od wielkości sieci.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package benchmark;
+
+import java.util.List;
+
+import data.Connection;
+import data.Graph;
+import data.NetworkGenerator;
+import data.Node;
+import data.TransportType;
+
+public final class Networks {
+
+    /**Ziarno generatora wspólne dla wszystkich testów*/
+    public static final long SEED = 20211228L;
+
+    private Networks() {
+    }
+
+    /**Metoda zwracająca bok kwadratu, na którym rozmieszczona jest sieć o podanej liczbie przystanków*/
+    public static int side(int stops){
+        return new NetworkGenerator(SEED).getSide(stops);
+    }
+
+    /**Metoda tworząca linie sieci o łącznej liczbie <code>stops</code> przystanków*/
+    public static List<Graph> lines(int stops, long seed){
+        return new NetworkGenerator(seed).generate(stops);
+    }
+
+    /**Metoda tworząca jeden graf zawierający wszystkie przystanki i połączenia linii sieci*/
+    public static Graph merged(List<Graph> lines){
+        Graph graph = new Graph(0, TransportType.BUS);
+        for (Graph line : lines) {
+            for (Node node : line.getNodeList()) {
+                graph.addNode(node);
+            }
+            for (Connection connection : line.getConnectionList()) {
+                graph.addConnection(connection);
+            }
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: PersistenceBenchmark.java
+ *
+ *  Klasa PersistenceBenchmark mierzy zapis i odczyt
+ *  pliku sieci.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Test wydajności zapisu i odczytu sieci - operacji wykonywanych przez "Zapisz do pliku"
+ * i "Wczytaj z pliku" edytora. <br>
+ * Zapis to <code>NetworkFile.write</code> całej sieci. Odczyt to <code>EditJournal.open</code>
+ * (spis linii i odtworzenie pustego dziennika) - w wariancie <code>loadAll</code> wczytywana jest
+ * dodatkowo zawartość wszystkich linii, jak przy wyświetleniu wszystkich linii.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+
+import data.EditJournal;
+import data.Graph;
+import data.NetworkFile;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class PersistenceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int stops;
+
+    private Path directory;
+    private Path saved;
+    private Path written;
+    private List<Graph> lines;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("komunikacja-benchmark");
+        saved = directory.resolve("saved.bin");
+        written = directory.resolve("written.bin");
+        lines = Networks.lines(stops, Networks.SEED);
+        NetworkFile.write(lines, saved);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int save() throws IOException {
+        return NetworkFile.write(lines, written);
+    }
+
+    @Benchmark
+    public List<Graph> load() throws IOException {
+        try (EditJournal journal = EditJournal.open(saved)) {
+            return journal.getLines();
+        }
+    }
+
+    @Benchmark
+    public int loadAll() throws IOException {
+        try (EditJournal journal = EditJournal.open(saved)) {
+            int count = 0;
+            for (Graph line : journal.getLines()) {
+                count += line.getNodeCount();
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: HitTestBenchmark.java
+ *
+ *  Klasa HitTestBenchmark mierzy wyszukiwanie przystanków
+ *  i połączeń pod kursorem myszki.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Test wydajności <code>GraphPanel.findNode</code> i <code>GraphPanel.findConnection</code>
+ * (klasa w pakiecie <code>gui</code>, bo metody są pakietowe). <br>
+ * Kolejne wywołania sprawdzają punkty z ustalonej tablicy losowych punktów obszaru sieci - część
+ * trafia w przystanki i połączenia, część w puste miejsca.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package gui;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import benchmark.Networks;
+import data.Connection;
+import data.Graph;
+import data.Node;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class HitTestBenchmark {
+
+    /**Liczba sprawdzanych punktów (potęga dwójki)*/
+    private static final int POINTS = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int stops;
+
+    private GraphPanel panel;
+    private final int[] x = new int[POINTS];
+    private final int[] y = new int[POINTS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        Graph graph = Networks.merged(Networks.lines(stops, Networks.SEED));
+        panel = new GraphPanel();
+        panel.setGraph(graph);
+        Random random = new Random(Networks.SEED);
+        int side = Networks.side(stops);
+        for (int i = 0; i < POINTS; i++) {
+            // co drugi punkt w pobliżu przystanku
+            if (i % 2 == 0) {
+                Node node = graph.getNode(random.nextInt(graph.getNodeCount()));
+                x[i] = node.getX() + random.nextInt(7) - 3;
+                y[i] = node.getY() + random.nextInt(7) - 3;
+            }
+            else {
+                x[i] = random.nextInt(side);
+                y[i] = random.nextInt(side);
+            }
+        }
+    }
+
+    @Benchmark
+    public Node findNode(){
+        int i = next++ & (POINTS - 1);
+        return panel.findNode(x[i], y[i]);
+    }
+
+    @Benchmark
+    public Connection findConnection(){
+        int i = next++ & (POINTS - 1);
+        return panel.findConnection(x[i], y[i]);
+    }
+}
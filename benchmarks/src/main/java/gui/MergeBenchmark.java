@@ -0,0 +1,58 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: MergeBenchmark.java
+ *
+ *  Klasa MergeBenchmark mierzy łączenie linii
+ *  w widok wszystkich linii.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Test wydajności <code>GraphPanel.setGraphs</code> - zastąpienia linii panelu i wyświetlenia
+ * wszystkich linii (dołączenie linii do widoku wszystkich linii, indeksu przystanków,
+ * indeksu przestrzennego i historii zmian). Każde wywołanie dostaje nową listę linii,
+ * więc linie są łączone od początku.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import benchmark.Networks;
+import data.Graph;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class MergeBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int stops;
+
+    private GraphPanel panel;
+    private List<Graph> lines;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        lines = Networks.lines(stops, Networks.SEED);
+        panel = new GraphPanel();
+    }
+
+    @Benchmark
+    public GraphPanel setGraphs(){
+        panel.setGraphs(new ArrayList<>(lines));
+        return panel;
+    }
+}
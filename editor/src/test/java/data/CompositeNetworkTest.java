@@ -0,0 +1,185 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: CompositeNetworkTest.java
+ *
+ *  Testy widoku wszystkich linii - przeglądanie bez kopiowania
+ *  i przekazywanie zdarzeń linii słuchaczom widoku.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy widoku wszystkich linii. <br>
+ * Przystanek wspólny dla kilku linii występuje w widoku jeden raz: słuchacze widoku dowiadują się
+ * o nim przy pierwszej linii, do której trafi, i przy ostatniej, z której zniknie. Zmiany w liniach
+ * widoczne są w widoku od razu, a po odłączeniu linii jej zdarzenia nie są już przekazywane.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CompositeNetworkTest {
+
+    private Graph tram;
+    private Graph bus;
+    private Node a;
+    private Node shared;
+    private Node b;
+    private CompositeNetwork network;
+    private List<String> events;
+
+    @BeforeEach
+    void createNetwork(){
+        tram = new Graph(1, TransportType.TRAM);
+        bus = new Graph(146, TransportType.BUS);
+        a = new Node(0, 0, "A");
+        shared = new Node(100, 0, "Rynek");
+        b = new Node(200, 0, "B");
+        tram.addNode(a);
+        tram.addNode(shared);
+        tram.createConnection(a, shared);
+        bus.addNode(shared);
+        bus.addNode(b);
+        bus.createConnection(shared, b);
+        network = new CompositeNetwork();
+        network.addLine(tram);
+        network.addLine(bus);
+        events = new ArrayList<>();
+        network.addGraphListener(new GraphListener() {
+            @Override
+            public void nodeAdded(Graph graph, Node node){
+                events.add("+" + node.getName());
+            }
+
+            @Override
+            public void nodeRemoved(Graph graph, Node node){
+                events.add("-" + node.getName());
+            }
+
+            @Override
+            public void nodeMoved(Graph graph, Node node, int oldX, int oldY){
+                events.add("~" + node.getName());
+            }
+
+            @Override
+            public void connectionAdded(Graph graph, Connection connection){
+                events.add("+" + connection.getNode1().getName() + "-" + connection.getNode2().getName());
+            }
+
+            @Override
+            public void connectionRemoved(Graph graph, Connection connection){
+                events.add("-" + connection.getNode1().getName() + "-" + connection.getNode2().getName());
+            }
+        });
+    }
+
+    @Test
+    void sharedStopAppearsOnce(){
+        assertEquals(3, network.getNodeCount());
+        assertEquals(List.of(a, shared, b), network.getNodeList());
+        List<Node> iterated = new ArrayList<>();
+        for (Node node : network.nodes()) iterated.add(node);
+        assertEquals(network.getNodeList(), iterated);
+        assertEquals(2, network.getConnectionCount());
+        assertEquals(2, network.getIncidentConnections(shared).size());
+        assertEquals(1, network.getIncidentConnections(a).size());
+        assertThrows(UnsupportedOperationException.class, () -> network.addNode(new Node(5, 5, "C")));
+    }
+
+    @Test
+    void stopIsAddedOnFirstLineAndRemovedOnLast(){
+        Node c = new Node(300, 0, "C");
+        bus.addNode(c);
+        tram.addNode(c);
+        assertEquals(List.of("+C"), events);
+        assertEquals(4, network.getNodeCount());
+
+        events.clear();
+        bus.removeNode(c);
+        assertEquals(List.of(), events);
+        assertTrue(network.containsNode(c));
+        tram.removeNode(c);
+        assertEquals(List.of("-C"), events);
+        assertFalse(network.containsNode(c));
+        assertEquals(3, network.getNodeCount());
+
+        // przesunięcie wspólnego przystanku zgłaszane jest raz
+        events.clear();
+        shared.setLocation(120, 10);
+        assertEquals(List.of("~Rynek"), events);
+    }
+
+    @Test
+    void connectionEventsAndCascadingRemoval(){
+        bus.addNode(a);
+        events.clear();
+        bus.createConnection(a, b);
+        assertEquals(List.of("+A-B"), events);
+        assertEquals(3, network.getConnectionCount());
+
+        events.clear();
+        network.removeNode(shared);
+        assertFalse(network.containsNode(shared));
+        assertEquals(Set.of("-A-Rynek", "-Rynek-B", "-Rynek"), Set.copyOf(events));
+        assertEquals("-Rynek", events.get(events.size() - 1));
+        assertEquals(1, network.getConnectionCount());
+        assertEquals(List.of(a, b), network.getNodeList());
+    }
+
+    @Test
+    void removeLineReportsOnlyItsOwnElements(){
+        network.removeLine(bus);
+        assertEquals(List.of("-Rynek-B", "-B"), events);
+        assertEquals(List.of(a, shared), network.getNodeList());
+        assertEquals(List.of(tram), network.getLines());
+
+        // odłączona linia nie przekazuje już zdarzeń
+        events.clear();
+        bus.addNode(new Node(400, 0, "D"));
+        b.setLocation(250, 0);
+        assertEquals(List.of(), events);
+
+        network.addLine(bus);
+        assertEquals(Set.of("+B", "+D", "+Rynek-B"), new HashSet<>(events));
+        assertEquals(4, network.getNodeCount());
+        network.clear();
+        assertEquals(0, network.getNodeCount());
+        assertTrue(network.getNodeList().isEmpty());
+    }
+
+    @Test
+    void viewMatchesUnionOfGeneratedLines(){
+        List<Graph> lines = NetworkFixtures.lines(500);
+        network = new CompositeNetwork();
+        for (Graph line : lines) network.addLine(line);
+        Set<Node> nodes = new HashSet<>();
+        int connections = 0;
+        for (Graph line : lines) {
+            nodes.addAll(line.getNodeList());
+            connections += line.getConnectionCount();
+        }
+        assertEquals(nodes, Set.copyOf(network.getNodeList()));
+        assertEquals(nodes.size(), network.getNodeList().size());
+        assertEquals(nodes.size(), network.getNodeCount());
+        assertEquals(connections, network.getConnectionCount());
+        Node first = network.getNodeList().get(0);
+        assertSame(first, network.getNodes()[0]);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: EditHistoryTest.java
+ *
+ *  Testy cofania i ponawiania zmian sieci oraz łączenia
+ *  przeciągania przystanku w jeden krok.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy historii zmian. <br>
+ * Cofnięcie wszystkich kroków przywraca sieć sprzed zmian, a ponowienie wszystkich - sieć po zmianach
+ * (kolejność przystanków w liście linii może się przy tym zmienić, porównywane są więc zbiory elementów
+ * i ich atrybuty). Przeciąganie przystanku jest jednym krokiem z jednym rekordem, zmiana przystanku
+ * wspólnego dla dwóch linii jest zapamiętywana raz, a nowa zmiana usuwa kroki do ponowienia.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EditHistoryTest {
+
+    private List<Graph> lines;
+    private EditHistory history;
+    private final Map<Object, Integer> ids = new IdentityHashMap<>();
+
+    @BeforeEach
+    void createHistory(){
+        lines = NetworkFixtures.lines(400);
+        history = new EditHistory();
+        for (Graph line : lines) history.addLine(line);
+    }
+
+    @Test
+    void undoAndRedoOfRandomEdits(){
+        List<Object> before = state(lines);
+        Random random = new Random(NetworkFixtures.SEED);
+        for (int i = 0; i < 500; i++) {
+            edit(random);
+        }
+        List<Object> after = state(lines);
+        assertNotEquals(before, after);
+        assertTrue(history.getUndoCount() > 400);
+
+        while (history.undo()) {
+        }
+        assertEquals(before, state(lines));
+        assertFalse(history.canUndo());
+        while (history.redo()) {
+        }
+        assertEquals(after, state(lines));
+        assertFalse(history.canRedo());
+    }
+
+    @Test
+    void dragIsOneStep(){
+        Node node = lines.get(0).getNode(0);
+        int x = node.getX();
+        int y = node.getY();
+        int count = history.getUndoCount();
+        history.beginStep();
+        for (int i = 1; i <= 100; i++) {
+            node.setLocation(x + i, y - i);
+        }
+        history.endStep();
+        assertEquals(count + 1, history.getUndoCount());
+
+        assertTrue(history.undo());
+        assertEquals(x, node.getX());
+        assertEquals(y, node.getY());
+        assertTrue(history.redo());
+        assertEquals(x + 100, node.getX());
+        assertEquals(y - 100, node.getY());
+        // bez kroku każde przesunięcie jest osobnym krokiem
+        node.setLocation(0, 0);
+        node.setLocation(1, 1);
+        assertEquals(count + 3, history.getUndoCount());
+    }
+
+    @Test
+    void sharedStopIsRecordedOnce(){
+        Graph tram = new Graph(1, TransportType.TRAM);
+        Graph bus = new Graph(2, TransportType.BUS);
+        Node shared = new Node(10, 10, "Rynek");
+        tram.addNode(shared);
+        bus.addNode(shared);
+        history.clear();
+        history.addLine(tram);
+        history.addLine(bus);
+
+        shared.setName("Plac Solny");
+        shared.setR(30);
+        shared.setColor(Color.RED);
+        assertEquals(3, history.getUndoCount());
+        history.undo();
+        history.undo();
+        history.undo();
+        assertEquals("Rynek", shared.getName());
+        assertFalse(history.canUndo());
+    }
+
+    @Test
+    void newEditClearsRedoAndLimitDropsOldestSteps(){
+        Node node = lines.get(0).getNode(0);
+        node.setName("Pierwsza");
+        node.setName("Druga");
+        history.undo();
+        assertTrue(history.canRedo());
+        node.setR(40);
+        assertFalse(history.canRedo());
+
+        EditHistory limited = new EditHistory(3);
+        limited.addLine(lines.get(1));
+        Node other = lines.get(1).getNode(0);
+        String name = other.getName();
+        for (int i = 0; i < 5; i++) other.setName("Nazwa " + i);
+        assertEquals(3, limited.getUndoCount());
+        while (limited.undo()) {
+        }
+        assertEquals("Nazwa 1", other.getName());
+        assertNotEquals(name, other.getName());
+    }
+
+    /**Metoda wykonująca losową zmianę jednej z linii*/
+    private void edit(Random random){
+        Graph line = lines.get(random.nextInt(lines.size()));
+        if (line.getNodeCount() < 2) return;
+        Node node = line.getNode(random.nextInt(line.getNodeCount()));
+        switch (random.nextInt(7)) {
+            case 0:
+                node.setLocation(node.getX() + random.nextInt(50) - 25, node.getY() + random.nextInt(50) - 25);
+                break;
+            case 1:
+                node.setName("Przystanek " + random.nextInt(1000));
+                break;
+            case 2:
+                node.setR(node.getR() + 1);
+                break;
+            case 3:
+                node.setColor(new Color(random.nextInt(0xFFFFFF)));
+                break;
+            case 4:
+                // usunięcie przystanku wraz z połączeniami - jeden krok
+                history.beginStep();
+                line.removeNode(node);
+                history.endStep();
+                break;
+            case 5:
+                Node other = line.getNode(random.nextInt(line.getNodeCount()));
+                if (other == node) break;
+                line.createConnection(node, other);
+                break;
+            default:
+                if (line.getConnectionCount() == 0) break;
+                Connection connection = line.getConnection(random.nextInt(line.getConnectionCount()));
+                if (random.nextBoolean()) line.setConnectionColor(connection, new Color(random.nextInt(0xFFFFFF)));
+                else line.removeConnection(connection);
+        }
+    }
+
+    /**Stan sieci niezależny od kolejności elementów w listach linii: przystanki i połączenia każdej linii
+     * (rozróżniane jako obiekty - według numerów nadanych przy pierwszym wystąpieniu) z ich atrybutami*/
+    private List<Object> state(List<Graph> lines){
+        List<Object> state = new ArrayList<>();
+        for (Graph line : lines) {
+            Map<Integer, String> elements = new HashMap<>();
+            for (Node node : line.nodes()) {
+                elements.put(id(node), node.getX() + "," + node.getY() + " " + node.getName() + " r=" + node.getR()
+                                       + " " + node.getColor());
+            }
+            for (Connection connection : line.connections()) {
+                elements.put(id(connection), String.valueOf(connection.getColor()));
+            }
+            state.add(elements);
+        }
+        return state;
+    }
+
+    private int id(Object element){
+        return ids.computeIfAbsent(element, key -> ids.size());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: EditJournalTest.java
+ *
+ *  Testy odtwarzania dziennika zmian sieci.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy dziennika zmian. <br>
+ * Zmiany linii zapisane w dzienniku muszą zostać odtworzone przy ponownym otwarciu sieci,
+ * a niedokończony ostatni rekord (program przerwany w trakcie zapisu) musi zostać pominięty
+ * bez utraty wcześniejszych zmian i bez przeszkody dla dalszego zapisu.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import util.ProgressListener;
+
+class EditJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void changesAreReplayed() throws IOException {
+        Path base = directory.resolve("siec.bin");
+        List<String> expected;
+        try (EditJournal journal = EditJournal.create(base, NetworkFixtures.lines(300), ProgressListener.NONE)) {
+            edit(journal);
+            expected = NetworkFixtures.describe(journal.getLines());
+            assertTrue(journal.getSize() > 0);
+        }
+
+        try (EditJournal journal = EditJournal.open(base)) {
+            assertEquals(expected, NetworkFixtures.describe(journal.getLines()));
+        }
+    }
+
+    @Test
+    void truncatedLastRecordIsSkipped() throws IOException {
+        Path base = directory.resolve("siec.bin");
+        Path journalFile = directory.resolve("siec.bin.journal");
+        List<String> expected;
+        long complete;
+        try (EditJournal journal = EditJournal.create(base, NetworkFixtures.lines(300), ProgressListener.NONE)) {
+            edit(journal);
+            expected = NetworkFixtures.describe(journal.getLines());
+            complete = journal.getSize();
+            journal.getLines().get(0).getNode(0).setName("Zmiana przerwana w trakcie zapisu");
+        }
+        // ostatni rekord (zmiana nazwy) zapisany tylko częściowo
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        try (EditJournal journal = EditJournal.open(base)) {
+            assertEquals(expected, NetworkFixtures.describe(journal.getLines()));
+            assertEquals(complete, journal.getSize());
+            assertEquals(complete, Files.size(journalFile));
+            assertFalse(Files.exists(directory.resolve("siec.bin.journal.bak")));
+            journal.getLines().get(0).getNode(0).setName("Zmiana po odtworzeniu");
+            expected = NetworkFixtures.describe(journal.getLines());
+        }
+
+        try (EditJournal journal = EditJournal.open(base)) {
+            assertEquals(expected, NetworkFixtures.describe(journal.getLines()));
+        }
+    }
+
+    @Test
+    void compactedJournalStartsEmpty() throws IOException {
+        Path base = directory.resolve("siec.bin");
+        List<String> expected;
+        long emptySize;
+        try (EditJournal journal = EditJournal.create(base, NetworkFixtures.lines(300), ProgressListener.NONE)) {
+            emptySize = journal.getSize();
+            edit(journal);
+            journal.compact(ProgressListener.NONE);
+            expected = NetworkFixtures.describe(journal.getLines());
+            assertEquals(emptySize, journal.getSize());
+        }
+
+        try (EditJournal journal = EditJournal.open(base)) {
+            assertEquals(expected, NetworkFixtures.describe(journal.getLines()));
+        }
+    }
+
+    /**Zmiany każdego rodzaju zapisywanego w dzienniku*/
+    private static void edit(EditJournal journal){
+        Graph line = journal.getLines().get(0);
+        Node first = line.getNode(0);
+        Node second = line.getNode(1);
+        first.setLocation(first.getX() + 15, first.getY() - 7);
+        first.setName("Nowa nazwa");
+        second.setR(25);
+        second.setColor(Color.MAGENTA);
+
+        Node added = new Node(12, 34, "Nowy przystanek");
+        line.addNode(added);
+        line.createConnection(second, added);
+        line.setConnectionColor(line.getIncidentConnections(added).get(0), Color.ORANGE);
+        line.removeConnection(line.getConnection(0));
+        line.removeNode(line.getNode(2));
+
+        Graph newLine = new Graph(999, TransportType.BUS);
+        Node start = new Node(50, 60, null);
+        newLine.addNode(start);
+        newLine.addNode(added);
+        newLine.createConnection(start, added);
+        journal.addLine(newLine);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: GraphTest.java
+ *
+ *  Testy indeksu połączeń incydentnych grafu i kaskadowego
+ *  usuwania przystanków.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy grafu linii. <br>
+ * Indeks połączeń incydentnych musi odpowiadać liście połączeń grafu po każdej zmianie, a usunięcie
+ * przystanku usuwa również wszystkie prowadzące do niego połączenia (i powiadamia o tym słuchaczy),
+ * nie pozostawiając połączeń z usuniętym przystankiem.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GraphTest {
+
+    private Graph graph;
+    private Node a;
+    private Node b;
+    private Node c;
+    private Node d;
+
+    @BeforeEach
+    void createGraph(){
+        graph = new Graph(1, TransportType.TRAM);
+        a = new Node(0, 0, "A");
+        b = new Node(100, 0, "B");
+        c = new Node(100, 100, "C");
+        d = new Node(0, 100, "D");
+        for (Node node : List.of(a, b, c, d)) {
+            graph.addNode(node);
+        }
+        graph.createConnection(a, b);
+        graph.createConnection(b, c);
+        graph.createConnection(b, d);
+        graph.createConnection(c, d);
+    }
+
+    @Test
+    void neighborsAndDegrees(){
+        assertEquals(1, graph.getDegree(a));
+        assertEquals(3, graph.getDegree(b));
+        assertEquals(Set.of(a, c, d), Set.copyOf(graph.getNeighbors(b)));
+        assertEquals(Set.of(c, b), Set.copyOf(graph.getNeighbors(d)));
+        assertEquals(0, graph.getDegree(new Node(5, 5, "poza grafem")));
+        assertIndexMatchesConnections();
+    }
+
+    @Test
+    void duplicateConnectionIsIgnored(){
+        Connection first = graph.getIncidentConnections(a).get(0);
+        graph.addConnection(first);
+        assertEquals(4, graph.getConnectionCount());
+        assertEquals(1, graph.getDegree(a));
+    }
+
+    @Test
+    void removeConnectionUpdatesBothEnds(){
+        Connection bc = findConnection(b, c);
+        graph.removeConnection(bc);
+        assertEquals(2, graph.getDegree(b));
+        assertEquals(1, graph.getDegree(c));
+        assertFalse(graph.containsConnection(bc));
+        assertIndexMatchesConnections();
+    }
+
+    @Test
+    void removeNodeCascadesToConnections(){
+        List<String> events = new ArrayList<>();
+        graph.addGraphListener(new GraphListener() {
+            @Override
+            public void nodeRemoved(Graph source, Node node){
+                events.add("przystanek " + node.getName());
+            }
+
+            @Override
+            public void connectionRemoved(Graph source, Connection connection){
+                events.add("połączenie " + connection.getNode1().getName() + connection.getNode2().getName());
+            }
+        });
+
+        graph.removeNode(b);
+
+        assertFalse(graph.containsNode(b));
+        assertEquals(1, graph.getConnectionCount());
+        graph.forEachConnection(connection -> {
+            assertTrue(connection.getNode1() != b && connection.getNode2() != b, "połączenie z usuniętym przystankiem");
+        });
+        assertEquals(0, graph.getDegree(a));
+        assertEquals(List.of(d), graph.getNeighbors(c));
+        // słuchacze dowiadują się o połączeniach przed usunięciem przystanku
+        assertEquals(4, events.size());
+        assertEquals("przystanek B", events.get(3));
+        assertEquals(Set.of("połączenie AB", "połączenie BC", "połączenie BD"), Set.copyOf(events.subList(0, 3)));
+        assertIndexMatchesConnections();
+    }
+
+    @Test
+    void selfLoopIsCountedOnce(){
+        Node e = new Node(50, 50, "E");
+        graph.addNode(e);
+        graph.createConnection(e, e);
+        assertEquals(1, graph.getDegree(e));
+        graph.removeNode(e);
+        assertEquals(4, graph.getConnectionCount());
+        assertIndexMatchesConnections();
+    }
+
+    @Test
+    void indexFollowsGeneratedNetwork(){
+        for (Graph line : NetworkFixtures.lines(300)) {
+            graph = line;
+            assertIndexMatchesConnections();
+            Node middle = line.getNode(line.getNodeCount() / 2);
+            int before = line.getConnectionCount();
+            int degree = line.getDegree(middle);
+            line.removeNode(middle);
+            assertEquals(before - degree, line.getConnectionCount());
+            assertIndexMatchesConnections();
+        }
+    }
+
+    private Connection findConnection(Node from, Node to){
+        for (Connection connection : graph.getIncidentConnections(from)) {
+            if (connection.getOtherNode(from) == to) return connection;
+        }
+        throw new AssertionError("Brak połączenia " + from + " - " + to);
+    }
+
+    /**Metoda sprawdzająca czy połączenia incydentne każdego przystanku to dokładnie jego połączenia z listy grafu*/
+    private void assertIndexMatchesConnections(){
+        graph.forEachNode(node -> {
+            List<Connection> expected = new ArrayList<>();
+            graph.forEachConnection(connection -> {
+                if (connection.getNode1() == node || connection.getNode2() == node) expected.add(connection);
+            });
+            assertEquals(Set.copyOf(expected), Set.copyOf(graph.getIncidentConnections(node)), node.toString());
+            assertEquals(expected.size(), graph.getDegree(node), node.toString());
+        });
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: GtfsImporterTest.java
+ *
+ *  Testy importu linii z danych GTFS zapisanych w katalogu
+ *  i w archiwum zip.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy importu danych GTFS. <br>
+ * Mały zestaw danych sprawdza numery i rodzaje linii, rzutowanie współrzędnych, wspólny przystanek
+ * kilku tras i rozkłady jazdy (także czasy po północy); ten sam zestaw w archiwum zip daje te same linie.
+ * Plik stop_times.txt większy niż kilka bloków musi dać ten sam wynik niezależnie od liczby wątków.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import util.ProgressListener;
+
+class GtfsImporterTest {
+
+    private static final String STOPS = "stop_id,stop_name,stop_lat,stop_lon\n"
+            + "S1,Dworzec,51.10,17.00\n"
+            + "S2,\"Plac \"\"Grunwaldzki\"\"\",51.10,17.05\n"
+            + "S3,Rynek,51.12,17.05\n"
+            + "S4,\"Most, Pomorski\",51.12,17.00\n";
+    private static final String ROUTES = "route_id,route_short_name,route_type\n"
+            + "R1,1,0\n"
+            + "R2,N,3\n"
+            + "R3,146,3\n";
+    private static final String TRIPS = "route_id,trip_id\n"
+            + "R1,T1\n"
+            + "R1,T2\n"
+            + "R2,T3\n"
+            + "R3,T4\n";
+    // wiersze kursu T1 nie są uporządkowane według stop_sequence, kurs T4 nie ma wierszy
+    private static final String STOP_TIMES = "trip_id,arrival_time,departure_time,stop_id,stop_sequence\n"
+            + "T1,8:10:00,8:10:00,S3,3\n"
+            + "T1,8:00:00,8:00:00,S1,1\n"
+            + "T1,8:05:00,8:06:00,S2,2\n"
+            + "T2,8:20:00,8:20:00,S1,1\n"
+            + "T2,8:25:00,8:26:00,S2,2\n"
+            + "T2,8:30:00,8:30:00,S3,3\n"
+            + "T3,25:10:00,25:10:00,S3,1\n"
+            + "T3,25:20:00,25:20:00,S4,2\n";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void importsSmallFeed() throws IOException {
+        writeFeed(directory, STOP_TIMES);
+        GtfsImporter importer = new GtfsImporter();
+        importer.setExtent(1000, 1000);
+        importer.setTimetables(true);
+        List<Graph> lines = importer.importFeed(directory, ProgressListener.NONE);
+
+        assertEquals(2, lines.size());
+        Graph tram = lines.get(0);
+        Graph night = lines.get(1);
+        assertEquals(1, tram.getNumber());
+        assertEquals(TransportType.TRAM, tram.getTransportType());
+        // nienumeryczna nazwa trasy - numer większy od największego numeru w danych
+        assertEquals(147, night.getNumber());
+        assertEquals(TransportType.BUS, night.getTransportType());
+
+        assertEquals(3, tram.getNodeCount());
+        assertEquals(2, tram.getConnectionCount());
+        Node dworzec = tram.getNode(0);
+        Node plac = tram.getNode(1);
+        Node rynek = tram.getNode(2);
+        assertEquals("Dworzec", dworzec.getName());
+        assertEquals("Plac \"Grunwaldzki\"", plac.getName());
+        assertSame(rynek, night.getNode(0));
+        assertEquals("Most, Pomorski", night.getNode(1).getName());
+        // zachód przy lewym brzegu, północ przy górnym
+        assertEquals(50, dworzec.getX());
+        assertEquals(50, rynek.getY());
+        assertEquals(dworzec.getY(), plac.getY());
+        assertTrue(plac.getX() > dworzec.getX() && dworzec.getY() > rynek.getY());
+
+        Schedule schedule = tram.getSchedules().get(0);
+        assertEquals(List.of(dworzec, plac, rynek), schedule.getStops());
+        assertEquals(2, schedule.getTripCount());
+        assertEquals(8 * 3600 + 5 * 60, schedule.getArrival(0, 1));
+        assertEquals(8 * 3600 + 26 * 60, schedule.getDeparture(1, 1));
+        assertEquals(25 * 3600 + 20 * 60, night.getSchedules().get(0).getArrival(0, 1));
+    }
+
+    @Test
+    void zipGivesTheSameLines() throws IOException {
+        Path feed = Files.createDirectory(directory.resolve("gtfs"));
+        writeFeed(feed, STOP_TIMES);
+        Path zip = directory.resolve("gtfs.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (String name : List.of("stops.txt", "routes.txt", "trips.txt", "stop_times.txt")) {
+                // pliki w podkatalogu archiwum
+                out.putNextEntry(new ZipEntry("wroclaw/" + name));
+                out.write(Files.readAllBytes(feed.resolve(name)));
+                out.closeEntry();
+            }
+        }
+        GtfsImporter importer = new GtfsImporter();
+        importer.setTimetables(true);
+        assertEquals(NetworkFixtures.describe(importer.importFeed(feed, ProgressListener.NONE)),
+                     NetworkFixtures.describe(importer.importFeed(zip, ProgressListener.NONE)));
+    }
+
+    @Test
+    void resultDoesNotDependOnThreadCount() throws IOException {
+        // kilka milionów znaków - plik dzielony jest na wiele bloków
+        Random random = new Random(NetworkFixtures.SEED);
+        StringBuilder stopTimes = new StringBuilder("trip_id,arrival_time,departure_time,stop_id,stop_sequence\n");
+        String[] trips = {"T1", "T2", "T3"};
+        String[] stops = {"S1", "S2", "S3", "S4"};
+        for (int trip = 0; stopTimes.length() < 5_000_000; trip++) {
+            String id = trips[trip % trips.length];
+            int time = 5 * 3600 + random.nextInt(18 * 3600);
+            int length = 2 + random.nextInt(20);
+            for (int i = 0; i < length; i++, time += 60 + random.nextInt(240)) {
+                String clock = Schedule.formatTime(time) + ":00";
+                stopTimes.append('"').append(id).append("\",").append(clock).append(',').append(clock).append(',')
+                         .append(stops[random.nextInt(stops.length)]).append(',').append(i + 1).append('\n');
+            }
+        }
+        writeFeed(directory, stopTimes.toString());
+
+        GtfsImporter importer = new GtfsImporter();
+        importer.setTimetables(true);
+        importer.setThreads(1);
+        List<String> expected = NetworkFixtures.describe(importer.importFeed(directory, ProgressListener.NONE));
+        importer.setThreads(4);
+        assertEquals(expected, NetworkFixtures.describe(importer.importFeed(directory, ProgressListener.NONE)));
+    }
+
+    @Test
+    void reportsErrorsInFeed() throws IOException {
+        writeFeed(directory, STOP_TIMES.replace("T2,8:25:00,8:26:00,S2,2", "T2,8:25:00,8:26:00,S2,99999999999"));
+        GtfsImporter importer = new GtfsImporter();
+        assertThrows(IOException.class, () -> importer.importFeed(directory, ProgressListener.NONE));
+
+        Files.writeString(directory.resolve("routes.txt"), "route_id,route_short_name\nR1,1\n", StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> importer.importFeed(directory, ProgressListener.NONE));
+        assertThrows(IOException.class, () -> importer.importFeed(directory.resolve("brak"), ProgressListener.NONE));
+    }
+
+    private static void writeFeed(Path feed, String stopTimes) throws IOException {
+        Files.writeString(feed.resolve("stops.txt"), STOPS, StandardCharsets.UTF_8);
+        Files.writeString(feed.resolve("routes.txt"), ROUTES, StandardCharsets.UTF_8);
+        Files.writeString(feed.resolve("trips.txt"), TRIPS, StandardCharsets.UTF_8);
+        Files.writeString(feed.resolve("stop_times.txt"), stopTimes, StandardCharsets.UTF_8);
+    }
+}
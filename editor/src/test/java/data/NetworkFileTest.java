@@ -0,0 +1,139 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: NetworkFileTest.java
+ *
+ *  Testy zapisu linii do pliku sieci i ich odczytu.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy formatu pliku sieci. <br>
+ * Sieć zapisana do pliku i wczytana z powrotem musi mieć te same linie, przystanki, połączenia
+ * i rozkłady jazdy, a przystanek należący do kilku linii musi pozostać jednym obiektem. Zapis pod ścieżką
+ * otwartego pliku nie może odebrać jego liniom niewczytanych jeszcze danych.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import util.ProgressListener;
+
+class NetworkFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writtenNetworkIsReadBack() throws IOException {
+        List<Graph> lines = NetworkFixtures.lines(2000);
+        Path path = directory.resolve("siec.bin");
+        int stops = NetworkFile.write(lines, path);
+
+        NetworkFile file = NetworkFile.open(path);
+        assertEquals(stops, file.getStopCount());
+        assertEquals(NetworkFixtures.describe(lines), NetworkFixtures.describe(file.getLines()));
+    }
+
+    @Test
+    void sharedStopIsOneNodeAfterReading() throws IOException {
+        Graph tram = new Graph(1, TransportType.TRAM);
+        Graph bus = new Graph(146, TransportType.BUS);
+        Node shared = new Node(100, 100, "Plac Grunwaldzki");
+        Node tramStop = new Node(200, 100, "Most Grunwaldzki");
+        Node busStop = new Node(100, 200, null);
+        tram.addNode(shared);
+        tram.addNode(tramStop);
+        tram.createConnection(shared, tramStop);
+        bus.addNode(shared);
+        bus.addNode(busStop);
+        bus.createConnection(busStop, shared);
+        Path path = directory.resolve("siec.bin");
+        assertEquals(3, NetworkFile.write(List.of(tram, bus), path));
+
+        List<Graph> read = NetworkFile.open(path).getLines();
+        assertEquals(NetworkFixtures.describe(List.of(tram, bus)), NetworkFixtures.describe(read));
+        Map<String, Node> tramNodes = new HashMap<>();
+        for (Node node : read.get(0).nodes()) {
+            tramNodes.put(node.getName(), node);
+        }
+        assertSame(tramNodes.get("Plac Grunwaldzki"), read.get(1).getNode(0));
+    }
+
+    @Test
+    void linesAreLoadedOnFirstUse() throws IOException {
+        Path path = directory.resolve("siec.bin");
+        NetworkFile.write(NetworkFixtures.lines(500), path);
+
+        List<Graph> read = NetworkFile.open(path).getLines();
+        Graph line = read.get(0);
+        assertFalse(line.isLoaded());
+        assertTrue(line.getNodeCount() > 0);
+        assertTrue(line.isLoaded());
+    }
+
+    @Test
+    void overwritingOpenFileKeepsItsLinesReadable() throws IOException {
+        Path path = directory.resolve("siec.bin");
+        List<Graph> original = NetworkFixtures.lines(500);
+        NetworkFile.write(original, path);
+        List<Graph> read = NetworkFile.open(path).getLines();
+        read.get(0).getNodeCount();
+        assertFalse(read.get(read.size() - 1).isLoaded());
+
+        // nowa sieć zastępuje plik, z którego nie wczytano jeszcze większości linii
+        List<Graph> replacement = NetworkFixtures.lines(300);
+        NetworkFile.write(replacement, path);
+        for (Graph line : read) {
+            assertTrue(line.isLoaded(), line.toString());
+        }
+        assertEquals(NetworkFixtures.describe(original), NetworkFixtures.describe(read));
+        assertEquals(NetworkFixtures.describe(replacement), NetworkFixtures.describe(NetworkFile.open(path).getLines()));
+
+        // zapis wczytanych linii z powrotem pod tą samą ścieżką
+        NetworkFile.write(read, path);
+        assertEquals(NetworkFixtures.describe(original), NetworkFixtures.describe(NetworkFile.open(path).getLines()));
+    }
+
+    @Test
+    void cancelledWriteLeavesPreviousFile() throws IOException {
+        Path path = directory.resolve("siec.bin");
+        List<Graph> lines = NetworkFixtures.lines(500);
+        NetworkFile.write(lines, path);
+        byte[] previous = Files.readAllBytes(path);
+
+        ProgressListener cancelled = new ProgressListener() {
+            @Override
+            public void progress(long done, long total) {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+        assertThrows(CancellationException.class, () -> NetworkFile.write(NetworkFixtures.lines(1000), path, cancelled));
+        assertEquals(previous.length, Files.size(path));
+        assertEquals(NetworkFixtures.describe(lines), NetworkFixtures.describe(NetworkFile.open(path).getLines()));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: NetworkFixtures.java
+ *
+ *  Klasa NetworkFixtures dostarcza testom jednostkowym linie z rozkładami
+ *  jazdy i tekstowy opis sieci do porównywania w asercjach.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Dane testów jednostkowych (w odróżnieniu od <code>benchmark.Networks</code>, który tworzy duże sieci
+ * bez rozkładów dla testów wydajności). <br>
+ * Linie tworzone są przez <code>NetworkGenerator</code> z ustalonym ziarnem i z rozkładami jazdy.
+ * Opis sieci zawiera wszystkie zapisywane dane linii (przystanki, połączenia i rozkłady jazdy),
+ * a przystanki połączeń i rozkładów wskazywane są numerem w linii - dwie sieci są równe, gdy równe
+ * są ich opisy.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class NetworkFixtures {
+
+    /**Ziarno generatora linii testowych (i liczb losowych testów, które z nich korzystają)*/
+    public static final long SEED = 1228L;
+
+    private NetworkFixtures() {
+    }
+
+    /**Metoda tworząca linie sieci o łącznej liczbie <code>stops</code> przystanków (z rozkładami jazdy)*/
+    public static List<Graph> lines(int stops){
+        NetworkGenerator generator = new NetworkGenerator(SEED);
+        generator.setTimetables(true);
+        return generator.generate(stops);
+    }
+
+    /**Metoda tworząca linie sieci, w których część przystanków otrzymuje nazwę poprzedniego przystanku (perony
+     * jednego węzła przesiadkowego), a część traci nazwę - sieć zawiera łuki przesiadkowe i przystanki bez przesiadek*/
+    public static List<Graph> linesWithTransfers(int stops){
+        List<Graph> lines = lines(stops);
+        NetworkSnapshot network = NetworkSnapshot.of(lines);
+        for (int i = 1; i < network.nodeCount(); i++) {
+            if (i % 7 == 0) network.node(i).setName(network.node(i - 1).getName());
+            else if (i % 11 == 0) network.node(i).setName(null);
+        }
+        return lines;
+    }
+
+    /**Metoda zwracająca opis linii sieci - po jednym wierszu na linię*/
+    public static List<String> describe(List<Graph> graphs){
+        List<String> description = new ArrayList<>(graphs.size());
+        for (Graph graph : graphs) {
+            description.add(describe(graph));
+        }
+        return description;
+    }
+
+    /**Metoda zwracająca opis jednej linii*/
+    public static String describe(Graph graph){
+        StringBuilder text = new StringBuilder();
+        text.append(graph.getNumber()).append(' ').append(graph.getTransportType()).append(" przystanki:");
+        Map<Node, Integer> index = new IdentityHashMap<>();
+        for (Node node : graph.nodes()) {
+            index.put(node, index.size());
+            text.append(" [").append(node.getX()).append(',').append(node.getY()).append(' ')
+                .append(node.getName()).append(" r=").append(node.getR())
+                .append(' ').append(rgb(node.getColor())).append(']');
+        }
+        text.append(" połączenia:");
+        for (Connection connection : graph.connections()) {
+            text.append(" [").append(index.get(connection.getNode1())).append('-')
+                .append(index.get(connection.getNode2())).append(' ').append(rgb(connection.getColor())).append(']');
+        }
+        text.append(" rozkłady:");
+        for (Schedule schedule : graph.getSchedules()) {
+            text.append(" [");
+            for (Node node : schedule.getStops()) {
+                text.append(index.get(node)).append(' ');
+            }
+            for (int trip = 0; trip < schedule.getTripCount(); trip++) {
+                for (int stop = 0; stop < schedule.getStops().size(); stop++) {
+                    text.append(schedule.getArrival(trip, stop)).append('/')
+                        .append(schedule.getDeparture(trip, stop)).append(' ');
+                }
+            }
+            text.append(']');
+        }
+        return text.toString();
+    }
+
+    private static String rgb(Color color){
+        return color == null ? "-" : Integer.toHexString(color.getRGB());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: NetworkGeneratorTest.java
+ *
+ *  Testy generatora syntetycznych sieci komunikacji miejskiej.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy generatora sieci. <br>
+ * To samo ziarno daje zawsze tę samą sieć (także z rozkładami jazdy), a inne ziarno - inną. Sieć ma
+ * dokładnie zadaną liczbę różnych przystanków leżących w obszarze o boku <code>getSide</code>, każda
+ * linia jest ciągiem połączonych przystanków, a węzły przesiadkowe są wspólne dla wielu linii.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+
+import util.ProgressListener;
+
+class NetworkGeneratorTest {
+
+    @Test
+    void sameSeedGivesSameNetwork(){
+        List<String> first = NetworkFixtures.describe(NetworkFixtures.lines(2000));
+        assertEquals(first, NetworkFixtures.describe(NetworkFixtures.lines(2000)));
+
+        NetworkGenerator other = new NetworkGenerator(NetworkFixtures.SEED + 1);
+        other.setTimetables(true);
+        assertNotEquals(first, NetworkFixtures.describe(other.generate(2000)));
+    }
+
+    @Test
+    void networkHasRequestedStopsInsideArea(){
+        NetworkGenerator generator = new NetworkGenerator(NetworkFixtures.SEED);
+        for (int stops : new int[]{1, 10, 777, 5000}) {
+            List<Graph> lines = generator.generate(stops);
+            int side = generator.getSide(stops);
+            Set<Node> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+            int shared = 0;
+            for (Graph line : lines) {
+                for (Node node : line.getNodeList()) {
+                    if (!distinct.add(node)) shared++;
+                    assertTrue(node.getX() >= 0 && node.getX() <= side && node.getY() >= 0 && node.getY() <= side,
+                               node.toString());
+                }
+                assertPath(line);
+            }
+            assertEquals(stops, distinct.size());
+            if (stops >= 777) assertTrue(shared > 0, "brak przystanków wspólnych dla kilku linii");
+        }
+    }
+
+    @Test
+    void timetablesRunInBothDirections(){
+        for (Graph line : NetworkFixtures.lines(500)) {
+            if (line.getNodeCount() < 2) continue;
+            List<Schedule> schedules = line.getSchedules();
+            assertEquals(2, schedules.size(), line.toString());
+            List<Node> forward = schedules.get(0).getStops();
+            List<Node> backward = schedules.get(1).getStops();
+            assertEquals(line.getNodeList(), forward);
+            assertEquals(forward.get(0), backward.get(backward.size() - 1));
+            for (Schedule schedule : schedules) {
+                assertTrue(schedule.getTripCount() > 0);
+                for (int trip = 0; trip < schedule.getTripCount(); trip++) {
+                    for (int stop = 1; stop < schedule.getStops().size(); stop++) {
+                        assertTrue(schedule.getArrival(trip, stop) > schedule.getDeparture(trip, stop - 1), schedule.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void invalidArgumentsAndCancellation(){
+        NetworkGenerator generator = new NetworkGenerator(NetworkFixtures.SEED);
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(0));
+        ProgressListener cancelled = new ProgressListener() {
+            @Override
+            public void progress(long done, long total){
+            }
+
+            @Override
+            public boolean isCancelled(){
+                return true;
+            }
+        };
+        assertThrows(CancellationException.class, () -> generator.generate(1000, cancelled));
+    }
+
+    /**Sprawdzenie czy linia jest ciągiem przystanków połączonych kolejno*/
+    private static void assertPath(Graph line){
+        List<Node> nodes = line.getNodeList();
+        assertEquals(Math.max(0, nodes.size() - 1), line.getConnectionCount(), line.toString());
+        for (int i = 1; i < nodes.size(); i++) {
+            assertTrue(line.getNeighbors(nodes.get(i)).contains(nodes.get(i - 1)), line + " " + nodes.get(i));
+        }
+    }
+}
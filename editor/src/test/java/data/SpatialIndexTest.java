@@ -0,0 +1,193 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: SpatialIndexTest.java
+ *
+ *  Testy indeksu przestrzennego - wyszukiwanie przystanków i połączeń
+ *  pod kursorem w porównaniu z przeglądaniem całej sieci.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy indeksu przestrzennego. <br>
+ * Wynik wyszukiwania w indeksie musi być taki sam jak przy przeglądaniu wszystkich elementów sieci
+ * (najbliższy przystanek pod kursorem, najbliższe połączenie w granicy tolerancji) - także po przesunięciu,
+ * zmianie promienia i usunięciu przystanków oraz po dodaniu i usunięciu połączeń. Wyszukiwanie w prostokącie
+ * zwraca każdy element raz, w tym wszystkie elementy, których prostokąt otaczający przecina obszar.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SpatialIndexTest {
+
+    private static final int PROBES = 3000;
+
+    private List<Graph> lines;
+    private CompositeNetwork network;
+    private SpatialIndex index;
+    private Random random;
+    private int side;
+
+    @BeforeEach
+    void createIndex(){
+        lines = NetworkFixtures.lines(1500);
+        network = new CompositeNetwork();
+        for (Graph line : lines) {
+            network.addLine(line);
+        }
+        index = new SpatialIndex(32);
+        index.setGraph(network);
+        random = new Random(NetworkFixtures.SEED);
+        side = new NetworkGenerator(NetworkFixtures.SEED).getSide(1500);
+    }
+
+    @Test
+    void findsTheSameElementsAsFullScan(){
+        assertMatchesFullScan();
+        // kursor dokładnie w środku przystanku i na połączeniu
+        Node node = network.getNodeList().get(17);
+        assertSame(node, index.findNode(node.getX(), node.getY()));
+        Connection connection = network.getConnectionList().get(23);
+        int mx = (connection.getNode1().getX() + connection.getNode2().getX()) / 2;
+        int my = (connection.getNode1().getY() + connection.getNode2().getY()) / 2;
+        assertNotNull(index.findConnection(mx, my));
+    }
+
+    @Test
+    void followsMovesResizesAndRemovals(){
+        List<Node> nodes = network.getNodeList();
+        for (int i = 0; i < 200; i++) {
+            Node node = nodes.get(random.nextInt(nodes.size()));
+            node.setLocation(random.nextInt(side), random.nextInt(side));
+            if (i % 5 == 0) node.setR(node.getR() + 10);
+        }
+        for (int i = 0; i < 50; i++) {
+            Node node = nodes.get(random.nextInt(nodes.size()));
+            if (network.containsNode(node)) network.removeNode(node);
+        }
+        Graph line = lines.get(0);
+        line.createConnection(line.getNode(0), line.getNode(line.getNodeCount() - 1));
+        line.removeConnection(line.getConnection(1));
+        assertMatchesFullScan();
+
+        Node moved = line.getNode(0);
+        int oldX = moved.getX();
+        int oldY = moved.getY();
+        moved.setLocation(oldX + 5000, oldY + 5000);
+        assertSame(moved, index.findNode(oldX + 5000, oldY + 5000));
+        assertTrue(index.findNode(oldX, oldY) != moved);
+    }
+
+    @Test
+    void newGraphReplacesIndex(){
+        Graph single = new Graph(1, TransportType.TRAM);
+        Node a = new Node(10, 10, "A");
+        Node b = new Node(200, 10, "B");
+        single.addNode(a);
+        single.addNode(b);
+        single.createConnection(a, b);
+        index.setGraph(single);
+        assertSame(a, index.findNode(12, 11));
+        assertSame(single.getConnection(0), index.findConnection(100, 12));
+        assertNull(index.findConnection(100, 30));
+        // zmiany w poprzedniej sieci nie trafiają już do indeksu
+        Node old = network.getNodeList().get(0);
+        old.setLocation(100, 10);
+        assertNull(index.findNode(100, 10));
+    }
+
+    @Test
+    void areaQueryReportsEachElementOnce(){
+        SpatialIndex fixed = new SpatialIndex(network, 32);
+        for (int i = 0; i < 200; i++) {
+            double left = random.nextInt(side) - 100;
+            double top = random.nextInt(side) - 100;
+            double right = left + random.nextInt(600);
+            double bottom = top + random.nextInt(600);
+            Set<Node> nodes = new HashSet<>();
+            Set<Connection> connections = new HashSet<>();
+            fixed.forEachInArea(left, top, right, bottom,
+                                node -> assertTrue(nodes.add(node), "przystanek zgłoszony dwukrotnie"),
+                                connection -> assertTrue(connections.add(connection), "połączenie zgłoszone dwukrotnie"));
+            for (Node node : network.nodes()) {
+                if (overlaps(node.getX() - node.getR(), node.getY() - node.getR(), node.getX() + node.getR(),
+                             node.getY() + node.getR(), left, top, right, bottom)) {
+                    assertTrue(nodes.contains(node), node.toString());
+                }
+            }
+            for (Connection connection : network.connections()) {
+                Node a = connection.getNode1();
+                Node b = connection.getNode2();
+                if (overlaps(Math.min(a.getX(), b.getX()), Math.min(a.getY(), b.getY()), Math.max(a.getX(), b.getX()),
+                             Math.max(a.getY(), b.getY()), left, top, right, bottom)) {
+                    assertTrue(connections.contains(connection), connection.toString());
+                }
+            }
+        }
+        // indeks sieci niezmienianej nie śledzi jej zmian
+        Node node = network.getNodeList().get(0);
+        node.setLocation(node.getX() + 5000, node.getY() + 5000);
+        assertNull(fixed.findNode(node.getX(), node.getY()));
+    }
+
+    private static boolean overlaps(int minX, int minY, int maxX, int maxY,
+                                    double left, double top, double right, double bottom){
+        return maxX >= left && minX <= right && maxY >= top && minY <= bottom;
+    }
+
+    private void assertMatchesFullScan(){
+        int hits = 0;
+        for (int i = 0; i < PROBES; i++) {
+            int mx = random.nextInt(side);
+            int my = random.nextInt(side);
+            if (nearestNode(mx, my) != null || nearestConnection(mx, my) != null) hits++;
+            assertEquals(distance(nearestNode(mx, my), mx, my), distance(index.findNode(mx, my), mx, my),
+                         "przystanek w (" + mx + ", " + my + ")");
+            assertEquals(distance(nearestConnection(mx, my), mx, my), distance(index.findConnection(mx, my), mx, my),
+                         "połączenie w (" + mx + ", " + my + ")");
+        }
+        assertTrue(hits > PROBES / 20, "za mało punktów trafia w elementy sieci: " + hits);
+    }
+
+    private Node nearestNode(int mx, int my){
+        Node found = null;
+        for (Node node : network.nodes()) {
+            if (node.isMouseOver(mx, my) && distance(node, mx, my) < distance(found, mx, my)) found = node;
+        }
+        return found;
+    }
+
+    private Connection nearestConnection(int mx, int my){
+        Connection found = null;
+        for (Connection connection : network.connections()) {
+            if (connection.isMouseOver(mx, my) && distance(connection, mx, my) < distance(found, mx, my)) found = connection;
+        }
+        return found;
+    }
+
+    private static double distance(Node node, int mx, int my){
+        return node == null ? Double.POSITIVE_INFINITY : Math.hypot(node.getX() - mx, node.getY() - my);
+    }
+
+    private static double distance(Connection connection, int mx, int my){
+        return connection == null ? Double.POSITIVE_INFINITY : connection.distanceTo(mx, my);
+    }
+}
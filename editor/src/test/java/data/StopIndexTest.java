@@ -0,0 +1,134 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: StopIndexTest.java
+ *
+ *  Testy indeksu węzłów przesiadkowych aktualizowanego
+ *  przy zmianach w liniach.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy indeksu węzłów przesiadkowych. <br>
+ * Perony jednego przystanku w różnych liniach wyszukiwane są po znormalizowanej nazwie, a indeks
+ * nadąża za dodaniem, usunięciem i zmianą nazwy przystanku oraz za dodaniem i usunięciem linii.
+ * Przystanek należący do dwóch linii pozostaje w indeksie, dopóki należy do którejś z nich.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StopIndexTest {
+
+    private Graph tram;
+    private Graph bus;
+    private Node tramStop;
+    private Node busStop;
+    private Node shared;
+    private StopIndex index;
+
+    @BeforeEach
+    void createLines(){
+        tram = new Graph(1, TransportType.TRAM);
+        bus = new Graph(146, TransportType.BUS);
+        tramStop = new Node(103, 38, "Plac Grunwaldzki");
+        busStop = new Node(208, 42, "  plac   GRUNWALDZKI ");
+        shared = new Node(300, 300, "Hala Stulecia");
+        tram.addNode(tramStop);
+        tram.addNode(shared);
+        tram.addNode(new Node(0, 0, null));
+        bus.addNode(busStop);
+        bus.addNode(shared);
+        index = new StopIndex();
+        index.addGraph(tram);
+        index.addGraph(bus);
+    }
+
+    @Test
+    void platformsOfOneStopAcrossLines(){
+        assertEquals(Set.of(tramStop, busStop), Set.copyOf(index.getPlatforms("plac grunwaldzki")));
+        assertEquals(Set.of(tramStop, busStop), Set.copyOf(index.getPlatforms(busStop)));
+        assertTrue(index.isHub("Plac Grunwaldzki"));
+        // przystanek wspólny dla dwóch linii to jeden peron
+        assertEquals(List.of(shared), index.getPlatforms("Hala Stulecia"));
+        assertFalse(index.isHub("Hala Stulecia"));
+        // przystanki bez nazwy nie są indeksowane
+        assertEquals(2, index.getStopCount());
+        assertArrayEquals(new String[]{"Hala Stulecia", "Plac Grunwaldzki"}, index.getStopNames());
+        assertTrue(index.getPlatforms("Dworzec").isEmpty());
+    }
+
+    @Test
+    void followsChangesInLines(){
+        Node added = new Node(150, 40, "Plac Grunwaldzki");
+        bus.addNode(added);
+        assertEquals(3, index.getPlatforms("Plac Grunwaldzki").size());
+
+        busStop.setName("Kliniki");
+        assertEquals(Set.of(tramStop, added), Set.copyOf(index.getPlatforms("Plac Grunwaldzki")));
+        assertEquals(List.of(busStop), index.getPlatforms("kliniki"));
+
+        tram.removeNode(tramStop);
+        assertEquals(List.of(added), index.getPlatforms("Plac Grunwaldzki"));
+
+        // przystanek usunięty z jednej linii należy jeszcze do drugiej
+        tram.removeNode(shared);
+        assertEquals(List.of(shared), index.getPlatforms("Hala Stulecia"));
+        bus.removeNode(shared);
+        assertTrue(index.getPlatforms("Hala Stulecia").isEmpty());
+    }
+
+    @Test
+    void addingAndRemovingLines(){
+        index.removeGraph(bus);
+        assertEquals(List.of(tramStop), index.getPlatforms("Plac Grunwaldzki"));
+        assertEquals(List.of(shared), index.getPlatforms("Hala Stulecia"));
+        // indeks nie śledzi już usuniętej linii
+        bus.addNode(new Node(1, 1, "Kliniki"));
+        assertTrue(index.getPlatforms("Kliniki").isEmpty());
+
+        index.addGraph(bus);
+        assertEquals(3, index.getStopCount());
+        assertEquals(1, index.getPlatforms("Kliniki").size());
+        index.clear();
+        assertEquals(0, index.getStopCount());
+        tram.addNode(new Node(2, 2, "Dworzec"));
+        assertEquals(0, index.getStopCount());
+    }
+
+    @Test
+    void matchesFullScanOfGeneratedNetwork(){
+        List<Graph> lines = NetworkFixtures.linesWithTransfers(500);
+        StopIndex generated = new StopIndex();
+        for (Graph line : lines) {
+            generated.addGraph(line);
+        }
+        for (Graph line : lines) {
+            for (Node node : line.getNodeList()) {
+                if (node.getNormalizedName().isEmpty()) continue;
+                Set<Node> expected = new HashSet<>();
+                for (Graph other : lines) {
+                    for (Node candidate : other.getNodeList()) {
+                        if (candidate.getNormalizedName().equals(node.getNormalizedName())) expected.add(candidate);
+                    }
+                }
+                assertEquals(expected, Set.copyOf(generated.getPlatforms(node)), node.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: TileRendererTest.java
+ *
+ *  Testy eksportu mapy sieci do kafelków PNG.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy eksportu kafelków. <br>
+ * Zapisywane są tylko kafelki, na których coś jest, a kafelki pominięte są rzeczywiście puste. Kafelek
+ * zapisany podczas rysowania całego poziomu (elementy przydzielane wierszami) jest identyczny z kafelkiem
+ * narysowanym osobno metodą <code>renderTile</code>.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package export;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import data.CompositeNetwork;
+import data.Graph;
+import data.NetworkFixtures;
+import util.ProgressListener;
+
+class TileRendererTest {
+
+    private static final int MAX_ZOOM = 3;
+    private static final int TILE_SIZE = 128;
+
+    @TempDir
+    Path directory;
+
+    private TileRenderer renderer;
+
+    @BeforeEach
+    void createRenderer(){
+        CompositeNetwork network = new CompositeNetwork();
+        for (Graph line : NetworkFixtures.lines(300)) {
+            network.addLine(line);
+        }
+        renderer = new TileRenderer(network);
+        renderer.setTileSize(TILE_SIZE);
+    }
+
+    @Test
+    void writesOnlyTilesWithContent() throws IOException {
+        int written = renderer.render(directory, 0, MAX_ZOOM, ProgressListener.NONE);
+        try (Stream<Path> files = Files.walk(directory)) {
+            assertEquals(written, files.filter(Files::isRegularFile).count());
+        }
+        assertTrue(Files.exists(directory.resolve("0/0/0.png")));
+
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            int tiles = 1 << zoom;
+            for (int x = 0; x < tiles; x++) {
+                for (int y = 0; y < tiles; y++) {
+                    Path file = directory.resolve(zoom + "/" + x + "/" + y + ".png");
+                    String tile = zoom + "/" + x + "/" + y;
+                    if (Files.exists(file)) {
+                        assertFalse(isEmpty(read(file)), "pusty kafelek " + tile);
+                    }
+                    else {
+                        assertTrue(isEmpty(renderer.renderTile(zoom, x, y)), "pominięty kafelek " + tile);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void singleTileMatchesRenderedLevel() throws IOException {
+        renderer.render(directory, MAX_ZOOM, MAX_ZOOM, ProgressListener.NONE);
+        int compared = 0;
+        int tiles = 1 << MAX_ZOOM;
+        for (int x = 0; x < tiles; x++) {
+            for (int y = 0; y < tiles; y++) {
+                Path file = directory.resolve(MAX_ZOOM + "/" + x + "/" + y + ".png");
+                if (!Files.exists(file)) continue;
+                assertArrayEquals(pixels(read(file)), pixels(renderer.renderTile(MAX_ZOOM, x, y)),
+                                  "kafelek " + MAX_ZOOM + "/" + x + "/" + y);
+                compared++;
+            }
+        }
+        assertTrue(compared > tiles, "za mało kafelków z elementami sieci: " + compared);
+    }
+
+    @Test
+    void cancelledRenderStops(){
+        ProgressListener cancelled = new ProgressListener() {
+            @Override
+            public void progress(long done, long total){
+            }
+
+            @Override
+            public boolean isCancelled(){
+                return true;
+            }
+        };
+        assertThrows(CancellationException.class, () -> renderer.render(directory, 0, MAX_ZOOM, cancelled));
+        assertThrows(IllegalArgumentException.class, () -> renderer.render(directory, 2, 1, ProgressListener.NONE));
+    }
+
+    private static BufferedImage read(Path file) throws IOException {
+        BufferedImage image = ImageIO.read(file.toFile());
+        assertNotNull(image, file.toString());
+        assertEquals(TILE_SIZE, image.getWidth());
+        assertEquals(TILE_SIZE, image.getHeight());
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image){
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    /**Metoda sprawdzająca czy kafelek jest całkowicie przezroczysty (domyślne tło eksportu)*/
+    private static boolean isEmpty(BufferedImage image){
+        for (int argb : pixels(image)) {
+            if (argb >>> 24 != 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: ForceLayoutTest.java
+ *
+ *  Testy automatycznego rozmieszczenia przystanków siłami
+ *  (obliczenia na kopii położeń, przerwanie, jakość wyniku).
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy rozmieszczenia siłowego. <br>
+ * Rozmieszczenie nie zmienia przystanków do wywołania <code>apply</code>, a przerwane pozostawia
+ * położenia z ostatniego kroku. Na wygenerowanej sieci rozmieszczenie kończy się w domyślnej liczbie
+ * kroków, średnia długość połączenia wynosi K, a połączone przystanki leżą znacznie bliżej siebie
+ * niż losowe pary przystanków.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package layout;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data.CompositeNetwork;
+import data.Connection;
+import data.Graph;
+import data.NetworkFixtures;
+import data.Node;
+import util.ProgressListener;
+
+class ForceLayoutTest {
+
+    private CompositeNetwork network;
+
+    @BeforeEach
+    void createNetwork(){
+        network = new CompositeNetwork();
+        for (Graph line : NetworkFixtures.linesWithTransfers(1500)) {
+            network.addLine(line);
+        }
+    }
+
+    @Test
+    void stopsMoveOnlyOnApply(){
+        int[] before = locations(network.getNodeList());
+        ForceLayout layout = new ForceLayout(network);
+        assertEquals(network.getNodeList(), layout.getNodes());
+        layout.run(50, ProgressListener.NONE);
+        assertEquals(50, layout.getIteration());
+        assertArrayEquals(before, locations(network.getNodeList()));
+
+        int[] positions = layout.getPositions();
+        layout.apply();
+        assertArrayEquals(positions, locations(layout.getNodes()));
+        // kolejne kroki nie zmieniają tablicy zwróconej wcześniej
+        int[] copy = positions.clone();
+        layout.run(10, ProgressListener.NONE);
+        assertArrayEquals(copy, positions);
+    }
+
+    @Test
+    void cancelledRunKeepsLastPositions(){
+        ForceLayout layout = new ForceLayout(network);
+        int[] before = locations(network.getNodeList());
+        ProgressListener cancelAfterTen = new ProgressListener() {
+            private int steps;
+
+            @Override
+            public void progress(long done, long total){
+                steps++;
+            }
+
+            @Override
+            public boolean isCancelled(){
+                return steps >= 10;
+            }
+        };
+        assertThrows(CancellationException.class, () -> layout.run(ForceLayout.DEFAULT_MAX_ITERATIONS, cancelAfterTen));
+        assertEquals(10, layout.getIteration());
+        assertFalse(layout.isConverged());
+        assertEquals(2 * network.getNodeCount(), layout.getPositions().length);
+        assertArrayEquals(before, locations(network.getNodeList()));
+    }
+
+    @Test
+    void convergedLayoutKeepsConnectedStopsClose(){
+        ForceLayout layout = new ForceLayout(network);
+        assertTrue(layout.getLevelCount() > 1);
+        layout.run(ForceLayout.DEFAULT_MAX_ITERATIONS, ProgressListener.NONE);
+        assertTrue(layout.isConverged(), "rozmieszczenie nie zakończyło się w " + layout.getIteration() + " krokach");
+        layout.apply();
+
+        double total = 0;
+        int count = 0;
+        for (Connection connection : network.getConnectionList()) {
+            total += distance(connection.getNode1(), connection.getNode2());
+            count++;
+        }
+        double meanEdge = total / count;
+        assertEquals(ForceLayout.DEFAULT_EDGE_LENGTH, meanEdge, ForceLayout.DEFAULT_EDGE_LENGTH * 0.05);
+
+        List<Node> nodes = network.getNodeList();
+        Random random = new Random(NetworkFixtures.SEED);
+        double pairs = 0;
+        for (int i = 0; i < 5000; i++) {
+            pairs += distance(nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())));
+        }
+        assertTrue(pairs / 5000 > 5 * meanEdge, "połączone przystanki nie leżą blisko siebie");
+        for (Node node : nodes) {
+            assertTrue(node.getX() >= 0 && node.getY() >= 0, node.toString());
+        }
+    }
+
+    private static int[] locations(List<Node> nodes){
+        Map<Node, Boolean> seen = new IdentityHashMap<>();
+        int[] locations = new int[2 * nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            assertTrue(seen.put(nodes.get(i), Boolean.TRUE) == null, "przystanek występuje dwukrotnie");
+            locations[2 * i] = nodes.get(i).getX();
+            locations[2 * i + 1] = nodes.get(i).getY();
+        }
+        return locations;
+    }
+
+    private static double distance(Node a, Node b){
+        return Math.hypot(a.getX() - b.getX(), a.getY() - b.getY());
+    }
+}
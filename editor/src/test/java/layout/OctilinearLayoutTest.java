@@ -0,0 +1,136 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: OctilinearLayoutTest.java
+ *
+ *  Testy schematycznego (oktolinearnego) rozmieszczenia sieci
+ *  i indeksu połączeń używanego do liczenia przecięć.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy schematu sieci. <br>
+ * Liczba przecięć wyznaczana z indeksu połączeń musi być równa liczbie przecięć policzonej przez
+ * porównanie wszystkich par połączeń - przed przeszukiwaniem i po nim. Wygenerowana sieć po przeniesieniu
+ * do siatki jest splątana; schemat usuwa większość przecięć (kosztem części połączeń o długości jednego
+ * oczka, które wydłużają się poza kierunki schematu), a większość połączeń pozostaje nachylona pod kątem
+ * będącym wielokrotnością 45 stopni. Wynik nie zależy od podziału pracy między wątki.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package layout;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data.CompositeNetwork;
+import data.Connection;
+import data.Graph;
+import data.NetworkFixtures;
+import data.Node;
+import util.ProgressListener;
+
+class OctilinearLayoutTest {
+
+    private List<Graph> lines;
+    private CompositeNetwork network;
+
+    @BeforeEach
+    void createNetwork(){
+        lines = NetworkFixtures.lines(600);
+        network = new CompositeNetwork();
+        for (Graph line : lines) {
+            network.addLine(line);
+        }
+    }
+
+    @Test
+    void schemeRemovesCrossingsAndIndexMatchesFullScan(){
+        OctilinearLayout layout = new OctilinearLayout(network, lines);
+        int before = layout.getCrossings();
+        assertEquals(crossings(layout), before);
+
+        layout.run(OctilinearLayout.DEFAULT_MAX_ITERATIONS, ProgressListener.NONE);
+        assertTrue(layout.isConverged());
+        int after = layout.getCrossings();
+        assertEquals(crossings(layout), after);
+        assertTrue(after < before / 2, after + " przecięć (wcześniej " + before + ")");
+        assertTrue(layout.getNonOctilinearCount() < edges(layout).size() / 2,
+                   layout.getNonOctilinearCount() + " połączeń poza kierunkami schematu");
+
+        // przystanki w różnych węzłach siatki
+        Set<Long> taken = new HashSet<>();
+        int[] positions = layout.getPositions();
+        for (int i = 0; i < positions.length; i += 2) {
+            assertTrue(taken.add(((long) positions[i] << 32) | positions[i + 1]), "dwa przystanki w jednym węźle");
+        }
+    }
+
+    @Test
+    void resultDoesNotDependOnThreads(){
+        OctilinearLayout parallel = new OctilinearLayout(network, lines);
+        parallel.run(40, ProgressListener.NONE);
+        OctilinearLayout single = new OctilinearLayout(network, lines);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            single.setPool(pool);
+            single.run(40, ProgressListener.NONE);
+        }
+        finally {
+            pool.shutdown();
+        }
+        assertEquals(parallel.getIteration(), single.getIteration());
+        assertArrayEquals(parallel.getPositions(), single.getPositions());
+    }
+
+    /**Liczba przecięć połączeń (bez par ze wspólnym przystankiem) przez porównanie wszystkich par*/
+    private int crossings(OctilinearLayout layout){
+        int[] positions = layout.getPositions();
+        List<int[]> edges = edges(layout);
+        int crossings = 0;
+        for (int e = 0; e < edges.size(); e++) {
+            int[] s = edges.get(e);
+            for (int f = e + 1; f < edges.size(); f++) {
+                int[] t = edges.get(f);
+                if (s[0] == t[0] || s[0] == t[1] || s[1] == t[0] || s[1] == t[1]) continue;
+                if (Line2D.linesIntersect(positions[2 * s[0]], positions[2 * s[0] + 1], positions[2 * s[1]], positions[2 * s[1] + 1],
+                                          positions[2 * t[0]], positions[2 * t[0] + 1], positions[2 * t[1]], positions[2 * t[1] + 1])) {
+                    crossings++;
+                }
+            }
+        }
+        return crossings;
+    }
+
+    /**Połączenia sieci jako pary numerów przystanków schematu (bez powtórzeń i pętli)*/
+    private List<int[]> edges(OctilinearLayout layout){
+        Map<Node, Integer> index = new IdentityHashMap<>();
+        for (Node node : layout.getNodes()) {
+            index.put(node, index.size());
+        }
+        Set<Long> seen = new HashSet<>();
+        List<int[]> edges = new ArrayList<>();
+        for (Connection connection : network.getConnectionList()) {
+            int a = index.get(connection.getNode1());
+            int b = index.get(connection.getNode2());
+            if (a != b && seen.add(((long) Math.min(a, b) << 32) | Math.max(a, b))) edges.add(new int[]{a, b});
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: ContractionHierarchyTest.java
+ *
+ *  Testy zgodności hierarchii skrótów z algorytmem Dijkstry
+ *  i planerem A* oraz ponownego użycia zapisanej hierarchii.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy hierarchii skrótów. <br>
+ * Odległości i trasy wyznaczone przez <code>HierarchyQuery</code> porównywane są z wzorcowym algorytmem
+ * Dijkstry na wygenerowanej sieci z łukami przesiadkowymi, a trasy między przystankami o podanych nazwach -
+ * z planerem A*. Hierarchia zapisana obok pliku sieci jest wczytywana ponownie tylko dla tej samej sieci.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import data.Graph;
+import data.NetworkFixtures;
+import data.NetworkSnapshot;
+import data.Node;
+
+class ContractionHierarchyTest {
+
+    private static final int SOURCES = 25;
+    private static final int TARGETS = 80;
+
+    private static NetworkSnapshot network;
+    private static ContractionHierarchy hierarchy;
+
+    @BeforeAll
+    static void createNetwork(){
+        network = NetworkSnapshot.of(NetworkFixtures.linesWithTransfers(2000))
+                                 .withTransfers(JourneyPlanner.DEFAULT_TRANSFER_PENALTY);
+        hierarchy = ContractionHierarchy.build(network);
+    }
+
+    @Test
+    void hierarchyMatchesDijkstra(){
+        HierarchyQuery query = new HierarchyQuery(hierarchy, network);
+        Random random = new Random(NetworkFixtures.SEED + 1);
+        for (int s = 0; s < SOURCES; s++) {
+            int source = random.nextInt(network.nodeCount());
+            float[] expected = Dijkstra.distances(network, source);
+            for (int t = 0; t < TARGETS; t++) {
+                int target = random.nextInt(network.nodeCount());
+                float distance = query.distance(source, target);
+                assertTrue(Dijkstra.matches(expected[target], distance),
+                           source + " -> " + target + ": " + distance + " zamiast " + expected[target]);
+                Dijkstra.assertJourney(network, source, target, expected[target], query.plan(source, target));
+            }
+        }
+    }
+
+    @Test
+    void hierarchyMatchesPlannerBetweenNamedStops(){
+        JourneyPlanner planner = new JourneyPlanner(network);
+        HierarchyQuery query = new HierarchyQuery(hierarchy, network);
+        Random random = new Random(NetworkFixtures.SEED + 2);
+        for (int i = 0; i < SOURCES * 4; i++) {
+            String from = network.node(random.nextInt(network.nodeCount())).getName();
+            String to = network.node(random.nextInt(network.nodeCount())).getName();
+            Journey expected = planner.plan(from, to);
+            Journey actual = query.plan(from, to);
+            if (expected == null) {
+                assertNull(actual, from + " -> " + to);
+                continue;
+            }
+            assertNotNull(actual, from + " -> " + to);
+            assertTrue(Dijkstra.matches(expected.getCost(), actual.getCost()),
+                       from + " -> " + to + ": " + actual.getCost() + " zamiast " + expected.getCost());
+            assertEquals(Node.normalizeName(from), actual.getStops().get(0).getNormalizedName());
+            assertEquals(Node.normalizeName(to), actual.getStops().get(actual.getStops().size() - 1).getNormalizedName());
+        }
+    }
+
+    @Test
+    void savedHierarchyIsReused(@TempDir Path directory) throws IOException {
+        Path networkFile = directory.resolve("siec.bin");
+        Path file = ContractionHierarchy.fileFor(networkFile);
+        ContractionHierarchy built = ContractionHierarchy.loadOrBuild(networkFile, network);
+        assertTrue(Files.exists(file));
+
+        ContractionHierarchy loaded = ContractionHierarchy.loadOrBuild(networkFile, network);
+        assertTrue(loaded.matches(network));
+        assertEquals(built.edgeCount(), loaded.edgeCount());
+        for (int i = 0; i < network.nodeCount(); i++) {
+            assertEquals(built.rank(i), loaded.rank(i));
+        }
+
+        // inna sieć - nieaktualny plik jest zastępowany nową hierarchią
+        List<Graph> other = NetworkFixtures.lines(200);
+        NetworkSnapshot otherNetwork = NetworkSnapshot.of(other).withTransfers(JourneyPlanner.DEFAULT_TRANSFER_PENALTY);
+        ContractionHierarchy rebuilt = ContractionHierarchy.loadOrBuild(networkFile, otherNetwork);
+        assertTrue(rebuilt.matches(otherNetwork));
+        assertTrue(ContractionHierarchy.load(file, otherNetwork).matches(otherNetwork));
+    }
+}
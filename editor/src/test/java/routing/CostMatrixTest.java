@@ -0,0 +1,131 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: CostMatrixTest.java
+ *
+ *  Testy zgodności macierzy kosztów z algorytmem Dijkstry
+ *  i przerywania jej wyznaczania.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy macierzy kosztów. <br>
+ * Każdy wiersz macierzy na stercie i w pliku musi być równy odległościom wyznaczonym wzorcowym
+ * algorytmem Dijkstry. Plik przerwanego wyznaczania nie może zostać przyjęty przez <code>open</code>.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import data.Graph;
+import data.NetworkFixtures;
+import data.NetworkSnapshot;
+import data.Node;
+import util.ProgressListener;
+
+class CostMatrixTest {
+
+    private static NetworkSnapshot network;
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void createNetwork(){
+        network = NetworkSnapshot.of(NetworkFixtures.lines(400)).withTransfers(JourneyPlanner.DEFAULT_TRANSFER_PENALTY);
+        pool = new ForkJoinPool(2);
+    }
+
+    @AfterAll
+    static void shutdown(){
+        pool.shutdown();
+    }
+
+    @Test
+    void matrixMatchesDijkstra(){
+        CostMatrix matrix = CostMatrix.compute(network, ProgressListener.NONE);
+        assertTrue(matrix.matches(network));
+        assertRowsMatchDijkstra(matrix);
+    }
+
+    @Test
+    void fileMatrixMatchesDijkstraAndIsReopened() throws IOException {
+        Path file = CostMatrix.fileFor(directory.resolve("siec.bin"));
+        CostMatrix computed = CostMatrix.compute(network, file, pool, ProgressListener.NONE);
+        assertEquals(CostMatrix.fileSize(network.nodeCount()), Files.size(file));
+        assertRowsMatchDijkstra(computed);
+
+        CostMatrix opened = CostMatrix.open(file, network);
+        assertTrue(opened.matches(network));
+        assertRowsMatchDijkstra(opened);
+    }
+
+    @Test
+    void cancelledMatrixFileIsNotAccepted() throws IOException {
+        Path file = CostMatrix.fileFor(directory.resolve("siec.bin"));
+        // przerwanie po wyznaczeniu pierwszej porcji wierszy - część pliku jest już zapisana
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ProgressListener listener = new ProgressListener() {
+            @Override
+            public void progress(long done, long total) {
+                cancelled.set(true);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+        };
+        assertThrows(CancellationException.class, () -> CostMatrix.compute(network, file, pool, listener));
+        assertFalse(Files.exists(file));
+        assertThrows(IOException.class, () -> CostMatrix.open(file, network));
+    }
+
+    @Test
+    void staleMatrixFileIsNotAccepted() throws IOException {
+        Path file = CostMatrix.fileFor(directory.resolve("siec.bin"));
+        CostMatrix.compute(network, file, pool, ProgressListener.NONE);
+        // ta sama sieć z przesuniętym jednym przystankiem - inne wagi połączeń
+        List<Graph> lines = NetworkFixtures.lines(400);
+        Node moved = lines.get(0).getNode(0);
+        moved.setLocation(moved.getX() + 10, moved.getY());
+        NetworkSnapshot other = NetworkSnapshot.of(lines).withTransfers(JourneyPlanner.DEFAULT_TRANSFER_PENALTY);
+        assertEquals(network.nodeCount(), other.nodeCount());
+        assertThrows(IOException.class, () -> CostMatrix.open(file, other));
+    }
+
+    private static void assertRowsMatchDijkstra(CostMatrix matrix){
+        float[] row = new float[matrix.size()];
+        for (int source = 0; source < network.nodeCount(); source++) {
+            float[] expected = Dijkstra.distances(network, source);
+            matrix.getRow(source, row);
+            for (int target = 0; target < network.nodeCount(); target++) {
+                assertTrue(Dijkstra.matches(expected[target], row[target]),
+                           source + " -> " + target + ": " + row[target] + " zamiast " + expected[target]);
+                assertEquals(row[target], matrix.get(source, target));
+            }
+        }
+    }
+}
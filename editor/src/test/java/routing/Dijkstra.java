@@ -0,0 +1,92 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Dijkstra.java
+ *
+ *  Klasa Dijkstra wyznacza najkrótsze trasy wzorcowym algorytmem
+ *  Dijkstry, z którym porównywane są szybsze metody wyszukiwania.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Wzorcowe wyszukiwanie najkrótszych tras testów jednostkowych. <br>
+ * Zwykły algorytm Dijkstry na kolejce <code>PriorityQueue</code>, bez heurystyk i struktur
+ * pomocniczych - wyniki A*, hierarchii skrótów i macierzy kosztów muszą się z nim zgadzać.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import data.NetworkSnapshot;
+import data.Node;
+
+final class Dijkstra {
+
+    /**Dopuszczalna różnica kosztów wynikająca z innej kolejności sumowania wag*/
+    static final float TOLERANCE = 1e-3f;
+
+    private Dijkstra() {
+    }
+
+    /**Metoda zwracająca długości najkrótszych tras z przystanku <code>source</code> do wszystkich przystanków
+     * (<code>Float.POSITIVE_INFINITY</code> dla nieosiągalnych)*/
+    static float[] distances(NetworkSnapshot network, int source){
+        float[] distance = new float[network.nodeCount()];
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+        distance[source] = 0f;
+        PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingDouble(Entry::distance));
+        queue.add(new Entry(0f, source));
+        while (!queue.isEmpty()) {
+            Entry entry = queue.poll();
+            int u = entry.node();
+            if (entry.distance() > distance[u]) continue;
+            for (int e = network.firstEdge(u), end = network.endEdge(u); e < end; e++) {
+                int v = network.target(e);
+                float dv = distance[u] + network.weight(e);
+                if (dv < distance[v]) {
+                    distance[v] = dv;
+                    queue.add(new Entry(dv, v));
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**Metoda sprawdzająca czy koszt jest zgodny z wzorcowym (z tolerancją względną)*/
+    static boolean matches(float expected, float actual){
+        if (Float.isInfinite(expected) || Float.isInfinite(actual)) return expected == actual;
+        return Math.abs(expected - actual) <= TOLERANCE * Math.max(1f, expected);
+    }
+
+    /**Sprawdzenie trasy z przystanku <code>source</code> do <code>target</code> - koszt zgodny z wzorcowym,
+     * właściwy przystanek początkowy i docelowy (lub brak trasy do przystanku nieosiągalnego)*/
+    static void assertJourney(NetworkSnapshot network, int source, int target, float expected, Journey journey){
+        if (Float.isInfinite(expected)) {
+            assertNull(journey, source + " -> " + target);
+            return;
+        }
+        assertNotNull(journey, source + " -> " + target);
+        assertTrue(matches(expected, journey.getCost()),
+                   source + " -> " + target + ": " + journey.getCost() + " zamiast " + expected);
+        List<Node> stops = journey.getStops();
+        assertSame(network.node(source), stops.get(0));
+        assertSame(network.node(target), stops.get(stops.size() - 1));
+    }
+
+    /**Wpis kolejki - przystanek z długością trasy w chwili wstawienia (nieaktualne wpisy są pomijane)*/
+    private record Entry(float distance, int node) {
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: JourneyPlannerTest.java
+ *
+ *  Testy zgodności wyszukiwania A* z algorytmem Dijkstry
+ *  oraz przesiadek między przystankami o tej samej nazwie.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy planera tras (A*). <br>
+ * Koszty tras wyznaczonych przez <code>JourneyPlanner</code> porównywane są z wzorcowym algorytmem Dijkstry
+ * na wygenerowanej sieci z łukami przesiadkowymi; jeden planer obsługuje wszystkie zapytania, więc
+ * sprawdzane jest też, że kolejne zapytania nie korzystają z wyników poprzednich. Przesiadki łączą tylko
+ * przystanki o tej samej nazwie - przystanki bez nazwy nie tworzą wspólnego węzła.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import data.Graph;
+import data.NetworkFixtures;
+import data.NetworkSnapshot;
+import data.Node;
+import data.TransportType;
+
+class JourneyPlannerTest {
+
+    private static final int SOURCES = 25;
+    private static final int TARGETS = 80;
+
+    private static NetworkSnapshot network;
+
+    @BeforeAll
+    static void createNetwork(){
+        List<Graph> lines = NetworkFixtures.linesWithTransfers(2000);
+        network = NetworkSnapshot.of(lines).withTransfers(JourneyPlanner.DEFAULT_TRANSFER_PENALTY);
+        assertTrue(network.edgeCount() > NetworkSnapshot.of(lines).edgeCount());
+    }
+
+    @Test
+    void plannerMatchesDijkstra(){
+        JourneyPlanner planner = new JourneyPlanner(network);
+        Random random = new Random(NetworkFixtures.SEED);
+        for (int s = 0; s < SOURCES; s++) {
+            int source = random.nextInt(network.nodeCount());
+            float[] expected = Dijkstra.distances(network, source);
+            for (int t = 0; t < TARGETS; t++) {
+                int target = random.nextInt(network.nodeCount());
+                Journey journey = planner.plan(network.node(source), network.node(target));
+                Dijkstra.assertJourney(network, source, target, expected[target], journey);
+            }
+        }
+    }
+
+    @Test
+    void namedStopsStartAndEndOnTheirPlatforms(){
+        JourneyPlanner planner = new JourneyPlanner(network);
+        Random random = new Random(NetworkFixtures.SEED + 1);
+        for (int i = 0; i < SOURCES * 4; i++) {
+            String from = network.node(random.nextInt(network.nodeCount())).getName();
+            String to = network.node(random.nextInt(network.nodeCount())).getName();
+            Journey journey = planner.plan(from, to);
+            if (from == null || to == null) {
+                assertNull(journey, from + " -> " + to);
+                continue;
+            }
+            assertNotNull(journey, from + " -> " + to);
+            List<Node> stops = journey.getStops();
+            assertEquals(Node.normalizeName(from), stops.get(0).getNormalizedName());
+            assertEquals(Node.normalizeName(to), stops.get(stops.size() - 1).getNormalizedName());
+        }
+    }
+
+    @Test
+    void transfersJoinOnlyStopsWithTheSameName(){
+        // dwie linie bez wspólnych przystanków - przesiadka możliwa tylko między peronami o tej samej nazwie
+        Graph tram = line(1, TransportType.TRAM, new Node(0, 0, "Rynek"), new Node(100, 0, null));
+        Graph bus = line(2, TransportType.BUS, new Node(0, 10, "Rynek"), new Node(100, 10, null));
+        JourneyPlanner planner = new JourneyPlanner(List.of(tram, bus), JourneyPlanner.DEFAULT_TRANSFER_PENALTY);
+
+        Journey journey = planner.plan(tram.getNode(1), bus.getNode(1));
+        assertNotNull(journey);
+        assertEquals(1, journey.getTransfers());
+        assertEquals(List.of(tram.getNode(1), tram.getNode(0), bus.getNode(0), bus.getNode(1)), journey.getStops());
+
+        // bez wspólnej nazwy linie są rozłączne - przystanki bez nazwy nie są jednym węzłem przesiadkowym
+        bus.getNode(0).setName("Dworzec");
+        planner = new JourneyPlanner(List.of(tram, bus), JourneyPlanner.DEFAULT_TRANSFER_PENALTY);
+        assertNull(planner.plan(tram.getNode(1), bus.getNode(1)));
+    }
+
+    private static Graph line(int number, TransportType type, Node... stops){
+        Graph line = new Graph(number, type);
+        for (int i = 0; i < stops.length; i++) {
+            line.addNode(stops[i]);
+            if (i > 0) line.createConnection(stops[i - 1], stops[i]);
+        }
+        return line;
+    }
+}
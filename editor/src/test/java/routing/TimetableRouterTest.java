@@ -0,0 +1,220 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: TimetableRouterTest.java
+ *
+ *  Testy wyszukiwania połączeń zgodnych z rozkładem jazdy
+ *  (najwcześniejszy przyjazd, przesiadki, liczba kursów).
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy wyszukiwarki połączeń rozkładowych. <br>
+ * Na małej sieci sprawdzane są odcinki podróży z przesiadką pieszą, ograniczenie liczby kursów i brak
+ * dojazdu po ostatnim kursie. Na wygenerowanej sieci z rozkładami czasy przyjazdu porównywane są
+ * z wzorcowym przeglądem wszystkich odcinków kursów w kolejności odjazdów (bez ograniczenia liczby
+ * kursów - wyszukiwarka dostaje limit, którego podróże w tej sieci nie osiągają).
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import data.Graph;
+import data.NetworkFixtures;
+import data.Node;
+import data.Schedule;
+import data.TransportType;
+
+class TimetableRouterTest {
+
+    private static final int HOUR = 3600;
+    private static final int MAX_TRIPS = 30;
+
+    @Test
+    void transferBetweenPlatformsOfOneStop(){
+        Node a = new Node(0, 0, "A");
+        Node b = new Node(100, 0, "B");
+        Node tramC = new Node(200, 0, "C");
+        Node busC = new Node(200, 10, "C");
+        Node d = new Node(300, 10, "D");
+        Graph tram = line(1, TransportType.TRAM, a, b, tramC);
+        Graph bus = line(2, TransportType.BUS, busC, d);
+        // tramwaj co 10 minut od 8:00, autobus co 10 minut od 8:06
+        tram.getSchedules().get(0).addTrips(8 * HOUR, 9 * HOUR, 600, new int[]{0, 300, 600});
+        bus.getSchedules().get(0).addTrips(8 * HOUR + 360, 9 * HOUR, 600, new int[]{0, 300});
+        TimetableRouter router = new TimetableRouter(List.of(tram, bus));
+
+        Itinerary itinerary = router.route(a, 8 * HOUR - 100, d);
+        assertNotNull(itinerary);
+        // przyjazd na C o 8:10, przejście 2 minuty - autobus o 8:06 już odjechał, następny o 8:16
+        assertEquals(8 * HOUR + 960 + 300, itinerary.getArrival());
+        assertEquals(2, itinerary.getTrips());
+        List<Itinerary.Leg> legs = itinerary.getLegs();
+        assertEquals(3, legs.size());
+        assertEquals(1, legs.get(0).getLine());
+        assertSame(a, legs.get(0).getFrom());
+        assertEquals(8 * HOUR, legs.get(0).getDeparture());
+        assertTrue(legs.get(1).isWalk());
+        assertSame(tramC, legs.get(1).getFrom());
+        assertSame(busC, legs.get(1).getTo());
+        assertEquals(2, legs.get(2).getLine());
+        assertEquals(8 * HOUR + 960, legs.get(2).getDeparture());
+
+        // według nazw - ten sam wynik
+        assertEquals(itinerary.getArrival(), router.route("a", 8 * HOUR - 100, "D").getArrival());
+        // jeden kurs nie wystarcza, a po ostatnim kursie nie ma dojazdu
+        assertNull(new TimetableRouter(List.of(tram, bus), TimetableRouter.DEFAULT_TRANSFER_TIME, 1).route(a, 8 * HOUR, d));
+        assertNull(router.route(a, 10 * HOUR, d));
+        assertNull(router.route("A", 8 * HOUR, "brak przystanku"));
+    }
+
+    @Test
+    void earliestArrivalsMatchConnectionScan(){
+        List<Graph> lines = NetworkFixtures.linesWithTransfers(800);
+        TimetableRouter router = new TimetableRouter(lines, TimetableRouter.DEFAULT_TRANSFER_TIME, MAX_TRIPS);
+        Reference reference = new Reference(lines, TimetableRouter.DEFAULT_TRANSFER_TIME);
+        assertTrue(reference.connections.length > 0, "sieć testowa nie ma rozkładów jazdy");
+
+        Random random = new Random(NetworkFixtures.SEED);
+        int reached = 0;
+        for (int s = 0; s < 20; s++) {
+            Node source = reference.stops.get(random.nextInt(reference.stops.size()));
+            int departure = 5 * HOUR + random.nextInt(16 * HOUR);
+            int[] expected = reference.earliestArrivals(source, departure);
+            for (int t = 0; t < 40; t++) {
+                int target = random.nextInt(reference.stops.size());
+                Node destination = reference.stops.get(target);
+                if (destination == source) continue;
+                Itinerary itinerary = router.route(source, departure, destination);
+                String query = source + " -> " + destination + " od " + Schedule.formatTime(departure);
+                if (expected[target] == Integer.MAX_VALUE) {
+                    assertNull(itinerary, query);
+                    continue;
+                }
+                assertNotNull(itinerary, query);
+                assertEquals(expected[target], itinerary.getArrival(), query);
+                assertConsistent(itinerary, source, departure, destination);
+                reached++;
+            }
+        }
+        assertTrue(reached > 0, "żadne zapytanie nie miało dojazdu");
+    }
+
+    /**Sprawdzenie ciągłości odcinków podróży - kolejny odcinek zaczyna się tam, gdzie skończył poprzedni, i nie wcześniej*/
+    private static void assertConsistent(Itinerary itinerary, Node source, int departure, Node destination){
+        List<Itinerary.Leg> legs = itinerary.getLegs();
+        assertFalse(legs.isEmpty());
+        assertSame(source, legs.get(0).getFrom());
+        assertSame(destination, legs.get(legs.size() - 1).getTo());
+        int time = departure;
+        Node at = source;
+        for (Itinerary.Leg leg : legs) {
+            assertSame(at, leg.getFrom());
+            assertTrue(leg.getDeparture() >= time, leg.toString());
+            assertTrue(leg.getArrival() >= leg.getDeparture(), leg.toString());
+            time = leg.getArrival();
+            at = leg.getTo();
+        }
+    }
+
+    private static Graph line(int number, TransportType type, Node... stops){
+        Graph line = new Graph(number, type);
+        for (int i = 0; i < stops.length; i++) {
+            line.addNode(stops[i]);
+            if (i > 0) line.createConnection(stops[i - 1], stops[i]);
+        }
+        line.addSchedule(new Schedule(List.of(stops)));
+        return line;
+    }
+
+    /**Wzorcowe wyszukiwanie najwcześniejszych przyjazdów - przegląd odcinków wszystkich kursów w kolejności
+     * odjazdów; kurs można kontynuować, jeśli wsiadło się do niego wcześniej, a przejście między przystankami
+     * o tej samej nazwie zajmuje stały czas przesiadki*/
+    private static final class Reference {
+
+        private final List<Node> stops = new ArrayList<>();
+        private final Map<Node, Integer> ids = new IdentityHashMap<>();
+        /**Przystanki o tej samej nazwie (bez przystanków bez nazwy)*/
+        private final Map<String, List<Integer>> platforms = new HashMap<>();
+        /**Odcinki kursów: przystanek odjazdu, przystanek przyjazdu, odjazd, przyjazd, numer kursu*/
+        private final int[][] connections;
+        private final int tripCount;
+        private final int transferTime;
+
+        Reference(List<Graph> lines, int transferTime) {
+            this.transferTime = transferTime;
+            List<int[]> all = new ArrayList<>();
+            int trips = 0;
+            for (Graph line : lines) {
+                for (Schedule schedule : line.getSchedules()) {
+                    List<Node> route = schedule.getStops();
+                    for (Node stop : route) {
+                        if (ids.putIfAbsent(stop, stops.size()) == null) {
+                            stops.add(stop);
+                            if (!stop.getNormalizedName().isEmpty()) {
+                                platforms.computeIfAbsent(stop.getNormalizedName(), key -> new ArrayList<>()).add(ids.get(stop));
+                            }
+                        }
+                    }
+                    for (int trip = 0; trip < schedule.getTripCount(); trip++, trips++) {
+                        for (int i = 0; i + 1 < route.size(); i++) {
+                            all.add(new int[]{ids.get(route.get(i)), ids.get(route.get(i + 1)),
+                                              schedule.getDeparture(trip, i), schedule.getArrival(trip, i + 1), trips});
+                        }
+                    }
+                }
+            }
+            connections = all.toArray(new int[0][]);
+            Arrays.sort(connections, Comparator.<int[]>comparingInt(c -> c[2]).thenComparingInt(c -> c[3]));
+            tripCount = trips;
+        }
+
+        int[] earliestArrivals(Node source, int departure){
+            int[] arrival = new int[stops.size()];
+            Arrays.fill(arrival, Integer.MAX_VALUE);
+            boolean[] boarded = new boolean[tripCount];
+            int s = ids.get(source);
+            arrival[s] = departure;
+            walk(s, departure, arrival);
+            for (int[] c : connections) {
+                if (c[2] < departure) continue;
+                if (!boarded[c[4]] && arrival[c[0]] > c[2]) continue;
+                boarded[c[4]] = true;
+                if (c[3] < arrival[c[1]]) {
+                    arrival[c[1]] = c[3];
+                    walk(c[1], c[3], arrival);
+                }
+            }
+            return arrival;
+        }
+
+        private void walk(int stop, int time, int[] arrival){
+            List<Integer> same = platforms.get(stops.get(stop).getNormalizedName());
+            if (same == null) return;
+            for (int other : same) {
+                if (other != stop) arrival[other] = Math.min(arrival[other], time + transferTime);
+            }
+        }
+    }
+}
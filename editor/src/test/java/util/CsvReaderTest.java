@@ -0,0 +1,114 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: CsvReaderTest.java
+ *
+ *  Testy strumieniowego czytnika plików CSV.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy czytnika CSV. <br>
+ * Sprawdzane są pola w cudzysłowie (z przecinkami, znakami końca linii i podwojonymi cudzysłowami),
+ * pomijanie znacznika BOM i pustych linii, rekordy dłuższe od bufora oraz odczyt liczb i czasów GTFS -
+ * także liczb na granicy zakresu typu <code>int</code> i poza nim.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class CsvReaderTest {
+
+    @Test
+    void quotedFieldsAndLineEndings() throws IOException {
+        CsvReader csv = reader("\uFEFFstop_id,stop_name\r\n"
+                               + "1,\"Plac \"\"Grunwaldzki\"\"\"\r\n"
+                               + "\n"
+                               + "2,\"Most,\nGrunwaldzki\"\n"
+                               + "3,\n"
+                               + "4");
+        Map<String, Integer> columns = csv.readHeader();
+        assertEquals(Map.of("stop_id", 0, "stop_name", 1), columns);
+
+        assertTrue(csv.next());
+        assertEquals("Plac \"Grunwaldzki\"", csv.get(1));
+        assertTrue(csv.fieldEquals(1, "Plac \"Grunwaldzki\""));
+        assertTrue(csv.next());
+        assertEquals(2, csv.getFieldCount());
+        assertEquals("Most,\nGrunwaldzki", csv.get(1));
+        assertTrue(csv.next());
+        assertEquals(3, csv.getInt(0, -1));
+        assertTrue(csv.isEmpty(1));
+        assertTrue(csv.next());
+        // brakujące pole - pusty napis
+        assertEquals(1, csv.getFieldCount());
+        assertEquals("", csv.get(1));
+        assertTrue(csv.fieldEquals(1, ""));
+        assertEquals(-1, csv.getInt(1, -1));
+        assertFalse(csv.next());
+        assertFalse(csv.next());
+    }
+
+    @Test
+    void recordsLongerThanBuffer() throws IOException {
+        StringBuilder text = new StringBuilder();
+        String name = "x".repeat(100_000);
+        for (int i = 0; i < 5; i++) {
+            text.append(i).append(",\"").append(name).append("\",").append(i * 2).append('\n');
+        }
+        CsvReader csv = reader(text.toString());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(csv.next());
+            assertEquals(i, csv.getInt(0, -1));
+            assertEquals(name.length(), csv.get(1).length());
+            assertEquals(i * 2, csv.getInt(2, -1));
+        }
+        assertFalse(csv.next());
+    }
+
+    @Test
+    void integersAtTheLimitsOfTheRange() throws IOException {
+        CsvReader csv = reader(" 42 ,-17,+5,2147483647,-2147483648,2147483648,-2147483649,99999999999999999999,-,1x\n");
+        assertTrue(csv.next());
+        assertEquals(42, csv.getInt(0, 0));
+        assertEquals(-17, csv.getInt(1, 0));
+        assertEquals(5, csv.getInt(2, 0));
+        assertEquals(Integer.MAX_VALUE, csv.getInt(3, 0));
+        assertEquals(Integer.MIN_VALUE, csv.getInt(4, 0));
+        for (int i = 5; i < 10; i++) {
+            int index = i;
+            assertThrows(NumberFormatException.class, () -> csv.getInt(index, 0), csv.get(index));
+        }
+    }
+
+    @Test
+    void gtfsTimes() throws IOException {
+        CsvReader csv = reader("8:05:30,25:10:00, 00:00:00 ,,8:05,8.05.30\n");
+        assertTrue(csv.next());
+        assertEquals(8 * 3600 + 5 * 60 + 30, csv.getTime(0, -1));
+        assertEquals(25 * 3600 + 10 * 60, csv.getTime(1, -1));
+        assertEquals(0, csv.getTime(2, -1));
+        assertEquals(-1, csv.getTime(3, -1));
+        assertThrows(NumberFormatException.class, () -> csv.getTime(4, -1));
+        assertThrows(NumberFormatException.class, () -> csv.getTime(5, -1));
+        assertEquals(-1, csv.getTime(6, -1));
+    }
+
+    private static CsvReader reader(String text){
+        return new CsvReader(new StringReader(text));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: HistogramTest.java
+ *
+ *  Testy percentyli histogramu, również dla bardzo dużych wartości.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Testy histogramu. <br>
+ * Przedziały histogramu dzielą każdą potęgę dwójki na cztery części, więc percentyl może
+ * przekraczać dokładną wartość najwyżej o jedną czwartą i nigdy nie jest od niej mniejszy.
+ * Dotyczy to także czasów rzędu godzin w nanosekundach, przekraczających zakres typu int.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+
+    @Test
+    void bucketBoundsContainValues(){
+        long[] values = {0, 1, 3, 4, 5, 7, 8, 1000, Integer.MAX_VALUE, 1L << 31, 1L << 32,
+                         TimeUnit.HOURS.toNanos(1), 1L << 62, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = Histogram.index(value);
+            assertTrue(Histogram.upperBound(index) >= value, "górna granica przedziału " + value);
+            if (index > 0) {
+                assertTrue(Histogram.upperBound(index - 1) < value, "poprzedni przedział " + value);
+            }
+        }
+    }
+
+    @Test
+    void percentilesOfLargeValues(){
+        Random random = new Random(20211228L);
+        long[] values = new long[10_000];
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < values.length; i++) {
+            // od 3 sekund do godziny w nanosekundach
+            values[i] = TimeUnit.SECONDS.toNanos(3) + (long) (random.nextDouble() * TimeUnit.SECONDS.toNanos(3597));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999, 1.0}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            long percentile = histogram.getPercentile(q);
+            assertTrue(percentile >= exact, "percentyl " + q + ": " + percentile + " < " + exact);
+            assertTrue(percentile <= exact + exact / 4, "percentyl " + q + ": " + percentile + " >> " + exact);
+        }
+        assertEquals(values[values.length - 1], histogram.getPercentile(1.0));
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values.length, histogram.getCount());
+    }
+
+    @Test
+    void percentileOfSingleValue(){
+        Histogram histogram = new Histogram();
+        long value = TimeUnit.MINUTES.toNanos(90);
+        histogram.record(value);
+        assertEquals(value, histogram.getPercentile(0.5));
+        histogram.reset();
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Clusters.java
+ *
+ *  Klasa Clusters grupuje bliskie przystanki w skupiska
+ *  rysowane przy małym powiększeniu.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Skupiska przystanków - wspólne zasady dla panelu (<code>Network.draw</code>) i eksportu
+ * mapy (<code>export.TileRenderer</code>). <br>
+ * Przystanki grupowane są w komórkach siatki o boku <code>Network.CLUSTER_CELL</code> pikseli
+ * ekranu; siatka zaczyna się w początku układu współrzędnych świata, więc przydział przystanku
+ * do skupiska nie zależy od rysowanego fragmentu sieci. Skupisko rysowane jest jako jedno koło
+ * w środku ciężkości przystanków, o promieniu rosnącym z logarytmem ich liczby.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public final class Clusters {
+
+    private Clusters() {
+    }
+
+    /**Metoda grupująca przystanki sieci (bez podanych) w skupiska dla skali widoku <code>scale</code> -
+     * wartość to suma współrzędnych x, suma współrzędnych y i liczba przystanków skupiska*/
+    public static Map<Long, long[]> group(Network network, Set<Node> excluded, double scale){
+        Map<Long, long[]> clusters = new HashMap<>();
+        network.forEachNode(node -> {
+            if (!excluded.contains(node)) add(clusters, node, scale);
+        });
+        return clusters;
+    }
+
+    /**Metoda grupująca podane przystanki w skupiska (np. przystanki fragmentu sieci - skupisko jest pełne,
+     * gdy podane są wszystkie przystanki jego komórki siatki, zob. <code>cellSize</code>)*/
+    public static Map<Long, long[]> group(Collection<Node> nodes, double scale){
+        Map<Long, long[]> clusters = new HashMap<>();
+        for (Node node : nodes) {
+            add(clusters, node, scale);
+        }
+        return clusters;
+    }
+
+    /**Metoda zwracająca bok komórki siatki skupisk (we współrzędnych świata) dla skali widoku*/
+    public static double cellSize(double scale){
+        return Network.CLUSTER_CELL / scale;
+    }
+
+    /**Metoda zwracająca największy promień koła skupiska (we współrzędnych świata) przy podanej liczbie przystanków*/
+    public static double maxRadius(int nodes, double scale){
+        return (3 + 2 * Math.log(Math.max(nodes, 1)) / Math.log(2)) / scale;
+    }
+
+    private static void add(Map<Long, long[]> clusters, Node node, double scale){
+        double cell = cellSize(scale);
+        long col = (long) Math.floor(node.getX() / cell);
+        long row = (long) Math.floor(node.getY() / cell);
+        long[] cluster = clusters.computeIfAbsent((col << 32) ^ (row & 0xffffffffL), key -> new long[3]);
+        cluster[0] += node.getX();
+        cluster[1] += node.getY();
+        cluster[2]++;
+    }
+
+    /**Metoda zwracająca koło skupiska (we współrzędnych świata)*/
+    public static Ellipse2D circle(long[] cluster, double scale){
+        double radius = (3 + 2 * Math.log(cluster[2]) / Math.log(2)) / scale;
+        double x = (double) cluster[0] / cluster[2] - radius;
+        double y = (double) cluster[1] / cluster[2] - radius;
+        return new Ellipse2D.Double(x, y, 2 * radius, 2 * radius);
+    }
+
+    /**Metoda rysująca koło skupiska*/
+    public static void draw(Graphics2D g, Ellipse2D circle){
+        g.setColor(Color.WHITE);
+        g.fill(circle);
+        g.setColor(Color.BLACK);
+        g.draw(circle);
+    }
+}
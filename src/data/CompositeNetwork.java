@@ -0,0 +1,400 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: CompositeNetwork.java
+ *
+ *  Klasa CompositeNetwork przedstawia wszystkie linie komunikacji
+ *  jako jedną sieć, bez kopiowania przystanków i połączeń.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Widok wszystkich linii komunikacji jako jednej sieci. <br>
+ * Widok nie przechowuje własnych kopii przystanków ani połączeń - przeglądanie, rysowanie
+ * i wyszukiwanie odczytuje je bezpośrednio z grafów linii, więc zmiany w liniach są w nim
+ * widoczne od razu. Przystanek należący do kilku linii występuje w widoku jeden raz. <br>
+ * Zdarzenia linii przekazywane są słuchaczom widoku (przystanek jest dodany do widoku, gdy
+ * trafi do pierwszej z linii, a usunięty, gdy zniknie z ostatniej). Usuwanie elementów
+ * działa na wszystkich liniach, do których należą; nowe połączenie trafia do linii, do której
+ * należą oba przystanki. Przystanków nie można dodawać - nie wiadomo, do której linii.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class CompositeNetwork implements Network, GraphListener {
+
+    /**Linie tworzące widok*/
+    private final List<Graph> lines = new ArrayList<>();
+    private final Set<Graph> members = new HashSet<>();
+    /**Słuchacze zmian w widoku*/
+    private final List<GraphListener> listeners = new ArrayList<>(0);
+    /**Liczba różnych przystanków wszystkich linii - aktualizowana na podstawie zdarzeń linii*/
+    private int nodeCount;
+    /**Niemodyfikowalne kopie list przystanków i połączeń, null gdy nieaktualne*/
+    private List<Node> nodeSnapshot;
+    private List<Connection> connectionSnapshot;
+
+    /**Metoda dołączająca linię do widoku*/
+    public void addLine(Graph line){
+        if (!members.add(line)) return;
+        lines.add(line);
+        line.addGraphListener(this);
+        nodeSnapshot = null;
+        connectionSnapshot = null;
+        for (Node node : line.nodeList()) {
+            if (firstLine(node) == line) {
+                nodeCount++;
+                for (GraphListener listener : listeners) listener.nodeAdded(line, node);
+            }
+        }
+        for (Connection connection : line.connectionList()) {
+            if (countLines(connection) == 1) {
+                for (GraphListener listener : listeners) listener.connectionAdded(line, connection);
+            }
+        }
+    }
+    /**Metoda odłączająca linię od widoku*/
+    public void removeLine(Graph line){
+        if (!members.remove(line)) return;
+        lines.remove(line);
+        line.removeGraphListener(this);
+        nodeSnapshot = null;
+        connectionSnapshot = null;
+        for (Connection connection : line.connectionList()) {
+            if (countLines(connection) == 0) {
+                for (GraphListener listener : listeners) listener.connectionRemoved(line, connection);
+            }
+        }
+        for (Node node : line.nodeList()) {
+            if (firstLine(node) == null) {
+                nodeCount--;
+                for (GraphListener listener : listeners) listener.nodeRemoved(line, node);
+            }
+        }
+    }
+    /**Metoda odłączająca wszystkie linie*/
+    public void clear(){
+        for (Graph line : new ArrayList<>(lines)) {
+            removeLine(line);
+        }
+    }
+    /**Metoda zwracająca linie tworzące widok*/
+    public List<Graph> getLines(){
+        return Collections.unmodifiableList(lines);
+    }
+
+    @Override
+    public Iterable<Node> nodes(){
+        return () -> new NodeIterator();
+    }
+
+    @Override
+    public Iterable<Connection> connections(){
+        return () -> new ConnectionIterator();
+    }
+
+    @Override
+    public void forEachNode(Consumer<? super Node> action){
+        for (int l = 0; l < lines.size(); l++) {
+            Graph line = lines.get(l);
+            for (int i = 0, n = line.getNodeCount(); i < n; i++) {
+                Node node = line.getNode(i);
+                if (firstLine(node) == line) action.accept(node);
+            }
+        }
+    }
+
+    @Override
+    public void forEachConnection(Consumer<? super Connection> action){
+        for (int l = 0; l < lines.size(); l++) {
+            lines.get(l).forEachConnection(action);
+        }
+    }
+
+    @Override
+    public int getNodeCount(){
+        return nodeCount;
+    }
+
+    @Override
+    public int getConnectionCount(){
+        int count = 0;
+        for (Graph line : lines) count += line.getConnectionCount();
+        return count;
+    }
+
+    @Override
+    public List<Node> getNodeList(){
+        if (nodeSnapshot == null) {
+            List<Node> list = new ArrayList<>(nodeCount);
+            forEachNode(list::add);
+            nodeSnapshot = Collections.unmodifiableList(list);
+        }
+        return nodeSnapshot;
+    }
+
+    @Override
+    public List<Connection> getConnectionList(){
+        if (connectionSnapshot == null) {
+            List<Connection> list = new ArrayList<>(getConnectionCount());
+            forEachConnection(list::add);
+            connectionSnapshot = Collections.unmodifiableList(list);
+        }
+        return connectionSnapshot;
+    }
+
+    @Override
+    public Node[] getNodes(){
+        return getNodeList().toArray(new Node[0]);
+    }
+
+    @Override
+    public Connection[] getConnections(){
+        return getConnectionList().toArray(new Connection[0]);
+    }
+
+    @Override
+    public boolean containsNode(Node node){
+        return firstLine(node) != null;
+    }
+
+    @Override
+    public boolean containsConnection(Connection connection){
+        return countLines(connection) > 0;
+    }
+
+    @Override
+    public List<Connection> getIncidentConnections(Node node){
+        List<Connection> result = null;
+        Graph single = null;
+        for (Graph line : lines) {
+            List<Connection> incident = line.getIncidentConnections(node);
+            if (incident.isEmpty()) continue;
+            if (single == null && result == null) {
+                // najczęstszy przypadek - przystanek jednej linii, lista bez kopiowania
+                single = line;
+                continue;
+            }
+            if (result == null) {
+                result = new ArrayList<>(single.getIncidentConnections(node));
+            }
+            for (Connection connection : incident) {
+                if (!result.contains(connection)) result.add(connection);
+            }
+        }
+        if (result != null) return Collections.unmodifiableList(result);
+        return single == null ? Collections.emptyList() : single.getIncidentConnections(node);
+    }
+
+    /**Przystanków nie można dodawać do widoku wszystkich linii - należy wybrać linię*/
+    @Override
+    public void addNode(Node node){
+        throw new UnsupportedOperationException("Przystanek można dodać tylko do wybranej linii");
+    }
+
+    @Override
+    public void removeNode(Node node){
+        for (Graph line : new ArrayList<>(lines)) {
+            if (line.containsNode(node) || line.getDegree(node) > 0) line.removeNode(node);
+        }
+    }
+
+    @Override
+    public void createConnection(Node node1, Node node2){
+        for (Graph line : lines) {
+            if (line.containsNode(node1) && line.containsNode(node2)) {
+                line.createConnection(node1, node2);
+                return;
+            }
+        }
+        throw new UnsupportedOperationException("Przystanki " + node1.getName() + " i " + node2.getName()
+                + " nie należą do wspólnej linii");
+    }
+
+    @Override
+    public void removeConnection(Connection connection){
+        for (Graph line : new ArrayList<>(lines)) {
+            line.removeConnection(connection);
+        }
+    }
+
+    @Override
+    public void addGraphListener(GraphListener listener){
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeGraphListener(GraphListener listener){
+        listeners.remove(listener);
+    }
+
+    /* Przekazywanie zdarzeń linii słuchaczom widoku */
+
+    @Override
+    public void nodeAdded(Graph graph, Node node){
+        if (countLines(node) != 1) return;
+        nodeCount++;
+        nodeSnapshot = null;
+        for (GraphListener listener : listeners) listener.nodeAdded(graph, node);
+    }
+
+    @Override
+    public void nodeRemoved(Graph graph, Node node){
+        if (firstLine(node) != null) return;
+        nodeCount--;
+        nodeSnapshot = null;
+        for (GraphListener listener : listeners) listener.nodeRemoved(graph, node);
+    }
+
+    @Override
+    public void nodeRenamed(Graph graph, Node node, String oldName){
+        if (firstLine(node) != graph) return;
+        for (GraphListener listener : listeners) listener.nodeRenamed(graph, node, oldName);
+    }
+
+    @Override
+    public void nodeMoved(Graph graph, Node node, int oldX, int oldY){
+        if (firstLine(node) != graph) return;
+        for (GraphListener listener : listeners) listener.nodeMoved(graph, node, oldX, oldY);
+    }
+
+    @Override
+    public void nodeResized(Graph graph, Node node, int oldR){
+        if (firstLine(node) != graph) return;
+        for (GraphListener listener : listeners) listener.nodeResized(graph, node, oldR);
+    }
+
+    @Override
+    public void nodeRecolored(Graph graph, Node node, Color oldColor){
+        if (firstLine(node) != graph) return;
+        for (GraphListener listener : listeners) listener.nodeRecolored(graph, node, oldColor);
+    }
+
+    @Override
+    public void connectionAdded(Graph graph, Connection connection){
+        connectionSnapshot = null;
+        if (countLines(connection) != 1) return;
+        for (GraphListener listener : listeners) listener.connectionAdded(graph, connection);
+    }
+
+    @Override
+    public void connectionRemoved(Graph graph, Connection connection){
+        connectionSnapshot = null;
+        if (countLines(connection) != 0) return;
+        for (GraphListener listener : listeners) listener.connectionRemoved(graph, connection);
+    }
+
+    @Override
+    public void connectionRecolored(Graph graph, Connection connection, Color oldColor){
+        for (GraphListener listener : listeners) listener.connectionRecolored(graph, connection, oldColor);
+    }
+
+    /**Przedefiniowana metoda toString zwracająca opis widoku*/
+    @Override
+    public String toString(){
+        return "\nWszystkie linie (" + lines.size() + ")\n";
+    }
+
+    /**Metoda zwracająca pierwszą linię widoku (w kolejności dołączania do przystanku), do której należy przystanek*/
+    private Graph firstLine(Node node){
+        for (Graph owner : node.owners()) {
+            if (members.contains(owner)) return owner;
+        }
+        return null;
+    }
+
+    private int countLines(Node node){
+        int count = 0;
+        for (Graph owner : node.owners()) {
+            if (members.contains(owner)) count++;
+        }
+        return count;
+    }
+
+    /**Metoda zliczająca linie widoku zawierające połączenie - sprawdzane są tylko linie jego przystanków*/
+    private int countLines(Connection connection){
+        int count = 0;
+        Graph[] owners1 = connection.getNode1().owners();
+        for (Graph owner : owners1) {
+            if (members.contains(owner) && owner.containsConnection(connection)) count++;
+        }
+        for (Graph owner : connection.getNode2().owners()) {
+            if (!contains(owners1, owner) && members.contains(owner) && owner.containsConnection(connection)) count++;
+        }
+        return count;
+    }
+
+    private static boolean contains(Graph[] array, Graph graph){
+        for (Graph element : array) {
+            if (element == graph) return true;
+        }
+        return false;
+    }
+
+    /**Iterator przystanków wszystkich linii - przystanek zwracany jest tylko przy pierwszej linii, do której należy*/
+    private final class NodeIterator implements Iterator<Node> {
+        private int line = -1;
+        private int index;
+        private List<Node> current = Collections.emptyList();
+        private Node next;
+
+        @Override
+        public boolean hasNext(){
+            while (next == null) {
+                while (index >= current.size()) {
+                    if (++line >= lines.size()) return false;
+                    current = lines.get(line).nodeList();
+                    index = 0;
+                }
+                Node candidate = current.get(index++);
+                if (firstLine(candidate) == lines.get(line)) next = candidate;
+            }
+            return true;
+        }
+
+        @Override
+        public Node next(){
+            if (!hasNext()) throw new NoSuchElementException();
+            Node result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    /**Iterator połączeń wszystkich linii (kolejno linia po linii)*/
+    private final class ConnectionIterator implements Iterator<Connection> {
+        private int line = -1;
+        private int index;
+        private List<Connection> current = Collections.emptyList();
+
+        @Override
+        public boolean hasNext(){
+            while (index >= current.size()) {
+                if (++line >= lines.size()) return false;
+                current = lines.get(line).connectionList();
+                index = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public Connection next(){
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.get(index++);
+        }
+    }
+}
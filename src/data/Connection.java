@@ -21,7 +21,6 @@
 package data;
 
 import java.awt.*;
-import java.awt.geom.Line2D;
 
 public class Connection {
     /** Referencja do pierwszego grafu*/
@@ -30,6 +29,11 @@ public class Connection {
     protected Node node2;
     /** Kolor krawędzi*/
     private Color color;
+    /** Odległość od odcinka (w pikselach), w której kursor uznawany jest za znajdujący się nad połączeniem*/
+    public static final double HIT_TOLERANCE = 4.0;
+    /** Linie, którymi rysowane są połączenia (tworzone raz - obiekty BasicStroke są niezmienne)*/
+    private static final BasicStroke STROKE = new BasicStroke(3);
+    private static final BasicStroke DEFAULT_STROKE = new BasicStroke(1);
     /** Konstruktor z dwoma węzłami jako parametrami*/
     public Connection(Node node1, Node node2) {
         this.node1 = node1;
@@ -51,28 +55,46 @@ public class Connection {
     public Node getNode2(){
         return node2;
     }
+    /** Metoda zwracająca przeciwległy koniec połączenia względem podanego węzła*/
+    public Node getOtherNode(Node node){
+        return node == node1 ? node2 : node1;
+    }
+    /** Metoda zwracająca prostokąt obejmujący połączenie (wraz z grubością linii)*/
+    public Rectangle getBounds(){
+        return getBounds(node1.getX(), node1.getY(), node2.getX(), node2.getY());
+    }
+    /** Metoda zwracająca prostokąt obejmujący połączenie o podanych końcach*/
+    public static Rectangle getBounds(int x1, int y1, int x2, int y2){
+        int margin = (int) Math.ceil(STROKE.getLineWidth() / 2) + 1;
+        return new Rectangle(Math.min(x1, x2) - margin, Math.min(y1, y2) - margin,
+                Math.abs(x2 - x1) + 2 * margin, Math.abs(y2 - y1) + 2 * margin);
+    }
     /** Metoda rysująca połączenie o odpowiednim kolorze od grafu pierwszego do drugiego*/
-    void draw(Graphics2D g){
+    public void draw(Graphics2D g){
        g.setColor(this.color);
-       g.setStroke(new BasicStroke(3));
-       g.draw(new Line2D.Float(node1.getX(), node1.getY(),node2.getX(), node2.getY()));
-       g.setStroke(new BasicStroke(1));
+       g.setStroke(STROKE);
+       g.drawLine(node1.getX(), node1.getY(), node2.getX(), node2.getY());
+       g.setStroke(DEFAULT_STROKE);
    }
-    /** Metoda sprawdzająca czy kursor znajduje się nad połączeniem*/
+    /** Metoda sprawdzająca czy kursor znajduje się nad połączeniem (z tolerancją HIT_TOLERANCE pikseli)*/
     public boolean isMouseOver(int mx, int my){
-        int x = (int) Math.pow((node1.getX()-node2.getX()), 2);
-        int y = (int) Math.pow((node1.getY()-node2.getY()), 2);
-        int z = (int) Math.sqrt(x+y);
-
-        int x1 = (int) Math.pow((mx-node1.getX()), 2);
-        int y1 = (int) Math.pow((my-node1.getY()), 2);
-        int x2 = (int) Math.pow((mx-node2.getX()), 2);
-        int y2 = (int) Math.pow((my-node2.getY()), 2);
-
-        int z1 = (int) Math.sqrt(x1+y1);
-        int z2 = (int) Math.sqrt(x2+y2);
-
-        return z1+z2 <= z;
+        return distanceTo(mx, my) <= HIT_TOLERANCE;
+    }
+    /** Metoda zwracająca odległość punktu od odcinka łączącego przystanki*/
+    public double distanceTo(double px, double py){
+        double ax = node1.getX();
+        double ay = node1.getY();
+        double dx = node2.getX() - ax;
+        double dy = node2.getY() - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = 0.0;
+        if (lengthSquared > 0.0) {
+            // rzut punktu na prostą, ograniczony do końców odcinka
+            t = Math.max(0.0, Math.min(1.0, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        }
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return Math.sqrt(cx * cx + cy * cy);
     }
     /** Przedefiniowana metoda toString zwracająca nazwy połączonych przystanków i ich współrzędne*/
     @Override
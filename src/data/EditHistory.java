@@ -0,0 +1,425 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: EditHistory.java
+ *
+ *  Klasa EditHistory zapamiętuje zmiany w liniach komunikacji
+ *  i pozwala je cofać i ponawiać.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Historia zmian sieci (cofnij / ponów). <br>
+ * Historia nasłuchuje zmian dołączonych linii i dla każdej zmiany zapamiętuje zwarty rekord
+ * z wartością przed i po zmianie (przesunięcie, zmiana nazwy, promienia i koloru przystanku,
+ * dodanie i usunięcie przystanku lub połączenia, zmiana koloru połączenia) - pamięć historii
+ * jest proporcjonalna do liczby zmian, a nie do wielkości sieci. <br>
+ * Zmiany grupowane są w kroki: zmiany między <code>beginStep</code> i <code>endStep</code> (np. całe
+ * przeciąganie przystanku) tworzą jeden krok, a kolejne przesunięcia tego samego przystanku
+ * w kroku zapamiętywane są jednym rekordem. Zmiana wykonana poza krokiem tworzy krok sama. <br>
+ * Cofnięcie i ponowienie wykonywane są zwykłymi metodami grafów i przystanków, więc pozostali
+ * słuchacze (indeksy, dziennik zmian) otrzymują je jak każdą inną zmianę.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class EditHistory implements GraphListener {
+
+    /**Domyślna liczba zapamiętywanych kroków*/
+    public static final int DEFAULT_LIMIT = 10000;
+
+    private final int limit;
+    private final Set<Graph> lines = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Deque<Edit[]> undoSteps = new ArrayDeque<>();
+    private final Deque<Edit[]> redoSteps = new ArrayDeque<>();
+    /**Zmiany bieżącego (otwartego) kroku i ostatnie przesunięcia przystanków w tym kroku*/
+    private final List<Edit> step = new ArrayList<>();
+    private final Map<Node, Moved> moves = new IdentityHashMap<>();
+    private boolean stepOpen;
+    /**Czy zmiany są rejestrowane - wyłączane na czas cofania i ponawiania*/
+    private boolean recording = true;
+
+    /**Konstruktor historii zapamiętującej domyślną liczbę kroków*/
+    public EditHistory() {
+        this(DEFAULT_LIMIT);
+    }
+
+    /**Konstruktor historii zapamiętującej najwyżej <code>limit</code> kroków (najstarsze są zapominane)*/
+    public EditHistory(int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Historia musi zapamiętywać co najmniej jeden krok");
+        this.limit = limit;
+    }
+
+    /**Metoda rejestrująca historię jako słuchacza zmian linii (zawartość linii nie jest przy tym wczytywana)*/
+    public void addLine(Graph line){
+        if (lines.add(line)) line.addGraphListener(this);
+    }
+
+    /**Metoda odłączająca historię od wszystkich linii i zapominająca zapamiętane kroki*/
+    public void clear(){
+        for (Graph line : lines) {
+            line.removeGraphListener(this);
+        }
+        lines.clear();
+        undoSteps.clear();
+        redoSteps.clear();
+        step.clear();
+        moves.clear();
+        stepOpen = false;
+    }
+
+    /**Metoda rozpoczynająca krok - zmiany do wywołania <code>endStep</code> są cofane razem*/
+    public void beginStep(){
+        endStep();
+        stepOpen = true;
+    }
+
+    /**Metoda kończąca bieżący krok*/
+    public void endStep(){
+        stepOpen = false;
+        moves.clear();
+        if (step.isEmpty()) return;
+        undoSteps.addLast(step.toArray(new Edit[0]));
+        step.clear();
+        if (undoSteps.size() > limit) undoSteps.removeFirst();
+    }
+
+    /**Metoda sprawdzająca czy jest krok do cofnięcia*/
+    public boolean canUndo(){
+        return !undoSteps.isEmpty() || !step.isEmpty();
+    }
+
+    /**Metoda sprawdzająca czy jest krok do ponowienia*/
+    public boolean canRedo(){
+        return !redoSteps.isEmpty();
+    }
+
+    /**Metoda zwracająca liczbę kroków do cofnięcia*/
+    public int getUndoCount(){
+        return undoSteps.size();
+    }
+
+    /**Metoda cofająca ostatni krok; zwraca <code>false</code>, gdy nie ma czego cofać*/
+    public boolean undo(){
+        endStep();
+        Edit[] edits = undoSteps.pollLast();
+        if (edits == null) return false;
+        recording = false;
+        try {
+            for (int i = edits.length - 1; i >= 0; i--) {
+                edits[i].undo();
+            }
+        }
+        finally {
+            recording = true;
+        }
+        redoSteps.addLast(edits);
+        return true;
+    }
+
+    /**Metoda ponawiająca ostatnio cofnięty krok; zwraca <code>false</code>, gdy nie ma czego ponawiać*/
+    public boolean redo(){
+        endStep();
+        Edit[] edits = redoSteps.pollLast();
+        if (edits == null) return false;
+        recording = false;
+        try {
+            for (Edit edit : edits) {
+                edit.redo();
+            }
+        }
+        finally {
+            recording = true;
+        }
+        undoSteps.addLast(edits);
+        return true;
+    }
+
+    @Override
+    public void nodeAdded(Graph graph, Node node){
+        record(new NodeAdded(graph, node));
+    }
+
+    @Override
+    public void nodeRemoved(Graph graph, Node node){
+        record(new NodeRemoved(graph, node));
+    }
+
+    @Override
+    public void nodeMoved(Graph graph, Node node, int oldX, int oldY){
+        if (!recording || !isPrimary(graph, node)) return;
+        Moved last = moves.get(node);
+        if (last != null) {
+            // kolejne przesunięcie w tym samym kroku - zmienia się tylko położenie końcowe
+            last.newX = node.getX();
+            last.newY = node.getY();
+            return;
+        }
+        Moved moved = new Moved(node, oldX, oldY, node.getX(), node.getY());
+        record(moved);
+        if (stepOpen) moves.put(node, moved);
+    }
+
+    @Override
+    public void nodeRenamed(Graph graph, Node node, String oldName){
+        if (isPrimary(graph, node)) record(new Renamed(node, oldName, node.getName()));
+    }
+
+    @Override
+    public void nodeResized(Graph graph, Node node, int oldR){
+        if (isPrimary(graph, node)) record(new Resized(node, oldR, node.getR()));
+    }
+
+    @Override
+    public void nodeRecolored(Graph graph, Node node, Color oldColor){
+        if (isPrimary(graph, node)) record(new NodeRecolored(node, oldColor, node.getColor()));
+    }
+
+    @Override
+    public void connectionAdded(Graph graph, Connection connection){
+        record(new ConnectionAdded(graph, connection));
+    }
+
+    @Override
+    public void connectionRemoved(Graph graph, Connection connection){
+        record(new ConnectionRemoved(graph, connection));
+    }
+
+    @Override
+    public void connectionRecolored(Graph graph, Connection connection, Color oldColor){
+        record(new ConnectionRecolored(graph, connection, oldColor, connection.getColor()));
+    }
+
+    private void record(Edit edit){
+        if (!recording) return;
+        redoSteps.clear();
+        step.add(edit);
+        if (!stepOpen) endStep();
+    }
+
+    /**Zmiana przystanku należącego do kilku linii zgłaszana jest przez każdą z nich - zapamiętywana jest raz*/
+    private boolean isPrimary(Graph graph, Node node){
+        for (Graph owner : node.owners()) {
+            if (lines.contains(owner)) return owner == graph;
+        }
+        return false;
+    }
+
+    /**Rekord zmiany - potrafi ją cofnąć i wykonać ponownie*/
+    private abstract static class Edit {
+        abstract void undo();
+        abstract void redo();
+    }
+
+    private static final class Moved extends Edit {
+        private final Node node;
+        private final int oldX;
+        private final int oldY;
+        private int newX;
+        private int newY;
+
+        Moved(Node node, int oldX, int oldY, int newX, int newY) {
+            this.node = node;
+            this.oldX = oldX;
+            this.oldY = oldY;
+            this.newX = newX;
+            this.newY = newY;
+        }
+
+        @Override
+        void undo(){
+            node.setLocation(oldX, oldY);
+        }
+
+        @Override
+        void redo(){
+            node.setLocation(newX, newY);
+        }
+    }
+
+    private static final class Renamed extends Edit {
+        private final Node node;
+        private final String oldName;
+        private final String newName;
+
+        Renamed(Node node, String oldName, String newName) {
+            this.node = node;
+            this.oldName = oldName;
+            this.newName = newName;
+        }
+
+        @Override
+        void undo(){
+            node.setName(oldName);
+        }
+
+        @Override
+        void redo(){
+            node.setName(newName);
+        }
+    }
+
+    private static final class Resized extends Edit {
+        private final Node node;
+        private final int oldR;
+        private final int newR;
+
+        Resized(Node node, int oldR, int newR) {
+            this.node = node;
+            this.oldR = oldR;
+            this.newR = newR;
+        }
+
+        @Override
+        void undo(){
+            node.setR(oldR);
+        }
+
+        @Override
+        void redo(){
+            node.setR(newR);
+        }
+    }
+
+    private static final class NodeRecolored extends Edit {
+        private final Node node;
+        private final Color oldColor;
+        private final Color newColor;
+
+        NodeRecolored(Node node, Color oldColor, Color newColor) {
+            this.node = node;
+            this.oldColor = oldColor;
+            this.newColor = newColor;
+        }
+
+        @Override
+        void undo(){
+            node.setColor(oldColor);
+        }
+
+        @Override
+        void redo(){
+            node.setColor(newColor);
+        }
+    }
+
+    private static final class NodeAdded extends Edit {
+        private final Graph line;
+        private final Node node;
+
+        NodeAdded(Graph line, Node node) {
+            this.line = line;
+            this.node = node;
+        }
+
+        @Override
+        void undo(){
+            line.removeNode(node);
+        }
+
+        @Override
+        void redo(){
+            line.addNode(node);
+        }
+    }
+
+    /**Usunięcie przystanku poprzedzone jest rekordami usunięcia jego połączeń, więc cofnięcie
+     * przywraca najpierw przystanek, a potem połączenia*/
+    private static final class NodeRemoved extends Edit {
+        private final Graph line;
+        private final Node node;
+
+        NodeRemoved(Graph line, Node node) {
+            this.line = line;
+            this.node = node;
+        }
+
+        @Override
+        void undo(){
+            line.addNode(node);
+        }
+
+        @Override
+        void redo(){
+            line.removeNode(node);
+        }
+    }
+
+    private static final class ConnectionAdded extends Edit {
+        private final Graph line;
+        private final Connection connection;
+
+        ConnectionAdded(Graph line, Connection connection) {
+            this.line = line;
+            this.connection = connection;
+        }
+
+        @Override
+        void undo(){
+            line.removeConnection(connection);
+        }
+
+        @Override
+        void redo(){
+            line.addConnection(connection);
+        }
+    }
+
+    private static final class ConnectionRemoved extends Edit {
+        private final Graph line;
+        private final Connection connection;
+
+        ConnectionRemoved(Graph line, Connection connection) {
+            this.line = line;
+            this.connection = connection;
+        }
+
+        @Override
+        void undo(){
+            line.addConnection(connection);
+        }
+
+        @Override
+        void redo(){
+            line.removeConnection(connection);
+        }
+    }
+
+    private static final class ConnectionRecolored extends Edit {
+        private final Graph line;
+        private final Connection connection;
+        private final Color oldColor;
+        private final Color newColor;
+
+        ConnectionRecolored(Graph line, Connection connection, Color oldColor, Color newColor) {
+            this.line = line;
+            this.connection = connection;
+            this.oldColor = oldColor;
+            this.newColor = newColor;
+        }
+
+        @Override
+        void undo(){
+            line.setConnectionColor(connection, oldColor);
+        }
+
+        @Override
+        void redo(){
+            line.setConnectionColor(connection, newColor);
+        }
+    }
+}
@@ -0,0 +1,542 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: EditJournal.java
+ *
+ *  Klasa EditJournal zapisuje kolejne zmiany w liniach komunikacji
+ *  do dziennika, dopisywanego na końcu pliku obok pliku sieci.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Dziennik zmian sieci komunikacji miejskiej. <br>
+ * Stan sieci składa się z pliku bazowego (<code>NetworkFile</code>) oraz dziennika - pliku
+ * o tej samej nazwie z rozszerzeniem <code>.journal</code>, do którego dopisywany jest zwarty rekord
+ * każdej zmiany linii (dodanie i usunięcie przystanku, przesunięcie, zmiana nazwy, promienia
+ * i koloru przystanku, dodanie, usunięcie i zmiana koloru połączenia, nowa linia). Rekordy
+ * przekazywane są do systemu operacyjnego od razu, więc zamknięcie lub przerwanie programu
+ * nie powoduje utraty zmian, a zapis kosztuje tyle, ile zmian, a nie całej sieci. <br>
+ * Przy otwarciu dziennik jest odtwarzany na liniach wczytanych z pliku bazowego (niedokończony
+ * ostatni rekord jest odrzucany). Gdy dziennik stanie się duży w porównaniu z plikiem bazowym,
+ * metoda <code>save</code> zapisuje całą sieć do pliku bazowego i rozpoczyna pusty dziennik. <br>
+ * Przystanki identyfikowane są numerem w pliku bazowym; nowe przystanki otrzymują kolejne numery.
+ * Rozkłady jazdy nie są rejestrowane w dzienniku - zapisuje je dopiero plik bazowy.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import util.Metrics;
+import util.PerformanceEvents;
+import util.ProgressListener;
+
+public final class EditJournal implements GraphListener, Closeable {
+
+    /**Znacznik formatu dziennika - bajty "PTGJ"*/
+    public static final int MAGIC = 0x5054474A;
+    public static final int VERSION = 1;
+    /**Rozmiar dziennika, poniżej którego plik bazowy nie jest zapisywany ponownie*/
+    private static final long COMPACT_MIN_SIZE = 64 * 1024;
+
+    /* Rodzaje rekordów */
+    private static final byte LINE_ADDED = 1;
+    private static final byte NODE_ADDED = 2;
+    private static final byte NODE_REMOVED = 3;
+    private static final byte NODE_MOVED = 4;
+    private static final byte NODE_RENAMED = 5;
+    private static final byte NODE_RESIZED = 6;
+    private static final byte NODE_RECOLORED = 7;
+    private static final byte CONNECTION_ADDED = 8;
+    private static final byte CONNECTION_REMOVED = 9;
+    private static final byte CONNECTION_RECOLORED = 10;
+
+    private final Path base;
+    private final Path journal;
+    /**Linie sieci i ich numery w dzienniku (kolejność z pliku bazowego, potem nowe linie)*/
+    private final List<Graph> lines = new ArrayList<>();
+    private final Map<Graph, Integer> lineIds = new IdentityHashMap<>();
+    /**Numer nadawany kolejnemu nowemu przystankowi*/
+    private int nextId;
+    private FileChannel channel;
+    private DataOutputStream out;
+    private long size;
+    private boolean recording;
+    /**Błąd zapisu zgłoszony w metodzie słuchacza - przekazywany przy najbliższym wywołaniu save*/
+    private IOException failure;
+
+    private EditJournal(Path base) {
+        this.base = base;
+        this.journal = base.resolveSibling(base.getFileName() + ".journal");
+    }
+
+    /**Metoda otwierająca sieć zapisaną w pliku bazowym (jeśli istnieje) i odtwarzająca na niej zmiany z dziennika.
+     * Dalsze zmiany linii sieci (<code>getLines</code>) są dopisywane do dziennika.*/
+    public static EditJournal open(Path base) throws IOException {
+        return open(base, ProgressListener.NONE);
+    }
+
+    /**Metoda otwierająca sieć, zgłaszająca postęp odtwarzania dziennika (w bajtach) i przerywana na żądanie
+     * słuchacza - przerwane otwarcie nie zmienia plików*/
+    public static EditJournal open(Path base, ProgressListener listener) throws IOException {
+        PerformanceEvents.FileTransfer event = new PerformanceEvents.FileTransfer();
+        event.begin();
+        long start = System.nanoTime();
+        EditJournal editJournal = new EditJournal(base);
+        NetworkFile file = null;
+        if (Files.exists(base)) {
+            file = NetworkFile.open(base);
+            editJournal.lines.addAll(file.getLines());
+            editJournal.nextId = file.getStopCount();
+        }
+        editJournal.replay(file, listener);
+        editJournal.attachAll();
+        // zawartość linii pliku bazowego wczytywana jest później (pomiar Metrics.LINE_LOAD) - tu tylko dziennik
+        Metrics.histogram(Metrics.LOAD).record(System.nanoTime() - start);
+        Metrics.count(Metrics.LOAD + Metrics.BYTES, editJournal.size);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "odczyt";
+            event.path = base.toString();
+            event.bytes = editJournal.size;
+            event.lines = editJournal.lines.size();
+            event.commit();
+        }
+        return editJournal;
+    }
+
+    /**Metoda zapisująca podane linie (np. zaimportowane) jako nową sieć w pliku bazowym i rozpoczynająca
+     * dla niej pusty dziennik. Przerwany lub nieudany zapis nie zmienia plików.*/
+    public static EditJournal create(Path base, List<Graph> graphs, ProgressListener listener) throws IOException {
+        EditJournal editJournal = new EditJournal(base);
+        editJournal.lines.addAll(graphs);
+        editJournal.compact(listener);
+        editJournal.attachAll();
+        return editJournal;
+    }
+
+    /**Metoda zwracająca linie sieci*/
+    public List<Graph> getLines(){
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**Metoda zwracająca ścieżkę pliku bazowego sieci*/
+    public Path getBase(){
+        return base;
+    }
+
+    /**Metoda zwracająca rozmiar dziennika w bajtach*/
+    public long getSize(){
+        return size;
+    }
+
+    /**Metoda dołączająca nową linię do sieci (wraz z jej przystankami i połączeniami)*/
+    public void addLine(Graph line){
+        if (lineIds.containsKey(line)) return;
+        lines.add(line);
+        attach(line);
+        try {
+            out.writeByte(LINE_ADDED);
+            out.writeInt(line.getNumber());
+            out.writeByte(line.getTransportType() == null ? -1 : line.getTransportType().ordinal());
+            end();
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+        line.forEachNode(node -> nodeAdded(line, node));
+        line.forEachConnection(connection -> connectionAdded(line, connection));
+    }
+
+    /**Metoda utrwalająca dziennik na dysku; gdy dziennik jest duży w porównaniu z plikiem bazowym,
+     * cała sieć zapisywana jest do pliku bazowego, a dziennik rozpoczynany od nowa*/
+    public void save(ProgressListener listener) throws IOException {
+        if (failure != null) throw failure;
+        out.flush();
+        channel.force(false);
+        if (!Files.exists(base) || size > Math.max(COMPACT_MIN_SIZE, Files.size(base) / 2)) {
+            compact(listener);
+        }
+    }
+
+    /**Metoda zapisująca całą sieć do pliku bazowego i rozpoczynająca pusty dziennik; przerwany zapis
+     * pozostawia plik bazowy i dziennik bez zmian*/
+    public void compact(ProgressListener listener) throws IOException {
+        if (failure != null) throw failure;
+        nextId = NetworkFile.write(lines, base, listener);
+        if (channel != null) channel.close();
+        createJournal();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Graph line : lines) {
+            line.removeGraphListener(this);
+        }
+        recording = false;
+        if (channel != null) {
+            out.flush();
+            channel.close();
+        }
+    }
+
+    @Override
+    public void nodeAdded(Graph graph, Node node){
+        if (!recording) return;
+        try {
+            out.writeByte(NODE_ADDED);
+            out.writeInt(lineIds.get(graph));
+            out.writeInt(id(node));
+            out.writeInt(node.getX());
+            out.writeInt(node.getY());
+            out.writeInt(node.getR());
+            out.writeInt(rgb(node.getColor()));
+            writeName(node.getName());
+            end();
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void nodeRemoved(Graph graph, Node node){
+        if (!recording) return;
+        try {
+            out.writeByte(NODE_REMOVED);
+            out.writeInt(lineIds.get(graph));
+            out.writeInt(id(node));
+            end();
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+        if (node.owners().length == 0) {
+            // przystanek usunięty ze wszystkich linii - po ponownym dodaniu otrzyma nowy numer
+            node.setFileId(-1);
+        }
+    }
+
+    @Override
+    public void nodeMoved(Graph graph, Node node, int oldX, int oldY){
+        if (!recording || !isPrimary(graph, node)) return;
+        try {
+            out.writeByte(NODE_MOVED);
+            out.writeInt(id(node));
+            out.writeInt(node.getX());
+            out.writeInt(node.getY());
+            end();
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void nodeRenamed(Graph graph, Node node, String oldName){
+        if (!recording || !isPrimary(graph, node)) return;
+        try {
+            out.writeByte(NODE_RENAMED);
+            out.writeInt(id(node));
+            writeName(node.getName());
+            end();
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void nodeResized(Graph graph, Node node, int oldR){
+        if (!recording || !isPrimary(graph, node)) return;
+        try {
+            out.writeByte(NODE_RESIZED);
+            out.writeInt(id(node));
+            out.writeInt(node.getR());
+            end();
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void nodeRecolored(Graph graph, Node node, Color oldColor){
+        if (!recording || !isPrimary(graph, node)) return;
+        try {
+            out.writeByte(NODE_RECOLORED);
+            out.writeInt(id(node));
+            out.writeInt(rgb(node.getColor()));
+            end();
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void connectionAdded(Graph graph, Connection connection){
+        writeConnection(CONNECTION_ADDED, graph, connection);
+    }
+
+    @Override
+    public void connectionRemoved(Graph graph, Connection connection){
+        writeConnection(CONNECTION_REMOVED, graph, connection);
+    }
+
+    @Override
+    public void connectionRecolored(Graph graph, Connection connection, Color oldColor){
+        writeConnection(CONNECTION_RECOLORED, graph, connection);
+    }
+
+    private void writeConnection(byte type, Graph graph, Connection connection){
+        if (!recording) return;
+        try {
+            out.writeByte(type);
+            out.writeInt(lineIds.get(graph));
+            out.writeInt(id(connection.getNode1()));
+            out.writeInt(id(connection.getNode2()));
+            if (type != CONNECTION_REMOVED) out.writeInt(rgb(connection.getColor()));
+            end();
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**Metoda kończąca rekord - rekord przekazywany jest od razu do systemu operacyjnego*/
+    private void end() throws IOException {
+        out.flush();
+        size = channel.position();
+    }
+
+    private void fail(IOException e){
+        recording = false;
+        if (failure == null) failure = e;
+    }
+
+    private void writeName(String name) throws IOException {
+        out.writeBoolean(name != null);
+        if (name != null) out.writeUTF(name);
+    }
+
+    private void attachAll(){
+        for (Graph line : lines) {
+            attach(line);
+        }
+        recording = true;
+    }
+
+    private void attach(Graph line){
+        lineIds.put(line, lines.indexOf(line));
+        line.addGraphListener(this);
+    }
+
+    /**Metoda zwracająca numer przystanku, nadając nowy przystankowi, który go jeszcze nie ma*/
+    private int id(Node node){
+        if (node.getFileId() < 0) node.setFileId(nextId++);
+        return node.getFileId();
+    }
+
+    /**Zmiana przystanku należącego do kilku linii zgłaszana jest przez każdą z nich - zapisywana jest raz*/
+    private boolean isPrimary(Graph graph, Node node){
+        for (Graph owner : node.owners()) {
+            if (lineIds.containsKey(owner)) return owner == graph;
+        }
+        return false;
+    }
+
+    /**Metoda zwracająca znacznik pliku bazowego (rozmiar i czas modyfikacji) - dziennik utworzony
+     * dla innej wersji pliku bazowego nie jest odtwarzany*/
+    private long stamp() throws IOException {
+        if (!Files.exists(base)) return 0;
+        return Files.size(base) * 31 + Files.getLastModifiedTime(base).toMillis();
+    }
+
+    private void createJournal() throws IOException {
+        channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(stamp());
+        out.flush();
+        channel.force(false);
+        size = channel.position();
+    }
+
+    /**Metoda odtwarzająca zmiany zapisane w dzienniku; dziennik niepasujący do pliku bazowego
+     * lub uszkodzony zachowywany jest w pliku z rozszerzeniem .bak*/
+    private void replay(NetworkFile file, ProgressListener listener) throws IOException {
+        if (!Files.exists(journal)) {
+            createJournal();
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(journal);
+        ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
+        DataInputStream in = new DataInputStream(buffer);
+        long valid;
+        try {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION || in.readLong() != stamp()) {
+                throw new IllegalStateException("Dziennik nie odpowiada plikowi " + base);
+            }
+            valid = bytes.length - buffer.available();
+            Map<Integer, Node> created = new HashMap<>();
+            try {
+                for (int records = 1; buffer.available() > 0; records++) {
+                    apply(in, file, created);
+                    valid = bytes.length - buffer.available();
+                    if (records % 4096 == 0) {
+                        if (listener.isCancelled()) throw new CancellationException("Przerwano odczyt sieci");
+                        listener.progress(valid, bytes.length);
+                    }
+                }
+            }
+            catch (EOFException e) {
+                // niedokończony ostatni rekord (program przerwany w trakcie zapisu) - pomijany
+            }
+        }
+        catch (CancellationException e) {
+            // CancellationException dziedziczy po IllegalStateException - przerwany odczyt nie oznacza uszkodzenia dziennika
+            throw e;
+        }
+        catch (EOFException | IllegalStateException | IndexOutOfBoundsException e) {
+            Files.copy(journal, journal.resolveSibling(journal.getFileName() + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+            createJournal();
+            return;
+        }
+        channel = FileChannel.open(journal, StandardOpenOption.WRITE);
+        channel.truncate(valid);
+        channel.position(valid);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        size = valid;
+    }
+
+    private void apply(DataInputStream in, NetworkFile file, Map<Integer, Node> created) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case LINE_ADDED: {
+                int number = in.readInt();
+                int transportType = in.readByte();
+                lines.add(new Graph(number, transportType < 0 ? null : TransportType.values()[transportType]));
+                break;
+            }
+            case NODE_ADDED: {
+                Graph line = lines.get(in.readInt());
+                int id = in.readInt();
+                int x = in.readInt();
+                int y = in.readInt();
+                int r = in.readInt();
+                int rgb = in.readInt();
+                String name = readName(in);
+                Node node = findNode(id, file, created);
+                if (node == null) {
+                    node = new Node(x, y, name);
+                    node.setR(r);
+                    node.setColor(color(rgb));
+                    node.setFileId(id);
+                    created.put(id, node);
+                    nextId = Math.max(nextId, id + 1);
+                }
+                line.addNode(node);
+                break;
+            }
+            case NODE_REMOVED: {
+                Graph line = lines.get(in.readInt());
+                line.removeNode(node(in.readInt(), file, created));
+                break;
+            }
+            case NODE_MOVED: {
+                Node node = node(in.readInt(), file, created);
+                int x = in.readInt();
+                node.setLocation(x, in.readInt());
+                break;
+            }
+            case NODE_RENAMED:
+                node(in.readInt(), file, created).setName(readName(in));
+                break;
+            case NODE_RESIZED:
+                node(in.readInt(), file, created).setR(in.readInt());
+                break;
+            case NODE_RECOLORED:
+                node(in.readInt(), file, created).setColor(color(in.readInt()));
+                break;
+            case CONNECTION_ADDED: {
+                Graph line = lines.get(in.readInt());
+                Connection connection = new Connection(node(in.readInt(), file, created), node(in.readInt(), file, created));
+                connection.setColor(color(in.readInt()));
+                line.addConnection(connection);
+                break;
+            }
+            case CONNECTION_REMOVED: {
+                Graph line = lines.get(in.readInt());
+                Connection connection = findConnection(line, node(in.readInt(), file, created), node(in.readInt(), file, created));
+                if (connection != null) line.removeConnection(connection);
+                break;
+            }
+            case CONNECTION_RECOLORED: {
+                Graph line = lines.get(in.readInt());
+                Connection connection = findConnection(line, node(in.readInt(), file, created), node(in.readInt(), file, created));
+                Color color = color(in.readInt());
+                if (connection != null) line.setConnectionColor(connection, color);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Nieznany rodzaj rekordu dziennika: " + type);
+        }
+    }
+
+    private Node node(int id, NetworkFile file, Map<Integer, Node> created){
+        Node node = findNode(id, file, created);
+        if (node == null) throw new IllegalStateException("Nieznany przystanek w dzienniku: " + id);
+        return node;
+    }
+
+    private static Node findNode(int id, NetworkFile file, Map<Integer, Node> created){
+        if (file != null && id >= 0 && id < file.getStopCount()) return file.getStop(id);
+        return created.get(id);
+    }
+
+    private static Connection findConnection(Graph line, Node node1, Node node2){
+        for (Connection connection : line.getIncidentConnections(node1)) {
+            if (connection.getNode1() == node1 && connection.getNode2() == node2) return connection;
+        }
+        return null;
+    }
+
+    private static String readName(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static int rgb(Color color){
+        return color == null ? 0 : color.getRGB();
+    }
+
+    private static Color color(int rgb){
+        return rgb == 0 ? null : new Color(rgb, true);
+    }
+}
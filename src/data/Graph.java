@@ -33,12 +33,15 @@
 package data;
 
 import java.awt.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
 import java.util.List;
+import java.util.function.Consumer;
 
 
-public class Graph implements Serializable {
+public class Graph implements Network, Serializable {
 
     private static final long serialVersionUID = 1L;
 
@@ -46,34 +49,188 @@ public class Graph implements Serializable {
     private int number;
     /**Rodzaj linii (bus lub tramwaj)*/
     private TransportType transportType;
-    /**Zbiór przystanków linii*/
-    private Set<Node> nodes;
+    /**Lista przystanków linii*/
+    private List<Node> nodes;
+    /**Pozycje przystanków na liście - pozwalają usunąć przystanek bez przeszukiwania listy*/
+    private Map<Node, Integer> nodeIndex;
     /**Lista połączeń pomiędzy przystankami*/
     private List<Connection> connections;
+    /**Pozycje połączeń na liście - pozwalają usunąć połączenie bez przeszukiwania listy*/
+    private Map<Connection, Integer> connectionIndex;
+    /**Indeks sąsiedztwa - połączenia incydentne z każdym przystankiem*/
+    private Map<Node, List<Connection>> incidence;
+    /**Słuchacze zmian w grafie*/
+    private transient List<GraphListener> listeners;
+    /**Niemodyfikowalne kopie list przystanków i połączeń - tworzone przy pierwszym użyciu
+     * po zmianie grafu, null gdy nieaktualne*/
+    private transient List<Node> nodeSnapshot;
+    private transient List<Connection> connectionSnapshot;
+    /**Procedura wczytująca zawartość linii przy pierwszym użyciu (np. z pliku NetworkFile), null gdy linia jest wczytana.
+     * Zerowana dopiero po wczytaniu - wątek, który odczyta null, widzi całą wczytaną zawartość.*/
+    private transient volatile Consumer<Graph> loader;
+    /**Czy trwa wczytywanie (chronione monitorem grafu) - wywołania z procedury wczytującej nie wczytują ponownie*/
+    private transient boolean loading;
+    /**Rozkłady jazdy linii (np. osobno dla każdego kierunku), lista jest pusta gdy linia nie ma rozkładu*/
+    private List<Schedule> schedules;
 
     /**Konstruktor grafu reprezentującego pojedyńczą linię komunikacji*/
     public Graph(int number, TransportType transportType) {
         this.number = number;
         this.transportType = transportType;
-        this.nodes = new HashSet<>();
+        this.nodes = new ArrayList<>();
+        this.nodeIndex = new HashMap<>();
         this.connections = new ArrayList<>();
+        this.connectionIndex = new HashMap<>();
+        this.incidence = new HashMap<>();
+        this.schedules = new ArrayList<>(0);
+        this.listeners = new ArrayList<>(0);
+    }
+    /**Konstruktor linii, której przystanki, połączenia i rozkłady zostaną wczytane przez <code>loader</code>
+     * dopiero przy pierwszym odwołaniu do nich - numer i rodzaj transportu są dostępne od razu*/
+    Graph(int number, TransportType transportType, Consumer<Graph> loader) {
+        this(number, transportType);
+        this.loader = loader;
     }
     /**Konstruktor wykorzystywany przy tworzeniu grafu reprezentującego wszystkie linie komunikacji miejskiej*/
     public Graph(TransportType transportType) {
         this.transportType = transportType;
-        this.nodes = new HashSet<>();
+        this.nodes = new ArrayList<>();
+        this.nodeIndex = new HashMap<>();
         this.connections = new ArrayList<>();
+        this.connectionIndex = new HashMap<>();
+        this.incidence = new HashMap<>();
+        this.schedules = new ArrayList<>(0);
+        this.listeners = new ArrayList<>(0);
     }
     /**Metoda dodająca przystanek w postaci węzła do listy węzłów grafu*/
     public void addNode(Node node){
+        ensureLoaded();
+        if (nodeIndex.containsKey(node)) return;
+        nodeIndex.put(node, nodes.size());
         nodes.add(node);
+        nodeSnapshot = null;
+        node.attach(this);
+        for (GraphListener listener : listeners) {
+            listener.nodeAdded(this, node);
+        }
     }
-    /**Metoda usuwająca przystanek*/
+    /**Metoda usuwająca przystanek wraz ze wszystkimi połączeniami, które do niego prowadzą.
+     * Koszt operacji jest proporcjonalny do stopnia węzła, a nie do liczby połączeń w grafie.*/
     public void removeNode(Node node){
-        nodes.remove(node);
+        ensureLoaded();
+        boolean removed = detachNode(node);
+        List<Connection> incident = incidence.remove(node);
+        if (incident != null) {
+            for (Connection connection : incident) {
+                detachConnection(connection);
+                Node other = connection.getOtherNode(node);
+                if (other != node) {
+                    unlink(other, connection);
+                }
+                for (GraphListener listener : listeners) {
+                    listener.connectionRemoved(this, connection);
+                }
+            }
+        }
+        if (!removed) return;
+        node.detach(this);
+        for (GraphListener listener : listeners) {
+            listener.nodeRemoved(this, node);
+        }
+    }
+    /**Metoda usuwająca wszystkie przystanki i połączenia grafu*/
+    public void clear(){
+        ensureLoaded();
+        while (!nodes.isEmpty()) {
+            removeNode(nodes.get(nodes.size() - 1));
+        }
+        while (!connections.isEmpty()) {
+            removeConnection(connections.get(connections.size() - 1));
+        }
+    }
+    /**Metoda sprawdzająca czy przystanek należy do grafu*/
+    public boolean containsNode(Node node){
+        ensureLoaded();
+        return nodeIndex.containsKey(node);
+    }
+    /**Metoda zwracająca przystanki grafu do przeglądania (bez kopiowania, tylko do odczytu)*/
+    @Override
+    public Iterable<Node> nodes(){
+        ensureLoaded();
+        return Collections.unmodifiableList(nodes);
+    }
+    /**Metoda zwracająca połączenia grafu do przeglądania (bez kopiowania, tylko do odczytu)*/
+    @Override
+    public Iterable<Connection> connections(){
+        ensureLoaded();
+        return Collections.unmodifiableList(connections);
+    }
+    /**Metoda wykonująca operację dla każdego przystanku grafu (bez tworzenia kopii ani iteratora).
+     * Operacja nie może dodawać ani usuwać przystanków grafu.*/
+    @Override
+    public void forEachNode(Consumer<? super Node> action){
+        ensureLoaded();
+        for (int i = 0, n = nodes.size(); i < n; i++) {
+            action.accept(nodes.get(i));
+        }
+    }
+    /**Metoda wykonująca operację dla każdego połączenia grafu (bez tworzenia kopii ani iteratora).
+     * Operacja nie może dodawać ani usuwać połączeń grafu.*/
+    @Override
+    public void forEachConnection(Consumer<? super Connection> action){
+        ensureLoaded();
+        for (int i = 0, n = connections.size(); i < n; i++) {
+            action.accept(connections.get(i));
+        }
     }
-    /**Metoda zwracająca wszystkie przystanki w postaci tablicy*/
+    /**Metoda zwracająca liczbę przystanków grafu*/
+    @Override
+    public int getNodeCount(){
+        ensureLoaded();
+        return nodes.size();
+    }
+    /**Metoda zwracająca przystanek o podanym numerze (0 .. getNodeCount() - 1).
+     * Usunięcie przystanku zmienia numer ostatniego z nich.*/
+    public Node getNode(int index){
+        ensureLoaded();
+        return nodes.get(index);
+    }
+    /**Metoda zwracająca liczbę połączeń grafu*/
+    @Override
+    public int getConnectionCount(){
+        ensureLoaded();
+        return connections.size();
+    }
+    /**Metoda zwracająca połączenie o podanym numerze (0 .. getConnectionCount() - 1).
+     * Usunięcie połączenia zmienia numer ostatniego z nich.*/
+    public Connection getConnection(int index){
+        ensureLoaded();
+        return connections.get(index);
+    }
+    /**Metoda zwracająca niemodyfikowalną kopię listy przystanków. Kopia tworzona jest tylko
+     * po dodaniu lub usunięciu przystanku - kolejne wywołania zwracają ten sam obiekt.*/
+    @Override
+    public List<Node> getNodeList(){
+        ensureLoaded();
+        if (nodeSnapshot == null) {
+            nodeSnapshot = List.copyOf(nodes);
+        }
+        return nodeSnapshot;
+    }
+    /**Metoda zwracająca niemodyfikowalną kopię listy połączeń. Kopia tworzona jest tylko
+     * po dodaniu lub usunięciu połączenia - kolejne wywołania zwracają ten sam obiekt.*/
+    @Override
+    public List<Connection> getConnectionList(){
+        ensureLoaded();
+        if (connectionSnapshot == null) {
+            connectionSnapshot = List.copyOf(connections);
+        }
+        return connectionSnapshot;
+    }
+    /**Metoda zwracająca wszystkie przystanki w postaci nowej tablicy
+     * (do przeglądania lepiej użyć forEachNode lub getNodeList)*/
     public Node[] getNodes(){
+        ensureLoaded();
         Node [] array = new Node[0];
         return nodes.toArray(array);
     }
@@ -83,7 +240,6 @@ public class Graph implements Serializable {
      *     <li>Niebieski: Tramwaj</li>
      * </ul>*/
     public void addConnectionColor(Connection connection){
-        connections.add(connection);
         if (this.transportType.equals(TransportType.TRAM)){
             connection.setColor(Color.BLUE);
         }
@@ -93,31 +249,226 @@ public class Graph implements Serializable {
         else {
             connection.setColor(Color.BLACK);
         }
+        addConnection(connection);
     }
     /**Metoda dodająca połączenie między przystankami do listy połączeń grafu*/
     public void addConnection(Connection connection){
+        ensureLoaded();
+        if (connectionIndex.containsKey(connection)) return;
+        connectionIndex.put(connection, connections.size());
         connections.add(connection);
+        connectionSnapshot = null;
+        link(connection.getNode1(), connection);
+        if (connection.getNode2() != connection.getNode1()) {
+            link(connection.getNode2(), connection);
+        }
+        for (GraphListener listener : listeners) {
+            listener.connectionAdded(this, connection);
+        }
     }
     /**Metoda kolorująca wszystkie połączenia w grafie*/
     public void colorConnections(Color color){
+        ensureLoaded();
         for (Connection connection : connections) {
-            connection.setColor(color);
+            setConnectionColor(connection, color);
+        }
+    }
+    /**Metoda zmieniająca kolor połączenia i powiadamiająca o tym słuchaczy grafu*/
+    public void setConnectionColor(Connection connection, Color color){
+        Color oldColor = connection.getColor();
+        if (Objects.equals(color, oldColor)) return;
+        connection.setColor(color);
+        for (GraphListener listener : listeners) {
+            listener.connectionRecolored(this, connection, oldColor);
         }
     }
     /**Metoda usuwająca połączenie między przystankami z listy*/
     public void removeConnection(Connection connection){
-        connections.remove(connection);
+        ensureLoaded();
+        if (!detachConnection(connection)) return;
+        unlink(connection.getNode1(), connection);
+        unlink(connection.getNode2(), connection);
+        for (GraphListener listener : listeners) {
+            listener.connectionRemoved(this, connection);
+        }
+    }
+    /**Metoda sprawdzająca czy połączenie należy do grafu*/
+    public boolean containsConnection(Connection connection){
+        ensureLoaded();
+        return connectionIndex.containsKey(connection);
+    }
+    /**Metoda zwracająca niemodyfikowalną listę połączeń incydentnych z przystankiem*/
+    public List<Connection> getIncidentConnections(Node node){
+        ensureLoaded();
+        List<Connection> incident = incidence.get(node);
+        if (incident == null) return Collections.emptyList();
+        return Collections.unmodifiableList(incident);
+    }
+    /**Metoda zwracająca przystanki sąsiadujące z podanym przystankiem*/
+    public List<Node> getNeighbors(Node node){
+        ensureLoaded();
+        List<Connection> incident = incidence.get(node);
+        if (incident == null) return Collections.emptyList();
+        List<Node> neighbors = new ArrayList<>(incident.size());
+        for (Connection connection : incident) {
+            neighbors.add(connection.getOtherNode(node));
+        }
+        return neighbors;
+    }
+    /**Metoda zwracająca stopień przystanku, czyli liczbę połączeń, które do niego prowadzą*/
+    public int getDegree(Node node){
+        ensureLoaded();
+        List<Connection> incident = incidence.get(node);
+        return incident == null ? 0 : incident.size();
     }
     /**Metoda tworząca połączenie między przystankami*/
     public void createConnection(Node node1, Node node2){
         Connection connection = new Connection(node1, node2);
         this.addConnectionColor(connection);
     }
-    /**Metoda zwracająca wszystkie połączenia w postaci tablicy*/
+    /**Metoda zwracająca wszystkie połączenia w postaci nowej tablicy
+     * (do przeglądania lepiej użyć forEachConnection lub getConnectionList)*/
     public Connection[] getConnections(){
+        ensureLoaded();
         Connection [] array = new Connection[0];
         return connections.toArray(array);
     }
+    /**Metoda rejestrująca słuchacza zmian w grafie*/
+    public void addGraphListener(GraphListener listener){
+        listeners.add(listener);
+    }
+    /**Metoda wyrejestrowująca słuchacza zmian w grafie*/
+    public void removeGraphListener(GraphListener listener){
+        listeners.remove(listener);
+    }
+    /**Metoda powiadamiająca słuchaczy o zmianie nazwy przystanku*/
+    void fireNodeRenamed(Node node, String oldName){
+        for (GraphListener listener : listeners) {
+            listener.nodeRenamed(this, node, oldName);
+        }
+    }
+    /**Metoda powiadamiająca słuchaczy o przesunięciu przystanku*/
+    void fireNodeMoved(Node node, int oldX, int oldY){
+        for (GraphListener listener : listeners) {
+            listener.nodeMoved(this, node, oldX, oldY);
+        }
+    }
+    /**Metoda powiadamiająca słuchaczy o zmianie promienia przystanku*/
+    void fireNodeResized(Node node, int oldR){
+        for (GraphListener listener : listeners) {
+            listener.nodeResized(this, node, oldR);
+        }
+    }
+    /**Metoda powiadamiająca słuchaczy o zmianie koloru przystanku*/
+    void fireNodeRecolored(Node node, Color oldColor){
+        for (GraphListener listener : listeners) {
+            listener.nodeRecolored(this, node, oldColor);
+        }
+    }
+    /**Metoda sprawdzająca czy zawartość linii została już wczytana*/
+    public boolean isLoaded(){
+        return loader == null;
+    }
+    /**Metoda wczytująca zawartość linii, jeśli nie została jeszcze wczytana. Wczytanie nie powiadamia
+     * słuchaczy - wczytane przystanki i połączenia traktowane są jak istniejące od początku.
+     * Linia może być wczytywana jednocześnie z wątku zdarzeń (rysowanie) i wątku roboczego (zapis, eksport) -
+     * drugi wątek czeka na zakończenie wczytywania.*/
+    private void ensureLoaded(){
+        if (loader == null) return;
+        synchronized (this) {
+            if (loader == null || loading) return;
+            loading = true;
+            List<GraphListener> registered = listeners;
+            listeners = new ArrayList<>(0);
+            try {
+                loader.accept(this);
+            }
+            finally {
+                listeners = registered;
+                loading = false;
+                // nieudane wczytanie nie jest ponawiane
+                loader = null;
+            }
+        }
+    }
+    /**Metoda odtwarzająca pustą listę słuchaczy po deserializacji grafu*/
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        listeners = new ArrayList<>(0);
+    }
+    /**Metoda udostępniająca listę przystanków klasom pakietu bez kopiowania*/
+    List<Node> nodeList(){
+        ensureLoaded();
+        return nodes;
+    }
+    /**Metoda udostępniająca listę połączeń klasom pakietu bez kopiowania*/
+    List<Connection> connectionList(){
+        ensureLoaded();
+        return connections;
+    }
+    /**Metoda dopisująca połączenie do listy połączeń incydentnych z przystankiem*/
+    private void link(Node node, Connection connection){
+        incidence.computeIfAbsent(node, key -> new ArrayList<>(2)).add(connection);
+    }
+    /**Metoda usuwająca połączenie z listy połączeń incydentnych z przystankiem*/
+    private void unlink(Node node, Connection connection){
+        List<Connection> incident = incidence.get(node);
+        if (incident == null) return;
+        incident.remove(connection);
+        if (incident.isEmpty() && !nodeIndex.containsKey(node)) {
+            incidence.remove(node);
+        }
+    }
+    /**Metoda usuwająca przystanek z listy przystanków grafu w czasie stałym
+     * (na jego miejsce trafia ostatni element listy)*/
+    private boolean detachNode(Node node){
+        Integer position = nodeIndex.remove(node);
+        if (position == null) return false;
+        Node last = nodes.remove(nodes.size() - 1);
+        if (last != node) {
+            nodes.set(position, last);
+            nodeIndex.put(last, position);
+        }
+        nodeSnapshot = null;
+        return true;
+    }
+    /**Metoda usuwająca połączenie z listy połączeń grafu w czasie stałym
+     * (na jego miejsce trafia ostatni element listy)*/
+    private boolean detachConnection(Connection connection){
+        Integer position = connectionIndex.remove(connection);
+        if (position == null) return false;
+        Connection last = connections.remove(connections.size() - 1);
+        if (last != connection) {
+            connections.set(position, last);
+            connectionIndex.put(last, position);
+        }
+        connectionSnapshot = null;
+        return true;
+    }
+    /**Metoda zwracająca numer linii*/
+    public int getNumber() {
+        return number;
+    }
+    /**Metoda zwracająca niemodyfikowalną listę rozkładów jazdy linii*/
+    public List<Schedule> getSchedules() {
+        ensureLoaded();
+        return Collections.unmodifiableList(schedules);
+    }
+    /**Metoda dodająca rozkład jazdy linii (np. dla jednego z kierunków)*/
+    public void addSchedule(Schedule schedule) {
+        ensureLoaded();
+        schedules.add(schedule);
+    }
+    /**Metoda usuwająca rozkład jazdy linii*/
+    public void removeSchedule(Schedule schedule) {
+        ensureLoaded();
+        schedules.remove(schedule);
+    }
+    /**Metoda zwracająca niemodyfikowalną migawkę sieci w postaci tablic prymitywnych (CSR),
+     * z której mogą równolegle korzystać algorytmy analityczne i wyszukiwanie tras*/
+    public NetworkSnapshot snapshot(){
+        return NetworkSnapshot.of(Collections.singletonList(this));
+    }
     /**Metoda zwracająca rodzaj transportu linii*/
     public TransportType getTransportType() {
         return transportType;
@@ -130,12 +481,7 @@ public class Graph implements Serializable {
     }
     /**Metoda rysująca przystanki i linie, które zawiera graf linii komunikacji*/
     public void draw(Graphics g){
-        for(Connection connection : connections){
-            connection.draw((Graphics2D) g);
-        }
-        for(Node node : nodes){
-            node.draw((Graphics2D) g);
-        }
+        draw(g, 1.0);
     }
 
 }
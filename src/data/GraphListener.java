@@ -0,0 +1,63 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: GraphListener.java
+ *
+ *  Interfejs GraphListener pozwala obserwować zmiany
+ *  w grafie linii komunikacji miejskiej.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Słuchacz zmian w grafie linii. <br>
+ * Zdarzenia dotyczące przystanków (zmiana nazwy, położenia, promienia, koloru) są przekazywane słuchaczom wszystkich
+ * grafów, do których przystanek należy. Wszystkie metody mają puste implementacje domyślne,
+ * więc słuchacz definiuje tylko te, które go interesują.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.awt.Color;
+
+public interface GraphListener {
+
+    /**Metoda wywoływana po dodaniu przystanku do grafu*/
+    default void nodeAdded(Graph graph, Node node) {
+    }
+
+    /**Metoda wywoływana po usunięciu przystanku z grafu*/
+    default void nodeRemoved(Graph graph, Node node) {
+    }
+
+    /**Metoda wywoływana po zmianie nazwy przystanku należącego do grafu*/
+    default void nodeRenamed(Graph graph, Node node, String oldName) {
+    }
+
+    /**Metoda wywoływana po przesunięciu przystanku należącego do grafu*/
+    default void nodeMoved(Graph graph, Node node, int oldX, int oldY) {
+    }
+
+    /**Metoda wywoływana po zmianie promienia przystanku należącego do grafu*/
+    default void nodeResized(Graph graph, Node node, int oldR) {
+    }
+
+    /**Metoda wywoływana po zmianie koloru przystanku należącego do grafu*/
+    default void nodeRecolored(Graph graph, Node node, Color oldColor) {
+    }
+
+    /**Metoda wywoływana po dodaniu połączenia do grafu*/
+    default void connectionAdded(Graph graph, Connection connection) {
+    }
+
+    /**Metoda wywoływana po usunięciu połączenia z grafu (również wraz z przystankiem)*/
+    default void connectionRemoved(Graph graph, Connection connection) {
+    }
+
+    /**Metoda wywoływana po zmianie koloru połączenia metodami grafu*/
+    default void connectionRecolored(Graph graph, Connection connection, Color oldColor) {
+    }
+}
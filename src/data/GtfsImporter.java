@@ -0,0 +1,744 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: GtfsImporter.java
+ *
+ *  Klasa GtfsImporter tworzy linie komunikacji miejskiej na podstawie
+ *  danych rozkładowych w formacie GTFS (katalog lub archiwum zip).
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Import sieci komunikacji miejskiej z danych GTFS. <br>
+ * Odczytywane są pliki <code>stops.txt</code>, <code>routes.txt</code>, <code>trips.txt</code>
+ * i <code>stop_times.txt</code> z katalogu albo archiwum zip. Każda trasa GTFS (route) staje się
+ * jednym grafem linii z rodzajem transportu wynikającym z <code>route_type</code> (tramwaj, autobus,
+ * pozostałe jako <code>BOTH</code>); numerem linii jest <code>route_short_name</code>, a trasy
+ * o nienumerycznych nazwach otrzymują kolejne numery większe od największego numeru w danych.
+ * Połączenia grafu to pary kolejnych przystanków kursów trasy. Przystanek GTFS (stop_id) jest
+ * jednym obiektem <code>Node</code> we wszystkich liniach, a jego współrzędne geograficzne
+ * rzutowane są (odwzorowanie równoodległościowe) na prostokąt o rozmiarze <code>setExtent</code>. <br>
+ * Plik <code>stop_times.txt</code> (zwykle miliony wierszy) czytany jest strumieniowo w blokach
+ * pełnych rekordów; bloki analizowane są równolegle przez pulę wątków, a ich wyniki łączone
+ * w kolejności odczytu. W pamięci znajduje się najwyżej kilka bloków na wątek, więc zużycie
+ * pamięci nie zależy od wielkości pliku. Zgodnie z praktyką GTFS wiersze jednego kursu powinny
+ * występować w pliku kolejno (w dowolnym porządku <code>stop_sequence</code>). <br>
+ * Opcjonalnie (<code>setTimetables</code>) kursy o tej samej sekwencji przystanków łączone są
+ * w rozkłady jazdy linii - ich rozmiar jest wtedy proporcjonalny do liczby kursów.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.io.CharArrayReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import util.CsvReader;
+import util.ProgressListener;
+
+public final class GtfsImporter {
+
+    /**Domyślny bok kwadratu (we współrzędnych panelu), na który rzutowane są przystanki*/
+    public static final int DEFAULT_EXTENT = 4000;
+    /**Odstęp rzutowanych przystanków od brzegów obszaru*/
+    private static final int MARGIN = 50;
+    /**Przybliżona liczba znaków bloku pliku stop_times.txt analizowanego przez jeden wątek*/
+    private static final int BLOCK_CHARS = 1 << 20;
+
+    private static final String STOPS = "stops.txt";
+    private static final String ROUTES = "routes.txt";
+    private static final String TRIPS = "trips.txt";
+    private static final String STOP_TIMES = "stop_times.txt";
+
+    private int width = DEFAULT_EXTENT;
+    private int height = DEFAULT_EXTENT;
+    private boolean timetables;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**Metoda ustawiająca rozmiar obszaru, na który rzutowane są przystanki*/
+    public void setExtent(int width, int height){
+        if (width <= 2 * MARGIN || height <= 2 * MARGIN) {
+            throw new IllegalArgumentException("Obszar musi mieć wymiary większe niż " + 2 * MARGIN);
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    /**Metoda określająca czy z kursów mają zostać utworzone rozkłady jazdy linii*/
+    public void setTimetables(boolean timetables){
+        this.timetables = timetables;
+    }
+
+    /**Metoda ustawiająca liczbę wątków analizujących plik stop_times.txt*/
+    public void setThreads(int threads){
+        if (threads <= 0) throw new IllegalArgumentException("Liczba wątków musi być dodatnia");
+        this.threads = threads;
+    }
+
+    /**Metoda importująca dane GTFS z katalogu lub archiwum zip i zwracająca utworzone linie
+     * (w kolejności tras w pliku routes.txt, z pominięciem tras bez kursów)*/
+    public List<Graph> importFeed(Path source, ProgressListener listener) throws IOException {
+        try (Feed feed = Feed.open(source)) {
+            Stops stops = readStops(feed);
+            Routes routes = readRoutes(feed);
+            Trips trips = readTrips(feed, routes);
+            return readStopTimes(feed, stops, routes, trips, listener);
+        }
+    }
+
+    private Stops readStops(Feed feed) throws IOException {
+        Stops stops = new Stops();
+        try (CsvReader csv = feed.csv(STOPS)) {
+            Map<String, Integer> columns = csv.readHeader();
+            int id = column(columns, "stop_id", STOPS);
+            int name = column(columns, "stop_name", STOPS);
+            int lat = columns.getOrDefault("stop_lat", -1);
+            int lon = columns.getOrDefault("stop_lon", -1);
+            while (csv.next()) {
+                try {
+                    stops.add(csv.get(id), csv.get(name), csv.getDouble(lat, Double.NaN), csv.getDouble(lon, Double.NaN));
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("Nieprawidłowe współrzędne przystanku " + csv.get(id) + " w pliku " + STOPS);
+                }
+            }
+        }
+        stops.project(width, height);
+        return stops;
+    }
+
+    private Routes readRoutes(Feed feed) throws IOException {
+        Routes routes = new Routes();
+        try (CsvReader csv = feed.csv(ROUTES)) {
+            Map<String, Integer> columns = csv.readHeader();
+            int id = column(columns, "route_id", ROUTES);
+            int type = column(columns, "route_type", ROUTES);
+            int shortName = columns.getOrDefault("route_short_name", -1);
+            while (csv.next()) {
+                try {
+                    routes.add(csv.get(id), csv.get(shortName).trim(), csv.getInt(type, 3));
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("Nieprawidłowy rodzaj trasy " + csv.get(id) + " w pliku " + ROUTES);
+                }
+            }
+        }
+        routes.assignNumbers();
+        return routes;
+    }
+
+    private Trips readTrips(Feed feed, Routes routes) throws IOException {
+        Trips trips = new Trips();
+        try (CsvReader csv = feed.csv(TRIPS)) {
+            Map<String, Integer> columns = csv.readHeader();
+            int id = column(columns, "trip_id", TRIPS);
+            int route = column(columns, "route_id", TRIPS);
+            while (csv.next()) {
+                Integer routeIndex = routes.ids.get(csv.get(route));
+                if (routeIndex != null) trips.add(csv.get(id), routeIndex);
+            }
+        }
+        return trips;
+    }
+
+    private List<Graph> readStopTimes(Feed feed, Stops stops, Routes routes, Trips trips,
+                                      ProgressListener listener) throws IOException {
+        long total = feed.size(STOP_TIMES);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "gtfs-stop-times");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+        Assembler assembler = new Assembler(stops, routes, trips);
+        try (CountingInputStream in = new CountingInputStream(feed.open(STOP_TIMES));
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            RecordBlocks blocks = new RecordBlocks(reader);
+            char[] header = blocks.next(1);
+            if (header == null) return Collections.emptyList();
+            Map<String, Integer> columns = new CsvReader(new CharArrayReader(header)).readHeader();
+            BlockParser parser = new BlockParser(stops.ids, trips.ids,
+                    column(columns, "trip_id", STOP_TIMES),
+                    column(columns, "stop_id", STOP_TIMES),
+                    column(columns, "stop_sequence", STOP_TIMES),
+                    timetables ? column(columns, "arrival_time", STOP_TIMES) : -1,
+                    timetables ? column(columns, "departure_time", STOP_TIMES) : -1);
+
+            char[] block;
+            while ((block = blocks.next(BLOCK_CHARS)) != null) {
+                if (listener.isCancelled()) {
+                    throw new CancellationException("Przerwano import danych GTFS");
+                }
+                char[] data = block;
+                pending.add(pool.submit(() -> parser.parse(data)));
+                // ograniczenie liczby bloków w pamięci - wyniki łączone są w kolejności odczytu
+                if (pending.size() >= 2 * threads) {
+                    assembler.add(await(pending.poll()));
+                    listener.progress(in.getCount(), total);
+                }
+            }
+            while (!pending.isEmpty()) {
+                assembler.add(await(pending.poll()));
+                listener.progress(in.getCount(), total);
+            }
+            return assembler.finish();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Block await(Future<Block> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Przerwano import danych GTFS");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static int column(Map<String, Integer> columns, String name, String file) throws IOException {
+        Integer index = columns.get(name);
+        if (index == null) throw new IOException("Brak kolumny " + name + " w pliku " + file);
+        return index;
+    }
+
+    /**Rodzaj transportu odpowiadający typowi trasy GTFS (również rozszerzonym typom 100-1700)*/
+    private static TransportType transportType(int routeType){
+        if (routeType == 0 || routeType >= 900 && routeType < 1000) return TransportType.TRAM;
+        if (routeType == 3 || routeType == 11 || routeType >= 700 && routeType < 900) return TransportType.BUS;
+        return TransportType.BOTH;
+    }
+
+    /**Przystanki GTFS: identyfikatory, nazwy, współrzędne i (tworzone przy pierwszym użyciu) obiekty Node*/
+    private static final class Stops {
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+        double[] lat = new double[1024];
+        double[] lon = new double[1024];
+        int[] x;
+        int[] y;
+        Node[] nodes;
+
+        void add(String id, String name, double latitude, double longitude){
+            if (ids.putIfAbsent(id, names.size()) != null) return;
+            int index = names.size();
+            if (index == lat.length) {
+                lat = Arrays.copyOf(lat, index * 2);
+                lon = Arrays.copyOf(lon, index * 2);
+            }
+            lat[index] = latitude;
+            lon[index] = longitude;
+            names.add(name);
+        }
+
+        /**Metoda rzutująca współrzędne geograficzne na prostokąt o podanych wymiarach
+         * (y rośnie na południe, skala jednakowa w obu kierunkach)*/
+        void project(int width, int height){
+            int n = names.size();
+            double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+            double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (Double.isNaN(lat[i]) || Double.isNaN(lon[i])) continue;
+                minLat = Math.min(minLat, lat[i]);
+                maxLat = Math.max(maxLat, lat[i]);
+                minLon = Math.min(minLon, lon[i]);
+                maxLon = Math.max(maxLon, lon[i]);
+            }
+            double cos = Math.cos(Math.toRadians((minLat + maxLat) / 2));
+            double spanX = Math.max((maxLon - minLon) * cos, 1e-9);
+            double spanY = Math.max(maxLat - minLat, 1e-9);
+            double scale = Math.min((width - 2 * MARGIN) / spanX, (height - 2 * MARGIN) / spanY);
+            x = new int[n];
+            y = new int[n];
+            for (int i = 0; i < n; i++) {
+                if (Double.isNaN(lat[i]) || Double.isNaN(lon[i])) {
+                    x[i] = MARGIN;
+                    y[i] = MARGIN;
+                    continue;
+                }
+                x[i] = MARGIN + (int) Math.round((lon[i] - minLon) * cos * scale);
+                y[i] = MARGIN + (int) Math.round((maxLat - lat[i]) * scale);
+            }
+            lat = null;
+            lon = null;
+            nodes = new Node[n];
+        }
+
+        Node node(int index){
+            Node node = nodes[index];
+            if (node == null) {
+                node = new Node(x[index], y[index], names.get(index));
+                nodes[index] = node;
+            }
+            return node;
+        }
+    }
+
+    /**Trasy GTFS: identyfikatory, numery linii i rodzaje transportu*/
+    private static final class Routes {
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+        final List<TransportType> types = new ArrayList<>();
+        int[] numbers;
+
+        void add(String id, String shortName, int routeType){
+            if (ids.putIfAbsent(id, names.size()) != null) return;
+            names.add(shortName);
+            types.add(transportType(routeType));
+        }
+
+        /**Metoda nadająca numery linii - liczbowa nazwa trasy jest numerem, pozostałe trasy
+         * otrzymują kolejne numery większe od największego z nich*/
+        void assignNumbers(){
+            numbers = new int[names.size()];
+            int max = 0;
+            for (int i = 0; i < numbers.length; i++) {
+                String name = names.get(i);
+                numbers[i] = -1;
+                if (!name.isEmpty() && name.length() <= 9 && name.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                    numbers[i] = Integer.parseInt(name);
+                    max = Math.max(max, numbers[i]);
+                }
+            }
+            for (int i = 0; i < numbers.length; i++) {
+                if (numbers[i] < 0) numbers[i] = ++max;
+            }
+        }
+    }
+
+    /**Kursy GTFS: identyfikatory i numery tras*/
+    private static final class Trips {
+        final Map<String, Integer> ids = new HashMap<>();
+        int[] routes = new int[1024];
+
+        void add(String id, int route){
+            int index = ids.size();
+            if (ids.putIfAbsent(id, index) != null) return;
+            if (index == routes.length) routes = Arrays.copyOf(routes, index * 2);
+            routes[index] = route;
+        }
+    }
+
+    /**Wiersze bloku pliku stop_times.txt w postaci tablic liczb (kurs, kolejność, przystanek, czasy)*/
+    private static final class Block {
+        int size;
+        int[] trip = new int[4096];
+        int[] sequence = new int[4096];
+        int[] stop = new int[4096];
+        int[] arrival = new int[4096];
+        int[] departure = new int[4096];
+
+        void add(int tripIndex, int sequenceNumber, int stopIndex, int arrivalTime, int departureTime){
+            if (size == trip.length) {
+                trip = Arrays.copyOf(trip, size * 2);
+                sequence = Arrays.copyOf(sequence, size * 2);
+                stop = Arrays.copyOf(stop, size * 2);
+                arrival = Arrays.copyOf(arrival, size * 2);
+                departure = Arrays.copyOf(departure, size * 2);
+            }
+            trip[size] = tripIndex;
+            sequence[size] = sequenceNumber;
+            stop[size] = stopIndex;
+            arrival[size] = arrivalTime;
+            departure[size] = departureTime;
+            size++;
+        }
+    }
+
+    /**Analiza bloku pliku stop_times.txt - wykonywana równolegle, korzysta tylko z niezmiennych map identyfikatorów*/
+    private static final class BlockParser {
+        private final Map<String, Integer> stopIds;
+        private final Map<String, Integer> tripIds;
+        private final int tripColumn;
+        private final int stopColumn;
+        private final int sequenceColumn;
+        private final int arrivalColumn;
+        private final int departureColumn;
+
+        BlockParser(Map<String, Integer> stopIds, Map<String, Integer> tripIds, int tripColumn, int stopColumn,
+                    int sequenceColumn, int arrivalColumn, int departureColumn) {
+            this.stopIds = stopIds;
+            this.tripIds = tripIds;
+            this.tripColumn = tripColumn;
+            this.stopColumn = stopColumn;
+            this.sequenceColumn = sequenceColumn;
+            this.arrivalColumn = arrivalColumn;
+            this.departureColumn = departureColumn;
+        }
+
+        Block parse(char[] data) throws IOException {
+            Block block = new Block();
+            CsvReader csv = new CsvReader(new CharArrayReader(data));
+            // kolejne wiersze dotyczą zwykle tego samego kursu - identyfikator nie jest wtedy ponownie wyszukiwany
+            String lastTrip = null;
+            int lastTripIndex = -1;
+            try {
+                while (csv.next()) {
+                    if (lastTrip == null || !csv.fieldEquals(tripColumn, lastTrip)) {
+                        lastTrip = csv.get(tripColumn);
+                        Integer index = tripIds.get(lastTrip);
+                        lastTripIndex = index == null ? -1 : index;
+                    }
+                    if (lastTripIndex < 0) continue;
+                    Integer stop = stopIds.get(csv.get(stopColumn));
+                    if (stop == null) continue;
+                    block.add(lastTripIndex, csv.getInt(sequenceColumn, 0), stop,
+                              csv.getTime(arrivalColumn, -1), csv.getTime(departureColumn, -1));
+                }
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Błąd w pliku " + STOP_TIMES + " (kurs " + lastTrip + "): " + e.getMessage());
+            }
+            return block;
+        }
+    }
+
+    /**Łączenie wierszy kolejnych kursów w grafy linii - wykonywane w jednym wątku, w kolejności pliku*/
+    private final class Assembler {
+        private final Stops stops;
+        private final Routes routes;
+        private final Trips trips;
+        private final Line[] lines;
+        /**Kursy już zakończone - ponowne wystąpienie kursu oznacza, że jego wiersze nie są w pliku kolejno*/
+        private final BitSet finished = new BitSet();
+        private int current = -1;
+        private int size;
+        private int[] sequence = new int[64];
+        private int[] stop = new int[64];
+        private int[] arrival = new int[64];
+        private int[] departure = new int[64];
+
+        Assembler(Stops stops, Routes routes, Trips trips) {
+            this.stops = stops;
+            this.routes = routes;
+            this.trips = trips;
+            this.lines = new Line[routes.names.size()];
+        }
+
+        void add(Block block){
+            for (int i = 0; i < block.size; i++) {
+                if (block.trip[i] != current) {
+                    endTrip();
+                    current = block.trip[i];
+                }
+                if (size == stop.length) {
+                    sequence = Arrays.copyOf(sequence, size * 2);
+                    stop = Arrays.copyOf(stop, size * 2);
+                    arrival = Arrays.copyOf(arrival, size * 2);
+                    departure = Arrays.copyOf(departure, size * 2);
+                }
+                sequence[size] = block.sequence[i];
+                stop[size] = block.stop[i];
+                arrival[size] = block.arrival[i];
+                departure[size] = block.departure[i];
+                size++;
+            }
+        }
+
+        List<Graph> finish(){
+            endTrip();
+            List<Graph> result = new ArrayList<>();
+            for (Line line : lines) {
+                if (line != null) result.add(line.graph);
+            }
+            return result;
+        }
+
+        private void endTrip(){
+            if (size == 0) return;
+            boolean complete = !finished.get(current);
+            finished.set(current);
+            sortBySequence();
+            int route = trips.routes[current];
+            Line line = lines[route];
+            if (line == null) {
+                line = new Line(new Graph(routes.numbers[route], routes.types.get(route)));
+                lines[route] = line;
+            }
+            Node previous = null;
+            for (int i = 0; i < size; i++) {
+                Node node = stops.node(stop[i]);
+                line.graph.addNode(node);
+                if (previous != null && previous != node) {
+                    int a = Math.min(stop[i - 1], stop[i]);
+                    int b = Math.max(stop[i - 1], stop[i]);
+                    if (line.edges.add(((long) a << 32) | b)) {
+                        line.graph.createConnection(stops.node(stop[i - 1]), node);
+                    }
+                }
+                previous = node;
+            }
+            if (timetables && complete && size >= 2) addTrip(line);
+            size = 0;
+        }
+
+        /**Metoda dodająca kurs do rozkładu linii o tej samej sekwencji przystanków
+         * (kursy bez czasów lub z malejącymi czasami są pomijane)*/
+        private void addTrip(Line line){
+            int[] arrivals = new int[size];
+            int[] departures = new int[size];
+            for (int i = 0; i < size; i++) {
+                arrivals[i] = arrival[i] >= 0 ? arrival[i] : departure[i];
+                departures[i] = departure[i] >= 0 ? departure[i] : arrival[i];
+                if (arrivals[i] < 0) return;
+            }
+            Pattern pattern = new Pattern(Arrays.copyOf(stop, size));
+            Schedule schedule = line.schedules.get(pattern);
+            if (schedule == null) {
+                List<Node> nodes = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) nodes.add(stops.node(stop[i]));
+                schedule = new Schedule(nodes);
+                line.schedules.put(pattern, schedule);
+                line.graph.addSchedule(schedule);
+            }
+            try {
+                schedule.addTrip(arrivals, departures);
+            }
+            catch (IllegalArgumentException e) {
+                // niespójne czasy kursu - kurs nie trafia do rozkładu
+            }
+        }
+
+        /**Sortowanie przez wstawianie - wiersze kursu są zwykle już uporządkowane*/
+        private void sortBySequence(){
+            for (int i = 1; i < size; i++) {
+                int s = sequence[i];
+                if (s >= sequence[i - 1]) continue;
+                int p = stop[i], a = arrival[i], d = departure[i];
+                int j = i - 1;
+                while (j >= 0 && sequence[j] > s) {
+                    sequence[j + 1] = sequence[j];
+                    stop[j + 1] = stop[j];
+                    arrival[j + 1] = arrival[j];
+                    departure[j + 1] = departure[j];
+                    j--;
+                }
+                sequence[j + 1] = s;
+                stop[j + 1] = p;
+                arrival[j + 1] = a;
+                departure[j + 1] = d;
+            }
+        }
+    }
+
+    /**Tworzona linia: graf, dodane już połączenia (pary przystanków) i rozkłady według sekwencji przystanków*/
+    private static final class Line {
+        final Graph graph;
+        final Set<Long> edges = new HashSet<>();
+        final Map<Pattern, Schedule> schedules = new HashMap<>();
+
+        Line(Graph graph) {
+            this.graph = graph;
+        }
+    }
+
+    /**Sekwencja przystanków kursu - klucz rozkładu*/
+    private static final class Pattern {
+        final int[] stops;
+        final int hash;
+
+        Pattern(int[] stops) {
+            this.stops = stops;
+            this.hash = Arrays.hashCode(stops);
+        }
+
+        @Override
+        public boolean equals(Object other){
+            return other instanceof Pattern && Arrays.equals(stops, ((Pattern) other).stops);
+        }
+
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+    }
+
+    /**Podział strumienia znaków na bloki zawierające całe rekordy CSV (z uwzględnieniem pól w cudzysłowie)*/
+    private static final class RecordBlocks {
+        private final Reader in;
+        private char[] data = new char[BLOCK_CHARS + (BLOCK_CHARS >> 2)];
+        private int length;
+        private int scanned;
+        private boolean quoted;
+        private boolean eof;
+
+        RecordBlocks(Reader in) {
+            this.in = in;
+        }
+
+        /**Metoda zwracająca kolejny blok - co najmniej <code>minChars</code> znaków (o ile plik się nie kończy)
+         * zakończonych końcem rekordu - lub null na końcu pliku*/
+        char[] next(int minChars) throws IOException {
+            while (true) {
+                for (; scanned < length; scanned++) {
+                    char c = data[scanned];
+                    if (c == '"') quoted = !quoted;
+                    else if (c == '\n' && !quoted && scanned + 1 >= minChars) return cut(scanned + 1);
+                }
+                if (eof) return length == 0 ? null : cut(length);
+                if (length == data.length) data = Arrays.copyOf(data, data.length * 2);
+                int n = in.read(data, length, data.length - length);
+                if (n < 0) eof = true;
+                else length += n;
+            }
+        }
+
+        private char[] cut(int end){
+            char[] block = Arrays.copyOf(data, end);
+            System.arraycopy(data, end, data, 0, length - end);
+            length -= end;
+            scanned = 0;
+            quoted = false;
+            return block;
+        }
+    }
+
+    /**Strumień zliczający odczytane bajty - do zgłaszania postępu*/
+    private static final class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount(){
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    /**Źródło danych GTFS - katalog albo archiwum zip (pliki mogą leżeć w podkatalogu archiwum)*/
+    private abstract static class Feed implements AutoCloseable {
+
+        static Feed open(Path source) throws IOException {
+            if (Files.isDirectory(source)) return new DirectoryFeed(source);
+            if (Files.isRegularFile(source)) return new ZipFeed(source);
+            throw new IOException("Nie odnaleziono danych GTFS: " + source);
+        }
+
+        abstract InputStream open(String name) throws IOException;
+
+        /**Rozmiar pliku w bajtach lub -1, gdy nie jest znany*/
+        abstract long size(String name) throws IOException;
+
+        CsvReader csv(String name) throws IOException {
+            return new CsvReader(new InputStreamReader(open(name), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class DirectoryFeed extends Feed {
+        private final Path directory;
+
+        DirectoryFeed(Path directory) {
+            this.directory = directory;
+        }
+
+        private Path file(String name) throws IOException {
+            Path file = directory.resolve(name);
+            if (!Files.isRegularFile(file)) throw new IOException("Brak pliku " + name + " w katalogu " + directory);
+            return file;
+        }
+
+        @Override
+        InputStream open(String name) throws IOException {
+            return Files.newInputStream(file(name));
+        }
+
+        @Override
+        long size(String name) throws IOException {
+            return Files.size(file(name));
+        }
+    }
+
+    private static final class ZipFeed extends Feed {
+        private final Path path;
+        private final ZipFile zip;
+        private final Map<String, ZipEntry> entries = new HashMap<>();
+
+        ZipFeed(Path path) throws IOException {
+            this.path = path;
+            this.zip = new ZipFile(path.toFile());
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                ZipEntry entry = e.nextElement();
+                if (entry.isDirectory()) continue;
+                String name = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+                entries.putIfAbsent(name, entry);
+            }
+        }
+
+        private ZipEntry entry(String name) throws IOException {
+            ZipEntry entry = entries.get(name);
+            if (entry == null) throw new IOException("Brak pliku " + name + " w archiwum " + path);
+            return entry;
+        }
+
+        @Override
+        InputStream open(String name) throws IOException {
+            return zip.getInputStream(entry(name));
+        }
+
+        @Override
+        long size(String name) throws IOException {
+            return entry(name).getSize();
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Network.java
+ *
+ *  Interfejs Network opisuje sieć przystanków i połączeń wyświetlaną
+ *  i edytowaną w panelu - pojedynczą linię albo widok wszystkich linii.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Sieć przystanków i połączeń, którą można przeglądać, rysować i edytować. <br>
+ * Implementowana przez <code>Graph</code> (pojedyncza linia) oraz <code>CompositeNetwork</code>
+ * (widok wszystkich linii bez kopiowania ich zawartości). Metody rysujące są wspólne dla obu
+ * implementacji i korzystają wyłącznie z iteracji po przystankach i połączeniach. <br>
+ * Do przeglądania sieci służą metody <code>forEachNode</code> i <code>forEachConnection</code>,
+ * które nie tworzą kopii ani iteratorów. Metody <code>getNodeList</code> i <code>getConnectionList</code>
+ * zwracają niemodyfikowalne kopie, odtwarzane dopiero po zmianie zawartości sieci.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public interface Network {
+
+    /**Skala widoku, poniżej której nie są wypisywane nazwy przystanków*/
+    double LABEL_MIN_SCALE = 0.5;
+    /**Skala widoku, poniżej której bliskie przystanki rysowane są jako skupiska*/
+    double CLUSTER_MAX_SCALE = 0.25;
+    /**Bok komórki grupującej przystanki w skupiska (w pikselach ekranu)*/
+    int CLUSTER_CELL = 24;
+
+    /**Metoda zwracająca przystanki sieci do przeglądania (bez kopiowania, tylko do odczytu)*/
+    Iterable<Node> nodes();
+    /**Metoda zwracająca połączenia sieci do przeglądania (bez kopiowania, tylko do odczytu)*/
+    Iterable<Connection> connections();
+    /**Metoda wykonująca operację dla każdego przystanku sieci (bez tworzenia kopii)*/
+    void forEachNode(Consumer<? super Node> action);
+    /**Metoda wykonująca operację dla każdego połączenia sieci (bez tworzenia kopii)*/
+    void forEachConnection(Consumer<? super Connection> action);
+    /**Metoda zwracająca liczbę przystanków sieci*/
+    int getNodeCount();
+    /**Metoda zwracająca liczbę połączeń sieci*/
+    int getConnectionCount();
+    /**Metoda zwracająca niemodyfikowalną kopię listy przystanków (ta sama do czasu zmiany sieci)*/
+    List<Node> getNodeList();
+    /**Metoda zwracająca niemodyfikowalną kopię listy połączeń (ta sama do czasu zmiany sieci)*/
+    List<Connection> getConnectionList();
+    /**Metoda zwracająca wszystkie przystanki w postaci nowej tablicy*/
+    Node[] getNodes();
+    /**Metoda zwracająca wszystkie połączenia w postaci nowej tablicy*/
+    Connection[] getConnections();
+    /**Metoda sprawdzająca czy przystanek należy do sieci*/
+    boolean containsNode(Node node);
+    /**Metoda sprawdzająca czy połączenie należy do sieci*/
+    boolean containsConnection(Connection connection);
+    /**Metoda zwracająca niemodyfikowalną listę połączeń incydentnych z przystankiem*/
+    List<Connection> getIncidentConnections(Node node);
+
+    /**Metoda dodająca przystanek do sieci*/
+    void addNode(Node node);
+    /**Metoda usuwająca przystanek wraz ze wszystkimi połączeniami, które do niego prowadzą*/
+    void removeNode(Node node);
+    /**Metoda tworząca połączenie między przystankami*/
+    void createConnection(Node node1, Node node2);
+    /**Metoda usuwająca połączenie między przystankami*/
+    void removeConnection(Connection connection);
+
+    /**Metoda rejestrująca słuchacza zmian w sieci*/
+    void addGraphListener(GraphListener listener);
+    /**Metoda wyrejestrowująca słuchacza zmian w sieci*/
+    void removeGraphListener(GraphListener listener);
+
+    /**Metoda rysująca sieć w podanej skali widoku - poniżej LABEL_MIN_SCALE nazwy przystanków
+     * nie są wypisywane, a poniżej CLUSTER_MAX_SCALE bliskie przystanki rysowane są jako jedno skupisko*/
+    default void draw(Graphics g, double scale){
+        drawExcept(g, Collections.emptySet(), scale);
+    }
+
+    /**Metoda rysująca sieć bez podanych przystanków i połączeń, które do nich prowadzą
+     * (np. przystanków przeciąganych myszką, rysowanych osobno metodą drawOnly).
+     * Rysowane są tylko elementy przecinające obszar przycinania (clip) kontekstu graficznego.*/
+    default void drawExcept(Graphics g, Set<Node> excluded, double scale){
+        Rectangle clip = g.getClipBounds();
+        forEachConnection(connection -> {
+            if (clip != null && !clip.intersects(connection.getBounds())) return;
+            if (excluded.isEmpty()
+                    || !excluded.contains(connection.getNode1()) && !excluded.contains(connection.getNode2())) {
+                connection.draw((Graphics2D) g);
+            }
+        });
+        if (scale < CLUSTER_MAX_SCALE) {
+            drawClusters((Graphics2D) g, excluded, scale, clip);
+            return;
+        }
+        boolean labels = scale >= LABEL_MIN_SCALE;
+        FontMetrics metrics = labels ? g.getFontMetrics() : null;
+        forEachNode(node -> {
+            if (clip != null && !clip.intersects(node.getBounds(metrics))) return;
+            if (!excluded.contains(node)) node.draw((Graphics2D) g, labels);
+        });
+    }
+
+    /**Metoda rysująca wyłącznie podane przystanki i połączenia, które do nich prowadzą*/
+    default void drawOnly(Graphics g, Set<Node> included, double scale){
+        Set<Connection> drawn = new HashSet<>();
+        for (Node node : included) {
+            for (Connection connection : getIncidentConnections(node)) {
+                if (drawn.add(connection)) connection.draw((Graphics2D) g);
+            }
+        }
+        for (Node node : included) {
+            if (containsNode(node)) node.draw((Graphics2D) g, scale >= LABEL_MIN_SCALE);
+        }
+    }
+
+    /**Metoda rysująca przystanki zgrupowane w skupiska - jedno koło na każdą komórkę siatki
+     * o boku CLUSTER_CELL pikseli ekranu, w środku ciężkości zgrupowanych przystanków*/
+    private void drawClusters(Graphics2D g, Set<Node> excluded, double scale, Rectangle clip){
+        for (long[] cluster : Clusters.group(this, excluded, scale).values()) {
+            Ellipse2D circle = Clusters.circle(cluster, scale);
+            if (clip != null && !circle.intersects(clip)) continue;
+            Clusters.draw(g, circle);
+        }
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: NetworkFile.java
+ *
+ *  Klasa NetworkFile zapisuje linie komunikacji miejskiej do pliku
+ *  binarnego i odczytuje je z niego bez wczytywania całego pliku.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Binarny format pliku sieci komunikacji miejskiej. <br>
+ * Plik składa się z nagłówka (znacznik formatu, wersja, liczności i położenia sekcji),
+ * tablicy napisów (nazwy przystanków zapisane raz, w UTF-8), tablicy przystanków o stałej
+ * długości rekordu, spisu linii o stałej długości rekordu oraz danych kolejnych linii
+ * (numery przystanków, połączenia o stałej długości rekordu i rozkłady jazdy). Przystanek
+ * należący do kilku linii zapisany jest raz i po odczycie jest tym samym obiektem <code>Node</code>. <br>
+ * Odczyt odbywa się przez <code>MappedByteBuffer</code> - otwarcie pliku sprawdza jedynie nagłówek
+ * i spis linii, a przystanki, połączenia i rozkłady linii wczytywane są dopiero przy pierwszym
+ * odwołaniu do jej grafu. Wszystkie liczby zapisane są w kolejności bajtów big-endian.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+
+import util.Histogram;
+import util.Metrics;
+import util.PerformanceEvents;
+import util.ProgressListener;
+
+public final class NetworkFile {
+
+    /**Znacznik formatu - bajty "PTGF"*/
+    public static final int MAGIC = 0x50544746;
+    /**Wersja formatu zapisywana przez tę klasę*/
+    public static final int VERSION = 1;
+
+    /**Długości nagłówka i rekordów o stałej długości (w bajtach)*/
+    private static final int HEADER_SIZE = 48;
+    private static final int STOP_RECORD = 20;
+    private static final int LINE_RECORD = 24;
+    private static final int CONNECTION_RECORD = 12;
+
+    /**Zapisany kolor lub nazwa oznaczające brak wartości*/
+    private static final int NO_COLOR = 0;
+    private static final int NO_STRING = -1;
+
+    /**Pomiary zapisu pliku i wczytywania zawartości linii (zob. <code>Metrics</code>)*/
+    private static final Histogram saveTime = Metrics.histogram(Metrics.SAVE);
+    private static final Histogram lineLoadTime = Metrics.histogram(Metrics.LINE_LOAD);
+
+    /**Pliki otwarte metodą <code>open</code>, według ścieżki - przed zastąpieniem pliku nowym zapisem
+     * ich zawartość jest wczytywana, a odwzorowanie zwalniane (zob. <code>release</code>)*/
+    private static final Map<Path, Set<NetworkFile>> openFiles = new HashMap<>();
+
+    /**Odwzorowanie pliku w pamięci (null po zwolnieniu - cała zawartość jest już wczytana)*/
+    private MappedByteBuffer buffer;
+    private final int stringCount;
+    private final int stopCount;
+    private final int lineCount;
+    private final int stringTable;
+    private final int stopTable;
+    private final int lineTable;
+    /**Napisy i przystanki odczytane dotychczas z pliku (null - jeszcze nie odczytane)*/
+    private final String[] strings;
+    private final Node[] stops;
+    private final List<Graph> lines;
+
+    private NetworkFile(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Plik nie zawiera sieci komunikacji miejskiej");
+        }
+        int version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Nieobsługiwana wersja pliku: " + version);
+        }
+        stringCount = buffer.getInt(8);
+        stopCount = buffer.getInt(12);
+        lineCount = buffer.getInt(16);
+        stringTable = section(24, 4L * (stringCount + 1));
+        stopTable = section(32, (long) STOP_RECORD * stopCount);
+        lineTable = section(40, (long) LINE_RECORD * lineCount);
+        strings = new String[stringCount];
+        stops = new Node[stopCount];
+
+        List<Graph> list = new ArrayList<>(lineCount);
+        TransportType[] types = TransportType.values();
+        for (int i = 0; i < lineCount; i++) {
+            int record = lineTable + i * LINE_RECORD;
+            int type = buffer.getInt(record + 4);
+            int index = i;
+            list.add(new Graph(buffer.getInt(record), type < 0 || type >= types.length ? null : types[type],
+                               graph -> readLine(index, graph)));
+        }
+        lines = Collections.unmodifiableList(list);
+    }
+
+    /**Metoda otwierająca plik sieci - wczytywany jest tylko nagłówek i spis linii*/
+    public static NetworkFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Plik " + path + " jest zbyt duży");
+            }
+            // odwzorowanie pozostaje ważne po zamknięciu kanału
+            NetworkFile file = new NetworkFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            synchronized (openFiles) {
+                openFiles.computeIfAbsent(key(path), key -> Collections.newSetFromMap(new WeakHashMap<>())).add(file);
+            }
+            return file;
+        }
+    }
+
+    /**Metoda zwracająca linie zapisane w pliku - ich zawartość wczytywana jest przy pierwszym użyciu*/
+    public List<Graph> getLines(){
+        return lines;
+    }
+
+    /**Metoda zwracająca liczbę różnych przystanków zapisanych w pliku*/
+    public int getStopCount(){
+        return stopCount;
+    }
+
+    /**Metoda zwracająca przystanek o podanym numerze w pliku (ten sam obiekt, który trafia do grafów linii)*/
+    synchronized Node getStop(int id){
+        return stop(id);
+    }
+
+    /**Metoda zapisująca linie do pliku. Plik zapisywany jest najpierw pod nazwą tymczasową
+     * i dopiero po udanym zapisie zastępuje poprzedni - błąd zapisu nie niszczy starych danych.
+     * Po zapisie przystanki otrzymują numery, pod którymi występują w nowym pliku. Linie pliku otwartego
+     * wcześniej pod tą samą ścieżką, które nie zostały jeszcze użyte, wczytywane są przed jego zastąpieniem.
+     * Metoda zwraca liczbę zapisanych przystanków.*/
+    public static int write(List<Graph> graphs, Path path) throws IOException {
+        return write(graphs, path, ProgressListener.NONE);
+    }
+
+    /**Metoda zapisująca linie do pliku, zgłaszająca postęp (w liniach, każda przetwarzana dwukrotnie)
+     * i przerywana na żądanie słuchacza - przerwany zapis nie zmienia pliku*/
+    public static int write(List<Graph> graphs, Path path, ProgressListener listener) throws IOException {
+        PerformanceEvents.FileTransfer event = new PerformanceEvents.FileTransfer();
+        event.begin();
+        long start = System.nanoTime();
+        long total = 2L * graphs.size();
+        // numeracja przystanków i napisów - każdy zapisywany jest raz
+        Map<Node, Integer> stopIds = new IdentityHashMap<>();
+        List<Node> stopList = new ArrayList<>();
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<byte[]> stringList = new ArrayList<>();
+        long[] lineSizes = new long[graphs.size()];
+        for (int i = 0; i < graphs.size(); i++) {
+            Graph graph = graphs.get(i);
+            for (Node node : graph.nodeList()) {
+                number(node, stopIds, stopList, stringIds, stringList);
+            }
+            for (Connection connection : graph.connectionList()) {
+                number(connection.getNode1(), stopIds, stopList, stringIds, stringList);
+                number(connection.getNode2(), stopIds, stopList, stringIds, stringList);
+            }
+            long size = 4L * graph.getNodeCount() + (long) CONNECTION_RECORD * graph.getConnectionCount() + 4;
+            for (Schedule schedule : graph.getSchedules()) {
+                for (Node node : schedule.getStops()) {
+                    number(node, stopIds, stopList, stringIds, stringList);
+                }
+                size += 8 + 4L * schedule.getStops().size() * (1 + 2L * schedule.getTripCount());
+            }
+            lineSizes[i] = size;
+            step(listener, i + 1, total);
+        }
+
+        long stringTable = HEADER_SIZE;
+        long stringBytes = 0;
+        for (byte[] bytes : stringList) stringBytes += bytes.length;
+        long stopTable = stringTable + 4L * (stringList.size() + 1) + stringBytes;
+        long lineTable = stopTable + (long) STOP_RECORD * stopList.size();
+        long lineData = lineTable + (long) LINE_RECORD * graphs.size();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(stringList.size());
+            out.writeInt(stopList.size());
+            out.writeInt(graphs.size());
+            out.writeInt(0);
+            out.writeLong(stringTable);
+            out.writeLong(stopTable);
+            out.writeLong(lineTable);
+
+            int offset = 0;
+            for (byte[] bytes : stringList) {
+                out.writeInt(offset);
+                offset += bytes.length;
+            }
+            out.writeInt(offset);
+            for (byte[] bytes : stringList) {
+                out.write(bytes);
+            }
+
+            for (Node node : stopList) {
+                out.writeInt(node.getX());
+                out.writeInt(node.getY());
+                out.writeInt(node.getR());
+                out.writeInt(node.getName() == null ? NO_STRING : stringIds.get(node.getName()));
+                out.writeInt(node.getColor() == null ? NO_COLOR : node.getColor().getRGB());
+            }
+
+            long position = lineData;
+            for (int i = 0; i < graphs.size(); i++) {
+                Graph graph = graphs.get(i);
+                out.writeInt(graph.getNumber());
+                out.writeInt(graph.getTransportType() == null ? -1 : graph.getTransportType().ordinal());
+                out.writeInt(graph.getNodeCount());
+                out.writeInt(graph.getConnectionCount());
+                out.writeLong(position);
+                position += lineSizes[i];
+            }
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("Sieć jest zbyt duża, aby zapisać ją w jednym pliku");
+            }
+
+            for (int i = 0; i < graphs.size(); i++) {
+                Graph graph = graphs.get(i);
+                step(listener, graphs.size() + i, total);
+                for (Node node : graph.nodeList()) {
+                    out.writeInt(stopIds.get(node));
+                }
+                for (Connection connection : graph.connectionList()) {
+                    out.writeInt(stopIds.get(connection.getNode1()));
+                    out.writeInt(stopIds.get(connection.getNode2()));
+                    out.writeInt(connection.getColor() == null ? NO_COLOR : connection.getColor().getRGB());
+                }
+                out.writeInt(graph.getSchedules().size());
+                for (Schedule schedule : graph.getSchedules()) {
+                    List<Node> scheduleStops = schedule.getStops();
+                    int trips = schedule.getTripCount();
+                    out.writeInt(scheduleStops.size());
+                    out.writeInt(trips);
+                    for (Node node : scheduleStops) {
+                        out.writeInt(stopIds.get(node));
+                    }
+                    for (int trip = 0; trip < trips; trip++) {
+                        for (int stop = 0; stop < scheduleStops.size(); stop++) {
+                            out.writeInt(schedule.getArrival(trip, stop));
+                        }
+                    }
+                    for (int trip = 0; trip < trips; trip++) {
+                        for (int stop = 0; stop < scheduleStops.size(); stop++) {
+                            out.writeInt(schedule.getDeparture(trip, stop));
+                        }
+                    }
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        listener.progress(total, total);
+        release(path);
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        for (int i = 0; i < stopList.size(); i++) {
+            stopList.get(i).setFileId(i);
+        }
+        long bytes = Files.size(path);
+        saveTime.record(System.nanoTime() - start);
+        Metrics.count(Metrics.SAVE + Metrics.BYTES, bytes);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "zapis";
+            event.path = path.toString();
+            event.bytes = bytes;
+            event.lines = graphs.size();
+            event.commit();
+        }
+        return stopList.size();
+    }
+
+    /**Metoda wczytująca całą zawartość plików otwartych pod podaną ścieżką i zwalniająca ich odwzorowania -
+     * linie, które nie zostały jeszcze użyte, nie mogą wskazywać na zastępowany plik (w systemie Windows
+     * odwzorowany plik nie może też zostać zastąpiony)*/
+    private static void release(Path path){
+        List<NetworkFile> files;
+        synchronized (openFiles) {
+            Set<NetworkFile> open = openFiles.remove(key(path));
+            files = open == null ? Collections.emptyList() : new ArrayList<>(open);
+        }
+        for (NetworkFile file : files) {
+            file.detach();
+        }
+    }
+
+    /**Metoda wczytująca wszystkie linie i przystanki pliku i porzucająca jego odwzorowanie*/
+    private void detach(){
+        // linie wczytywane poza monitorem pliku - wczytanie linii zajmuje najpierw monitor grafu (zob. Graph.ensureLoaded)
+        for (Graph line : lines) {
+            line.getNodeCount();
+        }
+        synchronized (this) {
+            if (buffer == null) return;
+            for (int id = 0; id < stopCount; id++) {
+                stop(id);
+            }
+            buffer = null;
+        }
+    }
+
+    private static Path key(Path path){
+        return path.toAbsolutePath().normalize();
+    }
+
+    private static void step(ProgressListener listener, long done, long total){
+        if (listener.isCancelled()) throw new CancellationException("Przerwano zapis sieci");
+        listener.progress(done, total);
+    }
+
+    /**Metoda nadająca numer przystankowi i jego nazwie, jeśli nie zostały jeszcze ponumerowane*/
+    private static void number(Node node, Map<Node, Integer> stopIds, List<Node> stopList,
+                               Map<String, Integer> stringIds, List<byte[]> stringList){
+        if (stopIds.containsKey(node)) return;
+        stopIds.put(node, stopList.size());
+        stopList.add(node);
+        String name = node.getName();
+        if (name != null && !stringIds.containsKey(name)) {
+            stringIds.put(name, stringList.size());
+            stringList.add(name.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**Metoda wczytująca zawartość linii o podanym numerze w spisie (wywoływana przez graf przy pierwszym użyciu).
+     * Linie mogą być wczytywane z różnych wątków - wspólne tablice przystanków i napisów wypełniane są
+     * pod monitorem pliku, więc każdy przystanek tworzony jest dokładnie raz.*/
+    private synchronized void readLine(int index, Graph graph){
+        PerformanceEvents.FileTransfer event = new PerformanceEvents.FileTransfer();
+        event.begin();
+        long start = System.nanoTime();
+        int record = lineTable + index * LINE_RECORD;
+        int nodeCount = buffer.getInt(record + 8);
+        int connectionCount = buffer.getInt(record + 12);
+        int position = checkedOffset(buffer.getLong(record + 16),
+                4L * nodeCount + (long) CONNECTION_RECORD * connectionCount + 4);
+        int first = position;
+        for (int i = 0; i < nodeCount; i++, position += 4) {
+            graph.addNode(stop(buffer.getInt(position)));
+        }
+        for (int i = 0; i < connectionCount; i++, position += CONNECTION_RECORD) {
+            Connection connection = new Connection(stop(buffer.getInt(position)), stop(buffer.getInt(position + 4)));
+            connection.setColor(color(buffer.getInt(position + 8)));
+            graph.addConnection(connection);
+        }
+        int scheduleCount = buffer.getInt(position);
+        position += 4;
+        for (int s = 0; s < scheduleCount; s++) {
+            int stopCount = buffer.getInt(position);
+            int trips = buffer.getInt(position + 4);
+            position = checkedOffset(position + 8, 4L * stopCount * (1 + 2L * trips));
+            List<Node> scheduleStops = new ArrayList<>(stopCount);
+            for (int i = 0; i < stopCount; i++, position += 4) {
+                scheduleStops.add(stop(buffer.getInt(position)));
+            }
+            Schedule schedule = new Schedule(scheduleStops);
+            int departures = position + 4 * trips * stopCount;
+            for (int trip = 0; trip < trips; trip++) {
+                int[] arrivalTimes = new int[stopCount];
+                int[] departureTimes = new int[stopCount];
+                for (int i = 0; i < stopCount; i++) {
+                    arrivalTimes[i] = buffer.getInt(position + 4 * (trip * stopCount + i));
+                    departureTimes[i] = buffer.getInt(departures + 4 * (trip * stopCount + i));
+                }
+                schedule.addTrip(arrivalTimes, departureTimes);
+            }
+            position += 8 * trips * stopCount;
+            graph.addSchedule(schedule);
+        }
+        lineLoadTime.record(System.nanoTime() - start);
+        Metrics.count(Metrics.LINE_LOAD + Metrics.BYTES, position - first);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "odczyt linii";
+            event.bytes = position - first;
+            event.lines = 1;
+            event.commit();
+        }
+    }
+
+    /**Metoda zwracająca przystanek o podanym numerze - obiekt tworzony jest przy pierwszym odwołaniu*/
+    private Node stop(int id){
+        if (id < 0 || id >= stopCount) {
+            throw new IllegalStateException("Uszkodzony plik sieci: nieprawidłowy numer przystanku " + id);
+        }
+        Node node = stops[id];
+        if (node == null) {
+            int record = stopTable + id * STOP_RECORD;
+            node = new Node(buffer.getInt(record), buffer.getInt(record + 4), string(buffer.getInt(record + 12)));
+            node.setR(buffer.getInt(record + 8));
+            node.setColor(color(buffer.getInt(record + 16)));
+            node.setFileId(id);
+            stops[id] = node;
+        }
+        return node;
+    }
+
+    /**Metoda zwracająca napis o podanym numerze z tablicy napisów*/
+    private String string(int id){
+        if (id == NO_STRING) return null;
+        if (id < 0 || id >= stringCount) {
+            throw new IllegalStateException("Uszkodzony plik sieci: nieprawidłowy numer napisu " + id);
+        }
+        String string = strings[id];
+        if (string == null) {
+            int data = stringTable + 4 * (stringCount + 1);
+            int start = buffer.getInt(stringTable + 4 * id);
+            int end = buffer.getInt(stringTable + 4 * (id + 1));
+            byte[] bytes = new byte[end - start];
+            buffer.get(checkedOffset(data + (long) start, bytes.length), bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            strings[id] = string;
+        }
+        return string;
+    }
+
+    private static Color color(int rgb){
+        return rgb == NO_COLOR ? null : new Color(rgb, true);
+    }
+
+    /**Metoda odczytująca z nagłówka położenie sekcji o podanej długości i sprawdzająca, czy mieści się w pliku*/
+    private int section(int headerOffset, long length) throws IOException {
+        try {
+            return checkedOffset(buffer.getLong(headerOffset), length);
+        }
+        catch (IllegalStateException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private int checkedOffset(long offset, long length){
+        if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+            throw new IllegalStateException("Uszkodzony plik sieci: sekcja wykracza poza koniec pliku");
+        }
+        return (int) offset;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: NetworkGenerator.java
+ *
+ *  Klasa NetworkGenerator tworzy syntetyczne sieci linii autobusowych
+ *  i tramwajowych o zadanej liczbie przystanków.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Generator syntetycznych sieci komunikacji miejskiej (do testów wydajności i prezentacji
+ * bez rzeczywistych danych). <br>
+ * Sieć zależy wyłącznie od ziarna i parametrów generatora - to samo ziarno daje zawsze tę samą sieć.
+ * Najpierw rozmieszczane są węzły przesiadkowe, gęściej w centrum obszaru. Każda linia prowadzi
+ * od jednego węzła do innego, odległego mniej więcej o długość linii; kolejne przystanki wyznaczane
+ * są co <code>spacing</code> w kierunku celu z losowym odchyleniem, a przystanek wypadający przy
+ * innym węźle zastępowany jest tym węzłem - węzły są wspólnymi przystankami wielu linii.
+ * Linie tramwajowe zaczynają się w centrum i są krótsze i prostsze od autobusowych. <br>
+ * Bok obszaru rośnie z pierwiastkiem liczby przystanków, więc średnia gęstość przystanków nie zależy
+ * od wielkości sieci. Łączna liczba różnych przystanków (z węzłami) jest równa zadanej. <br>
+ * Metoda <code>main</code> zapisuje wygenerowaną sieć do pliku z wiersza poleceń.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import util.ProgressListener;
+
+public final class NetworkGenerator {
+
+    /**Domyślna średnia odległość między kolejnymi przystankami linii*/
+    public static final int DEFAULT_SPACING = 40;
+    /**Domyślna średnia liczba przystanków linii autobusowej*/
+    public static final int DEFAULT_LINE_LENGTH = 30;
+    /**Średnia liczba przystanków przypadająca na jeden węzeł przesiadkowy*/
+    private static final int STOPS_PER_HUB = 150;
+    /**Udział linii tramwajowych*/
+    private static final double TRAM_SHARE = 0.25;
+    /**Odchylenie standardowe kierunku kolejnego odcinka linii (w radianach)*/
+    private static final double BUS_TURN = 0.35;
+    private static final double TRAM_TURN = 0.15;
+    /**Liczba losowanych węzłów, spośród których wybierany jest koniec linii*/
+    private static final int TARGET_CANDIDATES = 8;
+    /**Promień przystanku będącego węzłem przesiadkowym*/
+    private static final int HUB_RADIUS = 14;
+
+    /**Parametry rozkładów jazdy: pierwszy i ostatni odjazd, prędkość (jednostek obszaru na sekundę)
+     * i czas postoju na przystanku*/
+    private static final int FIRST_DEPARTURE = 5 * 3600;
+    private static final int LAST_DEPARTURE = 23 * 3600;
+    private static final double SPEED = 2.0;
+    private static final int DWELL = 20;
+
+    private final long seed;
+    private int spacing = DEFAULT_SPACING;
+    private int lineLength = DEFAULT_LINE_LENGTH;
+    private boolean timetables;
+
+    /**Konstruktor generatora o podanym ziarnie*/
+    public NetworkGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**Metoda ustawiająca średnią odległość między kolejnymi przystankami linii*/
+    public void setSpacing(int spacing){
+        if (spacing <= 0) throw new IllegalArgumentException("Odległość między przystankami musi być dodatnia");
+        this.spacing = spacing;
+    }
+
+    /**Metoda ustawiająca średnią liczbę przystanków linii autobusowej (tramwajowe są o jedną trzecią krótsze)*/
+    public void setLineLength(int lineLength){
+        if (lineLength < 2) throw new IllegalArgumentException("Linia musi mieć co najmniej 2 przystanki");
+        this.lineLength = lineLength;
+    }
+
+    /**Metoda określająca czy linie mają otrzymać rozkłady jazdy (kursy o stałej częstotliwości w obu kierunkach)*/
+    public void setTimetables(boolean timetables){
+        this.timetables = timetables;
+    }
+
+    /**Metoda zwracająca bok kwadratu, na którym rozmieszczana jest sieć o podanej liczbie przystanków*/
+    public int getSide(int stops){
+        return (int) Math.ceil(Math.sqrt(stops)) * spacing;
+    }
+
+    /**Metoda tworząca linie sieci o łącznej liczbie <code>stops</code> różnych przystanków*/
+    public List<Graph> generate(int stops){
+        return generate(stops, ProgressListener.NONE);
+    }
+
+    /**Metoda tworząca linie sieci, zgłaszająca postęp (w przystankach) i przerywana na żądanie słuchacza*/
+    public List<Graph> generate(int stops, ProgressListener listener){
+        if (stops <= 0) throw new IllegalArgumentException("Liczba przystanków musi być dodatnia");
+        Random random = new Random(seed);
+        int side = getSide(stops);
+        Hubs hubs = new Hubs(random, side, Math.max(4, stops / STOPS_PER_HUB));
+        List<Graph> lines = new ArrayList<>(stops / lineLength + 1);
+        int created = 0;
+        for (int number = 1; created < stops; number++) {
+            if (listener.isCancelled()) throw new CancellationException("Przerwano generowanie sieci");
+            boolean tram = random.nextDouble() < TRAM_SHARE;
+            Graph line = new Graph(number, tram ? TransportType.TRAM : TransportType.BUS);
+            int length = tram ? lineLength * 2 / 3 : lineLength;
+            length = Math.max(2, length / 2 + random.nextInt(length));
+            int start = tram ? hubs.central(random) : random.nextInt(hubs.size());
+            int target = hubs.target(random, start, length * spacing);
+            double turn = tram ? TRAM_TURN : BUS_TURN;
+
+            if (hubs.use(start)) created++;
+            line.addNode(hubs.node(start));
+            Node previous = hubs.node(start);
+            double x = previous.getX();
+            double y = previous.getY();
+            double heading = Math.atan2(hubs.node(target).getY() - y, hubs.node(target).getX() - x);
+            for (int i = 1; i < 2 * length && created < stops; i++) {
+                Node end = hubs.node(target);
+                if (Math.hypot(end.getX() - x, end.getY() - y) < 1.5 * spacing) {
+                    if (hubs.use(target)) created++;
+                    addStop(line, previous, end);
+                    break;
+                }
+                // kierunek do celu z odchyleniem, wygładzony z kierunkiem poprzedniego odcinka
+                double toTarget = Math.atan2(end.getY() - y, end.getX() - x);
+                heading += 0.5 * angle(toTarget - heading) + random.nextGaussian() * turn;
+                double step = spacing * (0.7 + 0.6 * random.nextDouble());
+                x = Math.max(0, Math.min(side, x + Math.cos(heading) * step));
+                y = Math.max(0, Math.min(side, y + Math.sin(heading) * step));
+
+                int hub = hubs.near(x, y, spacing / 2.0);
+                Node node;
+                if (hub >= 0 && !line.containsNode(hubs.node(hub))) {
+                    if (hubs.use(hub)) created++;
+                    node = hubs.node(hub);
+                }
+                else {
+                    node = new Node((int) x, (int) y, "Przystanek " + created);
+                    created++;
+                }
+                addStop(line, previous, node);
+                previous = node;
+                if (node == end) break;
+            }
+            if (timetables && line.getNodeCount() > 1) addSchedules(line, random);
+            lines.add(line);
+            listener.progress(created, stops);
+        }
+        return lines;
+    }
+
+    private static void addStop(Graph line, Node previous, Node node){
+        line.addNode(node);
+        line.addConnectionColor(new Connection(previous, node));
+    }
+
+    /**Metoda dodająca linii rozkłady jazdy w obu kierunkach - czasy przejazdu wynikają z długości odcinków*/
+    private static void addSchedules(Graph line, Random random){
+        List<Node> stops = line.getNodeList();
+        int headway = (line.getTransportType() == TransportType.TRAM ? 5 + random.nextInt(6) : 6 + random.nextInt(15)) * 60;
+        for (int direction = 0; direction < 2; direction++) {
+            List<Node> order = new ArrayList<>(stops);
+            if (direction == 1) Collections.reverse(order);
+            int[] offsets = new int[order.size()];
+            for (int i = 1; i < offsets.length; i++) {
+                Node from = order.get(i - 1);
+                Node to = order.get(i);
+                offsets[i] = offsets[i - 1] + DWELL
+                        + (int) Math.round(Math.hypot(to.getX() - from.getX(), to.getY() - from.getY()) / SPEED);
+            }
+            Schedule schedule = new Schedule(order);
+            schedule.addTrips(FIRST_DEPARTURE, LAST_DEPARTURE, headway, offsets);
+            line.addSchedule(schedule);
+        }
+    }
+
+    /**Kąt sprowadzony do przedziału [-pi, pi]*/
+    private static double angle(double angle){
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+
+    /**Węzły przesiadkowe - rozmieszczone z rozkładem normalnym wokół środka obszaru i odszukiwane
+     * w siatce komórek o boku równym średniej odległości między węzłami*/
+    private static final class Hubs {
+        private final Node[] nodes;
+        private final boolean[] used;
+        private final int[] central;
+        private final double cell;
+        private final Map<Long, List<Integer>> grid = new HashMap<>();
+
+        Hubs(Random random, int side, int count) {
+            nodes = new Node[count];
+            used = new boolean[count];
+            cell = Math.max(1, side / Math.sqrt(count));
+            List<Integer> centre = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int x = (int) Math.max(0, Math.min(side, side / 2.0 + random.nextGaussian() * side / 5));
+                int y = (int) Math.max(0, Math.min(side, side / 2.0 + random.nextGaussian() * side / 5));
+                nodes[i] = new Node(x, y, "Węzeł " + (i + 1));
+                nodes[i].setR(HUB_RADIUS);
+                grid.computeIfAbsent(key(x / cell, y / cell), k -> new ArrayList<>()).add(i);
+                if (Math.hypot(x - side / 2.0, y - side / 2.0) < side / 4.0) centre.add(i);
+            }
+            central = centre.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int size(){
+            return nodes.length;
+        }
+
+        Node node(int hub){
+            return nodes[hub];
+        }
+
+        /**Metoda oznaczająca węzeł jako użyty; zwraca <code>true</code>, gdy węzeł staje się przystankiem sieci*/
+        boolean use(int hub){
+            if (used[hub]) return false;
+            used[hub] = true;
+            return true;
+        }
+
+        /**Losowy węzeł w centrum obszaru (dowolny, gdy w centrum nie ma węzłów)*/
+        int central(Random random){
+            return central.length == 0 ? random.nextInt(nodes.length) : central[random.nextInt(central.length)];
+        }
+
+        /**Węzeł, którego odległość od węzła początkowego jest najbliższa podanej, spośród kilku losowych*/
+        int target(Random random, int start, double distance){
+            int best = start == 0 ? 1 : 0;
+            double bestError = Double.MAX_VALUE;
+            for (int i = 0; i < TARGET_CANDIDATES; i++) {
+                int candidate = random.nextInt(nodes.length);
+                if (candidate == start) continue;
+                double error = Math.abs(Math.hypot(nodes[candidate].getX() - nodes[start].getX(),
+                        nodes[candidate].getY() - nodes[start].getY()) - distance);
+                if (error < bestError) {
+                    bestError = error;
+                    best = candidate;
+                }
+            }
+            return best;
+        }
+
+        /**Węzeł odległy od punktu najwyżej o <code>radius</code> (-1, gdy takiego nie ma)*/
+        int near(double x, double y, double radius){
+            int cx = (int) (x / cell);
+            int cy = (int) (y / cell);
+            int reach = (int) Math.ceil(radius / cell);
+            for (int i = cx - reach; i <= cx + reach; i++) {
+                for (int j = cy - reach; j <= cy + reach; j++) {
+                    List<Integer> hubs = grid.get(key(i, j));
+                    if (hubs == null) continue;
+                    for (int hub : hubs) {
+                        if (Math.hypot(nodes[hub].getX() - x, nodes[hub].getY() - y) <= radius) return hub;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private static long key(double x, double y){
+            return ((long) (int) x << 32) | ((int) y & 0xffffffffL);
+        }
+    }
+
+    /**Zapis wygenerowanej sieci do pliku bez uruchamiania edytora:
+     * <code>NetworkGenerator plik_sieci liczba_przystanków [ziarno] [rozkłady]</code>*/
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Użycie: NetworkGenerator plik_sieci liczba_przystanków [ziarno] [rozkłady]");
+            System.exit(1);
+        }
+        NetworkGenerator generator = new NetworkGenerator(args.length > 2 ? Long.parseLong(args[2]) : 0);
+        generator.setTimetables(args.length > 3 && Boolean.parseBoolean(args[3]));
+        long start = System.nanoTime();
+        List<Graph> lines = generator.generate(Integer.parseInt(args[1]));
+        int stops = NetworkFile.write(lines, Paths.get(args[0]));
+        System.out.println("Zapisano linii: " + lines.size() + ", przystanków: " + stops
+                + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+    }
+}
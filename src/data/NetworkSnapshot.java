@@ -0,0 +1,307 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: NetworkSnapshot.java
+ *
+ *  Klasa NetworkSnapshot przechowuje zamrożony stan sieci
+ *  komunikacyjnej w postaci tablic prymitywnych w układzie CSR
+ *  (compressed sparse row).
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Niemodyfikowalna migawka sieci komunikacji miejskiej. <br>
+ * Przystanki otrzymują kolejne identyfikatory 0..n-1, a połączenia są zapisane jako pary
+ * łuków skierowanych w obu kierunkach. Łuki wychodzące z przystanku <code>i</code> zajmują
+ * indeksy od <code>firstEdge(i)</code> (włącznie) do <code>endEdge(i)</code> (wyłącznie). <br>
+ * Wagą łuku jest euklidesowa długość połączenia, a numerem linii - numer grafu, z którego
+ * połączenie pochodzi. Migawka nie zmienia się po utworzeniu, więc może być współdzielona
+ * przez wiele wątków.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class NetworkSnapshot {
+
+    /**Numer linii przypisywany łukom przesiadkowym*/
+    public static final int TRANSFER = -1;
+
+    /**Przystanki w kolejności identyfikatorów*/
+    private final Node[] nodes;
+    /**Współrzędne przystanków*/
+    private final float[] x;
+    private final float[] y;
+    /**Początki list łuków wychodzących (tablica długości n+1)*/
+    private final int[] offsets;
+    /**Przystanki docelowe łuków*/
+    private final int[] targets;
+    /**Wagi (długości) łuków*/
+    private final float[] weights;
+    /**Numery linii, do których należą łuki*/
+    private final int[] lines;
+    /**Tablica mieszająca (adresowanie otwarte) odwzorowująca przystanek na identyfikator*/
+    private final Node[] slotNodes;
+    private final int[] slotIds;
+
+    private NetworkSnapshot(Node[] nodes, float[] x, float[] y, int[] offsets,
+                            int[] targets, float[] weights, int[] lines) {
+        this.nodes = nodes;
+        this.x = x;
+        this.y = y;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.lines = lines;
+        int capacity = Integer.highestOneBit(Math.max(2, nodes.length) * 2 - 1) << 1;
+        this.slotNodes = new Node[capacity];
+        this.slotIds = new int[capacity];
+        for (int i = 0; i < nodes.length; i++) {
+            int slot = slot(nodes[i]);
+            slotNodes[slot] = nodes[i];
+            slotIds[slot] = i;
+        }
+    }
+
+    /**Konstruktor migawki o tych samych przystankach co <code>base</code>, ale innym zbiorze łuków*/
+    private NetworkSnapshot(NetworkSnapshot base, int[] offsets, int[] targets, float[] weights, int[] lines) {
+        this.nodes = base.nodes;
+        this.x = base.x;
+        this.y = base.y;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.lines = lines;
+        this.slotNodes = base.slotNodes;
+        this.slotIds = base.slotIds;
+    }
+
+    /**Metoda tworząca migawkę sieci złożonej z podanych linii.
+     * Przystanek występujący w kilku liniach otrzymuje jeden identyfikator.
+     * Obiekty przystanków i połączeń są odczytywane tylko raz - kolejne etapy budowy
+     * operują już wyłącznie na tablicach prymitywnych.*/
+    public static NetworkSnapshot of(List<Graph> graphs){
+        IdBuilder ids = new IdBuilder();
+        int connectionCount = 0;
+        for (Graph graph : graphs) {
+            connectionCount += graph.connectionList().size();
+        }
+        int[] ends = new int[2 * connectionCount];
+        int[] connectionLines = new int[connectionCount];
+        int c = 0;
+        for (Graph graph : graphs) {
+            for (Node node : graph.nodeList()) {
+                ids.idOf(node);
+            }
+            for (Connection connection : graph.connectionList()) {
+                ends[2 * c] = ids.idOf(connection.getNode1());
+                ends[2 * c + 1] = ids.idOf(connection.getNode2());
+                connectionLines[c++] = graph.getNumber();
+            }
+        }
+
+        int n = ids.size;
+        Node[] nodes = Arrays.copyOf(ids.nodes, n);
+        float[] x = new float[n];
+        float[] y = new float[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = nodes[i].getX();
+            y[i] = nodes[i].getY();
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int end : ends) {
+            offsets[end + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] fill = Arrays.copyOf(offsets, n);
+        int[] targets = new int[ends.length];
+        float[] weights = new float[ends.length];
+        int[] lines = new int[ends.length];
+        for (c = 0; c < connectionCount; c++) {
+            int a = ends[2 * c];
+            int b = ends[2 * c + 1];
+            float length = (float) Math.hypot(x[a] - x[b], y[a] - y[b]);
+            int e = fill[a]++;
+            targets[e] = b;
+            weights[e] = length;
+            lines[e] = connectionLines[c];
+            e = fill[b]++;
+            targets[e] = a;
+            weights[e] = length;
+            lines[e] = connectionLines[c];
+        }
+        return new NetworkSnapshot(nodes, x, y, offsets, targets, weights, lines);
+    }
+
+    /**Metoda zwracająca nową migawkę uzupełnioną o łuki przesiadkowe między wszystkimi
+     * przystankami o tej samej znormalizowanej nazwie (przystanki bez nazwy nie tworzą przesiadek). Waga przesiadki to odległość
+     * między przystankami powiększona o karę <code>penalty</code>, dzięki czemu żaden łuk
+     * nie jest krótszy od odcinka łączącego jego końce.*/
+    public NetworkSnapshot withTransfers(float penalty){
+        if (penalty < 0) throw new IllegalArgumentException("Kara za przesiadkę nie może być ujemna");
+        int n = nodes.length;
+        int[] groupSize = new int[n];
+        int[] group = new int[n];
+        Map<String, Integer> groupIds = new HashMap<>();
+        int groupCount = 0;
+        for (int i = 0; i < n; i++) {
+            String key = nodes[i].getNormalizedName();
+            // przystanek bez nazwy tworzy własną grupę - nie jest węzłem przesiadkowym
+            Integer id = key.isEmpty() ? null : groupIds.get(key);
+            if (id == null) {
+                id = groupCount++;
+                if (!key.isEmpty()) groupIds.put(key, id);
+            }
+            group[i] = id;
+            groupSize[id]++;
+        }
+        int[] groupStart = new int[groupCount + 1];
+        for (int g = 0; g < groupCount; g++) {
+            groupStart[g + 1] = groupStart[g] + groupSize[g];
+        }
+        int[] members = new int[n];
+        int[] fillGroup = Arrays.copyOf(groupStart, groupCount);
+        for (int i = 0; i < n; i++) {
+            members[fillGroup[group[i]]++] = i;
+        }
+
+        int[] newOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            newOffsets[i + 1] = newOffsets[i] + degree(i) + groupSize[group[i]] - 1;
+        }
+        int arcCount = newOffsets[n];
+        int[] newTargets = new int[arcCount];
+        float[] newWeights = new float[arcCount];
+        int[] newLines = new int[arcCount];
+        for (int i = 0; i < n; i++) {
+            int e = newOffsets[i];
+            int length = degree(i);
+            System.arraycopy(targets, offsets[i], newTargets, e, length);
+            System.arraycopy(weights, offsets[i], newWeights, e, length);
+            System.arraycopy(lines, offsets[i], newLines, e, length);
+            e += length;
+            int g = group[i];
+            for (int m = groupStart[g]; m < groupStart[g + 1]; m++) {
+                int j = members[m];
+                if (j == i) continue;
+                newTargets[e] = j;
+                newWeights[e] = (float) Math.hypot(x[i] - x[j], y[i] - y[j]) + penalty;
+                newLines[e++] = TRANSFER;
+            }
+        }
+        return new NetworkSnapshot(this, newOffsets, newTargets, newWeights, newLines);
+    }
+
+    /**Metoda zwracająca liczbę przystanków*/
+    public int nodeCount(){
+        return nodes.length;
+    }
+    /**Metoda zwracająca liczbę łuków skierowanych (dwa na każde połączenie)*/
+    public int edgeCount(){
+        return targets.length;
+    }
+    /**Metoda zwracająca przystanek o podanym identyfikatorze*/
+    public Node node(int id){
+        return nodes[id];
+    }
+    /**Metoda zwracająca identyfikator przystanku lub -1, gdy przystanek nie należy do migawki*/
+    public int indexOf(Node node){
+        int mask = slotNodes.length - 1;
+        for (int slot = hash(node) & mask; slotNodes[slot] != null; slot = (slot + 1) & mask) {
+            if (slotNodes[slot] == node) return slotIds[slot];
+        }
+        return -1;
+    }
+    /**Metoda zwracająca współrzędną x przystanku*/
+    public float x(int id){
+        return x[id];
+    }
+    /**Metoda zwracająca współrzędną y przystanku*/
+    public float y(int id){
+        return y[id];
+    }
+    /**Metoda zwracająca indeks pierwszego łuku wychodzącego z przystanku*/
+    public int firstEdge(int id){
+        return offsets[id];
+    }
+    /**Metoda zwracająca indeks za ostatnim łukiem wychodzącym z przystanku*/
+    public int endEdge(int id){
+        return offsets[id + 1];
+    }
+    /**Metoda zwracająca stopień przystanku*/
+    public int degree(int id){
+        return offsets[id + 1] - offsets[id];
+    }
+    /**Metoda zwracająca przystanek docelowy łuku*/
+    public int target(int edge){
+        return targets[edge];
+    }
+    /**Metoda zwracająca wagę (długość) łuku*/
+    public float weight(int edge){
+        return weights[edge];
+    }
+    /**Metoda zwracająca numer linii łuku lub <code>TRANSFER</code> dla przesiadki*/
+    public int line(int edge){
+        return lines[edge];
+    }
+
+    /**Metoda zwracająca skrót (sumę kontrolną) struktury i wag sieci - pozwala sprawdzić,
+     * czy dane wyliczone wcześniej dla migawki (np. zapisane w pliku) nadal do niej pasują*/
+    public long fingerprint(){
+        long hash = 1125899906842597L;
+        hash = 31 * hash + nodes.length;
+        for (int i = 0; i < offsets.length; i++) {
+            hash = 31 * hash + offsets[i];
+        }
+        for (int e = 0; e < targets.length; e++) {
+            hash = 31 * hash + targets[e];
+            hash = 31 * hash + Float.floatToIntBits(weights[e]);
+        }
+        return hash;
+    }
+
+    private int slot(Node node){
+        int mask = slotNodes.length - 1;
+        int slot = hash(node) & mask;
+        while (slotNodes[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(Node node){
+        int h = System.identityHashCode(node);
+        return h ^ (h >>> 16);
+    }
+
+    /**Pomocnicza klasa nadająca przystankom kolejne identyfikatory podczas budowy migawki*/
+    private static final class IdBuilder {
+        private final Map<Node, Integer> ids = new IdentityHashMap<>();
+        private Node[] nodes = new Node[16];
+        private int size;
+
+        int idOf(Node node){
+            Integer id = ids.get(node);
+            if (id != null) return id;
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            nodes[size] = node;
+            ids.put(node, size);
+            return size++;
+        }
+    }
+}
@@ -20,8 +20,15 @@
 package data;
 
 import java.awt.*;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Pattern;
 
 public class Node {
+    /**Wzorzec ciągu białych znaków używany przy normalizacji nazw*/
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     /**Nazwa przystanku*/
     protected String name;
 
@@ -35,6 +42,13 @@ public class Node {
     /** kolor wypełnienia*/
     private Color color;
 
+    /** grafy, do których należy przystanek (zwykle jeden) - otrzymują powiadomienia o zmianach*/
+    private Graph[] owners = NO_OWNERS;
+    private static final Graph[] NO_OWNERS = new Graph[0];
+
+    /** numer przystanku w pliku sieci (NetworkFile) i dzienniku zmian (EditJournal), -1 gdy nie został nadany*/
+    private int fileId = -1;
+
     /** Konstruktor przystanku z jego położeniem i nazwą*/
     public Node(int x, int y, String name) {
         this.x = x;
@@ -49,7 +63,7 @@ public class Node {
     }
     /** Metoda ustawiająca wartość współrzędnej x przystanku*/
     public void setX(int x) {
-        this.x = x;
+        setLocation(x, y);
     }
     /** Metoda zwracająca wartość współrzędnej y przystanku*/
     public int getY() {
@@ -57,7 +71,18 @@ public class Node {
     }
     /** Metoda ustawiająca wartość współrzędnej y przystanku*/
     public void setY(int y) {
+        setLocation(x, y);
+    }
+    /** Metoda przesuwająca przystanek w podane miejsce*/
+    public void setLocation(int x, int y) {
+        int oldX = this.x;
+        int oldY = this.y;
+        if (oldX == x && oldY == y) return;
+        this.x = x;
         this.y = y;
+        for (Graph owner : owners) {
+            owner.fireNodeMoved(this, oldX, oldY);
+        }
     }
     /** Metoda zwracająca wartość promienia przystanku*/
     public int getR() {
@@ -65,7 +90,12 @@ public class Node {
     }
     /** Metoda ustawiająca wartość promienia przystanku*/
     public void setR(int r) {
+        int oldR = this.r;
+        if (oldR == r) return;
         this.r = r;
+        for (Graph owner : owners) {
+            owner.fireNodeResized(this, oldR);
+        }
     }
     /** Metoda zwracająca kolor przystanku*/
     public Color getColor() {
@@ -74,26 +104,99 @@ public class Node {
 
     /** Metoda ustawiająca kolor przystanku*/
     public void setColor(Color color) {
+        Color oldColor = this.color;
+        if (Objects.equals(color, oldColor)) return;
         this.color = color;
+        for (Graph owner : owners) {
+            owner.fireNodeRecolored(this, oldColor);
+        }
     }
 
+    /** Metoda zwracająca nazwę przystanku*/
+    public String getName() {
+        return name;
+    }
+    /** Metoda zwracająca nazwę przystanku sprowadzoną do postaci porównywalnej
+     * (bez wielkości liter i nadmiarowych odstępów) - przystanki o tej samej
+     * znormalizowanej nazwie traktowane są jako jeden węzeł przesiadkowy*/
+    public String getNormalizedName() {
+        return normalizeName(name);
+    }
+    /** Metoda normalizująca nazwę przystanku*/
+    public static String normalizeName(String name) {
+        if (name == null) return "";
+        return WHITESPACE.matcher(name.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
     /** Metoda ustawiająca nazwę przystanku*/
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
+        for (Graph owner : owners) {
+            owner.fireNodeRenamed(this, oldName);
+        }
+    }
+    /** Metoda zwracająca grafy (linie), do których należy przystanek*/
+    public Graph[] getOwners() {
+        return owners.clone();
+    }
+    /** Metoda udostępniająca klasom pakietu tablicę grafów przystanku bez kopiowania*/
+    Graph[] owners() {
+        return owners;
+    }
+    /** Metoda zwracająca numer przystanku w pliku sieci lub -1*/
+    int getFileId() {
+        return fileId;
+    }
+    /** Metoda ustawiająca numer przystanku w pliku sieci*/
+    void setFileId(int fileId) {
+        this.fileId = fileId;
+    }
+    /** Metoda zapamiętująca graf, do którego dodano przystanek*/
+    void attach(Graph graph) {
+        Graph[] extended = Arrays.copyOf(owners, owners.length + 1);
+        extended[owners.length] = graph;
+        owners = extended;
+    }
+    /** Metoda usuwająca graf z listy grafów, do których należy przystanek*/
+    void detach(Graph graph) {
+        for (int i = 0; i < owners.length; i++) {
+            if (owners[i] == graph) {
+                Graph[] reduced = new Graph[owners.length - 1];
+                System.arraycopy(owners, 0, reduced, 0, i);
+                System.arraycopy(owners, i + 1, reduced, i, owners.length - i - 1);
+                owners = reduced.length == 0 ? NO_OWNERS : reduced;
+                return;
+            }
+        }
+    }
+    /** Metoda zwracająca prostokąt obejmujący koło i nazwę przystanku*/
+    public Rectangle getBounds(FontMetrics metrics) {
+        return getBounds(x, y, r, name, metrics);
+    }
+    /** Metoda zwracająca prostokąt obejmujący koło i nazwę przystanku o podanym położeniu, promieniu i nazwie
+     * (np. poprzednim - przed przesunięciem lub zmianą nazwy)*/
+    public static Rectangle getBounds(int x, int y, int r, String name, FontMetrics metrics) {
+        Rectangle bounds = new Rectangle(x - r - 1, y - r - 1, 2 * r + 2, 2 * r + 2);
+        if (name != null && metrics != null) {
+            bounds.add(new Rectangle(x - r + 10, y - r - 10 - metrics.getAscent(),
+                    metrics.stringWidth(name), metrics.getAscent() + metrics.getDescent()));
+        }
+        return bounds;
     }
     /** Metoda sprawdzająca czy kursor znajduje się nad węzłem grafu (przystankiem)*/
     public boolean isMouseOver(int mx, int my){
         return (x-mx)*(x-mx)+(y-my)*(y-my)<=r*r;
     }
-    /** Metoda rysująca przystanek w postaci okręgu, wypełniająca go kolorem i wypisująca nazwę przystanku*/
-    void draw(Graphics2D g) {
+    /** Metoda rysująca przystanek w postaci okręgu, wypełniająca go kolorem i wypisująca nazwę przystanku
+     * (nazwa pomijana, gdy <code>label</code> jest fałszem - np. przy małym powiększeniu widoku)*/
+    public void draw(Graphics2D g, boolean label) {
         // Rysowanie wypełnionego koła o środku w punkcie  (x,y)
         // i promieniu r
         g.setColor(color);
         g.fillOval(x-r, y-r, 2*r, 2*r);
         g.setColor(Color.BLACK);
         g.drawOval(x-r, y-r, 2*r, 2*r);
-        g.drawString(name, x-r+10, y-r-10);
+        if (label && name != null) g.drawString(name, x-r+10, y-r-10);
     }
     /** Przedefiniowana metoda toString zwracająca nazwę przystanku i jego współrzędne*/
     @Override
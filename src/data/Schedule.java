@@ -0,0 +1,105 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Schedule.java
+ *
+ *  Klasa Schedule reprezentuje rozkład jazdy linii
+ *  komunikacji miejskiej: uporządkowaną listę przystanków
+ *  oraz kursy z godzinami przyjazdów i odjazdów.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Klasa reprezentuje rozkład jazdy linii. <br>
+ * Rozkład składa się z uporządkowanej listy przystanków, przez które przejeżdża linia,
+ * oraz z listy kursów. Dla każdego kursu podawane są czasy przyjazdu i odjazdu na każdym
+ * przystanku, w sekundach od północy. Czasy kolejnych przystanków nie mogą maleć.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class Schedule {
+
+    /**Przystanki linii w kolejności przejazdu*/
+    private final List<Node> stops;
+    /**Czasy przyjazdów kolejnych kursów*/
+    private final List<int[]> arrivals = new ArrayList<>();
+    /**Czasy odjazdów kolejnych kursów*/
+    private final List<int[]> departures = new ArrayList<>();
+
+    /**Konstruktor rozkładu dla podanej kolejności przystanków*/
+    public Schedule(List<Node> stops) {
+        if (stops.size() < 2) throw new IllegalArgumentException("Rozkład musi obejmować co najmniej dwa przystanki");
+        this.stops = Collections.unmodifiableList(new ArrayList<>(stops));
+    }
+
+    /**Metoda dodająca kurs, w którym czas przyjazdu i odjazdu na każdym przystanku jest taki sam*/
+    public void addTrip(int[] times){
+        addTrip(times, times);
+    }
+
+    /**Metoda dodająca kurs z osobnymi czasami przyjazdów i odjazdów*/
+    public void addTrip(int[] arrivalTimes, int[] departureTimes){
+        if (arrivalTimes.length != stops.size() || departureTimes.length != stops.size()) {
+            throw new IllegalArgumentException("Liczba czasów kursu musi być równa liczbie przystanków");
+        }
+        int previous = Integer.MIN_VALUE;
+        for (int i = 0; i < arrivalTimes.length; i++) {
+            if (arrivalTimes[i] < previous || departureTimes[i] < arrivalTimes[i]) {
+                throw new IllegalArgumentException("Czasy kursu nie mogą maleć");
+            }
+            previous = departureTimes[i];
+        }
+        arrivals.add(arrivalTimes.clone());
+        departures.add(departureTimes.clone());
+    }
+
+    /**Metoda dodająca kursy o stałej częstotliwości, z podanymi czasami przejazdu od pierwszego przystanku*/
+    public void addTrips(int firstDeparture, int lastDeparture, int headway, int[] offsets){
+        if (headway <= 0) throw new IllegalArgumentException("Odstęp między kursami musi być dodatni");
+        for (int start = firstDeparture; start <= lastDeparture; start += headway) {
+            int[] times = new int[offsets.length];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = start + offsets[i];
+            }
+            addTrip(times);
+        }
+    }
+
+    /**Metoda zwracająca przystanki linii w kolejności przejazdu*/
+    public List<Node> getStops() {
+        return stops;
+    }
+    /**Metoda zwracająca liczbę kursów*/
+    public int getTripCount() {
+        return arrivals.size();
+    }
+    /**Metoda zwracająca czas przyjazdu kursu na przystanek o podanej pozycji*/
+    public int getArrival(int trip, int stop) {
+        return arrivals.get(trip)[stop];
+    }
+    /**Metoda zwracająca czas odjazdu kursu z przystanku o podanej pozycji*/
+    public int getDeparture(int trip, int stop) {
+        return departures.get(trip)[stop];
+    }
+
+    /**Metoda formatująca liczbę sekund od północy jako godzinę HH:MM*/
+    public static String formatTime(int seconds) {
+        int minutes = seconds / 60;
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+
+    /**Przedefiniowana metoda toString zwracająca liczbę przystanków i kursów*/
+    @Override
+    public String toString(){
+        return "Rozkład: " + stops.size() + " przystanków, " + arrivals.size() + " kursów";
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: SpatialIndex.java
+ *
+ *  Klasa SpatialIndex umożliwia szybkie wyszukiwanie przystanków
+ *  i połączeń grafu znajdujących się w pobliżu punktu.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Indeks przestrzenny grafu w postaci równomiernej siatki kwadratowych komórek. <br>
+ * Każdy przystanek zapisany jest w komórkach, które przecina jego okrąg, a każde połączenie -
+ * w komórkach prostokąta otaczającego odcinek. Wyszukanie elementu pod kursorem przegląda
+ * tylko komórki w pobliżu punktu, więc jego koszt nie zależy od wielkości sieci. <br>
+ * Indeks nasłuchuje zmian w grafie (dodanie, usunięcie, przesunięcie przystanku,
+ * zmiana promienia, dodanie i usunięcie połączenia) i aktualizuje tylko zmienione elementy;
+ * indeks sieci, która nie jest zmieniana (np. przy eksporcie mapy), zmian nie nasłuchuje.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class SpatialIndex implements GraphListener {
+
+    /**Domyślny rozmiar komórki siatki w pikselach*/
+    public static final int DEFAULT_CELL_SIZE = 64;
+
+    private final int cellSize;
+    /**Niepuste komórki siatki według klucza (kolumna, wiersz)*/
+    private final Map<Long, Cell> cells = new HashMap<>();
+    /**Zakres komórek zajmowanych przez każdy przystanek i połączenie*/
+    private final Map<Node, Range> nodeRanges = new HashMap<>();
+    private final Map<Connection, Range> connectionRanges = new HashMap<>();
+    /**Sieć (linia lub widok wszystkich linii), której elementy są indeksowane*/
+    private Network graph;
+
+    /**Konstruktor indeksu o domyślnym rozmiarze komórki*/
+    public SpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+    /**Konstruktor indeksu o podanym rozmiarze komórki*/
+    public SpatialIndex(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Rozmiar komórki musi być dodatni");
+        }
+        this.cellSize = cellSize;
+    }
+    /**Konstruktor indeksu sieci, która nie jest zmieniana w trakcie korzystania z indeksu - indeks nie
+     * rejestruje się jako słuchacz sieci (nie trzeba go odłączać), a odczyty mogą odbywać się w wielu wątkach*/
+    public SpatialIndex(Network graph, int cellSize) {
+        this(cellSize);
+        this.graph = graph;
+        graph.forEachNode(this::insert);
+        graph.forEachConnection(this::insert);
+    }
+
+    /**Metoda zmieniająca indeksowaną sieć - indeks jest budowany od nowa*/
+    public void setGraph(Network graph){
+        if (this.graph != null) {
+            this.graph.removeGraphListener(this);
+        }
+        cells.clear();
+        nodeRanges.clear();
+        connectionRanges.clear();
+        this.graph = graph;
+        if (graph == null) return;
+        graph.addGraphListener(this);
+        graph.forEachNode(this::insert);
+        graph.forEachConnection(this::insert);
+    }
+    /**Metoda zwracająca indeksowaną sieć*/
+    public Network getGraph(){
+        return graph;
+    }
+
+    /**Metoda zwracająca przystanek znajdujący się pod kursorem (najbliższy, gdy jest ich kilka) lub null*/
+    public Node findNode(int mx, int my){
+        Cell cell = cells.get(key(cell(mx), cell(my)));
+        if (cell == null) return null;
+        Node found = null;
+        long best = Long.MAX_VALUE;
+        for (Node node : cell.nodes) {
+            if (!node.isMouseOver(mx, my)) continue;
+            long dx = node.getX() - mx;
+            long dy = node.getY() - my;
+            if (dx * dx + dy * dy < best) {
+                best = dx * dx + dy * dy;
+                found = node;
+            }
+        }
+        return found;
+    }
+
+    /**Metoda zwracająca połączenie znajdujące się pod kursorem (najbliższe, gdy jest ich kilka) lub null*/
+    public Connection findConnection(int mx, int my){
+        return findConnection(mx, my, Connection.HIT_TOLERANCE);
+    }
+    /**Metoda zwracająca połączenie odległe od punktu o nie więcej niż <code>maxDistance</code> (najbliższe) lub null*/
+    public Connection findConnection(double mx, double my, double maxDistance){
+        int minCol = cell((int) Math.floor(mx - maxDistance));
+        int maxCol = cell((int) Math.ceil(mx + maxDistance));
+        int minRow = cell((int) Math.floor(my - maxDistance));
+        int maxRow = cell((int) Math.ceil(my + maxDistance));
+        Connection found = null;
+        double best = maxDistance;
+        for (int col = minCol; col <= maxCol; col++) {
+            for (int row = minRow; row <= maxRow; row++) {
+                Cell cell = cells.get(key(col, row));
+                if (cell == null) continue;
+                for (Connection connection : cell.connections) {
+                    double distance = connection.distanceTo(mx, my);
+                    if (distance <= best) {
+                        best = distance;
+                        found = connection;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**Metoda przekazująca akcjom przystanki (koła) i połączenia (prostokąty otaczające odcinki), których komórki
+     * przecinają prostokąt - każdy element tylko raz, w pierwszej wspólnej komórce jego zakresu i prostokąta*/
+    public void forEachInArea(double left, double top, double right, double bottom,
+                              Consumer<Node> nodeAction, Consumer<Connection> connectionAction){
+        Range area = new Range(cell((int) Math.floor(left)), cell((int) Math.floor(top)),
+                               cell((int) Math.floor(right)), cell((int) Math.floor(bottom)));
+        for (int col = area.minCol; col <= area.maxCol; col++) {
+            for (int row = area.minRow; row <= area.maxRow; row++) {
+                Cell cell = cells.get(key(col, row));
+                if (cell == null) continue;
+                if (nodeAction != null) {
+                    for (Node node : cell.nodes) {
+                        if (area.firstCommonCell(nodeRanges.get(node), col, row)) nodeAction.accept(node);
+                    }
+                }
+                if (connectionAction != null) {
+                    for (Connection connection : cell.connections) {
+                        if (area.firstCommonCell(connectionRanges.get(connection), col, row)) {
+                            connectionAction.accept(connection);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void nodeAdded(Graph graph, Node node){
+        insert(node);
+    }
+
+    @Override
+    public void nodeRemoved(Graph graph, Node node){
+        Range range = nodeRanges.remove(node);
+        if (range != null) removeFromCells(range, node, true);
+    }
+
+    @Override
+    public void nodeMoved(Graph graph, Node node, int oldX, int oldY){
+        update(node);
+    }
+
+    @Override
+    public void nodeResized(Graph graph, Node node, int oldR){
+        update(node);
+    }
+
+    @Override
+    public void connectionAdded(Graph graph, Connection connection){
+        insert(connection);
+    }
+
+    @Override
+    public void connectionRemoved(Graph graph, Connection connection){
+        Range range = connectionRanges.remove(connection);
+        if (range != null) removeFromCells(range, connection, false);
+    }
+
+    /**Metoda przenosząca przystanek i jego połączenia do komórek odpowiadających nowemu położeniu*/
+    private void update(Node node){
+        Range previous = nodeRanges.remove(node);
+        if (previous != null) {
+            removeFromCells(previous, node, true);
+            insert(node);
+        }
+        for (Connection connection : this.graph.getIncidentConnections(node)) {
+            Range old = connectionRanges.get(connection);
+            Range range = rangeOf(connection);
+            if (range.equals(old)) continue;
+            if (old != null) removeFromCells(old, connection, false);
+            connectionRanges.put(connection, range);
+            addToCells(range, connection, false);
+        }
+    }
+
+    private void insert(Node node){
+        if (nodeRanges.containsKey(node)) return;
+        int r = node.getR();
+        Range range = new Range(cell(node.getX() - r), cell(node.getY() - r),
+                                cell(node.getX() + r), cell(node.getY() + r));
+        nodeRanges.put(node, range);
+        addToCells(range, node, true);
+    }
+
+    private void insert(Connection connection){
+        if (connectionRanges.containsKey(connection)) return;
+        Range range = rangeOf(connection);
+        connectionRanges.put(connection, range);
+        addToCells(range, connection, false);
+    }
+
+    private Range rangeOf(Connection connection){
+        Node a = connection.getNode1();
+        Node b = connection.getNode2();
+        return new Range(cell(Math.min(a.getX(), b.getX())), cell(Math.min(a.getY(), b.getY())),
+                         cell(Math.max(a.getX(), b.getX())), cell(Math.max(a.getY(), b.getY())));
+    }
+
+    private void addToCells(Range range, Object element, boolean isNode){
+        for (int col = range.minCol; col <= range.maxCol; col++) {
+            for (int row = range.minRow; row <= range.maxRow; row++) {
+                Cell cell = cells.computeIfAbsent(key(col, row), key -> new Cell());
+                if (isNode) cell.nodes.add((Node) element);
+                else cell.connections.add((Connection) element);
+            }
+        }
+    }
+
+    private void removeFromCells(Range range, Object element, boolean isNode){
+        for (int col = range.minCol; col <= range.maxCol; col++) {
+            for (int row = range.minRow; row <= range.maxRow; row++) {
+                long key = key(col, row);
+                Cell cell = cells.get(key);
+                if (cell == null) continue;
+                if (isNode) cell.nodes.remove(element);
+                else cell.connections.remove(element);
+                if (cell.nodes.isEmpty() && cell.connections.isEmpty()) cells.remove(key);
+            }
+        }
+    }
+
+    private int cell(int coordinate){
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static long key(int col, int row){
+        return ((long) col << 32) | (row & 0xffffffffL);
+    }
+
+    /**Komórka siatki - elementy, których obszar ją przecina*/
+    private static final class Cell {
+        final List<Node> nodes = new ArrayList<>(2);
+        final List<Connection> connections = new ArrayList<>(2);
+    }
+
+    /**Prostokątny zakres komórek (włącznie z krańcami)*/
+    private static final class Range {
+        final int minCol;
+        final int minRow;
+        final int maxCol;
+        final int maxRow;
+
+        Range(int minCol, int minRow, int maxCol, int maxRow) {
+            this.minCol = minCol;
+            this.minRow = minRow;
+            this.maxCol = maxCol;
+            this.maxRow = maxRow;
+        }
+
+        /**Metoda sprawdzająca czy (col, row) jest pierwszą komórką wspólną dla tego i podanego zakresu*/
+        boolean firstCommonCell(Range range, int col, int row){
+            return Math.max(minCol, range.minCol) == col && Math.max(minRow, range.minRow) == row;
+        }
+
+        @Override
+        public boolean equals(Object other){
+            if (!(other instanceof Range)) return false;
+            Range range = (Range) other;
+            return minCol == range.minCol && minRow == range.minRow
+                    && maxCol == range.maxCol && maxRow == range.maxRow;
+        }
+
+        @Override
+        public int hashCode(){
+            return ((minCol * 31 + minRow) * 31 + maxCol) * 31 + maxRow;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: StopIndex.java
+ *
+ *  Klasa StopIndex grupuje przystanki wszystkich linii
+ *  według nazwy (węzły przesiadkowe).
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Indeks węzłów przesiadkowych - odwzorowanie znormalizowanej nazwy przystanku
+ * (<code>Node.normalizeName</code>) na wszystkie obiekty <code>Node</code> o tej nazwie
+ * we wszystkich zarejestrowanych liniach (np. perony "Plac Grunwaldzki" linii 1 i 146). <br>
+ * Indeks nasłuchuje zmian w grafach i jest aktualizowany przyrostowo przy dodaniu,
+ * usunięciu i zmianie nazwy przystanku, więc wyszukanie wszystkich peronów przystanku
+ * nie wymaga przeglądania grafów.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class StopIndex implements GraphListener {
+
+    /**Perony przystanków według znormalizowanej nazwy*/
+    private final Map<String, List<Node>> platforms = new HashMap<>();
+    /**Linie uwzględnione w indeksie*/
+    private final Set<Graph> graphs = new LinkedHashSet<>();
+
+    /**Metoda dodająca do indeksu przystanki linii i rejestrująca indeks jako słuchacza jej zmian*/
+    public void addGraph(Graph graph){
+        if (!graphs.add(graph)) return;
+        graph.addGraphListener(this);
+        for (Node node : graph.nodeList()) {
+            nodeAdded(graph, node);
+        }
+    }
+    /**Metoda usuwająca z indeksu przystanki linii*/
+    public void removeGraph(Graph graph){
+        if (!graphs.remove(graph)) return;
+        graph.removeGraphListener(this);
+        for (Node node : graph.nodeList()) {
+            if (!isIndexed(node)) remove(node.getNormalizedName(), node);
+        }
+    }
+    /**Metoda usuwająca z indeksu wszystkie linie*/
+    public void clear(){
+        for (Graph graph : graphs) {
+            graph.removeGraphListener(this);
+        }
+        graphs.clear();
+        platforms.clear();
+    }
+
+    /**Metoda zwracająca wszystkie perony przystanku o podanej nazwie (pusta lista, gdy brak)*/
+    public List<Node> getPlatforms(String name){
+        List<Node> list = platforms.get(Node.normalizeName(name));
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+    /**Metoda zwracająca wszystkie perony przystanku, do którego należy podany peron*/
+    public List<Node> getPlatforms(Node node){
+        return getPlatforms(node.getName());
+    }
+    /**Metoda sprawdzająca czy przystanek ma perony w więcej niż jednym miejscu (umożliwia przesiadkę)*/
+    public boolean isHub(String name){
+        return getPlatforms(name).size() > 1;
+    }
+    /**Metoda zwracająca liczbę różnych przystanków w indeksie*/
+    public int getStopCount(){
+        return platforms.size();
+    }
+    /**Metoda zwracająca posortowane nazwy przystanków (w postaci nadanej pierwszemu peronowi)*/
+    public String[] getStopNames(){
+        TreeSet<String> names = new TreeSet<>();
+        for (List<Node> list : platforms.values()) {
+            names.add(list.get(0).getName());
+        }
+        return names.toArray(new String[0]);
+    }
+
+    @Override
+    public void nodeAdded(Graph graph, Node node){
+        // przystanki bez nazwy nie należą do żadnego przystanku przesiadkowego
+        if (node.getNormalizedName().isEmpty()) return;
+        List<Node> list = platforms.computeIfAbsent(node.getNormalizedName(), key -> new ArrayList<>(2));
+        if (!list.contains(node)) list.add(node);
+    }
+
+    @Override
+    public void nodeRemoved(Graph graph, Node node){
+        if (!isIndexed(node)) remove(node.getNormalizedName(), node);
+    }
+
+    @Override
+    public void nodeRenamed(Graph graph, Node node, String oldName){
+        String oldKey = Node.normalizeName(oldName);
+        if (oldKey.equals(node.getNormalizedName())) return;
+        remove(oldKey, node);
+        nodeAdded(graph, node);
+    }
+
+    /**Metoda sprawdzająca czy przystanek należy jeszcze do którejś z linii indeksu*/
+    private boolean isIndexed(Node node){
+        for (Graph owner : node.getOwners()) {
+            if (graphs.contains(owner)) return true;
+        }
+        return false;
+    }
+
+    private void remove(String key, Node node){
+        List<Node> list = platforms.get(key);
+        if (list == null) return;
+        list.remove(node);
+        if (list.isEmpty()) platforms.remove(key);
+    }
+}
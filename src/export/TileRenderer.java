@@ -0,0 +1,398 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: TileRenderer.java
+ *
+ *  Klasa TileRenderer rysuje sieć bez okna programu do kafelków PNG
+ *  na kolejnych poziomach powiększenia (eksport mapy).
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Eksport mapy sieci do kafelków PNG (np. do druku lub dla map internetowych). <br>
+ * Na poziomie powiększenia 0 cała sieć mieści się w jednym kafelku, a na każdym kolejnym poziomie
+ * skala jest dwukrotnie większa (2^z x 2^z kafelków). Kafelki zapisywane są w układzie
+ * <code>katalog/z/x/y.png</code>; kafelki, na których nic nie ma, są pomijane. <br>
+ * Przystanki i połączenia rysowane są tymi samymi metodami co w panelu edytora (te same kolory, grubości
+ * linii, nazwy przystanków od skali <code>Network.LABEL_MIN_SCALE</code> i skupiska poniżej
+ * <code>Network.CLUSTER_MAX_SCALE</code>). <br>
+ * Poziom rysowany jest kolejnymi wierszami kafelków, więc w pamięci są tylko elementy jednego wiersza.
+ * Elementy wiersza wyszukiwane są w indeksie przestrzennym sieci (<code>SpatialIndex</code>, budowanym raz)
+ * i przydzielane tylko do kafelków, przez które faktycznie przechodzą (połączenie - do kafelków wiersza
+ * pod swoim odcinkiem, a nie pod całym prostokątem otaczającym). Każdy kafelek rysuje swoje elementy
+ * w kolejności z sieci - tak samo jak sąsiednie kafelki, dzięki czemu elementy na granicy kafelków łączą się
+ * bez szwów. Kafelki wiersza rysowane i zapisywane (<code>ImageIO</code>) są równolegle w puli
+ * <code>ForkJoinPool</code>. <br>
+ * Rysowanie korzysta wyłącznie z obrazów <code>BufferedImage</code>, więc działa również bez ekranu
+ * (<code>java.awt.headless=true</code>) - metoda <code>main</code> eksportuje mapę sieci zapisanej w pliku
+ * z wiersza poleceń.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package export;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import javax.imageio.ImageIO;
+
+import data.Clusters;
+import data.CompositeNetwork;
+import data.Connection;
+import data.Graph;
+import data.Network;
+import data.NetworkFile;
+import data.Node;
+import data.SpatialIndex;
+import util.ProgressListener;
+
+public final class TileRenderer {
+
+    /**Domyślny bok kafelka w pikselach*/
+    public static final int DEFAULT_TILE_SIZE = 256;
+    /**Czcionka nazw przystanków (domyślna czcionka komponentów Swing)*/
+    private static final Font FONT = new Font(Font.DIALOG, Font.PLAIN, 12);
+
+    private final int nodeCount;
+    private final SpatialIndex index;
+    /**Numery przystanków i połączeń w kolejności sieci - kolejność rysowania w kafelkach*/
+    private final Map<Node, Integer> nodeOrder = new HashMap<>();
+    private final Map<Connection, Integer> connectionOrder = new HashMap<>();
+    private final FontMetrics metrics;
+    /**Obszar rysunku (we współrzędnych świata) - lewy górny róg, bok kwadratu i wymiary sieci*/
+    private final double originX;
+    private final double originY;
+    private final double extent;
+    private final double width;
+    private final double height;
+    /**Margines połączenia (połowa grubości linii) i największe wysunięcie rysunku przystanku (z nazwą) poza koło*/
+    private final int connectionMargin;
+    private final int nodeMargin;
+
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private Color background;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**Konstruktor eksportu mapy sieci - sieć nie powinna być zmieniana w trakcie rysowania*/
+    public TileRenderer(Network network) {
+        Node[] nodes = network.getNodes();
+        Connection[] connections = network.getConnections();
+        nodeCount = nodes.length;
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = probe.createGraphics();
+        metrics = g.getFontMetrics(FONT);
+        g.dispose();
+
+        Rectangle bounds = null;
+        int margin = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = nodes[i];
+            nodeOrder.put(node, i);
+            Rectangle area = node.getBounds(metrics);
+            bounds = bounds == null ? area : bounds.union(area);
+            margin = Math.max(margin, Math.max(Math.max(node.getX() - area.x, area.x + area.width - node.getX()),
+                                               Math.max(node.getY() - area.y, area.y + area.height - node.getY()))
+                                      - node.getR());
+        }
+        for (int i = 0; i < connections.length; i++) {
+            connectionOrder.put(connections[i], i);
+            Rectangle area = connections[i].getBounds();
+            bounds = bounds == null ? area : bounds.union(area);
+        }
+        if (bounds == null) bounds = new Rectangle(0, 0, 1, 1);
+        originX = bounds.x;
+        originY = bounds.y;
+        extent = Math.max(bounds.width, bounds.height);
+        width = bounds.width;
+        height = bounds.height;
+        connectionMargin = Connection.getBounds(0, 0, 0, 0).width / 2;
+        nodeMargin = margin;
+        index = new SpatialIndex(network, SpatialIndex.DEFAULT_CELL_SIZE);
+    }
+
+    /**Metoda ustawiająca bok kafelka w pikselach*/
+    public void setTileSize(int tileSize){
+        if (tileSize <= 0) throw new IllegalArgumentException("Bok kafelka musi być dodatni");
+        this.tileSize = tileSize;
+    }
+
+    /**Metoda ustawiająca kolor tła kafelków (null - tło przezroczyste)*/
+    public void setBackground(Color background){
+        this.background = background;
+    }
+
+    /**Metoda ustawiająca pulę wątków rysowania (domyślnie wspólna pula)*/
+    public void setPool(ForkJoinPool pool){
+        this.pool = pool;
+    }
+
+    /**Metoda zwracająca skalę (liczbę pikseli na jednostkę współrzędnych świata) poziomu powiększenia*/
+    public double getScale(int zoom){
+        return (double) tileSize / extent * (1L << zoom);
+    }
+
+    /**Metoda rysująca kafelki poziomów od <code>minZoom</code> do <code>maxZoom</code> do podanego katalogu;
+     * zwraca liczbę zapisanych kafelków. Postęp zgłaszany jest w tysięcznych częściach poziomów, przerwanie
+     * kończy się wyjątkiem <code>CancellationException</code> (zapisane kafelki pozostają).*/
+    public int render(Path directory, int minZoom, int maxZoom, ProgressListener listener) throws IOException {
+        if (minZoom < 0 || maxZoom < minZoom || maxZoom > 30) {
+            throw new IllegalArgumentException("Niepoprawny zakres poziomów powiększenia: " + minZoom + " - " + maxZoom);
+        }
+        AtomicInteger written = new AtomicInteger();
+        int levels = maxZoom - minZoom + 1;
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            int level = zoom - minZoom;
+            int currentZoom = zoom;
+            // wiersze i kolumny kafelków, które obejmuje sieć (obszar rysunku jest kwadratem)
+            int lastRow = lastTile(height, zoom);
+            int lastColumn = lastTile(width, zoom);
+            try {
+                pool.submit(() -> {
+                    for (int y = 0; y <= lastRow; y++) {
+                        if (listener.isCancelled()) throw new CancellationException("Przerwano eksport mapy");
+                        int row = y;
+                        Map<Integer, Tile> tiles = assign(currentZoom, row, 0, lastColumn);
+                        tiles.keySet().stream().mapToInt(Integer::intValue).sorted().parallel().forEach(x -> {
+                            if (listener.isCancelled()) throw new CancellationException("Przerwano eksport mapy");
+                            BufferedImage image = draw(currentZoom, x, row, tiles.get(x));
+                            // przydział jest przybliżony (grubość linii, prostokąty kół skupisk) - element może
+                            // nie zostawić w kafelku żadnego piksela
+                            if (isBlank(image)) return;
+                            try {
+                                Path file = directory.resolve(Integer.toString(currentZoom))
+                                                     .resolve(Integer.toString(x)).resolve(row + ".png");
+                                Files.createDirectories(file.getParent());
+                                write(image, file);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            written.incrementAndGet();
+                        });
+                        listener.progress(level * 1000L + (row + 1) * 1000L / (lastRow + 1), levels * 1000L);
+                    }
+                }).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Przerwano eksport mapy");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw new IOException("Błąd zapisu kafelka mapy: " + cause.getCause().getMessage(), cause.getCause());
+                }
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IllegalStateException("Błąd podczas eksportu mapy", cause);
+            }
+        }
+        return written.get();
+    }
+
+    /**Metoda zapisująca kafelek w formacie PNG*/
+    private static void write(BufferedImage image, Path file) throws IOException {
+        if (!ImageIO.write(image, "png", file.toFile())) {
+            throw new IOException("Brak kodera obrazów PNG");
+        }
+    }
+
+    /**Metoda sprawdzająca czy kafelek zawiera tylko tło*/
+    private boolean isBlank(BufferedImage image){
+        int empty = background == null ? 0 : background.getRGB();
+        for (int pixel : ((DataBufferInt) image.getRaster().getDataBuffer()).getData()) {
+            if (pixel != empty) return false;
+        }
+        return true;
+    }
+
+    /**Metoda rysująca jeden kafelek (x, y) poziomu powiększenia <code>zoom</code>*/
+    public BufferedImage renderTile(int zoom, int x, int y){
+        Tile tile = assign(zoom, y, x, x).get(x);
+        return draw(zoom, x, y, tile == null ? new Tile() : tile);
+    }
+
+    /**Metoda zwracająca numer ostatniego kafelka poziomu, który obejmuje odcinek [0, length] od początku rysunku*/
+    private int lastTile(double length, int zoom){
+        return (int) Math.min((1L << zoom) - 1, (long) Math.floor(length * getScale(zoom) / tileSize));
+    }
+
+    /**Metoda przydzielająca elementy sieci do kafelków wiersza <code>y</code> o numerach od <code>firstColumn</code>
+     * do <code>lastColumn</code> - elementy wyszukiwane są w indeksie, a kafelki bez elementów nie są tworzone*/
+    private Map<Integer, Tile> assign(int zoom, int y, int firstColumn, int lastColumn){
+        double scale = getScale(zoom);
+        double tileExtent = tileSize / scale;
+        double left = originX + firstColumn * tileExtent;
+        double right = originX + (lastColumn + 1) * tileExtent;
+        double top = originY + y * tileExtent;
+        double bottom = top + tileExtent;
+        Map<Integer, Tile> tiles = new HashMap<>();
+
+        List<Connection> connections = new ArrayList<>();
+        index.forEachInArea(left - connectionMargin, top - connectionMargin, right + connectionMargin,
+                            bottom + connectionMargin, null, connections::add);
+        connections.sort(Comparator.comparing(connectionOrder::get));
+        for (Connection connection : connections) {
+            // część odcinka (wraz z grubością linii) leżąca w pasie wiersza wyznacza kolumny kafelków
+            double ax = connection.getNode1().getX();
+            double ay = connection.getNode1().getY();
+            double bx = connection.getNode2().getX();
+            double by = connection.getNode2().getY();
+            double low = top - connectionMargin;
+            double high = bottom + connectionMargin;
+            if (Math.max(ay, by) < low || Math.min(ay, by) >= high) continue;
+            double from = 0;
+            double to = 1;
+            if (ay != by) {
+                double t1 = (low - ay) / (by - ay);
+                double t2 = (high - ay) / (by - ay);
+                from = Math.max(0, Math.min(t1, t2));
+                to = Math.min(1, Math.max(t1, t2));
+            }
+            double x1 = ax + from * (bx - ax);
+            double x2 = ax + to * (bx - ax);
+            forColumns(Math.min(x1, x2) - connectionMargin, Math.max(x1, x2) + connectionMargin, scale,
+                       firstColumn, lastColumn, x -> tiles.computeIfAbsent(x, k -> new Tile()).connections.add(connection));
+        }
+
+        if (scale < Network.CLUSTER_MAX_SCALE) {
+            for (Ellipse2D circle : clusters(scale, left, top, right, bottom)) {
+                if (row(circle.getMinY() - 1 / scale, scale) > y || row(circle.getMaxY() + 1 / scale, scale) < y) continue;
+                forColumns(circle.getMinX() - 1 / scale, circle.getMaxX() + 1 / scale, scale, firstColumn, lastColumn,
+                           x -> tiles.computeIfAbsent(x, k -> new Tile()).clusters.add(circle));
+            }
+        }
+        else {
+            FontMetrics labelMetrics = scale >= Network.LABEL_MIN_SCALE ? metrics : null;
+            int nodeReach = labelMetrics != null ? nodeMargin : 1;
+            List<Node> nodes = new ArrayList<>();
+            index.forEachInArea(left - nodeReach, top - nodeReach, right + nodeReach, bottom + nodeReach, nodes::add, null);
+            nodes.sort(Comparator.comparing(nodeOrder::get));
+            for (Node node : nodes) {
+                Rectangle bounds = node.getBounds(labelMetrics);
+                if (row(bounds.getY(), scale) > y || row(bounds.getMaxY(), scale) < y) continue;
+                forColumns(bounds.getX(), bounds.getMaxX(), scale, firstColumn, lastColumn,
+                           x -> tiles.computeIfAbsent(x, k -> new Tile()).nodes.add(node));
+            }
+        }
+        return tiles;
+    }
+
+    /**Metoda zwracająca koła skupisk, które mogą sięgać do obszaru - grupowane są tylko przystanki z pełnych
+     * komórek siatki skupisk wokół obszaru (skupiska uporządkowane według komórek)*/
+    private List<Ellipse2D> clusters(double scale, double left, double top, double right, double bottom){
+        double cell = Clusters.cellSize(scale);
+        double reach = Clusters.maxRadius(nodeCount, scale) + 1 / scale;
+        long firstColumn = (long) Math.floor((left - reach) / cell);
+        long lastColumn = (long) Math.floor((right + reach) / cell);
+        long firstRow = (long) Math.floor((top - reach) / cell);
+        long lastRow = (long) Math.floor((bottom + reach) / cell);
+        List<Node> members = new ArrayList<>();
+        index.forEachInArea(firstColumn * cell, firstRow * cell, (lastColumn + 1) * cell, (lastRow + 1) * cell, node -> {
+            long column = (long) Math.floor(node.getX() / cell);
+            long row = (long) Math.floor(node.getY() / cell);
+            if (column >= firstColumn && column <= lastColumn && row >= firstRow && row <= lastRow) members.add(node);
+        }, null);
+        List<Ellipse2D> circles = new ArrayList<>();
+        for (long[] cluster : new TreeMap<>(Clusters.group(members, scale)).values()) {
+            circles.add(Clusters.circle(cluster, scale));
+        }
+        return circles;
+    }
+
+    /**Metoda zwracająca numer wiersza kafelków, w którym leży współrzędna y świata*/
+    private int row(double y, double scale){
+        return (int) Math.floor((y - originY) * scale / tileSize);
+    }
+
+    /**Metoda wywołująca akcję dla kolumn kafelków (z podanego zakresu) obejmujących odcinek [left, right] świata*/
+    private void forColumns(double left, double right, double scale, int firstColumn, int lastColumn, IntConsumer action){
+        int x0 = Math.max(firstColumn, (int) Math.floor((left - originX) * scale / tileSize));
+        int x1 = Math.min(lastColumn, (int) Math.floor((right - originX) * scale / tileSize));
+        for (int x = x0; x <= x1; x++) {
+            action.accept(x);
+        }
+    }
+
+    /**Metoda rysująca kafelek - elementy w kolejności z sieci (listy kafelka są uporządkowane, bo przydział
+     * przebiega po uporządkowanych elementach), połączenia pod przystankami*/
+    private BufferedImage draw(int zoom, int x, int y, Tile tile){
+        double scale = getScale(zoom);
+        BufferedImage image = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            // te same ustawienia co obraz sieci w panelu (bez wygładzania - tak samo jak na ekranie)
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            if (background != null) {
+                g.setColor(background);
+                g.fillRect(0, 0, tileSize, tileSize);
+            }
+            g.setFont(FONT);
+            g.translate(-(double) x * tileSize, -(double) y * tileSize);
+            g.scale(scale, scale);
+            g.translate(-originX, -originY);
+            for (Connection connection : tile.connections) {
+                connection.draw(g);
+            }
+            for (Ellipse2D circle : tile.clusters) {
+                Clusters.draw(g, circle);
+            }
+            boolean labels = scale >= Network.LABEL_MIN_SCALE;
+            for (Node node : tile.nodes) {
+                node.draw(g, labels);
+            }
+        }
+        finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**Elementy przydzielone do kafelka - połączenia, przystanki i koła skupisk*/
+    private static final class Tile {
+        private final List<Connection> connections = new ArrayList<>(4);
+        private final List<Node> nodes = new ArrayList<>(4);
+        private final List<Ellipse2D> clusters = new ArrayList<>(0);
+    }
+
+    /**Eksport mapy sieci zapisanej w pliku bez uruchamiania edytora:
+     * <code>TileRenderer plik_sieci katalog [najwyższy_poziom] [najniższy_poziom]</code>*/
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Użycie: TileRenderer plik_sieci katalog [najwyższy_poziom] [najniższy_poziom]");
+            System.exit(1);
+        }
+        System.setProperty("java.awt.headless", "true");
+        int maxZoom = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int minZoom = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        CompositeNetwork network = new CompositeNetwork();
+        for (Graph line : NetworkFile.open(Paths.get(args[0])).getLines()) {
+            network.addLine(line);
+        }
+        long start = System.nanoTime();
+        int written = new TileRenderer(network).render(Paths.get(args[1]), minZoom, maxZoom, ProgressListener.NONE);
+        System.out.println("Zapisano kafelków: " + written + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Animation.java
+ *
+ *  Klasa Animation opisuje wyróżnienie połączeń sieci
+ *  zmieniające się w czasie (podświetlenie, miganie, wygaszanie).
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Animacja wyróżniająca połączenia (np. wybraną linię lub wyznaczoną trasę). <br>
+ * Połączenia rysowane są nad obrazem sieci, w podanym kolorze i z intensywnością zależną
+ * od efektu i czasu od rozpoczęcia animacji - kolory połączeń w grafie nie są zmieniane,
+ * więc animacja nie trafia do historii zmian ani do dziennika. Animacje odtwarzane są
+ * przez <code>Animator</code>.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package gui;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import data.Connection;
+
+public final class Animation {
+
+    /**Rodzaje efektów animacji*/
+    public enum Effect {
+        /**Stałe wyróżnienie przez cały czas trwania animacji*/
+        HIGHLIGHT,
+        /**Miganie - wyróżnienie włączane i wyłączane co FLASH_PERIOD / 2 ms*/
+        FLASH,
+        /**Wyróżnienie wygasające liniowo do końca animacji*/
+        FADE
+    }
+
+    /**Okres migania w milisekundach*/
+    static final long FLASH_PERIOD = 500;
+    /**Linia wyróżnienia - szersza od linii połączenia*/
+    private static final BasicStroke STROKE = new BasicStroke(6, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    private final List<Connection> connections;
+    private final Color color;
+    private final Effect effect;
+    private final long duration;
+    /**Czas rozpoczęcia (System.nanoTime) - ustawiany przez Animator*/
+    private long start;
+    private float intensity;
+
+    /**Konstruktor animacji połączeń trwającej <code>duration</code> milisekund*/
+    public Animation(Collection<Connection> connections, Color color, Effect effect, long duration) {
+        if (duration <= 0) throw new IllegalArgumentException("Czas trwania animacji musi być dodatni");
+        this.connections = new ArrayList<>(connections);
+        this.color = color;
+        this.effect = effect;
+        this.duration = duration;
+    }
+
+    /**Metoda zwracająca wyróżniane połączenia*/
+    public List<Connection> getConnections() {
+        return connections;
+    }
+
+    /**Metoda zwracająca efekt animacji*/
+    public Effect getEffect() {
+        return effect;
+    }
+
+    /**Metoda rozpoczynająca animację w chwili <code>now</code> (w nanosekundach)*/
+    void start(long now){
+        start = now;
+        intensity = 1;
+    }
+
+    /**Metoda wyznaczająca intensywność wyróżnienia w chwili <code>now</code>;
+     * zwraca <code>false</code>, gdy animacja się zakończyła*/
+    boolean update(long now){
+        long elapsed = (now - start) / 1_000_000;
+        if (elapsed >= duration) {
+            intensity = 0;
+            return false;
+        }
+        switch (effect) {
+            case FLASH:
+                intensity = elapsed % FLASH_PERIOD < FLASH_PERIOD / 2 ? 1 : 0;
+                break;
+            case FADE:
+                intensity = 1 - (float) elapsed / duration;
+                break;
+            default:
+                intensity = 1;
+        }
+        return true;
+    }
+
+    /**Metoda zwracająca prostokąt (we współrzędnych świata) obejmujący wyróżnienie*/
+    Rectangle getBounds(){
+        Rectangle bounds = null;
+        int margin = (int) Math.ceil(STROKE.getLineWidth() / 2) + 1;
+        for (Connection connection : connections) {
+            Rectangle area = connection.getBounds();
+            area.grow(margin, margin);
+            bounds = bounds == null ? area : bounds.union(area);
+        }
+        return bounds;
+    }
+
+    /**Metoda rysująca wyróżnienie (graficzny kontekst we współrzędnych świata)*/
+    void paint(Graphics2D g){
+        if (intensity <= 0) return;
+        int alpha = Math.round(color.getAlpha() * intensity);
+        g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha));
+        g.setStroke(STROKE);
+        for (Connection connection : connections) {
+            g.drawLine(connection.getNode1().getX(), connection.getNode1().getY(),
+                       connection.getNode2().getX(), connection.getNode2().getY());
+        }
+    }
+}
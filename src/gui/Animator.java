@@ -0,0 +1,113 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Animator.java
+ *
+ *  Klasa Animator odtwarza animacje wyróżnień połączeń
+ *  bez blokowania interfejsu użytkownika.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Odtwarzacz animacji (<code>Animation</code>) panelu. <br>
+ * Wszystkie animacje napędzane są jednym zegarem <code>javax.swing.Timer</code>, więc działają
+ * w wątku zdarzeń Swing i nie wstrzymują obsługi myszy i klawiatury. Zegar pracuje tylko wtedy,
+ * gdy trwa co najmniej jedna animacja. W każdym takcie odświeżany jest wyłącznie obszar panelu
+ * zajmowany przez animacje - obraz sieci (<code>StaticLayer</code>) nie jest rysowany ponownie.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package gui;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+class Animator {
+
+    /**Odstęp między kolejnymi klatkami animacji w milisekundach*/
+    static final int TICK = 40;
+
+    private final JComponent target;
+    private final Camera camera;
+    private final List<Animation> animations = new ArrayList<>();
+    private final Timer timer;
+
+    /**Konstruktor odtwarzacza animacji rysowanych na podanym komponencie w widoku podanej kamery*/
+    Animator(JComponent target, Camera camera) {
+        this.target = target;
+        this.camera = camera;
+        timer = new Timer(TICK, event -> tick());
+        timer.setCoalesce(true);
+    }
+
+    /**Metoda rozpoczynająca animację*/
+    void play(Animation animation){
+        animation.start(System.nanoTime());
+        animations.add(animation);
+        repaint(animation.getBounds());
+        if (!timer.isRunning()) timer.start();
+    }
+
+    /**Metoda przerywająca animację*/
+    void stop(Animation animation){
+        if (!animations.remove(animation)) return;
+        repaint(animation.getBounds());
+        if (animations.isEmpty()) timer.stop();
+    }
+
+    /**Metoda przerywająca wszystkie animacje*/
+    void stopAll(){
+        for (Animation animation : new ArrayList<>(animations)) {
+            stop(animation);
+        }
+    }
+
+    /**Metoda zwracająca liczbę trwających animacji*/
+    int getCount(){
+        return animations.size();
+    }
+
+    /**Metoda rysująca trwające animacje nad obrazem sieci*/
+    void paint(Graphics2D g){
+        if (animations.isEmpty()) return;
+        Graphics2D animationGraphics = (Graphics2D) g.create();
+        animationGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        animationGraphics.transform(camera.getTransform());
+        for (Animation animation : animations) {
+            animation.paint(animationGraphics);
+        }
+        animationGraphics.dispose();
+    }
+
+    /**Takt zegara - wspólny dla wszystkich animacji*/
+    private void tick(){
+        long now = System.nanoTime();
+        Rectangle damage = null;
+        for (int i = animations.size() - 1; i >= 0; i--) {
+            Animation animation = animations.get(i);
+            if (!animation.update(now)) {
+                animations.remove(i);
+            }
+            Rectangle bounds = animation.getBounds();
+            if (bounds != null) damage = damage == null ? bounds : damage.union(bounds);
+        }
+        if (animations.isEmpty()) timer.stop();
+        repaint(damage);
+    }
+
+    /**Metoda odświeżająca obszar panelu (prostokąt we współrzędnych świata)*/
+    private void repaint(Rectangle world){
+        if (world == null) return;
+        Rectangle screen = camera.getTransform().createTransformedShape(world).getBounds();
+        screen.grow(2, 2);
+        target.repaint(screen);
+    }
+}
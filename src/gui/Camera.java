@@ -0,0 +1,95 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Camera.java
+ *
+ *  Klasa Camera przechowuje przesunięcie i powiększenie widoku
+ *  panelu edytora grafu.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Przekształcenie widoku panelu: przesunięcie i powiększenie. <br>
+ * Współrzędne przystanków (współrzędne "świata") nie są zmieniane przy przesuwaniu
+ * i powiększaniu widoku - przekształcenie jest stosowane przy rysowaniu, a przy obsłudze
+ * myszki współrzędne ekranu przeliczane są na współrzędne świata. <br>
+ * Punkt świata (x, y) widoczny jest na ekranie w punkcie (x * zoom + offsetX, y * zoom + offsetY).
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package gui;
+
+import java.awt.geom.AffineTransform;
+
+class Camera {
+
+    /**Granice powiększenia*/
+    static final double MIN_ZOOM = 0.02;
+    static final double MAX_ZOOM = 20.0;
+
+    private double offsetX;
+    private double offsetY;
+    private double zoom = 1.0;
+
+    /**Metoda zwracająca powiększenie widoku*/
+    double getZoom(){
+        return zoom;
+    }
+
+    /**Metoda przesuwająca widok o podaną liczbę pikseli ekranu*/
+    void pan(double dx, double dy){
+        offsetX += dx;
+        offsetY += dy;
+    }
+
+    /**Metoda zmieniająca powiększenie tak, aby punkt ekranu (sx, sy) pozostał w miejscu*/
+    void zoomAt(double sx, double sy, double factor){
+        double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        double wx = toWorldX(sx);
+        double wy = toWorldY(sy);
+        zoom = newZoom;
+        offsetX = sx - wx * zoom;
+        offsetY = sy - wy * zoom;
+    }
+
+    /**Metoda przywracająca widok bez przesunięcia i powiększenia*/
+    void reset(){
+        offsetX = 0;
+        offsetY = 0;
+        zoom = 1.0;
+    }
+
+    /**Metoda ustawiająca widok tak, aby prostokąt świata mieścił się w obszarze ekranu width x height*/
+    void fit(double left, double top, double right, double bottom, int width, int height){
+        double worldWidth = Math.max(right - left, 1);
+        double worldHeight = Math.max(bottom - top, 1);
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, Math.min(width / worldWidth, height / worldHeight)));
+        offsetX = (width - worldWidth * zoom) / 2 - left * zoom;
+        offsetY = (height - worldHeight * zoom) / 2 - top * zoom;
+    }
+
+    /**Metoda przeliczająca współrzędną x ekranu na współrzędną świata*/
+    double toWorldX(double sx){
+        return (sx - offsetX) / zoom;
+    }
+
+    /**Metoda przeliczająca współrzędną y ekranu na współrzędną świata*/
+    double toWorldY(double sy){
+        return (sy - offsetY) / zoom;
+    }
+
+    /**Metoda przeliczająca odległość na ekranie na odległość w świecie*/
+    double toWorldDistance(double screenDistance){
+        return screenDistance / zoom;
+    }
+
+    /**Metoda zwracająca przekształcenie współrzędnych świata na współrzędne ekranu*/
+    AffineTransform getTransform(){
+        AffineTransform transform = AffineTransform.getTranslateInstance(offsetX, offsetY);
+        transform.scale(zoom, zoom);
+        return transform;
+    }
+}
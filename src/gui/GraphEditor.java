@@ -14,16 +14,43 @@ package gui;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import javax.swing.*;
 
 import data.Connection;
+import data.EditJournal;
 import data.Graph;
+import data.GraphListener;
+import data.GtfsImporter;
+import data.Network;
+import data.NetworkFile;
+import data.NetworkGenerator;
+import data.NetworkSnapshot;
 import data.Node;
+import data.Schedule;
 import data.TransportType;
+import export.TileRenderer;
+import layout.ForceLayout;
+import layout.Layout;
+import layout.OctilinearLayout;
+import routing.ContractionHierarchy;
+import routing.CostMatrix;
+import routing.HierarchyQuery;
+import routing.Itinerary;
+import routing.Journey;
+import routing.JourneyPlanner;
+import routing.TimetableRouter;
+import util.Metrics;
 
 
 public class GraphEditor extends JFrame implements ActionListener {
@@ -38,6 +65,13 @@ public class GraphEditor extends JFrame implements ActionListener {
 
     private static final String SAVED_GRAPHS = "SAVED_GRAPHS.BIN";
 
+    /**Czas wyróżnienia wybranej linii i wyznaczonej trasy w milisekundach*/
+    private static final long HIGHLIGHT_TIME = 5000;
+    /**Odstęp odświeżania widoku w trakcie automatycznego rozmieszczania w milisekundach*/
+    private static final int LAYOUT_REFRESH = 250;
+    /**Liczba przystanków, od której trasy wyznaczane są z użyciem hierarchii skrótów (mniejsze sieci - A*)*/
+    private static final int HIERARCHY_MIN_STOPS = 10000;
+
     private static final String APP_INSTRUCTION =
             "                  O P I S   P R O G R A M U \n\n" +
                     "Poszczególne grafy składające się z kół (przystanków) i krawędzi (połączeń) przedstawiają linie komunikacji miejskiej\n " +
@@ -45,14 +79,17 @@ public class GraphEditor extends JFrame implements ActionListener {
                     "Czerwony: Bus\n" +
                     "Niebieski: Tramwaj\n\n"+
                     "Aktywna klawisze:\n" +
-                    "   strzałki ==> przesuwanie wszystkich kół\n" +
-                    "   SHIFT + strzałki ==> szybkie przesuwanie wszystkich kół\n\n" +
+                    "   strzałki ==> przesuwanie widoku\n" +
+                    "   SHIFT + strzałki ==> szybkie przesuwanie widoku\n" +
+                    "   HOME ==> przywrócenie widoku bez przesunięcia i powiększenia\n" +
+                    "   CTRL + Z, CTRL + Y ==> cofnięcie, ponowienie zmiany\n\n" +
                     "ponadto gdy kursor wskazuje koło:\n" +
                     "   DEL   ==> kasowanie koła\n" +
                     "   +, -   ==> powiększanie, pomniejszanie koła\n" +
                     "   r,g,b ==> zmiana koloru koła\n\n" +
                     "Operacje myszka:\n" +
-                    "   przeciąganie ==> przesuwanie wszystkich kół\n" +
+                    "   przeciąganie ==> przesuwanie widoku\n" +
+                    "   kółko myszki ==> powiększanie, pomniejszanie widoku\n" +
                     "   PPM ==> tworzenie nowego koła w miejscu kursora\n" +
                     "ponadto gdy kursor wskazuje koło:\n" +
                     "   przeciąganie ==> przesuwanie koła\n" +
@@ -63,17 +100,31 @@ public class GraphEditor extends JFrame implements ActionListener {
                     "Opcje menu:\n" +
                     "Nowa linia: Utworzenie nowej linii komunikacji\n" +
                     "Następna linia: Przeglądanie i edycja poszczególnych linii\n" +
+                    "Cofnij, Ponów: Cofnięcie i ponowienie zmian (przeciągnięcie przystanku to jedna zmiana)\n" +
+                    "Rozmieść automatycznie: Rozmieszczenie przystanków wyświetlanej linii (lub wszystkich linii) metodą sił\n" +
+                    "Schemat linii: Schematyczny plan wyświetlanej sieci - połączenia pod kątami 0, 45 i 90 stopni\n" +
                     "Wszystkie linie: Wyświetlenie wszystkich linii jednocześnie (nie należy edytować linii w tym widoku)\n" +
                     "Wyodrębnij wybraną linię: Koloruje wybrana linię" +
                     "Lista przystanków: Wyświetlenie listy przystanków\n" +
                     "Lista połączeń: Wyświetlenie listy połączeń\n" +
                     "Lista linii: Wyświetlenie listy linii komunikacji\n" +
+                    "Wyznacz trasę: Wyszukanie najkrótszej trasy między przystankami (z przesiadkami)\n" +
+                    "Najszybszy przejazd: Wyszukanie najwcześniejszego przyjazdu według rozkładów jazdy\n" +
+                    "Macierz kosztów: Koszty przejazdu między wszystkimi parami przystanków (zapisywane obok pliku sieci)\n" +
                     "Wczytaj z pliku: Odczyt grafów z pliku binarnego\n" +
-                    "Zapisz do pliku: Zapis grafów do pliku binarnego\n";
+                    "Zapisz do pliku: Utrwalenie zmian na dysku (zmiany są zapisywane na bieżąco w dzienniku pliku)\n" +
+                    "Importuj GTFS: Utworzenie linii na podstawie danych rozkładowych GTFS (katalog lub archiwum zip),\n" +
+                    "                  zapisywanych jako nowa sieć we wskazanym pliku\n" +
+                    "Generuj sieć: Utworzenie losowej sieci linii autobusowych i tramwajowych o podanej liczbie przystanków\n" +
+                    "                  (to samo ziarno daje zawsze tę samą sieć; nowa sieć zapisywana we wskazanym pliku)\n" +
+                    "Eksportuj mapę: Zapis wyświetlanej sieci do kafelków PNG (katalog/poziom/x/y.png)\n" +
+                    "Statystyki wydajności (F3): Czas rysowania i liczba elementów w rogu widoku\n" +
+                    "Raport wydajności: Czasy rysowania, wyszukiwania, łączenia linii oraz odczytu i zapisu plików\n";
 
 
     public static void main(String[] args) {
-        new GraphEditor();
+        // okno tworzone w wątku zdarzeń Swing - otwarcie sieci wyświetla modalne okno postępu
+        SwingUtilities.invokeLater(GraphEditor::new);
     }
 
 
@@ -82,18 +133,42 @@ public class GraphEditor extends JFrame implements ActionListener {
     private JMenu menuHelp = new JMenu("Pomoc");
     private JMenuItem menuNew = new JMenuItem("Nowa linia", KeyEvent.VK_N);
     private JMenuItem menuNext = new JMenuItem("Następna linia");
+    private JMenuItem menuUndo = new JMenuItem("Cofnij", KeyEvent.VK_C);
+    private JMenuItem menuRedo = new JMenuItem("Ponów", KeyEvent.VK_P);
+    private JMenuItem menuLayout = new JMenuItem("Rozmieść automatycznie", KeyEvent.VK_R);
+    private JMenuItem menuSchematic = new JMenuItem("Schemat linii", KeyEvent.VK_S);
     private JMenuItem menuAllLines = new JMenuItem("Wszystkie linie", KeyEvent.VK_X);
     private JMenuItem menuColorLine = new JMenuItem("Wyodrębnij wybraną linię", KeyEvent.VK_X);
     private JMenuItem menuExit = new JMenuItem("Wyjście", KeyEvent.VK_E);
     private JMenuItem menuListOfNodes = new JMenuItem("Lista przystanków", KeyEvent.VK_N);
     private JMenuItem menuListOfConnections = new JMenuItem("Lista połączeń", KeyEvent.VK_N);
     private JMenuItem menuListOfLines = new JMenuItem("Lista linii", KeyEvent.VK_N);
+    private JMenuItem menuFindRoute = new JMenuItem("Wyznacz trasę", KeyEvent.VK_T);
+    private JMenuItem menuFindTimetableRoute = new JMenuItem("Najszybszy przejazd", KeyEvent.VK_R);
+    private JMenuItem menuCostMatrix = new JMenuItem("Macierz kosztów");
     private JMenuItem menuLoadFromFile = new JMenuItem("Wczytaj z pliku");
     private JMenuItem menuSaveToFile = new JMenuItem("Zapisz do pliku");
+    private JMenuItem menuImportGtfs = new JMenuItem("Importuj GTFS");
+    private JMenuItem menuExportMap = new JMenuItem("Eksportuj mapę");
+    private JMenuItem menuGenerate = new JMenuItem("Generuj sieć");
     private JMenuItem menuAuthor = new JMenuItem("Autor", KeyEvent.VK_A);
     private JMenuItem menuInstruction = new JMenuItem("Instrukcja", KeyEvent.VK_I);
+    private JCheckBoxMenuItem menuStatistics = new JCheckBoxMenuItem("Statystyki wydajności");
+    private JMenuItem menuReport = new JMenuItem("Raport wydajności");
 
     private GraphPanel panel = new GraphPanel();
+    /**Dziennik zmian sieci zapisanej w pliku networkPath (null, gdy nie udało się go otworzyć)*/
+    private EditJournal journal;
+    /**Plik wyświetlanej sieci - SAVED_GRAPHS albo plik, do którego zapisano zaimportowaną sieć*/
+    private Path networkPath = Paths.get(SAVED_GRAPHS);
+    /**Wyszukiwanie tras wszystkich linii z użyciem hierarchii skrótów (zapisywanej obok pliku sieci) albo
+     * planer A* (małe sieci lub przerwane przygotowanie hierarchii) - przygotowywane przy pierwszym zapytaniu
+     * i unieważniane przez zmiany linii*/
+    private HierarchyQuery routeQuery;
+    private JourneyPlanner planner;
+    /**Wyszukiwanie przejazdów według rozkładów jazdy - budowane w tle przy pierwszym zapytaniu
+     * i unieważniane przez zmiany linii*/
+    private TimetableRouter timetableRouter;
 
 
     public GraphEditor() {
@@ -103,16 +178,15 @@ public class GraphEditor extends JFrame implements ActionListener {
         setLocationRelativeTo(null);
         setContentPane(panel);
         createMenu();
-        createLines();
-        panel.setGraphs(panel.getGraphs());
+        panel.addNetworkListener(new RoutingInvalidator());
         setVisible(true);
+        openJournal();
     }
 
-    private void showListOfNodes(Graph graph) {
-        Node[] nodes = graph.getNodes();
+    private void showListOfNodes(Network graph) {
         int i = 0;
-        StringBuilder message = new StringBuilder("Liczba przystanków: " + nodes.length + "\n");
-        for (Node node : nodes) {
+        StringBuilder message = new StringBuilder("Liczba przystanków: " + graph.getNodeCount() + "\n");
+        for (Node node : graph.getNodeList()) {
             message.append(node).append("    ");
             if (++i % 5 == 0)
                 message.append("\n");
@@ -120,11 +194,10 @@ public class GraphEditor extends JFrame implements ActionListener {
         JOptionPane.showMessageDialog(this, message, APP_TITLE + " - Lista przystanków", JOptionPane.PLAIN_MESSAGE);
     }
 
-    private void showListOfConnections(Graph graph) {
-        Connection[] connections = graph.getConnections();
+    private void showListOfConnections(Network graph) {
         int i = 0;
-        StringBuilder message = new StringBuilder("Liczba połączeń: " + connections.length + "\n");
-        for (Connection connection : connections) {
+        StringBuilder message = new StringBuilder("Liczba połączeń: " + graph.getConnectionCount() + "\n");
+        for (Connection connection : graph.getConnectionList()) {
             message.append(connection).append("    ");
             if (++i % 5 == 0)
                 message.append("\n");
@@ -143,19 +216,234 @@ public class GraphEditor extends JFrame implements ActionListener {
         JOptionPane.showMessageDialog(this, message, APP_TITLE + " - Lista linii", JOptionPane.PLAIN_MESSAGE);
     }
 
+    private String[] getStopNames() {
+        return panel.getStopIndex().getStopNames();
+    }
+
+    private String chooseStop(String message, String title, String[] stopNames, String initial) {
+        return (String) JOptionPane.showInputDialog(this,
+                message,
+                title, JOptionPane.QUESTION_MESSAGE,
+                null, stopNames, initial);
+    }
+
+    private void showRoute() {
+        String[] stopNames = getStopNames();
+        if (stopNames.length == 0) return;
+
+        String from = chooseStop("Przystanek początkowy:", "Wyznacz trasę", stopNames, stopNames[0]);
+        if (from == null) return;
+        String to = chooseStop("Przystanek docelowy:", "Wyznacz trasę", stopNames, stopNames[stopNames.length - 1]);
+        if (to == null) return;
+
+        if (routeQuery == null && planner == null) prepareRouting();
+        Journey journey = routeQuery != null ? routeQuery.plan(from, to) : planner.plan(from, to);
+        if (journey == null) {
+            JOptionPane.showMessageDialog(this, "Brak połączenia między przystankami " + from + " i " + to,
+                    APP_TITLE + " - Trasa", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        panel.animate(new Animation(getRouteConnections(journey), Color.ORANGE, Animation.Effect.FADE, HIGHLIGHT_TIME));
+        JOptionPane.showMessageDialog(this, journey.toString(), APP_TITLE + " - Trasa", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    //przygotowanie wyszukiwania tras: hierarchia skrótów dla dużych sieci (wczytywana z pliku lub budowana w tle), A* dla małych
+    private void prepareRouting() {
+        // migawka tworzona w wątku zdarzeń - linie nie zmieniają się w trakcie jej odczytu
+        NetworkSnapshot network = NetworkSnapshot.of(panel.getGraphs()).withTransfers(JourneyPlanner.DEFAULT_TRANSFER_PENALTY);
+        if (network.nodeCount() >= HIERARCHY_MIN_STOPS) {
+            ProgressDialog.run(this, "Przygotowanie wyszukiwania tras", listener -> {
+                ContractionHierarchy hierarchy;
+                try {
+                    hierarchy = ContractionHierarchy.loadOrBuild(networkPath, network);
+                } catch (IOException e) {
+                    // nie udało się zapisać hierarchii - zostanie zbudowana ponownie przy następnym uruchomieniu
+                    hierarchy = ContractionHierarchy.build(network);
+                }
+                return new HierarchyQuery(hierarchy, network);
+            }, query -> routeQuery = query);
+        }
+        // okno postępu jest modalne - po powrocie hierarchia jest gotowa albo jej przygotowanie przerwano;
+        // wtedy (i dla małej sieci) trasy wyznacza A*, który nie wymaga przygotowania
+        if (routeQuery == null) planner = new JourneyPlanner(network);
+    }
+
+    //macierz kosztów przejazdu wszystkich linii wyznaczana w tle (lub wczytywana, gdy plik jest aktualny) wraz z podsumowaniem
+    private void computeCostMatrix() {
+        // migawka tworzona w wątku zdarzeń - linie nie zmieniają się w trakcie jej odczytu
+        NetworkSnapshot network = NetworkSnapshot.of(panel.getGraphs()).withTransfers(JourneyPlanner.DEFAULT_TRANSFER_PENALTY);
+        Path file = CostMatrix.fileFor(networkPath);
+        long megabytes = CostMatrix.fileSize(network.nodeCount()) >> 20;
+        if (megabytes > 0 && JOptionPane.showConfirmDialog(this, "Macierz " + network.nodeCount() + " x " + network.nodeCount()
+                        + " zajmie na dysku " + megabytes + " MB. Kontynuować?",
+                APP_TITLE + " - Macierz kosztów", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+            return;
+        }
+        ProgressDialog.run(this, "Macierz kosztów", listener -> {
+            CostMatrix matrix;
+            try {
+                matrix = CostMatrix.open(file, network);
+            } catch (IOException e) {
+                // brak pliku lub macierz innej sieci - wyznaczana od nowa
+                matrix = CostMatrix.compute(network, file, ForkJoinPool.commonPool(), listener);
+            }
+            return describe(matrix, network);
+        }, summary -> JOptionPane.showMessageDialog(this, summary, APP_TITLE + " - Macierz kosztów", JOptionPane.PLAIN_MESSAGE));
+    }
+
+    //podsumowanie macierzy kosztów: liczba par połączonych, średni i największy koszt przejazdu
+    private static String describe(CostMatrix matrix, NetworkSnapshot network) {
+        int n = matrix.size();
+        float[] row = new float[n];
+        long reachable = 0;
+        double sum = 0;
+        float max = 0;
+        int maxFrom = -1;
+        int maxTo = -1;
+        for (int from = 0; from < n; from++) {
+            matrix.getRow(from, row);
+            for (int to = 0; to < n; to++) {
+                if (to == from || Float.isInfinite(row[to])) continue;
+                reachable++;
+                sum += row[to];
+                if (row[to] > max) {
+                    max = row[to];
+                    maxFrom = from;
+                    maxTo = to;
+                }
+            }
+        }
+        StringBuilder summary = new StringBuilder("Przystanki: " + n + "\n");
+        summary.append("Pary przystanków z połączeniem: ").append(reachable).append(" z ").append((long) n * (n - 1)).append("\n");
+        if (reachable > 0) {
+            summary.append(String.format("Średni koszt przejazdu: %.1f%n", sum / reachable));
+            summary.append(String.format("Największy koszt przejazdu: %.1f (%s - %s)%n", max,
+                    network.node(maxFrom), network.node(maxTo)));
+        }
+        return summary.toString();
+    }
+
+    //porzucenie przygotowanego wyszukiwania tras i przejazdów - zostanie przygotowane ponownie przy następnym zapytaniu
+    private void invalidateRouting() {
+        routeQuery = null;
+        planner = null;
+        timetableRouter = null;
+    }
+
+    //unieważnienie wyszukiwania tras po zmianie przebiegu lub nazw przystanków (zmiany kolorów i promieni nie mają znaczenia)
+    private class RoutingInvalidator implements GraphListener {
+        @Override
+        public void nodeAdded(Graph graph, Node node) {
+            invalidateRouting();
+        }
+
+        @Override
+        public void nodeRemoved(Graph graph, Node node) {
+            invalidateRouting();
+        }
+
+        @Override
+        public void nodeRenamed(Graph graph, Node node, String oldName) {
+            invalidateRouting();
+        }
+
+        @Override
+        public void nodeMoved(Graph graph, Node node, int oldX, int oldY) {
+            invalidateRouting();
+        }
+
+        @Override
+        public void connectionAdded(Graph graph, Connection connection) {
+            invalidateRouting();
+        }
+
+        @Override
+        public void connectionRemoved(Graph graph, Connection connection) {
+            invalidateRouting();
+        }
+    }
+
+    //połączenia linii, którymi przebiega trasa (bez przejść między peronami węzła przesiadkowego)
+    private List<Connection> getRouteConnections(Journey journey) {
+        List<Connection> connections = new ArrayList<>();
+        List<Node> stops = journey.getStops();
+        for (int hop = 0; hop < journey.getHopCount(); hop++) {
+            Node from = stops.get(hop);
+            Node to = stops.get(hop + 1);
+            for (Graph line : from.getOwners()) {
+                if (line.getNumber() != journey.getLine(hop)) continue;
+                for (Connection connection : line.getIncidentConnections(from)) {
+                    if (connection.getOtherNode(from) == to) connections.add(connection);
+                }
+            }
+        }
+        return connections;
+    }
+
+    private void showTimetableRoute() {
+        String[] stopNames = getStopNames();
+        if (stopNames.length == 0) return;
+
+        String from = chooseStop("Przystanek początkowy:", "Najszybszy przejazd", stopNames, stopNames[0]);
+        if (from == null) return;
+        String to = chooseStop("Przystanek docelowy:", "Najszybszy przejazd", stopNames, stopNames[stopNames.length - 1]);
+        if (to == null) return;
+        String timeString = JOptionPane.showInputDialog(this, "Godzina odjazdu (HH:MM):", "08:00");
+        if (timeString == null) return;
+
+        int departure;
+        try {
+            String[] parts = timeString.trim().split(":");
+            departure = Integer.parseInt(parts[0]) * 3600 + Integer.parseInt(parts[1]) * 60;
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e){
+            JOptionPane.showMessageDialog(this, "Godzinę należy podać w formacie HH:MM!");
+            return;
+        }
+
+        if (timetableRouter == null) {
+            // linie kopiowane w wątku zdarzeń, rozkłady jazdy indeksowane w tle
+            List<Graph> lines = new ArrayList<>(panel.getGraphs());
+            ProgressDialog.run(this, "Przygotowanie rozkładów jazdy", listener -> new TimetableRouter(lines),
+                    router -> timetableRouter = router);
+            // okno postępu jest modalne - po powrocie wyszukiwarka jest gotowa albo jej przygotowanie przerwano
+            if (timetableRouter == null) return;
+        }
+        Itinerary itinerary = timetableRouter.route(from, departure, to);
+        if (itinerary == null) {
+            JOptionPane.showMessageDialog(this, "Brak przejazdu między przystankami " + from + " i " + to
+                            + " po godzinie " + Schedule.formatTime(departure),
+                    APP_TITLE + " - Najszybszy przejazd", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        JOptionPane.showMessageDialog(this, itinerary.toString(), APP_TITLE + " - Najszybszy przejazd", JOptionPane.PLAIN_MESSAGE);
+    }
+
     private void createMenu() {
         menuNew.addActionListener(this);
         menuNext.addActionListener(this);
+        menuUndo.addActionListener(this);
+        menuRedo.addActionListener(this);
+        menuLayout.addActionListener(this);
+        menuSchematic.addActionListener(this);
         menuAllLines.addActionListener(this);
         menuColorLine.addActionListener(this);
         menuExit.addActionListener(this);
         menuListOfNodes.addActionListener(this);
         menuListOfConnections.addActionListener(this);
         menuListOfLines.addActionListener(this);
+        menuFindRoute.addActionListener(this);
+        menuFindTimetableRoute.addActionListener(this);
+        menuCostMatrix.addActionListener(this);
         menuLoadFromFile.addActionListener(this);
         menuSaveToFile.addActionListener(this);
+        menuImportGtfs.addActionListener(this);
+        menuExportMap.addActionListener(this);
+        menuGenerate.addActionListener(this);
         menuAuthor.addActionListener(this);
         menuInstruction.addActionListener(this);
+        menuStatistics.addActionListener(this);
+        menuReport.addActionListener(this);
 
         menuGraph.setMnemonic(KeyEvent.VK_G);
         menuGraph.add(menuNew);
@@ -163,18 +451,35 @@ public class GraphEditor extends JFrame implements ActionListener {
         menuGraph.add(menuAllLines);
         menuGraph.add(menuColorLine);
         menuGraph.addSeparator();
+        menuUndo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        menuRedo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        menuGraph.add(menuUndo);
+        menuGraph.add(menuRedo);
+        menuGraph.add(menuLayout);
+        menuGraph.add(menuSchematic);
+        menuGraph.addSeparator();
         menuGraph.add(menuListOfNodes);
         menuGraph.add(menuListOfConnections);
         menuGraph.add(menuListOfLines);
+        menuGraph.add(menuFindRoute);
+        menuGraph.add(menuFindTimetableRoute);
+        menuGraph.add(menuCostMatrix);
         menuGraph.addSeparator();
         menuGraph.add(menuLoadFromFile);
         menuGraph.add(menuSaveToFile);
+        menuGraph.add(menuImportGtfs);
+        menuGraph.add(menuGenerate);
+        menuGraph.add(menuExportMap);
         menuGraph.addSeparator();
         menuGraph.add(menuExit);
 
         menuHelp.setMnemonic(KeyEvent.VK_H);
         menuHelp.add(menuInstruction);
         menuHelp.add(menuAuthor);
+        menuHelp.addSeparator();
+        menuStatistics.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0));
+        menuHelp.add(menuStatistics);
+        menuHelp.add(menuReport);
 
         menuBar.add(menuGraph);
         menuBar.add(menuHelp);
@@ -201,7 +506,9 @@ public class GraphEditor extends JFrame implements ActionListener {
                     "Wybierz rodzaj transportu", JOptionPane.QUESTION_MESSAGE,
                     null, transportTypeValues, TransportType.TRAM);
 
-            panel.addGraph(new Graph(number, transportType));
+            Graph line = new Graph(number, transportType);
+            panel.addGraph(line);
+            if (journal != null) journal.addLine(line);
 
             }
             catch (NumberFormatException e){
@@ -219,6 +526,19 @@ public class GraphEditor extends JFrame implements ActionListener {
             panel.setGraph(i);
             System.out.println("Graph number: " + i);
         }
+        if (source == menuUndo) {
+            panel.undo();
+        }
+        if (source == menuRedo) {
+            panel.redo();
+        }
+        if (source == menuLayout && hasNodes()) {
+            layoutGraph("Rozmieszczanie przystanków", new ForceLayout(panel.getGraph()), ForceLayout.DEFAULT_MAX_ITERATIONS);
+        }
+        if (source == menuSchematic && hasNodes()) {
+            layoutGraph("Tworzenie schematu", new OctilinearLayout(panel.getGraph(), panel.getGraphs()),
+                    OctilinearLayout.DEFAULT_MAX_ITERATIONS);
+        }
         if (source == menuAllLines) {
             panel.setGraphs(panel.getGraphs());
             menuGraph.add(menuColorLine);
@@ -231,23 +551,13 @@ public class GraphEditor extends JFrame implements ActionListener {
                         "Wybierz linię", JOptionPane.QUESTION_MESSAGE,
                         null, panel.getGraphsArray(), panel.getGraphsArray()[0]);
 
-                Color previousColor = null;
-
-                if(graphToColor.getTransportType().equals(TransportType.TRAM)){
-                    previousColor = Color.BLUE;
-                }
-                else if (graphToColor.getTransportType().equals(TransportType.BUS)){
-                    previousColor = Color.RED;
-                }
-
-                JOptionPane.showMessageDialog(this, "Wyodrębniono wybrana linię.");
-                graphToColor.colorConnections(Color.green);
-                TimeUnit.SECONDS.sleep(5);
-                graphToColor.colorConnections(previousColor);
+                // wyróżnienie rysowane nad siecią przez 5 sekund - kolory połączeń linii nie są zmieniane
+                panel.animate(new Animation(graphToColor.getConnectionList(), Color.GREEN,
+                        Animation.Effect.HIGHLIGHT, HIGHLIGHT_TIME));
                 menuGraph.add(menuColorLine);
-                repaint();
+                JOptionPane.showMessageDialog(this, "Wyodrębniono wybrana linię.");
             }
-            catch (NullPointerException | InterruptedException e){
+            catch (NullPointerException e){
                 return;
             }
         }
@@ -260,21 +570,29 @@ public class GraphEditor extends JFrame implements ActionListener {
         if(source == menuListOfLines){
             showListOfLines();
         }
+        if(source == menuFindRoute){
+            showRoute();
+        }
+        if(source == menuCostMatrix && hasNodes()){
+            computeCostMatrix();
+        }
+        if(source == menuFindTimetableRoute){
+            showTimetableRoute();
+        }
         if(source == menuSaveToFile){
-            try {
-                saveToFile(SAVED_GRAPHS);
-                JOptionPane.showMessageDialog(null, "Dane zostały zapisane do pliku " + SAVED_GRAPHS);
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(null, e.getMessage(), "Błąd", JOptionPane.ERROR_MESSAGE);
-            }
+            saveToFile(networkPath.toString());
         }
         if(source == menuLoadFromFile){
-            try {
-                loadFromFile(SAVED_GRAPHS);
-                JOptionPane.showMessageDialog(null, "Dane zostały wczytane z pliku " + SAVED_GRAPHS);
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(null, e.getMessage(), "Błąd", JOptionPane.ERROR_MESSAGE);
-            }
+            loadFromFile(SAVED_GRAPHS);
+        }
+        if(source == menuImportGtfs){
+            importGtfs();
+        }
+        if(source == menuGenerate){
+            generateNetwork();
+        }
+        if(source == menuExportMap && hasNodes()){
+            exportMap();
         }
         if (source == menuAuthor) {
             JOptionPane.showMessageDialog(this, APP_AUTHOR, APP_TITLE, JOptionPane.INFORMATION_MESSAGE);
@@ -282,6 +600,15 @@ public class GraphEditor extends JFrame implements ActionListener {
         if (source == menuInstruction) {
             JOptionPane.showMessageDialog(this, APP_INSTRUCTION, APP_TITLE, JOptionPane.PLAIN_MESSAGE);
         }
+        if (source == menuStatistics) {
+            panel.setOverlayVisible(menuStatistics.isSelected());
+        }
+        if (source == menuReport) {
+            JTextArea report = new JTextArea(Metrics.report());
+            report.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            report.setEditable(false);
+            JOptionPane.showMessageDialog(this, new JScrollPane(report), APP_TITLE + " - Raport wydajności", JOptionPane.PLAIN_MESSAGE);
+        }
         if (source == menuExit) {
             System.exit(0);
         }
@@ -290,30 +617,211 @@ public class GraphEditor extends JFrame implements ActionListener {
         }
     }
 
-    //wczytanie grafów z pliku
-    void loadFromFile(String file_name) throws Exception {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file_name))) {
-            panel.setGraphs((ArrayList<Graph>)in.readObject());
-            repaint();
-        } catch (FileNotFoundException e) {
-            throw new Exception("Nie odnaleziono pliku " + file_name);
-        } catch (Exception e) {
-            throw new Exception("Wystąpił błąd podczas odczytu danych z pliku.");
+    //otwarcie w tle sieci zapisanej w pliku wraz ze zmianami z dziennika (przykładowe linie, gdy sieć nie była jeszcze zapisana)
+    private void openJournal() {
+        Path path = Paths.get(SAVED_GRAPHS);
+        ProgressDialog.run(this, "Wczytywanie sieci", listener -> {
+            try {
+                EditJournal opened = EditJournal.open(path, listener);
+                if (!opened.getLines().isEmpty()) return opened;
+                opened.close();
+                return EditJournal.create(path, createLines(), listener);
+            } catch (IOException e) {
+                throw new IOException("Nie można otworzyć pliku " + SAVED_GRAPHS + ": " + e.getMessage()
+                        + "\nZmiany nie będą zapisywane na bieżąco.", e);
+            }
+        }, this::replaceJournal);
+        // okno postępu jest modalne - po powrocie operacja jest zakończona; po błędzie lub przerwaniu
+        // wyświetlane są przykładowe linie, a zmiany nie są zapisywane w dzienniku
+        if (journal == null) {
+            panel.openGraphs(createLines());
         }
     }
 
-    //Zapis grafów do pliku
-    void saveToFile(String file_name) throws Exception {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file_name))) {
-            out.writeObject(panel.getGraphs());
-        } catch (FileNotFoundException e) {
-            throw new Exception("Nie odnaleziono pliku " + file_name);
+    //zamiana bieżącej sieci na sieć wczytaną lub zaimportowaną w tle - wykonywana w wątku zdarzeń Swing
+    private void replaceJournal(EditJournal opened) {
+        closeJournal();
+        journal = opened;
+        networkPath = opened.getBase();
+        panel.openGraphs(opened.getLines());
+        i = 0;
+    }
+
+    //zamknięcie dziennika bieżącej sieci - dalsze zmiany linii nie są zapisywane
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
         } catch (IOException e) {
-            throw new Exception("Wystąpił błąd podczas zapisu danych do pliku.");
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Błąd", JOptionPane.ERROR_MESSAGE);
         }
+        journal = null;
     }
 
-    private void createLines() {
+    //wczytanie grafów z pliku wraz z dziennikiem zmian w tle - zawartość linii odczytywana jest z pliku dopiero przy ich wyświetleniu
+    void loadFromFile(String file_name) {
+        Path path = Paths.get(file_name);
+        if (!Files.exists(path)) {
+            JOptionPane.showMessageDialog(this, "Nie odnaleziono pliku " + file_name, "Błąd", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        openNetwork(path, "Dane zostały wczytane z pliku " + file_name);
+    }
+
+    //otwarcie sieci zapisanej w pliku w tle i wyświetlenie komunikatu (null - bez komunikatu)
+    private void openNetwork(Path path, String message) {
+        ProgressDialog.run(this, "Wczytywanie sieci", listener -> {
+            try {
+                return EditJournal.open(path, listener);
+            } catch (IOException e) {
+                throw new IOException("Wystąpił błąd podczas odczytu danych z pliku: " + e.getMessage(), e);
+            }
+        }, opened -> {
+            replaceJournal(opened);
+            if (message != null) JOptionPane.showMessageDialog(this, message);
+        });
+    }
+
+    //wybór pliku dla nowej sieci (zaimportowanej lub wygenerowanej) - zastąpienie istniejącego pliku sieci
+    //wraz z jego dziennikiem zmian wymaga potwierdzenia; null, gdy użytkownik zrezygnował
+    private Path chooseNetworkFile(String title) {
+        JFileChooser chooser = new JFileChooser(networkPath.toAbsolutePath().getParent().toFile());
+        chooser.setDialogTitle(title + " - zapisz nową sieć jako");
+        chooser.setSelectedFile(new File("NEW_" + SAVED_GRAPHS));
+        while (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            Path path = chooser.getSelectedFile().toPath();
+            if (!Files.exists(path)) return path;
+            String current = isCurrentNetwork(path) ? " (wyświetlana sieć)" : "";
+            int answer = JOptionPane.showConfirmDialog(this, "Plik " + path.getFileName() + current + " już istnieje.\n"
+                            + "Zastąpić zapisaną w nim sieć wraz z dziennikiem zmian?",
+                    APP_TITLE + " - " + title, JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (answer == JOptionPane.YES_OPTION) return path;
+            if (answer != JOptionPane.NO_OPTION) return null;
+        }
+        return null;
+    }
+
+    private boolean isCurrentNetwork(Path path) {
+        return path.toAbsolutePath().normalize().equals(networkPath.toAbsolutePath().normalize());
+    }
+
+    //utworzenie w tle nowej sieci z linii podanych przez operację i zapisanie jej do wybranego pliku
+    private void createNetwork(String title, ProgressDialog.Task<List<Graph>> source, String summary) {
+        Path path = chooseNetworkFile(title);
+        if (path == null) return;
+        // plik wyświetlanej sieci jest zastępowany - jej dziennik zamykany jest przed zapisem nowej sieci
+        boolean replacesCurrent = journal != null && isCurrentNetwork(path);
+        if (replacesCurrent) closeJournal();
+        ProgressDialog.run(this, title, listener -> EditJournal.create(path, source.run(listener), listener), opened -> {
+            replaceJournal(opened);
+            JOptionPane.showMessageDialog(this, summary + opened.getLines().size());
+        });
+        // okno postępu jest modalne - po błędzie lub przerwaniu pliki nie zostały zmienione,
+        // a wyświetlana sieć otwierana jest ponownie wraz z dziennikiem
+        if (replacesCurrent && journal == null) openNetwork(path, null);
+    }
+
+    //automatyczne rozmieszczenie przystanków w tle - w trakcie wyświetlany jest podgląd z położeń obliczanych
+    //przez rozmieszczenie, a przystanki przesuwane są raz na końcu (jedna zmiana w dzienniku, cofana jednym krokiem)
+    private void layoutGraph(String title, Layout layout, int maxIterations) {
+        Timer refresh = new Timer(LAYOUT_REFRESH, event -> panel.repaint());
+        panel.showLayoutPreview(layout);
+        refresh.start();
+        ProgressDialog.run(this, title, listener -> {
+            layout.run(maxIterations, listener);
+            return null;
+        }, result -> {}, () -> {
+            // po przerwaniu pozostaje rozmieszczenie z ostatniego kroku
+            refresh.stop();
+            panel.hideLayoutPreview();
+            panel.beginEdit();
+            layout.apply();
+            panel.endEdit();
+            panel.fitView();
+        });
+    }
+
+    private boolean hasNodes() {
+        return panel.getGraph() != null && !panel.getGraph().getNodeList().isEmpty();
+    }
+
+    //import linii z danych GTFS w tle - zaimportowana sieć zapisywana jest do wybranego pliku
+    private void importGtfs() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Wybierz katalog lub archiwum zip z danymi GTFS");
+        chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        GtfsImporter importer = new GtfsImporter();
+        importer.setTimetables(JOptionPane.showConfirmDialog(this, "Czy zaimportować również rozkłady jazdy?",
+                APP_TITLE + " - Import GTFS", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION);
+        Path feed = chooser.getSelectedFile().toPath();
+        createNetwork("Import GTFS", listener -> importer.importFeed(feed, listener), "Zaimportowano linie: ");
+    }
+
+    //utworzenie syntetycznej sieci w tle - wygenerowana sieć zapisywana jest do wybranego pliku
+    private void generateNetwork() {
+        String stopsText = JOptionPane.showInputDialog(this, "Podaj liczbę przystanków:", 10000);
+        if (stopsText == null) return;
+        String seedText = JOptionPane.showInputDialog(this, "Podaj ziarno generatora:", 0);
+        if (seedText == null) return;
+        int stops;
+        long seed;
+        try {
+            stops = Integer.parseInt(stopsText.trim());
+            seed = Long.parseLong(seedText.trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Musisz wprowadzić liczbę calkowitą!");
+            return;
+        }
+        if (stops <= 0) {
+            JOptionPane.showMessageDialog(this, "Liczba przystanków musi być dodatnia!");
+            return;
+        }
+        NetworkGenerator generator = new NetworkGenerator(seed);
+        generator.setTimetables(JOptionPane.showConfirmDialog(this, "Czy utworzyć również rozkłady jazdy?",
+                APP_TITLE + " - Generuj sieć", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION);
+        createNetwork("Generuj sieć", listener -> generator.generate(stops, listener), "Utworzono linie: ");
+    }
+
+    //eksport mapy wyświetlanej sieci do kafelków PNG w tle
+    private void exportMap() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Wybierz katalog kafelków mapy");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        String input = JOptionPane.showInputDialog(this, "Najwyższy poziom powiększenia (0 - cała sieć w jednym kafelku):", "4");
+        if (input == null) return;
+        int maxZoom;
+        try {
+            maxZoom = Integer.parseInt(input.trim());
+            if (maxZoom < 0 || maxZoom > 12) throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Poziom powiększenia musi być liczbą od 0 do 12", "Błąd", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        TileRenderer renderer = new TileRenderer(panel.getGraph());
+        Path directory = chooser.getSelectedFile().toPath();
+        ProgressDialog.run(this, "Eksport mapy", listener -> renderer.render(directory, 0, maxZoom, listener),
+                written -> JOptionPane.showMessageDialog(this, "Zapisano kafelki mapy: " + written));
+    }
+
+    //Zapis grafów do pliku w tle
+    void saveToFile(String file_name) {
+        EditJournal saved = journal;
+        List<Graph> graphs = panel.getGraphs();
+        ProgressDialog.run(this, "Zapis sieci", listener -> {
+            try {
+                if (saved != null) saved.save(listener);
+                else NetworkFile.write(graphs, Paths.get(file_name), listener);
+            } catch (IOException e) {
+                throw new IOException("Wystąpił błąd podczas zapisu danych do pliku.", e);
+            }
+            return null;
+        }, result -> JOptionPane.showMessageDialog(this, "Dane zostały zapisane do pliku " + file_name));
+    }
+
+    private List<Graph> createLines() {
         Graph linia1 = new Graph(1, TransportType.TRAM);
         Graph linia146 = new Graph(146, TransportType.BUS);
 
@@ -356,8 +864,20 @@ public class GraphEditor extends JFrame implements ActionListener {
         linia146.addNode(klinikiBus);
         linia146.addNode(pgBus);
 
-        panel.addGraph(linia1);
-
-        panel.addGraph(linia146);
+        Schedule linia1Kierunek1 = new Schedule(Arrays.asList(tramwajowa, zoo, hs, kliniki, pg));
+        linia1Kierunek1.addTrips(5 * 3600, 23 * 3600, 600, new int[]{0, 180, 300, 420, 540});
+        linia1.addSchedule(linia1Kierunek1);
+        Schedule linia1Kierunek2 = new Schedule(Arrays.asList(pg, kliniki, hs, zoo, tramwajowa));
+        linia1Kierunek2.addTrips(5 * 3600 + 300, 23 * 3600, 600, new int[]{0, 120, 240, 360, 540});
+        linia1.addSchedule(linia1Kierunek2);
+
+        Schedule linia146Kierunek1 = new Schedule(Arrays.asList(tramwajowaBus, hsBus, klinikiBus, pgBus));
+        linia146Kierunek1.addTrips(5 * 3600 + 420, 22 * 3600, 900, new int[]{0, 240, 360, 480});
+        linia146.addSchedule(linia146Kierunek1);
+        Schedule linia146Kierunek2 = new Schedule(Arrays.asList(pgBus, klinikiBus, hsBus, tramwajowaBus));
+        linia146Kierunek2.addTrips(5 * 3600, 22 * 3600, 900, new int[]{0, 120, 240, 480});
+        linia146.addSchedule(linia146Kierunek2);
+
+        return Arrays.asList(linia1, linia146);
     }
 }
@@ -18,30 +18,77 @@ package gui;
 
 import java.awt.Color;
 import java.awt.Cursor;
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import javax.swing.*;
 
+import data.CompositeNetwork;
 import data.Connection;
+import data.EditHistory;
 import data.Graph;
+import data.GraphListener;
+import data.Network;
 import data.Node;
-import data.TransportType;
+import data.SpatialIndex;
+import data.StopIndex;
+import layout.Layout;
+import util.Histogram;
+import util.Metrics;
+import util.PerformanceEvents;
 
 
 public class GraphPanel extends JPanel
-        implements MouseListener, MouseMotionListener, KeyListener {
+        implements MouseListener, MouseMotionListener, MouseWheelListener, KeyListener {
 
     private static final long serialVersionUID = 1L;
 
-    protected Graph graph;
+    protected Network graph;
     protected ArrayList<Graph> graphs = new ArrayList<Graph>();
+    /**Widok wszystkich linii - odczytuje przystanki i połączenia bezpośrednio z grafów linii*/
+    protected final CompositeNetwork allLines = new CompositeNetwork();
+    protected final StopIndex stopIndex = new StopIndex();
+    /**Historia zmian wszystkich linii (cofnij / ponów)*/
+    protected final EditHistory history = new EditHistory();
+    /**Czy linie są dołączone do widoku wszystkich linii i indeksu przystanków - po wczytaniu z pliku
+     * dołączane są dopiero, gdy są potrzebne, aby nie wczytywać zawartości wszystkich linii od razu*/
+    private boolean linesIndexed = true;
+    protected final SpatialIndex spatialIndex = new SpatialIndex();
+    protected final Camera camera = new Camera();
+    private final StaticLayer staticLayer = new StaticLayer(camera);
+    /**Podgląd trwającego automatycznego rozmieszczenia (null, gdy nie trwa) - rysowany zamiast sieci*/
+    private LayoutPreview preview;
+    /**Animacje wyróżnień rysowane nad obrazem sieci*/
+    private final Animator animator = new Animator(this, camera);
+    /**Margines (we współrzędnych świata) widoku dopasowanego do grafu*/
+    private static final int FIT_MARGIN = 20;
+
+    /**Pomiary rysowania i wyszukiwania elementów (zob. <code>Metrics</code>)*/
+    private static final Histogram paintTime = Metrics.histogram(Metrics.PAINT);
+    private static final Histogram findNodeTime = Metrics.histogram(Metrics.FIND_NODE);
+    private static final Histogram findConnectionTime = Metrics.histogram(Metrics.FIND_CONNECTION);
+    private static final Histogram mergeTime = Metrics.histogram(Metrics.MERGE);
+    /**Obszar statystyk wydajności w lewym górnym rogu panelu*/
+    private static final Rectangle OVERLAY_BOUNDS = new Rectangle(0, 0, 320, 70);
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 160);
+    private boolean overlayVisible = false;
+    /**Odświeżanie statystyk wydajności dwa razy na sekundę*/
+    private final Timer overlayTimer = new Timer(500, event -> repaint(OVERLAY_BOUNDS));
 
 
     private int mouseX = 0;
@@ -58,41 +105,82 @@ public class GraphPanel extends JPanel
     public GraphPanel() {
         this.addMouseListener(this);
         addMouseMotionListener(this);
+        addMouseWheelListener(this);
         addKeyListener(this);
         setFocusable(true);
         requestFocus();
     }
 
-    public Graph getGraph() {
+    public Network getGraph() {
         return graph;
     }
 
-    public void setGraph(Graph graph) {
+    public void setGraph(Network graph) {
         this.graph = graph;
+        spatialIndex.setGraph(graph);
+        staticLayer.setGraph(graph);
+        Metrics.setGauge(Metrics.NODES, graph == null ? 0 : graph.getNodeCount());
+        Metrics.setGauge(Metrics.CONNECTIONS, graph == null ? 0 : graph.getConnectionCount());
     }
 
     public void setGraph(int i) {
-        this.graph = graphs.get(i);
+        setGraph(graphs.get(i));
         repaint();
     }
 
     public void setGraphs(ArrayList<Graph> graphs){
-        ArrayList<Node> nodes = new ArrayList<>();
-        ArrayList<Connection> connections = new ArrayList<>();
-        for (Graph graph: graphs) {
-            nodes.addAll(Arrays.asList(graph.getNodes()));
-            connections.addAll(Arrays.asList(graph.getConnections()));
+        PerformanceEvents.Merge event = new PerformanceEvents.Merge();
+        event.begin();
+        long start = System.nanoTime();
+        if (graphs != this.graphs) {
+            replaceGraphs(graphs);
         }
-        Graph graph = new Graph(TransportType.BOTH);
+        indexLines();
+        setGraph(allLines);
+        mergeTime.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.lines = this.graphs.size();
+            event.nodes = allLines.getNodeCount();
+            event.commit();
+        }
+    }
 
-        for (Node node: nodes) {
-            graph.addNode(node);
+    /**Metoda zastępująca linie (np. wczytane z pliku) i wyświetlająca pierwszą z nich - zawartość
+     * pozostałych linii nie jest odczytywana, dopóki nie zostanie wyświetlona lub przeszukana*/
+    public void openGraphs(List<Graph> graphs){
+        replaceGraphs(graphs);
+        if (this.graphs.isEmpty()) {
+            setGraphs(this.graphs);
         }
-        for (Connection connection: connections) {
-            graph.addConnection(connection);
+        else {
+            setGraph(0);
+        }
+        camera.reset();
+        staticLayer.invalidate();
+        repaint();
+    }
+
+    private void replaceGraphs(List<Graph> graphs){
+        stopIndex.clear();
+        allLines.clear();
+        history.clear();
+        animator.stopAll();
+        this.graphs = new ArrayList<>(graphs);
+        for (Graph line : this.graphs) {
+            history.addLine(line);
         }
+        linesIndexed = false;
+    }
 
-        this.graph = graph;
+    /**Metoda dołączająca linie do widoku wszystkich linii i indeksu przystanków, jeśli nie zostały dołączone*/
+    private void indexLines(){
+        if (linesIndexed) return;
+        for (Graph line : graphs) {
+            stopIndex.addGraph(line);
+            allLines.addLine(line);
+        }
+        linesIndexed = true;
     }
 
     public int getGraphsNumber(){
@@ -101,6 +189,90 @@ public class GraphPanel extends JPanel
 
     public void addGraph(Graph graph){
         graphs.add(graph);
+        history.addLine(graph);
+        if (!linesIndexed) return;
+        stopIndex.addGraph(graph);
+        allLines.addLine(graph);
+    }
+
+    public StopIndex getStopIndex(){
+        indexLines();
+        return stopIndex;
+    }
+
+    /**Metoda rejestrująca słuchacza zmian wszystkich linii (widoku wszystkich linii) - zdarzenia zgłaszane są
+     * dla linii dołączonych do widoku, tzn. po pierwszym wywołaniu <code>getStopIndex</code> lub
+     * <code>setGraphs</code>; zastąpienie linii zgłaszane jest jako usunięcie ich przystanków i połączeń*/
+    public void addNetworkListener(GraphListener listener){
+        allLines.addGraphListener(listener);
+    }
+
+    /**Metoda cofająca ostatnią zmianę; zwraca <code>false</code>, gdy nie ma czego cofać*/
+    public boolean undo(){
+        boolean undone = history.undo();
+        repaintChanges();
+        setMouseCursor();
+        return undone;
+    }
+
+    /**Metoda ponawiająca ostatnio cofniętą zmianę; zwraca <code>false</code>, gdy nie ma czego ponawiać*/
+    public boolean redo(){
+        boolean redone = history.redo();
+        repaintChanges();
+        setMouseCursor();
+        return redone;
+    }
+
+    /**Metoda rozpoczynająca zmianę wykonywaną poza panelem (np. automatyczne rozmieszczenie) -
+     * zmiany do wywołania <code>endEdit</code> są cofane jednym krokiem*/
+    public void beginEdit(){
+        history.beginStep();
+    }
+
+    /**Metoda kończąca zmianę rozpoczętą metodą <code>beginEdit</code>*/
+    public void endEdit(){
+        history.endStep();
+    }
+
+    /**Metoda wyświetlająca zamiast sieci podgląd rozmieszczenia obliczanego w tle (odświeżany metodą
+     * <code>repaint</code>) - przystanki nie są przesuwane do zakończenia rozmieszczenia*/
+    public void showLayoutPreview(Layout layout){
+        preview = new LayoutPreview(layout, graph);
+        repaint();
+    }
+
+    /**Metoda kończąca podgląd rozmieszczenia i przywracająca widok sieci*/
+    public void hideLayoutPreview(){
+        preview = null;
+        repaint();
+    }
+
+    /**Metoda ustawiająca widok tak, aby był widoczny cały wyświetlany graf*/
+    public void fitView(){
+        if (graph == null || getWidth() <= 0 || getHeight() <= 0) return;
+        List<Node> nodes = graph.getNodeList();
+        if (nodes.isEmpty()) return;
+        int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+        for (Node node : nodes) {
+            left = Math.min(left, node.getX() - node.getR());
+            top = Math.min(top, node.getY() - node.getR());
+            right = Math.max(right, node.getX() + node.getR());
+            bottom = Math.max(bottom, node.getY() + node.getR());
+        }
+        camera.fit(left - FIT_MARGIN, top - FIT_MARGIN, right + FIT_MARGIN, bottom + FIT_MARGIN, getWidth(), getHeight());
+        staticLayer.invalidate();
+        repaint();
+    }
+
+    /**Metoda rozpoczynająca animację wyróżnienia połączeń - interfejs pozostaje aktywny w czasie jej trwania*/
+    public void animate(Animation animation){
+        animator.play(animation);
+    }
+
+    /**Metoda przerywająca wszystkie animacje*/
+    public void stopAnimations(){
+        animator.stopAll();
     }
 
     public ArrayList<Graph> getGraphs(){
@@ -112,26 +284,40 @@ public class GraphPanel extends JPanel
        return graphs.toArray(graphArray);
     }
 
-    private Node findNode(int mx, int my){
-        for(Node node: graph.getNodes()){
-            if (node.isMouseOver(mx, my)){
-                return node;
-            }
+    /* Wyszukiwanie elementów grafu w punkcie ekranu (mx, my) - przeliczanym na współrzędne świata */
+    Node findNode(int mx, int my){
+        PerformanceEvents.HitTest event = new PerformanceEvents.HitTest();
+        event.begin();
+        long start = System.nanoTime();
+        Node node = spatialIndex.findNode((int) Math.round(camera.toWorldX(mx)), (int) Math.round(camera.toWorldY(my)));
+        findNodeTime.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = "przystanek";
+            event.found = node != null;
+            event.commit();
         }
-        return null;
+        return node;
     }
 
     private Node findNode(MouseEvent event){
         return findNode(event.getX(), event.getY());
     }
 
-    private Connection findConnection(int mx, int my){
-        for(Connection connection: graph.getConnections()){
-            if (connection.isMouseOver(mx, my)){
-                return connection;
-            }
+    Connection findConnection(int mx, int my){
+        PerformanceEvents.HitTest event = new PerformanceEvents.HitTest();
+        event.begin();
+        long start = System.nanoTime();
+        Connection connection = spatialIndex.findConnection(camera.toWorldX(mx), camera.toWorldY(my),
+                camera.toWorldDistance(Connection.HIT_TOLERANCE));
+        findConnectionTime.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = "połączenie";
+            event.found = connection != null;
+            event.commit();
         }
-        return null;
+        return connection;
     }
 
     private Connection findConnection(MouseEvent event){
@@ -173,25 +359,34 @@ public class GraphPanel extends JPanel
     }
 
 
+    /* Usunięcie przystanku wraz z połączeniami - cofane jednym krokiem */
+    private void removeNode(Node node){
+        history.beginStep();
+        graph.removeNode(node);
+        history.endStep();
+    }
+
     private void moveNode(int dx, int dy, Node node){
-        node.setX(node.getX()+dx);
-        node.setY(node.getY()+dy);
+        node.setLocation(node.getX()+dx, node.getY()+dy);
     }
 
+    /* Odświeżenie wyłącznie obszaru zmienionego od ostatniego odświeżenia */
+    private void repaintChanges() {
+        Rectangle damage = staticLayer.takeDamage(getWidth(), getHeight());
+        if (damage != null) repaint(damage);
+    }
 
-    private void moveAllNodes(int dx, int dy) {
-        for (Node node : graph.getNodes()) {
-            moveNode(dx, dy, node);
-        }
+    /* Przesunięcie widoku - współrzędne przystanków pozostają bez zmian */
+    private void moveView(int dx, int dy) {
+        camera.pan(dx, dy);
+        staticLayer.invalidate();
     }
 
     private void moveConnection(int dx, int dy, Connection connection){
         Node node1 = connection.getNode1();
         Node node2 = connection.getNode2();
-        node1.setX(node1.getX()+dx);
-        node1.setY(node1.getY()+dy);
-        node2.setX(node2.getX()+dx);
-        node2.setY(node2.getY()+dy);
+        node1.setLocation(node1.getX()+dx, node1.getY()+dy);
+        node2.setLocation(node2.getX()+dx, node2.getY()+dy);
     }
 
     /*
@@ -204,8 +399,61 @@ public class GraphPanel extends JPanel
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         if (graph==null) return;
-        graph.draw(g);
-
+        if (preview != null) {
+            preview.paint((Graphics2D) g, getWidth(), getHeight());
+            return;
+        }
+        PerformanceEvents.Paint event = new PerformanceEvents.Paint();
+        event.begin();
+        long start = System.nanoTime();
+        staticLayer.paint((Graphics2D) g, getWidth(), getHeight());
+        animator.paint((Graphics2D) g);
+        long time = System.nanoTime() - start;
+        event.end();
+        Rectangle clip = g.getClipBounds();
+        // odświeżenie samych statystyk nie jest rysowaniem klatki - nie zaniża pomiarów
+        if (clip == null || !OVERLAY_BOUNDS.contains(clip)) {
+            paintTime.record(time);
+            if (event.shouldCommit()) {
+                event.nodes = graph.getNodeCount();
+                event.connections = graph.getConnectionCount();
+                event.area = clip == null ? (long) getWidth() * getHeight() : (long) clip.width * clip.height;
+                event.commit();
+            }
+        }
+        if (overlayVisible) paintOverlay((Graphics2D) g);
+    }
+
+    /**Metoda włączająca lub wyłączająca statystyki wydajności rysowane w lewym górnym rogu panelu*/
+    public void setOverlayVisible(boolean visible){
+        overlayVisible = visible;
+        if (visible) overlayTimer.start();
+        else overlayTimer.stop();
+        repaint(OVERLAY_BOUNDS);
+    }
+
+    public boolean isOverlayVisible(){
+        return overlayVisible;
+    }
+
+    /**Metoda rysująca statystyki wydajności: czasy rysowania klatki i wyszukiwania oraz liczby elementów*/
+    private void paintOverlay(Graphics2D g){
+        String[] lines = {
+                String.format("Klatka: %.1f ms (p95 %.1f, maks. %.1f)", paintTime.getMean() / 1e6,
+                        paintTime.getPercentile(0.95) / 1e6, paintTime.getMax() / 1e6),
+                String.format("Wyszukiwanie: p95 %d µs", Math.max(findNodeTime.getPercentile(0.95),
+                        findConnectionTime.getPercentile(0.95)) / 1000),
+                String.format("Przystanki: %d  Połączenia: %d", graph.getNodeCount(), graph.getConnectionCount())
+        };
+        g.setFont(OVERLAY_FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        int padding = 6;
+        g.setColor(OVERLAY_BACKGROUND);
+        g.fillRect(OVERLAY_BOUNDS.x, OVERLAY_BOUNDS.y, OVERLAY_BOUNDS.width, OVERLAY_BOUNDS.height);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], padding, padding + metrics.getAscent() + i * metrics.getHeight());
+        }
     }
 
 
@@ -231,12 +479,25 @@ public class GraphPanel extends JPanel
         if (event.getButton()==1) mouseButtonLeft = true;
         if (event.getButton()==3) mouseButtonRight = true;
         setMouseCursor(event);
+        if (mouseButtonLeft) {
+            // całe przeciąganie cofane jest jednym krokiem
+            history.beginStep();
+            // przeciągane elementy rysowane są na bieżąco, reszta grafu pozostaje w obrazie warstwy statycznej
+            if (nodeUnderCursor != null) {
+                staticLayer.setLive(Collections.singleton(nodeUnderCursor));
+            } else if (connectionUnderCursor != null) {
+                staticLayer.setLive(Arrays.asList(connectionUnderCursor.getNode1(), connectionUnderCursor.getNode2()));
+            }
+        }
     }
 
     @Override
     public void mouseReleased(MouseEvent event) {
-        if (event.getButton() == 1)
+        if (event.getButton() == 1) {
             mouseButtonLeft = false;
+            staticLayer.setLive(Collections.emptySet());
+            history.endStep();
+        }
         if (event.getButton() == 3)
             mouseButtonRight = false;
         setMouseCursor(event);
@@ -262,19 +523,22 @@ public class GraphPanel extends JPanel
     @Override
     public void mouseDragged(MouseEvent event) {
         if (mouseButtonLeft) {
+            // przesunięcie w świecie - różnica zaokrąglonych współrzędnych, aby przy powiększeniu nie gubić ruchu
+            int dx = (int) Math.round(camera.toWorldX(event.getX())) - (int) Math.round(camera.toWorldX(mouseX));
+            int dy = (int) Math.round(camera.toWorldY(event.getY())) - (int) Math.round(camera.toWorldY(mouseY));
             if (nodeUnderCursor != null) {
-                moveNode(event.getX() - mouseX, event.getY() - mouseY, nodeUnderCursor);
+                moveNode(dx, dy, nodeUnderCursor);
             }
             else if (connectionUnderCursor != null) {
-                moveConnection(event.getX() - mouseX, event.getY() - mouseY, connectionUnderCursor);
+                moveConnection(dx, dy, connectionUnderCursor);
             }
             else {
-                moveAllNodes(event.getX() - mouseX, event.getY() - mouseY);
+                moveView(event.getX() - mouseX, event.getY() - mouseY);
             }
         }
         mouseX = event.getX();
         mouseY = event.getY();
-        repaint();
+        repaintChanges();
     }
 
     @Override
@@ -282,6 +546,18 @@ public class GraphPanel extends JPanel
         setMouseCursor(event);
     }
 
+    /*
+     * Implementacja interfejsu MouseWheelListener - powiększanie widoku
+     * względem punktu wskazywanego kursorem
+     */
+    @Override
+    public void mouseWheelMoved(MouseWheelEvent event) {
+        camera.zoomAt(event.getX(), event.getY(), Math.pow(1.1, -event.getPreciseWheelRotation()));
+        staticLayer.invalidate();
+        repaintChanges();
+        setMouseCursor(event);
+    }
+
 
     /*
      *  Impelentacja interfejsu KeyListener - obsługa zdarzeń generowanych
@@ -294,26 +570,31 @@ public class GraphPanel extends JPanel
             else dist = 1;
             switch (event.getKeyCode()) {
                 case KeyEvent.VK_LEFT:
-                    moveAllNodes(-dist, 0);
+                    moveView(-dist, 0);
                     break;
                 case KeyEvent.VK_RIGHT:
-                    moveAllNodes(dist, 0);
+                    moveView(dist, 0);
                     break;
                 case KeyEvent.VK_UP:
-                    moveAllNodes(0, -dist);
+                    moveView(0, -dist);
                     break;
                 case KeyEvent.VK_DOWN:
-                    moveAllNodes(0, dist);
+                    moveView(0, dist);
+                    break;
+                case KeyEvent.VK_HOME:
+                    camera.reset();
+                    staticLayer.invalidate();
                     break;
                 case KeyEvent.VK_DELETE:
                     if (nodeUnderCursor != null) {
-                        graph.removeNode(nodeUnderCursor);
+                        removeNode(nodeUnderCursor);
                         nodeUnderCursor = null;
+                        connectionUnderCursor = null;
                     }
                     break;
             }
         }
-        repaint();
+        repaintChanges();
         setMouseCursor();
     }
 
@@ -344,7 +625,7 @@ public class GraphPanel extends JPanel
                     if (r>=10) nodeUnderCursor.setR(r);
                     break;
             }
-            repaint();
+            repaintChanges();
             setMouseCursor();
         }
     }
@@ -364,8 +645,14 @@ public class GraphPanel extends JPanel
         // Implementacja słuchacza zdarzeń za pomocą wyrażenia Lambda
         menuItem.addActionListener((action) -> {
             String name = JOptionPane.showInputDialog("Enter node name");
-            graph.addNode(new Node(event.getX(), event.getY(), name));
-            repaint();
+            try {
+                graph.addNode(new Node((int) Math.round(camera.toWorldX(event.getX())),
+                        (int) Math.round(camera.toWorldY(event.getY())), name));
+            }
+            catch (UnsupportedOperationException e){
+                JOptionPane.showMessageDialog(this, e.getMessage());
+            }
+            repaintChanges();
         });
 
         popup.add(menuItem);
@@ -388,7 +675,7 @@ public class GraphPanel extends JPanel
             if (newColor!=null){
                 node.setColor(newColor);
             }
-            repaint();
+            repaintChanges();
         });
 
 
@@ -397,8 +684,8 @@ public class GraphPanel extends JPanel
 
         // Implementacja słuchacza zdarzeń za pomocą wyrażenia Lambda
         menuItem.addActionListener((action) -> {
-            graph.removeNode(node);
-            repaint();
+            removeNode(node);
+            repaintChanges();
         });
 
         popup.add(menuItem);
@@ -409,7 +696,7 @@ public class GraphPanel extends JPanel
         menuItem.addActionListener((action) -> {
             String name = JOptionPane.showInputDialog("Fill node name");
             node.setName(name);
-            repaint();
+            repaintChanges();
         });
 
         popup.add(menuItem);
@@ -420,17 +707,23 @@ public class GraphPanel extends JPanel
         menuItem.addActionListener((action) -> {
             Node node2;
 
+                Node[] nodes = graph.getNodes();
                 Node nodeTemp = (Node) JOptionPane.showInputDialog(null,
                         "Wybierz drugi przystanek:",
                         "Wybierz drugi przystanek", JOptionPane.QUESTION_MESSAGE,
-                        null, graph.getNodes(), graph.getNodes()[0]);
+                        null, nodes, nodes[0]);
 
                 if(nodeTemp != null) node2 = nodeTemp;
 
                 else return;
 
-                graph.createConnection(node, node2);
-                repaint();
+                try {
+                    graph.createConnection(node, node2);
+                }
+                catch (UnsupportedOperationException e){
+                    JOptionPane.showMessageDialog(this, e.getMessage());
+                }
+                repaintChanges();
         });
 
         popup.add(menuItem);
@@ -445,7 +738,7 @@ public class GraphPanel extends JPanel
         // Implementacja słuchacza zdarzeń za pomocą wyrażenia Lambda
         menuItem.addActionListener((action) -> {
             graph.removeConnection(connection);
-            repaint();
+            repaintChanges();
         });
 
         popup.add(menuItem);
@@ -0,0 +1,125 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: LayoutPreview.java
+ *
+ *  Klasa LayoutPreview rysuje podgląd automatycznego rozmieszczenia
+ *  przystanków w trakcie jego obliczania.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Podgląd automatycznego rozmieszczenia przystanków (<code>Layout</code>). <br>
+ * Podgląd rysowany jest z położeń udostępnianych przez rozmieszczenie po każdym kroku, a nie
+ * z przystanków sieci - przystanki przesuwane są dopiero raz, po zakończeniu rozmieszczenia, więc
+ * kolejne kroki nie są zgłaszane słuchaczom grafów (dziennik zmian, historia, warstwa statyczna).
+ * Podgląd dopasowywany jest do rozmiaru panelu niezależnie od bieżącego widoku.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.Connection;
+import data.Network;
+import data.Node;
+import layout.Layout;
+
+class LayoutPreview {
+
+    /**Margines podglądu w pikselach*/
+    private static final int MARGIN = 20;
+    /**Najmniejszy promień przystanku na podglądzie w pikselach*/
+    private static final double MIN_RADIUS = 1.5;
+
+    private final Layout layout;
+    /**Połączenia jako pary numerów przystanków rozmieszczenia wraz z kolorami*/
+    private final int[] from;
+    private final int[] to;
+    private final Color[] connectionColors;
+    private final Color[] nodeColors;
+    private final int[] radius;
+
+    LayoutPreview(Layout layout, Network network) {
+        this.layout = layout;
+        List<Node> nodes = layout.getNodes();
+        Map<Node, Integer> index = new IdentityHashMap<>(2 * nodes.size());
+        nodeColors = new Color[nodes.size()];
+        radius = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            index.put(node, i);
+            nodeColors[i] = node.getColor();
+            radius[i] = node.getR();
+        }
+        List<Connection> connections = network.getConnectionList();
+        int[] first = new int[connections.size()];
+        int[] second = new int[connections.size()];
+        Color[] colors = new Color[connections.size()];
+        int count = 0;
+        for (Connection connection : connections) {
+            Integer a = index.get(connection.getNode1());
+            Integer b = index.get(connection.getNode2());
+            if (a == null || b == null) continue;
+            first[count] = a;
+            second[count] = b;
+            colors[count++] = connection.getColor();
+        }
+        from = Arrays.copyOf(first, count);
+        to = Arrays.copyOf(second, count);
+        connectionColors = Arrays.copyOf(colors, count);
+    }
+
+    /**Metoda rysująca podgląd ostatniego kroku rozmieszczenia dopasowany do obszaru width x height*/
+    void paint(Graphics2D g, int width, int height){
+        int[] positions = layout.getPositions();
+        int n = positions.length / 2;
+        if (n == 0) return;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, positions[2 * i]);
+            minY = Math.min(minY, positions[2 * i + 1]);
+            maxX = Math.max(maxX, positions[2 * i]);
+            maxY = Math.max(maxY, positions[2 * i + 1]);
+        }
+        double scale = Math.min((width - 2.0 * MARGIN) / Math.max(1, maxX - minX),
+                                (height - 2.0 * MARGIN) / Math.max(1, maxY - minY));
+        scale = Math.max(Math.min(scale, 1.0), 1e-6);
+        double offsetX = (width - (maxX - minX) * scale) / 2 - minX * scale;
+        double offsetY = (height - (maxY - minY) * scale) / 2 - minY * scale;
+
+        Graphics2D preview = (Graphics2D) g.create();
+        preview.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        for (int e = 0; e < from.length; e++) {
+            preview.setColor(connectionColors[e] == null ? Color.BLACK : connectionColors[e]);
+            preview.drawLine((int) Math.round(offsetX + positions[2 * from[e]] * scale),
+                             (int) Math.round(offsetY + positions[2 * from[e] + 1] * scale),
+                             (int) Math.round(offsetX + positions[2 * to[e]] * scale),
+                             (int) Math.round(offsetY + positions[2 * to[e] + 1] * scale));
+        }
+        for (int i = 0; i < n; i++) {
+            double r = Math.max(MIN_RADIUS, radius[i] * scale);
+            int x = (int) Math.round(offsetX + positions[2 * i] * scale - r);
+            int y = (int) Math.round(offsetY + positions[2 * i + 1] * scale - r);
+            int size = (int) Math.round(2 * r);
+            if (nodeColors[i] != null) {
+                preview.setColor(nodeColors[i]);
+                preview.fillOval(x, y, size, size);
+            }
+            preview.setColor(Color.BLACK);
+            preview.drawOval(x, y, size, size);
+        }
+        preview.dispose();
+    }
+}
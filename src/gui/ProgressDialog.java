@@ -0,0 +1,145 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: ProgressDialog.java
+ *
+ *  Klasa ProgressDialog wykonuje długotrwałe operacje (odczyt, zapis,
+ *  import) w tle, wyświetlając ich postęp i umożliwiając przerwanie.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Okno postępu operacji wykonywanej w tle. <br>
+ * Operacja uruchamiana jest w wątku roboczym (<code>SwingWorker</code>), a okno - modalne,
+ * więc w trakcie operacji nie można zmieniać linii, ale okno programu jest odświeżane.
+ * Postęp zgłaszany przez operację (<code>ProgressListener</code>) wyświetlany jest na pasku postępu;
+ * przycisk "Anuluj" przerywa operację. Wynik przekazywany jest do wątku zdarzeń Swing dopiero
+ * po zakończeniu operacji, a błędy wyświetlane są w oknie komunikatu.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package gui;
+
+import java.awt.BorderLayout;
+import java.awt.Frame;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import javax.swing.*;
+
+import util.ProgressListener;
+
+class ProgressDialog extends JDialog implements ProgressListener {
+
+    private static final long serialVersionUID = 1L;
+
+    /**Operacja wykonywana w tle - zgłasza postęp i sprawdza przerwanie przez podanego słuchacza*/
+    interface Task<T> {
+        T run(ProgressListener listener) throws Exception;
+    }
+
+    private final JProgressBar bar = new JProgressBar(0, 1000);
+    private volatile boolean cancelled;
+    /**Postęp ostatnio zgłoszony przez operację i znacznik oczekującej aktualizacji paska*/
+    private volatile long done;
+    private volatile long total;
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+
+    private ProgressDialog(Frame owner, String title) {
+        super(owner, title, true);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        bar.setIndeterminate(true);
+        bar.setStringPainted(true);
+        bar.setString("");
+        JButton cancel = new JButton("Anuluj");
+        cancel.addActionListener(action -> {
+            cancelled = true;
+            cancel.setEnabled(false);
+            bar.setString("Przerywanie...");
+        });
+        JPanel content = new JPanel(new BorderLayout(8, 8));
+        content.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        content.add(new JLabel(title), BorderLayout.NORTH);
+        content.add(bar, BorderLayout.CENTER);
+        content.add(cancel, BorderLayout.SOUTH);
+        setContentPane(content);
+        setSize(360, 140);
+        setLocationRelativeTo(owner);
+    }
+
+    /**Metoda wykonująca operację w tle; po jej pomyślnym zakończeniu <code>onSuccess</code>
+     * otrzymuje wynik w wątku zdarzeń Swing*/
+    static <T> void run(Frame owner, String title, Task<T> task, Consumer<T> onSuccess){
+        run(owner, title, task, onSuccess, () -> {});
+    }
+
+    /**Metoda wykonująca operację w tle; <code>onFinish</code> wywoływana jest w wątku zdarzeń Swing
+     * po każdym zakończeniu operacji (również przerwaniu i błędzie), przed <code>onSuccess</code>*/
+    static <T> void run(Frame owner, String title, Task<T> task, Consumer<T> onSuccess, Runnable onFinish){
+        ProgressDialog dialog = new ProgressDialog(owner, title);
+        SwingWorker<T, Void> worker = new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return task.run(dialog);
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+                onFinish.run();
+                try {
+                    onSuccess.accept(get());
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof CancellationException) {
+                        JOptionPane.showMessageDialog(owner, "Przerwano: " + title, title, JOptionPane.INFORMATION_MESSAGE);
+                    }
+                    else {
+                        JOptionPane.showMessageDialog(owner, cause.getMessage() == null ? cause.toString() : cause.getMessage(),
+                                "Błąd", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        worker.execute();
+        // okno modalne - metoda wraca po zamknięciu okna w metodzie done()
+        dialog.setVisible(true);
+    }
+
+    @Override
+    public void progress(long done, long total){
+        this.done = done;
+        this.total = total;
+        // najwyżej jedna oczekująca aktualizacja paska - wątek roboczy nie zasypuje kolejki zdarzeń
+        if (updatePending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::updateBar);
+        }
+    }
+
+    @Override
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    private void updateBar(){
+        updatePending.set(false);
+        if (cancelled) return;
+        long currentTotal = total;
+        if (currentTotal <= 0) {
+            bar.setIndeterminate(true);
+            return;
+        }
+        int permille = (int) Math.min(1000, done * 1000 / currentTotal);
+        bar.setIndeterminate(false);
+        bar.setValue(permille);
+        bar.setString(permille / 10 + " %");
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: StaticLayer.java
+ *
+ *  Klasa StaticLayer przechowuje obraz nieruchomej części grafu,
+ *  dzięki czemu panel nie rysuje całej sieci przy każdym odświeżeniu.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Warstwa statyczna rysunku grafu. <br>
+ * Przystanki i połączenia, które nie są aktualnie przeciągane, rysowane są raz do obrazu
+ * <code>BufferedImage</code>, który jest potem tylko kopiowany na ekran. Przystanki "żywe"
+ * (przeciągane myszką) wraz z ich połączeniami rysowane są na bieżąco nad obrazem. <br>
+ * Zmiana grafu (zdarzenia <code>GraphListener</code>) unieważnia tylko prostokąt zajmowany przez
+ * zmieniony element przed i po zmianie - przy najbliższym odświeżeniu ten fragment obrazu jest
+ * rysowany ponownie z przycięciem do niego. Cały obraz rysowany jest od nowa po zmianie rozmiaru
+ * panelu, zmianie widoku (<code>Camera</code>) oraz przy widoku skupisk przystanków. <br>
+ * Suma zmienionych prostokątów na ekranie (również ruch przystanków żywych) udostępniana jest
+ * metodą <code>takeDamage</code>, aby panel mógł odświeżyć wyłącznie ten obszar.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package gui;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import data.Connection;
+import data.Graph;
+import data.GraphListener;
+import data.Network;
+import data.Node;
+
+class StaticLayer implements GraphListener {
+
+    /**Margines dodawany do zmienionych prostokątów (zaokrąglenia przy skalowaniu)*/
+    private static final int MARGIN = 2;
+
+    /**Rysowana sieć (linia lub widok wszystkich linii)*/
+    private Network graph;
+    /**Przekształcenie widoku - po jego zmianie należy wywołać invalidate()*/
+    private final Camera camera;
+    /**Przystanki rysowane na bieżąco (poza obrazem)*/
+    private final Set<Node> live = new HashSet<>();
+    private BufferedImage image;
+    /**Czy obraz jest aktualny poza obszarem dirty*/
+    private boolean valid;
+    /**Obszar obrazu do ponownego narysowania (we współrzędnych panelu) lub null*/
+    private Rectangle dirty;
+    /**Obszar panelu do odświeżenia lub null; damageAll - cały panel*/
+    private Rectangle damage;
+    private boolean damageAll;
+    /**Miary czcionki z ostatniego rysowania - potrzebne do wyznaczenia prostokątów nazw przystanków*/
+    private FontMetrics metrics;
+
+    /**Konstruktor warstwy rysowanej w widoku podanej kamery*/
+    StaticLayer(Camera camera) {
+        this.camera = camera;
+    }
+
+    /**Metoda ustawiająca rysowaną sieć*/
+    void setGraph(Network graph){
+        if (this.graph != null) {
+            this.graph.removeGraphListener(this);
+        }
+        this.graph = graph;
+        if (graph != null) {
+            graph.addGraphListener(this);
+        }
+        live.clear();
+        invalidate();
+    }
+
+    /**Metoda ustawiająca przystanki rysowane na bieżąco (pusta kolekcja - wszystko w obrazie)*/
+    void setLive(Collection<Node> nodes){
+        if (live.size() == nodes.size() && live.containsAll(nodes)) return;
+        // przystanki przechodzące między obrazem a rysowaniem na bieżąco
+        for (Node node : live) {
+            invalidate(nodeArea(node, node.getX(), node.getY()));
+        }
+        for (Node node : nodes) {
+            invalidate(nodeArea(node, node.getX(), node.getY()));
+        }
+        live.clear();
+        live.addAll(nodes);
+    }
+
+    /**Metoda zwracająca przystanki rysowane na bieżąco*/
+    Set<Node> getLive(){
+        return Collections.unmodifiableSet(live);
+    }
+
+    /**Metoda wymuszająca ponowne narysowanie całego obrazu przy najbliższym odświeżeniu*/
+    void invalidate(){
+        valid = false;
+        dirty = null;
+        damageAll = true;
+    }
+
+    /**Metoda zwracająca obszar panelu wymagający odświeżenia od poprzedniego wywołania
+     * (null, gdy nic się nie zmieniło)*/
+    Rectangle takeDamage(int width, int height){
+        Rectangle result = damageAll ? new Rectangle(0, 0, width, height) : damage;
+        damage = null;
+        damageAll = false;
+        return result;
+    }
+
+    /**Metoda rysująca graf: obraz warstwy statycznej i przystanki żywe*/
+    void paint(Graphics2D g, int width, int height){
+        if (graph == null || width <= 0 || height <= 0) return;
+        metrics = g.getFontMetrics();
+        // skala urządzenia (np. ekrany HiDPI) - obraz ma rozdzielczość ekranu, a nie panelu
+        AffineTransform device = g.getTransform();
+        double scaleX = device.getScaleX();
+        double scaleY = device.getScaleY();
+        int imageWidth = (int) Math.ceil(width * scaleX);
+        int imageHeight = (int) Math.ceil(height * scaleY);
+        if (image == null || image.getWidth() != imageWidth || image.getHeight() != imageHeight) {
+            image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            valid = false;
+        }
+        if (!valid || dirty != null) {
+            Graphics2D imageGraphics = image.createGraphics();
+            imageGraphics.scale(scaleX, scaleY);
+            // bez normalizacji linii - inaczej okręgi przycięte do fragmentu obrazu różnią się o piksel od nieprzyciętych
+            imageGraphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            if (valid) {
+                imageGraphics.clip(dirty);
+            }
+            imageGraphics.setComposite(AlphaComposite.Clear);
+            imageGraphics.fillRect(0, 0, width, height);
+            imageGraphics.setComposite(AlphaComposite.SrcOver);
+            imageGraphics.transform(camera.getTransform());
+            imageGraphics.setFont(g.getFont());
+            graph.drawExcept(imageGraphics, live, camera.getZoom());
+            imageGraphics.dispose();
+            valid = true;
+            dirty = null;
+        }
+        g.drawImage(image, 0, 0, width, height, null);
+        if (!live.isEmpty()) {
+            Graphics2D liveGraphics = (Graphics2D) g.create();
+            liveGraphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            liveGraphics.transform(camera.getTransform());
+            graph.drawOnly(liveGraphics, live, camera.getZoom());
+            liveGraphics.dispose();
+        }
+    }
+
+    @Override
+    public void nodeAdded(Graph graph, Node node){
+        invalidate(node.getBounds(metrics));
+    }
+
+    @Override
+    public void nodeRemoved(Graph graph, Node node){
+        live.remove(node);
+        invalidate(node.getBounds(metrics));
+    }
+
+    @Override
+    public void nodeRenamed(Graph graph, Node node, String oldName){
+        Rectangle area = Node.getBounds(node.getX(), node.getY(), node.getR(), oldName, metrics)
+                .union(node.getBounds(metrics));
+        if (live.contains(node)) damage(area);
+        else invalidate(area);
+    }
+
+    @Override
+    public void nodeMoved(Graph graph, Node node, int oldX, int oldY){
+        Rectangle area = nodeArea(node, oldX, oldY).union(nodeArea(node, node.getX(), node.getY()));
+        if (live.contains(node)) damage(area);
+        else invalidate(area);
+    }
+
+    @Override
+    public void nodeResized(Graph graph, Node node, int oldR){
+        Rectangle area = Node.getBounds(node.getX(), node.getY(), oldR, node.getName(), metrics)
+                .union(node.getBounds(metrics));
+        if (live.contains(node)) damage(area);
+        else invalidate(area);
+    }
+
+    @Override
+    public void nodeRecolored(Graph graph, Node node, Color oldColor){
+        if (live.contains(node)) damage(node.getBounds(metrics));
+        else invalidate(node.getBounds(metrics));
+    }
+
+    @Override
+    public void connectionAdded(Graph graph, Connection connection){
+        invalidate(connection.getBounds());
+    }
+
+    @Override
+    public void connectionRemoved(Graph graph, Connection connection){
+        invalidate(connection.getBounds());
+    }
+
+    @Override
+    public void connectionRecolored(Graph graph, Connection connection, Color oldColor){
+        if (live.contains(connection.getNode1()) || live.contains(connection.getNode2())) damage(connection.getBounds());
+        else invalidate(connection.getBounds());
+    }
+
+    /**Metoda zwracająca prostokąt (we współrzędnych świata) obejmujący przystanek umieszczony w punkcie (x, y)
+     * wraz z połączeniami rysowanego grafu, które do niego prowadzą*/
+    private Rectangle nodeArea(Node node, int x, int y){
+        Rectangle area = Node.getBounds(x, y, node.getR(), node.getName(), metrics);
+        if (graph == null) return area;
+        for (Connection connection : graph.getIncidentConnections(node)) {
+            Node other = connection.getOtherNode(node);
+            area.add(Connection.getBounds(x, y, other.getX(), other.getY()));
+        }
+        return area;
+    }
+
+    /**Metoda unieważniająca fragment obrazu (prostokąt we współrzędnych świata)*/
+    private void invalidate(Rectangle world){
+        if (!valid) return;
+        if (metrics == null || camera.getZoom() < Network.CLUSTER_MAX_SCALE) {
+            // skupiska zależą od położenia wszystkich przystanków w komórce - rysowanie całego obrazu
+            invalidate();
+            return;
+        }
+        Rectangle screen = toScreen(world);
+        dirty = dirty == null ? screen : dirty.union(screen);
+        damageScreen(screen);
+    }
+
+    /**Metoda oznaczająca obszar panelu do odświeżenia (prostokąt we współrzędnych świata) bez zmiany obrazu*/
+    private void damage(Rectangle world){
+        damageScreen(toScreen(world));
+    }
+
+    private void damageScreen(Rectangle screen){
+        if (damageAll) return;
+        damage = damage == null ? screen : damage.union(screen);
+    }
+
+    private Rectangle toScreen(Rectangle world){
+        Rectangle screen = camera.getTransform().createTransformedShape(world).getBounds();
+        screen.grow(MARGIN, MARGIN);
+        return screen;
+    }
+}
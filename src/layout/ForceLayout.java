@@ -0,0 +1,653 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: ForceLayout.java
+ *
+ *  Klasa ForceLayout rozmieszcza automatycznie przystanki sieci
+ *  metodą sił (force-directed) z przybliżeniem Barnesa-Huta.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Automatyczne rozmieszczenie przystanków linii lub całej sieci. <br>
+ * Przystanki odpychają się wzajemnie siłą C·K²/d, a połączone przystanki przyciągają siłą d²/K,
+ * gdzie K to pożądana długość połączenia; perony o tej samej nazwie (węzły przesiadkowe) przyciągają
+ * się jak połączone, a słaba grawitacja utrzymuje razem niepołączone części sieci. Odpychanie liczone
+ * jest w przybliżeniu Barnesa-Huta: przystanki grupowane są w drzewie czwórkowym, a odległa komórka
+ * drzewa działa jak jeden przystanek o masie równej liczbie przystanków w komórce - koszt kroku
+ * wynosi O(n log n) zamiast O(n²). Siły dla kolejnych fragmentów tablicy przystanków liczone są
+ * równolegle w puli <code>ForkJoinPool</code>. <br>
+ * Rozmieszczenie jest wielopoziomowe: sieć jest kolejno upraszczana przez łączenie par sąsiednich
+ * przystanków (skojarzenie) aż do kilkudziesięciu przystanków, najmniejsza sieć jest rozmieszczana
+ * od położeń średnich, a potem na każdym poziomie przystanki rozdzielane są z położenia przystanku
+ * złączonego i rozmieszczenie jest poprawiane - duże sieci nie plączą się, a na najdrobniejszym
+ * poziomie wystarcza kilkadziesiąt kroków. <br>
+ * Każdy przystanek przesuwany jest w kierunku wypadkowej siły o długość kroku, która zmienia się
+ * adaptacyjnie (Y. Hu, "Efficient and high quality force-directed graph drawing"): rośnie, gdy energia
+ * układu kolejno maleje, i maleje w przeciwnym razie. Poziom uznaje się za rozmieszczony, gdy krok
+ * spadnie poniżej ułamka długości K. Położenia skalowane są tak, aby średnia długość połączenia
+ * wynosiła K. <br>
+ * Obliczenia prowadzone są na kopii położeń, więc mogą trwać w wątku roboczym; po każdym kroku
+ * udostępniane są bieżące położenia, które metoda <code>apply</code> przenosi do przystanków
+ * (w wątku, w którym modyfikowana jest sieć) - panel może pokazywać kolejne etapy rozmieszczenia.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import data.Connection;
+import data.Network;
+import data.Node;
+import util.ProgressListener;
+
+public final class ForceLayout implements Layout {
+
+    /**Domyślna pożądana długość połączenia*/
+    public static final double DEFAULT_EDGE_LENGTH = 40;
+    /**Domyślna największa liczba kroków (łącznie na wszystkich poziomach)*/
+    public static final int DEFAULT_MAX_ITERATIONS = 2000;
+
+    /**Parametr przybliżenia Barnesa-Huta - komórka o boku s w odległości d traktowana jest jak punkt, gdy s/d < THETA*/
+    private static final double THETA = 1.2;
+    /**Względna siła odpychania C*/
+    private static final double REPULSION = 0.2;
+    /**Siła grawitacji, utrzymującej razem niepołączone części sieci*/
+    private static final double GRAVITY = 0.02;
+    /**Zmiana długości kroku i liczba kolejnych spadków energii, po której krok jest wydłużany*/
+    private static final double COOLING = 0.9;
+    private static final int PROGRESS_STEPS = 5;
+    /**Krok (względem długości K), poniżej którego poziom uznaje się za rozmieszczony*/
+    private static final double TOLERANCE = 0.01;
+    /**Początkowy krok na poziomach rozdzielanych z poziomu prostszego (względem długości K)*/
+    private static final double REFINE_STEP = 1.0;
+    /**Największa liczba kroków najprostszego poziomu i każdego kolejnego*/
+    private static final int COARSEST_ITERATIONS = 500;
+    private static final int LEVEL_ITERATIONS = 100;
+    /**Upraszczanie kończy się przy tej liczbie przystanków lub gdy poziom zmniejsza się mniej niż do tego ułamka*/
+    private static final int COARSEST_SIZE = 50;
+    private static final double MIN_REDUCTION = 0.9;
+    /**Największa głębokość drzewa - przystanki w tym samym miejscu trafiają do jednego liścia*/
+    private static final int MAX_DEPTH = 32;
+    /**Liczba przystanków w jednym zadaniu obliczeń równoległych*/
+    private static final int CHUNK = 256;
+    /**Margines położeń przenoszonych do przystanków*/
+    private static final int MARGIN = 50;
+
+    private final Node[] nodes;
+    private final int n;
+    /**Poziomy rozmieszczenia - poziom 0 to sieć, kolejne są coraz prostsze*/
+    private final List<Level> levels = new ArrayList<>();
+    /**Bieżący poziom i numery, pod którymi przystanki sieci występują na tym poziomie*/
+    private int current;
+    private final int[] ancestor;
+    private final QuadTree tree;
+    private final Random random;
+
+    private final double edgeLength;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int iteration;
+    private volatile boolean converged;
+    /**Położenia po ostatnim kroku (x0, y0, x1, y1, ...) - odczytywane przez apply w innym wątku*/
+    private volatile int[] published;
+
+    /**Konstruktor rozmieszczenia przystanków sieci z domyślną długością połączenia*/
+    public ForceLayout(Network network) {
+        this(network, DEFAULT_EDGE_LENGTH);
+    }
+
+    /**Konstruktor rozmieszczenia przystanków sieci; położenia początkowe są kopiowane z przystanków
+     * (przystanki w tym samym miejscu rozsuwane są losowo)*/
+    public ForceLayout(Network network, double edgeLength) {
+        if (edgeLength <= 0) throw new IllegalArgumentException("Długość połączenia musi być dodatnia");
+        this.edgeLength = edgeLength;
+        List<Node> nodeList = network.getNodeList();
+        nodes = nodeList.toArray(new Node[0]);
+        n = nodes.length;
+        random = new Random(n);
+        Map<Node, Integer> index = new IdentityHashMap<>(2 * n);
+        for (int i = 0; i < n; i++) {
+            index.put(nodes[i], i);
+        }
+
+        // krawędzie: połączenia oraz perony o tej samej nazwie (łańcuch w kolejności przystanków)
+        Edges edges = new Edges();
+        for (Connection connection : network.getConnectionList()) {
+            Integer a = index.get(connection.getNode1());
+            Integer b = index.get(connection.getNode2());
+            if (a != null && b != null) edges.add(a, b);
+        }
+        Map<String, Integer> lastPlatform = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            String name = nodes[i].getNormalizedName();
+            if (name.isEmpty()) continue;
+            Integer previous = lastPlatform.put(name, i);
+            if (previous != null) edges.add(previous, i);
+        }
+
+        Level finest = new Level(n, edges);
+        double spread = edgeLength * Math.sqrt(n);
+        Set<Long> taken = new HashSet<>(2 * n);
+        for (int i = 0; i < n; i++) {
+            finest.x[i] = nodes[i].getX();
+            finest.y[i] = nodes[i].getY();
+            if (!taken.add(((long) nodes[i].getX() << 32) ^ (nodes[i].getY() & 0xFFFFFFFFL))) {
+                finest.x[i] += (random.nextDouble() - 0.5) * spread;
+                finest.y[i] += (random.nextDouble() - 0.5) * spread;
+            }
+        }
+        levels.add(finest);
+        Level level = finest;
+        while (level.n > COARSEST_SIZE) {
+            Level coarse = level.coarsen();
+            if (coarse == null) break;
+            levels.add(coarse);
+            level = coarse;
+        }
+        current = levels.size() - 1;
+        levels.get(current).start(edgeLength, COARSEST_ITERATIONS);
+        ancestor = new int[n];
+        updateAncestors();
+        tree = new QuadTree(n);
+        converged = n < 2;
+        publish();
+    }
+
+    /**Metoda ustawiająca pulę wątków obliczeń (domyślnie wspólna pula)*/
+    public void setPool(ForkJoinPool pool){
+        this.pool = pool;
+    }
+
+    /**Metoda zwracająca liczbę rozmieszczanych przystanków*/
+    public int getNodeCount(){
+        return n;
+    }
+
+    /**Metoda zwracająca liczbę poziomów rozmieszczenia*/
+    public int getLevelCount(){
+        return levels.size();
+    }
+
+    /**Metoda zwracająca liczbę wykonanych kroków*/
+    public int getIteration(){
+        return iteration;
+    }
+
+    /**Metoda sprawdzająca czy rozmieszczenie jest zakończone*/
+    @Override
+    public boolean isConverged(){
+        return converged;
+    }
+
+    /**Metoda wykonująca kroki rozmieszczenia (w puli wątków) do jego zakończenia lub wykonania
+     * <code>maxIterations</code> kroków. Postęp zgłaszany jest w krokach; przerwanie kończy się wyjątkiem
+     * <code>CancellationException</code>, a położenia z ostatniego kroku pozostają dostępne.*/
+    @Override
+    public void run(int maxIterations, ProgressListener listener){
+        try {
+            pool.submit(() -> {
+                for (int i = 0; i < maxIterations && !converged; i++) {
+                    if (listener.isCancelled()) throw new CancellationException("Przerwano rozmieszczanie przystanków");
+                    step();
+                    listener.progress(levels.size() - current, levels.size() + 1);
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Przerwano rozmieszczanie przystanków");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Błąd podczas rozmieszczania przystanków", e.getCause());
+        }
+    }
+
+    /**Metoda wykonująca jeden krok rozmieszczenia; zwraca <code>false</code>, gdy rozmieszczenie jest zakończone*/
+    public boolean step(){
+        if (converged) return false;
+        Level level = levels.get(current);
+        boolean levelDone = !level.step();
+        iteration++;
+        if (levelDone) {
+            if (current == 0) {
+                converged = true;
+            } else {
+                prolong(level, levels.get(current - 1));
+                current--;
+                updateAncestors();
+            }
+        }
+        publish();
+        return !converged;
+    }
+
+    /**Metoda przenosząca położenia z ostatniego kroku do przystanków - należy ją wywoływać w wątku,
+     * w którym modyfikowana jest sieć (zmiany zgłaszane są słuchaczom grafów)*/
+    @Override
+    public void apply(){
+        int[] positions = published;
+        for (int i = 0; i < n; i++) {
+            nodes[i].setLocation(positions[2 * i], positions[2 * i + 1]);
+        }
+    }
+
+    @Override
+    public List<Node> getNodes(){
+        return Collections.unmodifiableList(Arrays.asList(nodes));
+    }
+
+    @Override
+    public int[] getPositions(){
+        return published;
+    }
+
+    /**Metoda rozdzielająca przystanki złączone na prostszym poziomie - przystanki poziomu drobniejszego
+     * zaczynają w pobliżu przystanku, do którego zostały złączone*/
+    private void prolong(Level coarse, Level fine){
+        double jitter = REFINE_STEP * edgeLength;
+        for (int i = 0; i < fine.n; i++) {
+            int parent = fine.parent[i];
+            fine.x[i] = coarse.x[parent] + (random.nextDouble() - 0.5) * jitter;
+            fine.y[i] = coarse.y[parent] + (random.nextDouble() - 0.5) * jitter;
+        }
+        fine.start(REFINE_STEP * edgeLength, LEVEL_ITERATIONS);
+    }
+
+    private void updateAncestors(){
+        for (int i = 0; i < n; i++) {
+            int a = i;
+            for (int l = 0; l < current; l++) {
+                a = levels.get(l).parent[a];
+            }
+            ancestor[i] = a;
+        }
+    }
+
+    /**Metoda udostępniająca położenia z ostatniego kroku, przeskalowane tak, aby średnia długość połączenia
+     * wynosiła K, i przesunięte do dodatniej ćwiartki*/
+    private void publish(){
+        Level level = levels.get(current);
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < level.n; i++) {
+            minX = Math.min(minX, level.x[i]);
+            minY = Math.min(minY, level.y[i]);
+        }
+        double mean = level.meanEdgeLength();
+        double scale = mean > 0 ? edgeLength / mean : 1;
+        int[] positions = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            int a = ancestor[i];
+            positions[2 * i] = (int) Math.round((level.x[a] - minX) * scale) + MARGIN;
+            positions[2 * i + 1] = (int) Math.round((level.y[a] - minY) * scale) + MARGIN;
+        }
+        published = positions;
+    }
+
+    /**Lista krawędzi (par numerów przystanków) budowana przed utworzeniem poziomu*/
+    private static final class Edges {
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private int size;
+
+        void add(int a, int b){
+            if (a == b) return;
+            if (size == from.length) {
+                from = Arrays.copyOf(from, 2 * size);
+                to = Arrays.copyOf(to, 2 * size);
+            }
+            from[size] = a;
+            to[size] = b;
+            size++;
+        }
+    }
+
+    /**Poziom rozmieszczenia: graf (sąsiedzi w układzie CSR), położenia przystanków i stan kroku adaptacyjnego*/
+    private final class Level {
+
+        private final int n;
+        private final int[] adjOffsets;
+        private final int[] adjTargets;
+        private double[] x;
+        private double[] y;
+        private double[] nextX;
+        private double[] nextY;
+        private final double[] chunkEnergy;
+        /**Numer przystanku na następnym (prostszym) poziomie, do którego przystanek został złączony*/
+        private int[] parent;
+
+        private double step;
+        private double energy;
+        private int progress;
+        private int iterations;
+        private int maxIterations;
+
+        Level(int n, Edges edges) {
+            this.n = n;
+            adjOffsets = new int[n + 1];
+            for (int e = 0; e < edges.size; e++) {
+                adjOffsets[edges.from[e] + 1]++;
+                adjOffsets[edges.to[e] + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                adjOffsets[i + 1] += adjOffsets[i];
+            }
+            adjTargets = new int[adjOffsets[n]];
+            int[] fill = Arrays.copyOf(adjOffsets, n);
+            for (int e = 0; e < edges.size; e++) {
+                adjTargets[fill[edges.from[e]]++] = edges.to[e];
+                adjTargets[fill[edges.to[e]]++] = edges.from[e];
+            }
+            x = new double[n];
+            y = new double[n];
+            nextX = new double[n];
+            nextY = new double[n];
+            chunkEnergy = new double[(n + CHUNK - 1) / CHUNK];
+        }
+
+        void start(double initialStep, int maxIterations){
+            step = initialStep;
+            energy = Double.MAX_VALUE;
+            progress = 0;
+            iterations = 0;
+            this.maxIterations = maxIterations;
+        }
+
+        /**Metoda tworząca prostszy poziom przez złączenie par sąsiednich przystanków (przystanki o jednym sąsiedzie
+         * dołączane są do jego grupy); zwraca null, gdy poziomu nie da się istotnie uprościć*/
+        Level coarsen(){
+            // przystanki o najmniejszym stopniu kojarzone są najpierw
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Integer.compare(degree(a), degree(b)));
+            int[] group = new int[n];
+            Arrays.fill(group, -1);
+            int groups = 0;
+            for (int v : order) {
+                if (group[v] >= 0) continue;
+                int best = -1;
+                for (int a = adjOffsets[v]; a < adjOffsets[v + 1]; a++) {
+                    int u = adjTargets[a];
+                    if (group[u] < 0 && (best < 0 || degree(u) < degree(best))) best = u;
+                }
+                if (best < 0 && degree(v) == 1) {
+                    group[v] = group[adjTargets[adjOffsets[v]]];
+                    continue;
+                }
+                group[v] = groups;
+                if (best >= 0) group[best] = groups;
+                groups++;
+            }
+            if (groups > MIN_REDUCTION * n) return null;
+
+            Edges edges = new Edges();
+            Set<Long> seen = new HashSet<>();
+            for (int v = 0; v < n; v++) {
+                for (int a = adjOffsets[v]; a < adjOffsets[v + 1]; a++) {
+                    int g1 = group[v];
+                    int g2 = group[adjTargets[a]];
+                    if (g1 < g2 && seen.add(((long) g1 << 32) | g2)) edges.add(g1, g2);
+                }
+            }
+            Level coarse = new Level(groups, edges);
+            int[] count = new int[groups];
+            for (int v = 0; v < n; v++) {
+                coarse.x[group[v]] += x[v];
+                coarse.y[group[v]] += y[v];
+                count[group[v]]++;
+            }
+            for (int g = 0; g < groups; g++) {
+                coarse.x[g] /= count[g];
+                coarse.y[g] /= count[g];
+            }
+            parent = group;
+            return coarse;
+        }
+
+        int degree(int v){
+            return adjOffsets[v + 1] - adjOffsets[v];
+        }
+
+        double meanEdgeLength(){
+            double sum = 0;
+            for (int v = 0; v < n; v++) {
+                for (int a = adjOffsets[v]; a < adjOffsets[v + 1]; a++) {
+                    int u = adjTargets[a];
+                    sum += Math.hypot(x[u] - x[v], y[u] - y[v]);
+                }
+            }
+            return adjTargets.length == 0 ? 0 : sum / adjTargets.length;
+        }
+
+        /**Metoda wykonująca krok na poziomie; zwraca <code>false</code>, gdy poziom jest rozmieszczony*/
+        boolean step(){
+            if (n < 2) return false;
+            tree.build(x, y, n);
+            IntStream.range(0, chunkEnergy.length).parallel().forEach(this::moveChunk);
+            double newEnergy = 0;
+            for (double value : chunkEnergy) newEnergy += value;
+            double[] swap = x;
+            x = nextX;
+            nextX = swap;
+            swap = y;
+            y = nextY;
+            nextY = swap;
+
+            // adaptacyjna długość kroku
+            if (newEnergy < energy) {
+                if (++progress >= PROGRESS_STEPS) {
+                    progress = 0;
+                    step /= COOLING;
+                }
+            } else {
+                progress = 0;
+                step *= COOLING;
+            }
+            energy = newEnergy;
+            iterations++;
+            return step >= TOLERANCE * edgeLength && iterations < maxIterations;
+        }
+
+        /**Metoda wyznaczająca nowe położenia przystanków jednego fragmentu tablicy*/
+        private void moveChunk(int chunk){
+            int from = chunk * CHUNK;
+            int to = Math.min(n, from + CHUNK);
+            int[] stack = new int[4 * MAX_DEPTH + 8];
+            double k2 = REPULSION * edgeLength * edgeLength;
+            double centerX = tree.centerX(0);
+            double centerY = tree.centerY(0);
+            double chunkSum = 0;
+            for (int i = from; i < to; i++) {
+                double px = x[i];
+                double py = y[i];
+                double fx = 0;
+                double fy = 0;
+
+                // odpychanie - przejście drzewa czwórkowego
+                int top = 0;
+                stack[top++] = 0;
+                while (top > 0) {
+                    int cell = stack[--top];
+                    int mass = tree.mass[cell];
+                    double dx = px - tree.centerX(cell);
+                    double dy = py - tree.centerY(cell);
+                    double d2 = dx * dx + dy * dy;
+                    if (tree.isLeaf(cell) || tree.size[cell] * tree.size[cell] < THETA * THETA * d2) {
+                        // liść z samym przystankiem i (lub przystankami w tym samym miejscu) nie działa na niego
+                        if (d2 < 1e-9) continue;
+                        double f = k2 * mass / d2;
+                        fx += dx * f;
+                        fy += dy * f;
+                    } else {
+                        for (int q = 0; q < 4; q++) {
+                            int child = tree.child[4 * cell + q];
+                            if (child >= 0) stack[top++] = child;
+                        }
+                    }
+                }
+
+                // przyciąganie sąsiadów
+                for (int a = adjOffsets[i]; a < adjOffsets[i + 1]; a++) {
+                    int j = adjTargets[a];
+                    double dx = x[j] - px;
+                    double dy = y[j] - py;
+                    double f = Math.sqrt(dx * dx + dy * dy) / edgeLength;
+                    fx += dx * f;
+                    fy += dy * f;
+                }
+
+                // grawitacja w kierunku środka masy
+                fx += GRAVITY * (centerX - px);
+                fy += GRAVITY * (centerY - py);
+
+                double norm2 = fx * fx + fy * fy;
+                chunkSum += norm2;
+                if (norm2 > 0) {
+                    double scale = step / Math.sqrt(norm2);
+                    nextX[i] = px + fx * scale;
+                    nextY[i] = py + fy * scale;
+                } else {
+                    nextX[i] = px;
+                    nextY[i] = py;
+                }
+            }
+            chunkEnergy[chunk] = chunkSum;
+        }
+    }
+
+    /**Drzewo czwórkowe przystanków budowane od nowa w każdym kroku - komórki zapisane w tablicach*/
+    private static final class QuadTree {
+
+        private int cells;
+        private int[] mass;
+        private double[] sumX;
+        private double[] sumY;
+        private double[] minX;
+        private double[] minY;
+        private double[] size;
+        /**Dzieci komórki (cztery kolejne pozycje, -1 - brak) oraz przystanek liścia*/
+        private int[] child;
+        private int[] body;
+
+        QuadTree(int n) {
+            allocate(Math.max(16, 2 * n));
+        }
+
+        private void allocate(int capacity){
+            mass = mass == null ? new int[capacity] : Arrays.copyOf(mass, capacity);
+            sumX = sumX == null ? new double[capacity] : Arrays.copyOf(sumX, capacity);
+            sumY = sumY == null ? new double[capacity] : Arrays.copyOf(sumY, capacity);
+            minX = minX == null ? new double[capacity] : Arrays.copyOf(minX, capacity);
+            minY = minY == null ? new double[capacity] : Arrays.copyOf(minY, capacity);
+            size = size == null ? new double[capacity] : Arrays.copyOf(size, capacity);
+            body = body == null ? new int[capacity] : Arrays.copyOf(body, capacity);
+            child = child == null ? new int[4 * capacity] : Arrays.copyOf(child, 4 * capacity);
+        }
+
+        /**Metoda budująca drzewo dla pierwszych <code>n</code> punktów*/
+        void build(double[] x, double[] y, int n){
+            double left = Double.POSITIVE_INFINITY;
+            double top = Double.POSITIVE_INFINITY;
+            double right = Double.NEGATIVE_INFINITY;
+            double bottom = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                left = Math.min(left, x[i]);
+                right = Math.max(right, x[i]);
+                top = Math.min(top, y[i]);
+                bottom = Math.max(bottom, y[i]);
+            }
+            cells = 0;
+            newCell(left, top, Math.max(Math.max(right - left, bottom - top), 1) * 1.0001);
+            for (int i = 0; i < n; i++) {
+                insert(i, x, y);
+            }
+        }
+
+        private void insert(int i, double[] x, double[] y){
+            double px = x[i];
+            double py = y[i];
+            int cell = 0;
+            for (int depth = 0; ; depth++) {
+                mass[cell]++;
+                sumX[cell] += px;
+                sumY[cell] += py;
+                if (isLeaf(cell)) {
+                    if (mass[cell] == 1) {
+                        body[cell] = i;
+                        return;
+                    }
+                    if (depth >= MAX_DEPTH) {
+                        // przystanki (prawie) w tym samym miejscu - wspólny liść
+                        body[cell] = -1;
+                        return;
+                    }
+                    // podział liścia - dotychczasowy przystanek przechodzi do dziecka
+                    int old = body[cell];
+                    body[cell] = -1;
+                    int oldChild = childFor(cell, x[old], y[old]);
+                    mass[oldChild] = 1;
+                    sumX[oldChild] = x[old];
+                    sumY[oldChild] = y[old];
+                    body[oldChild] = old;
+                }
+                cell = childFor(cell, px, py);
+            }
+        }
+
+        /**Metoda zwracająca (i tworzącą w razie potrzeby) dziecko komórki zawierające punkt (px, py)*/
+        private int childFor(int cell, double px, double py){
+            double half = size[cell] / 2;
+            int east = px >= minX[cell] + half ? 1 : 0;
+            int south = py >= minY[cell] + half ? 1 : 0;
+            int slot = 4 * cell + east + 2 * south;
+            int result = child[slot];
+            if (result < 0) {
+                result = newCell(minX[cell] + east * half, minY[cell] + south * half, half);
+                child[slot] = result;
+            }
+            return result;
+        }
+
+        private int newCell(double left, double top, double side){
+            if (cells == mass.length) allocate(2 * cells);
+            int cell = cells++;
+            mass[cell] = 0;
+            sumX[cell] = 0;
+            sumY[cell] = 0;
+            minX[cell] = left;
+            minY[cell] = top;
+            size[cell] = side;
+            body[cell] = -1;
+            Arrays.fill(child, 4 * cell, 4 * cell + 4, -1);
+            return cell;
+        }
+
+        boolean isLeaf(int cell){
+            return child[4 * cell] < 0 && child[4 * cell + 1] < 0 && child[4 * cell + 2] < 0 && child[4 * cell + 3] < 0;
+        }
+
+        double centerX(int cell){
+            return sumX[cell] / mass[cell];
+        }
+
+        double centerY(int cell){
+            return sumY[cell] / mass[cell];
+        }
+    }
+}
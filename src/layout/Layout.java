@@ -0,0 +1,50 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Layout.java
+ *
+ *  Interfejs Layout opisuje automatyczne rozmieszczenie przystanków
+ *  obliczane w tle i przenoszone do sieci w wątku interfejsu.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Automatyczne rozmieszczenie przystanków sieci. <br>
+ * Rozmieszczenie obliczane jest na kopii położeń przystanków (metoda <code>run</code>, zwykle
+ * w wątku roboczym), a po każdym kroku udostępniane są bieżące położenia, które metoda
+ * <code>apply</code> przenosi do przystanków w wątku, w którym modyfikowana jest sieć. W trakcie
+ * rozmieszczania położenia można odczytywać metodą <code>getPositions</code> (np. do podglądu) -
+ * przystanki nie są wtedy przesuwane, więc zmiany nie trafiają do dziennika ani historii zmian.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package layout;
+
+import java.util.List;
+
+import data.Node;
+import util.ProgressListener;
+
+public interface Layout {
+
+    /**Metoda wykonująca kroki rozmieszczenia do jego zakończenia lub wykonania <code>maxIterations</code> kroków;
+     * przerwanie kończy się wyjątkiem <code>CancellationException</code>, a położenia z ostatniego kroku
+     * pozostają dostępne*/
+    void run(int maxIterations, ProgressListener listener);
+
+    /**Metoda przenosząca położenia z ostatniego kroku do przystanków*/
+    void apply();
+
+    /**Metoda zwracająca rozmieszczane przystanki w kolejności położeń zwracanych przez <code>getPositions</code>*/
+    List<Node> getNodes();
+
+    /**Metoda zwracająca położenia z ostatniego kroku (x0, y0, x1, y1, ...) - zwrócona tablica nie jest
+     * później zmieniana, więc można ją odczytywać w dowolnym wątku*/
+    int[] getPositions();
+
+    /**Metoda sprawdzająca czy rozmieszczenie jest zakończone*/
+    boolean isConverged();
+}
@@ -0,0 +1,648 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: OctilinearLayout.java
+ *
+ *  Klasa OctilinearLayout przekształca rozmieszczenie przystanków
+ *  w schemat z odcinkami pod kątami 0, 45 i 90 stopni.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Schematyczne (oktolinearne) rozmieszczenie sieci - plan w stylu planu metra. <br>
+ * Przystanki umieszczane są w węzłach siatki o boku <code>gridSpacing</code> (skala dobierana jest tak,
+ * aby typowe połączenie miało długość jednego oczka), a następnie przesuwane metodą przeszukiwania
+ * lokalnego: w każdej rundzie dla każdego przystanku sprawdzanych jest osiem węzłów siatki w odległości
+ * promienia i wybierany ten, który najbardziej obniża koszt. Koszt obejmuje odchylenie połączeń od
+ * kierunków 0/45/90 stopni, długość połączeń różną od jednego oczka, zmianę kierunku połączenia względem
+ * położeń wyjściowych, załamania linii (kolejne połączenia linii w przystanku), przecięcia połączeń,
+ * przystanki leżące na cudzych połączeniach oraz zmianę kolejności połączeń wokół przystanku
+ * (kolejności linii). <br>
+ * Połączenia zapisane są w równomiernej siatce komórek (w komórkach prostokąta otaczającego odcinek), więc
+ * sprawdzenie przecięć i przystanków leżących na połączeniach przegląda tylko komórki w pobliżu przystanku. <br>
+ * Najlepsze przesunięcia wyznaczane są równolegle (dla wszystkich przystanków względem położeń z początku
+ * rundy). Wykonywane są równolegle w regionach siatki - region przesuwa kolejno przystanki, które wraz
+ * z sąsiadami i nowym położeniem leżą w jego obrębie (koszt takiego przesunięcia zależy tylko od komórek
+ * regionu) - a następnie kolejno pozostałe. Każde przesunięcie sprawdzane jest ponownie względem bieżących
+ * położeń, przy czym w jednej rundzie przesuwane są tylko przystanki niezależne (niesąsiadujące ze sobą).
+ * Koszt całego schematu nie rośnie więc w żadnym kroku. Gdy w rundzie nie ma korzystnych przesunięć,
+ * promień jest zmniejszany; schemat jest gotowy, gdy nie ma ich przy promieniu jednego oczka.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import data.Connection;
+import data.Graph;
+import data.Network;
+import data.Node;
+import util.ProgressListener;
+
+public final class OctilinearLayout implements Layout {
+
+    /**Domyślny bok oczka siatki*/
+    public static final int DEFAULT_GRID_SPACING = 40;
+    /**Domyślna największa liczba rund*/
+    public static final int DEFAULT_MAX_ITERATIONS = 300;
+
+    /**Wagi składników kosztu*/
+    private static final double OCTILINEAR_WEIGHT = 5;
+    private static final double LENGTH_WEIGHT = 2;
+    private static final double DIRECTION_WEIGHT = 3;
+    private static final double BEND_WEIGHT = 1;
+    private static final double ORDER_WEIGHT = 50;
+    private static final double CROSSING_WEIGHT = 100;
+    private static final double OVERLAP_WEIGHT = 100;
+    /**Najmniejsza poprawa kosztu, dla której przystanek jest przesuwany*/
+    private static final double EPSILON = 1e-6;
+    /**Początkowy promień przesunięć (w oczkach siatki)*/
+    private static final int INITIAL_RADIUS = 4;
+    /**Kierunki przesunięć - osiem sąsiednich węzłów siatki*/
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+    /**Margines położeń przenoszonych do przystanków*/
+    private static final int MARGIN = 50;
+    /**Bok komórki indeksu połączeń i bok regionu (w oczkach siatki) - region składa się z całych komórek*/
+    private static final int CELL_SIZE = 4;
+    private static final int REGION_SIZE = 4 * CELL_SIZE;
+
+    private final Node[] nodes;
+    private final int n;
+    private final int gridSpacing;
+
+    /**Połączenia (bez powtórzeń) - końce i kierunek wyjściowy (oktant 0..7 od końca a do końca b)*/
+    private final int[] edgeA;
+    private final int[] edgeB;
+    private final int[] edgeOctant;
+    /**Sąsiedzi przystanków w układzie CSR - numer sąsiada i numer połączenia*/
+    private final int[] adjOffsets;
+    private final int[] adjNodes;
+    private final int[] adjEdges;
+    /**Załamania linii: przystanek środkowy i jego dwaj sąsiedzi w linii; załamania dotyczące przystanku (CSR)*/
+    private final int[] bendA;
+    private final int[] bendC;
+    private final int[] bendB;
+    private final int[] bendOffsets;
+    private final int[] bendIndex;
+    /**Wyjściowa kolejność sąsiadów (pozycje w tablicy sąsiadów) wokół przystanków o co najmniej trzech sąsiadach*/
+    private final int[][] order;
+
+    /**Położenia przystanków w oczkach siatki i zajęte węzły siatki*/
+    private final int[] gx;
+    private final int[] gy;
+    private final Map<Long, Integer> occupied = new ConcurrentHashMap<>();
+    /**Indeks połączeń - niepuste komórki siatki i zakres komórek każdego połączenia (minCol, minRow, maxCol, maxRow)*/
+    private final Map<Long, List<Integer>> cells = new ConcurrentHashMap<>();
+    private final int[] edgeRange;
+    /**Najlepsze przesunięcia wyznaczone w bieżącej rundzie*/
+    private final double[] gain;
+    private final int[] targetX;
+    private final int[] targetY;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int radius = INITIAL_RADIUS;
+    private int iteration;
+    private volatile boolean converged;
+    /**Położenia po ostatniej rundzie (x0, y0, x1, y1, ...) - odczytywane przez apply w innym wątku*/
+    private volatile int[] published;
+
+    /**Konstruktor schematu sieci z domyślnym bokiem oczka siatki*/
+    public OctilinearLayout(Network network, List<Graph> lines) {
+        this(network, lines, DEFAULT_GRID_SPACING);
+    }
+
+    /**Konstruktor schematu sieci (np. widoku wszystkich linii) - linie wyznaczają załamania;
+     * uwzględniane są tylko przystanki i połączenia sieci*/
+    public OctilinearLayout(Network network, List<Graph> lines, int gridSpacing) {
+        if (gridSpacing <= 0) throw new IllegalArgumentException("Bok oczka siatki musi być dodatni");
+        this.gridSpacing = gridSpacing;
+        nodes = network.getNodeList().toArray(new Node[0]);
+        n = nodes.length;
+        Map<Node, Integer> index = new IdentityHashMap<>(2 * n);
+        for (int i = 0; i < n; i++) {
+            index.put(nodes[i], i);
+        }
+
+        List<int[]> edges = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Connection connection : network.getConnectionList()) {
+            Integer a = index.get(connection.getNode1());
+            Integer b = index.get(connection.getNode2());
+            if (a == null || b == null || a.equals(b)) continue;
+            if (seen.add(((long) Math.min(a, b) << 32) | Math.max(a, b))) edges.add(new int[]{a, b});
+        }
+        int m = edges.size();
+        edgeA = new int[m];
+        edgeB = new int[m];
+        edgeOctant = new int[m];
+        adjOffsets = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            edgeA[e] = edges.get(e)[0];
+            edgeB[e] = edges.get(e)[1];
+            edgeOctant[e] = octant(nodes[edgeB[e]].getX() - nodes[edgeA[e]].getX(),
+                                   nodes[edgeB[e]].getY() - nodes[edgeA[e]].getY());
+            adjOffsets[edgeA[e] + 1]++;
+            adjOffsets[edgeB[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            adjOffsets[i + 1] += adjOffsets[i];
+        }
+        adjNodes = new int[2 * m];
+        adjEdges = new int[2 * m];
+        int[] fill = Arrays.copyOf(adjOffsets, n);
+        for (int e = 0; e < m; e++) {
+            adjNodes[fill[edgeA[e]]] = edgeB[e];
+            adjEdges[fill[edgeA[e]]++] = e;
+            adjNodes[fill[edgeB[e]]] = edgeA[e];
+            adjEdges[fill[edgeB[e]]++] = e;
+        }
+
+        // załamania - przystanki, w których linia przechodzi z jednego połączenia na drugie
+        List<int[]> bends = new ArrayList<>();
+        for (Graph line : lines) {
+            for (Node node : line.getNodeList()) {
+                Integer c = index.get(node);
+                if (c == null || line.getDegree(node) != 2) continue;
+                List<Node> neighbors = line.getNeighbors(node);
+                Integer a = index.get(neighbors.get(0));
+                Integer b = index.get(neighbors.get(1));
+                if (a != null && b != null && !a.equals(b)) bends.add(new int[]{a, c, b});
+            }
+        }
+        bendA = new int[bends.size()];
+        bendC = new int[bends.size()];
+        bendB = new int[bends.size()];
+        bendOffsets = new int[n + 1];
+        for (int k = 0; k < bends.size(); k++) {
+            bendA[k] = bends.get(k)[0];
+            bendC[k] = bends.get(k)[1];
+            bendB[k] = bends.get(k)[2];
+            bendOffsets[bendA[k] + 1]++;
+            bendOffsets[bendC[k] + 1]++;
+            bendOffsets[bendB[k] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            bendOffsets[i + 1] += bendOffsets[i];
+        }
+        bendIndex = new int[bendOffsets[n]];
+        fill = Arrays.copyOf(bendOffsets, n);
+        for (int k = 0; k < bends.size(); k++) {
+            bendIndex[fill[bendA[k]]++] = k;
+            bendIndex[fill[bendC[k]]++] = k;
+            bendIndex[fill[bendB[k]]++] = k;
+        }
+
+        gx = new int[n];
+        gy = new int[n];
+        order = new int[n][];
+        for (int i = 0; i < n; i++) {
+            gx[i] = nodes[i].getX();
+            gy[i] = nodes[i].getY();
+        }
+        for (int i = 0; i < n; i++) {
+            if (adjOffsets[i + 1] - adjOffsets[i] >= 3) order[i] = angularOrder(i, -1, 0, 0);
+        }
+        snapToGrid();
+        edgeRange = new int[4 * m];
+        for (int e = 0; e < m; e++) {
+            addEdge(e);
+        }
+        gain = new double[n];
+        targetX = new int[n];
+        targetY = new int[n];
+        converged = n == 0;
+        publish();
+    }
+
+    /**Metoda ustawiająca pulę wątków obliczeń (domyślnie wspólna pula)*/
+    public void setPool(ForkJoinPool pool){
+        this.pool = pool;
+    }
+
+    /**Metoda zwracająca liczbę wykonanych rund*/
+    public int getIteration(){
+        return iteration;
+    }
+
+    @Override
+    public boolean isConverged(){
+        return converged;
+    }
+
+    /**Metoda zwracająca liczbę przecięć połączeń w bieżącym schemacie*/
+    public int getCrossings(){
+        int crossings = 0;
+        for (int e = 0; e < edgeA.length; e++) {
+            for (int col = edgeRange[4 * e]; col <= edgeRange[4 * e + 2]; col++) {
+                for (int row = edgeRange[4 * e + 1]; row <= edgeRange[4 * e + 3]; row++) {
+                    for (int f : cells.get(key(col, row))) {
+                        if (f <= e || adjacent(e, f) || !firstCommonCell(f, edgeRange[4 * e], edgeRange[4 * e + 1], col, row)) continue;
+                        if (intersects(gx[edgeA[e]], gy[edgeA[e]], gx[edgeB[e]], gy[edgeB[e]],
+                                       gx[edgeA[f]], gy[edgeA[f]], gx[edgeB[f]], gy[edgeB[f]])) crossings++;
+                    }
+                }
+            }
+        }
+        return crossings;
+    }
+
+    /**Metoda zwracająca liczbę połączeń nachylonych pod kątem innym niż wielokrotność 45 stopni*/
+    public int getNonOctilinearCount(){
+        int count = 0;
+        for (int e = 0; e < edgeA.length; e++) {
+            int dx = Math.abs(gx[edgeB[e]] - gx[edgeA[e]]);
+            int dy = Math.abs(gy[edgeB[e]] - gy[edgeA[e]]);
+            if (dx != 0 && dy != 0 && dx != dy) count++;
+        }
+        return count;
+    }
+
+    /**Metoda wykonująca rundy przeszukiwania (w puli wątków) do uzyskania schematu lub wykonania
+     * <code>maxIterations</code> rund*/
+    @Override
+    public void run(int maxIterations, ProgressListener listener){
+        try {
+            pool.submit(() -> {
+                for (int i = 0; i < maxIterations && !converged; i++) {
+                    if (listener.isCancelled()) throw new CancellationException("Przerwano tworzenie schematu");
+                    step();
+                    listener.progress(i + 1, maxIterations);
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Przerwano tworzenie schematu");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Błąd podczas tworzenia schematu", e.getCause());
+        }
+    }
+
+    /**Metoda wykonująca jedną rundę przeszukiwania; zwraca <code>false</code>, gdy schemat jest gotowy*/
+    public boolean step(){
+        if (converged) return false;
+        int r = radius;
+        IntStream.range(0, n).parallel().forEach(v -> findMove(v, r));
+
+        // przesunięcia wewnątrz regionów (równolegle), a następnie pozostałe
+        Map<Long, List<Integer>> regions = new HashMap<>();
+        List<Integer> remaining = new ArrayList<>();
+        for (int v = 0; v < n; v++) {
+            if (gain[v] <= EPSILON) continue;
+            long region = region(gx[v], gy[v]);
+            if (insideRegion(v, region)) regions.computeIfAbsent(region, key -> new ArrayList<>()).add(v);
+            else remaining.add(v);
+        }
+        boolean[] locked = new boolean[n];
+        int moved = regions.values().parallelStream().mapToInt(candidates -> applyMoves(candidates, locked)).sum();
+        moved += applyMoves(remaining, locked);
+        iteration++;
+        if (moved == 0) {
+            if (radius == 1) converged = true;
+            else radius /= 2;
+        }
+        publish();
+        return !converged;
+    }
+
+    @Override
+    public void apply(){
+        int[] positions = published;
+        for (int i = 0; i < n; i++) {
+            nodes[i].setLocation(positions[2 * i], positions[2 * i + 1]);
+        }
+    }
+
+    @Override
+    public List<Node> getNodes(){
+        return Collections.unmodifiableList(Arrays.asList(nodes));
+    }
+
+    @Override
+    public int[] getPositions(){
+        return published;
+    }
+
+    /**Metoda wykonująca przesunięcia przystanków od największej poprawy kosztu; zwraca liczbę przesuniętych*/
+    private int applyMoves(List<Integer> candidates, boolean[] locked){
+        candidates.sort((a, b) -> Double.compare(gain[b], gain[a]));
+        int moved = 0;
+        for (int v : candidates) {
+            if (locked[v] || occupied.containsKey(key(targetX[v], targetY[v]))) continue;
+            // położenia zmieniły się od wyznaczenia przesunięcia - sprawdzenie względem bieżących
+            if (cost(v, gx[v], gy[v]) - cost(v, targetX[v], targetY[v]) <= EPSILON) continue;
+            move(v, targetX[v], targetY[v]);
+            locked[v] = true;
+            for (int a = adjOffsets[v]; a < adjOffsets[v + 1]; a++) {
+                locked[adjNodes[a]] = true;
+            }
+            moved++;
+        }
+        return moved;
+    }
+
+    /**Metoda sprawdzająca czy przystanek, jego sąsiedzi i nowe położenie leżą w regionie - połączenia przystanku
+     * zajmują wtedy tylko komórki regionu, a przesunięcie nie zależy od przesunięć w innych regionach*/
+    private boolean insideRegion(int v, long region){
+        if (region(targetX[v], targetY[v]) != region) return false;
+        for (int a = adjOffsets[v]; a < adjOffsets[v + 1]; a++) {
+            if (region(gx[adjNodes[a]], gy[adjNodes[a]]) != region) return false;
+        }
+        return true;
+    }
+
+    /**Metoda wyznaczająca najlepsze przesunięcie przystanku o promień r (wynik w tablicach gain, targetX, targetY)*/
+    private void findMove(int v, int r){
+        double current = cost(v, gx[v], gy[v]);
+        double best = 0;
+        for (int d = 0; d < DX.length; d++) {
+            int px = gx[v] + r * DX[d];
+            int py = gy[v] + r * DY[d];
+            if (occupied.containsKey(key(px, py))) continue;
+            double improvement = current - cost(v, px, py);
+            if (improvement > best) {
+                best = improvement;
+                targetX[v] = px;
+                targetY[v] = py;
+            }
+        }
+        gain[v] = best;
+    }
+
+    private void move(int v, int px, int py){
+        for (int a = adjOffsets[v]; a < adjOffsets[v + 1]; a++) {
+            removeEdge(adjEdges[a]);
+        }
+        occupied.remove(key(gx[v], gy[v]));
+        gx[v] = px;
+        gy[v] = py;
+        occupied.put(key(px, py), v);
+        for (int a = adjOffsets[v]; a < adjOffsets[v + 1]; a++) {
+            addEdge(adjEdges[a]);
+        }
+    }
+
+    /**Metoda zapisująca połączenie w komórkach prostokąta otaczającego odcinek*/
+    private void addEdge(int e){
+        int a = edgeA[e];
+        int b = edgeB[e];
+        edgeRange[4 * e] = cell(Math.min(gx[a], gx[b]));
+        edgeRange[4 * e + 1] = cell(Math.min(gy[a], gy[b]));
+        edgeRange[4 * e + 2] = cell(Math.max(gx[a], gx[b]));
+        edgeRange[4 * e + 3] = cell(Math.max(gy[a], gy[b]));
+        for (int col = edgeRange[4 * e]; col <= edgeRange[4 * e + 2]; col++) {
+            for (int row = edgeRange[4 * e + 1]; row <= edgeRange[4 * e + 3]; row++) {
+                cells.computeIfAbsent(key(col, row), key -> new ArrayList<>()).add(e);
+            }
+        }
+    }
+
+    private void removeEdge(int e){
+        for (int col = edgeRange[4 * e]; col <= edgeRange[4 * e + 2]; col++) {
+            for (int row = edgeRange[4 * e + 1]; row <= edgeRange[4 * e + 3]; row++) {
+                List<Integer> cell = cells.get(key(col, row));
+                cell.remove(Integer.valueOf(e));
+                if (cell.isEmpty()) cells.remove(key(col, row));
+            }
+        }
+    }
+
+    /**Metoda sprawdzająca czy komórka (col, row) jest pierwszą wspólną komórką połączenia e i zakresu
+     * zaczynającego się w (minCol, minRow) - para odcinków sprawdzana jest tylko w tej komórce*/
+    private boolean firstCommonCell(int e, int minCol, int minRow, int col, int row){
+        return Math.max(minCol, edgeRange[4 * e]) == col && Math.max(minRow, edgeRange[4 * e + 1]) == row;
+    }
+
+    /**Metoda zwracająca sumę składników kosztu zależnych od położenia przystanku v, gdyby znajdował się w (px, py)*/
+    private double cost(int v, int px, int py){
+        double cost = 0;
+        for (int a = adjOffsets[v]; a < adjOffsets[v + 1]; a++) {
+            int u = adjNodes[a];
+            int e = adjEdges[a];
+            int dx = gx[u] - px;
+            int dy = gy[u] - py;
+            int original = edgeA[e] == v ? edgeOctant[e] : (edgeOctant[e] + 4) & 7;
+            double angle = Math.atan2(dy, dx);
+            int length = Math.max(Math.abs(dx), Math.abs(dy));
+            cost += OCTILINEAR_WEIGHT * (1 - Math.cos(8 * angle)) / 2;
+            cost += LENGTH_WEIGHT * (length - 1) * (length - 1);
+            cost += DIRECTION_WEIGHT * octantDistance(octant(dx, dy), original);
+            cost += segmentCost(v, u, px, py, gx[u], gy[u]);
+            if (order[u] != null) cost += orderCost(u, v, px, py);
+        }
+        if (order[v] != null) cost += orderCost(v, v, px, py);
+        for (int k = bendOffsets[v]; k < bendOffsets[v + 1]; k++) {
+            cost += bendCost(bendIndex[k], v, px, py);
+        }
+        // przystanek na cudzym połączeniu - połączenie przechodzące przez punkt zapisane jest w jego komórce
+        List<Integer> cell = cells.get(key(cell(px), cell(py)));
+        if (cell != null) {
+            for (int e : cell) {
+                int a = edgeA[e];
+                int b = edgeB[e];
+                if (a != v && b != v && onSegment(px, py, gx[a], gy[a], gx[b], gy[b])) cost += OVERLAP_WEIGHT;
+            }
+        }
+        return cost;
+    }
+
+    /**Koszt przecięć połączenia (v, u) z innymi połączeniami oraz przystanków leżących na tym połączeniu*/
+    private double segmentCost(int v, int u, int x1, int y1, int x2, int y2){
+        double cost = 0;
+        int minCol = cell(Math.min(x1, x2));
+        int minRow = cell(Math.min(y1, y2));
+        for (int col = minCol; col <= cell(Math.max(x1, x2)); col++) {
+            for (int row = minRow; row <= cell(Math.max(y1, y2)); row++) {
+                List<Integer> cell = cells.get(key(col, row));
+                if (cell == null) continue;
+                for (int e : cell) {
+                    int a = edgeA[e];
+                    int b = edgeB[e];
+                    if (a == v || a == u || b == v || b == u || !firstCommonCell(e, minCol, minRow, col, row)) continue;
+                    if (intersects(x1, y1, x2, y2, gx[a], gy[a], gx[b], gy[b])) cost += CROSSING_WEIGHT;
+                }
+            }
+        }
+        // wszystkie przystanki leżą w węzłach siatki - sprawdzane są tylko węzły na połączeniu
+        int dx = x2 - x1;
+        int dy = y2 - y1;
+        int steps = gcd(Math.abs(dx), Math.abs(dy));
+        for (int k = 1; k < steps; k++) {
+            Integer w = occupied.get(key(x1 + dx / steps * k, y1 + dy / steps * k));
+            if (w != null && w != v && w != u) cost += OVERLAP_WEIGHT;
+        }
+        return cost;
+    }
+
+    /**Koszt załamania linii - zero dla przejazdu na wprost, rośnie z ostrością zakrętu*/
+    private double bendCost(int k, int v, int px, int py){
+        int cx = bendC[k] == v ? px : gx[bendC[k]];
+        int cy = bendC[k] == v ? py : gy[bendC[k]];
+        double ax = (bendA[k] == v ? px : gx[bendA[k]]) - cx;
+        double ay = (bendA[k] == v ? py : gy[bendA[k]]) - cy;
+        double bx = (bendB[k] == v ? px : gx[bendB[k]]) - cx;
+        double by = (bendB[k] == v ? py : gy[bendB[k]]) - cy;
+        double norm = Math.sqrt((ax * ax + ay * ay) * (bx * bx + by * by));
+        if (norm == 0) return 2 * BEND_WEIGHT;
+        return BEND_WEIGHT * (1 + (ax * bx + ay * by) / norm);
+    }
+
+    /**Koszt zmiany kolejności sąsiadów wokół przystanku w, gdyby przystanek v znajdował się w (px, py)*/
+    private double orderCost(int w, int v, int px, int py){
+        int[] current = angularOrder(w, v, px, py);
+        int[] original = order[w];
+        int shift = 0;
+        while (current[shift] != original[0]) shift++;
+        for (int k = 1; k < original.length; k++) {
+            if (current[(shift + k) % current.length] != original[k]) return ORDER_WEIGHT;
+        }
+        return 0;
+    }
+
+    /**Metoda zwracająca pozycje sąsiadów przystanku w uporządkowane według kąta (v - przystanek w położeniu (px, py))*/
+    private int[] angularOrder(int w, int v, int px, int py){
+        int from = adjOffsets[w];
+        int degree = adjOffsets[w + 1] - from;
+        double wx = w == v ? px : gx[w];
+        double wy = w == v ? py : gy[w];
+        double[] angles = new double[degree];
+        Integer[] positions = new Integer[degree];
+        for (int k = 0; k < degree; k++) {
+            int u = adjNodes[from + k];
+            angles[k] = Math.atan2((u == v ? py : gy[u]) - wy, (u == v ? px : gx[u]) - wx);
+            positions[k] = k;
+        }
+        Arrays.sort(positions, (a, b) -> Double.compare(angles[a], angles[b]));
+        int[] result = new int[degree];
+        for (int k = 0; k < degree; k++) {
+            result[k] = positions[k];
+        }
+        return result;
+    }
+
+    /**Metoda przenosząca przystanki do węzłów siatki, tak aby mediana długości połączeń wynosiła jedno oczko;
+     * przystanki trafiające do zajętego węzła umieszczane są w najbliższym wolnym*/
+    private void snapToGrid(){
+        double[] lengths = new double[edgeA.length];
+        for (int e = 0; e < edgeA.length; e++) {
+            lengths[e] = Math.hypot(gx[edgeB[e]] - gx[edgeA[e]], gy[edgeB[e]] - gy[edgeA[e]]);
+        }
+        Arrays.sort(lengths);
+        double unit = lengths.length == 0 || lengths[lengths.length / 2] == 0 ? gridSpacing : lengths[lengths.length / 2];
+        for (int i = 0; i < n; i++) {
+            int px = (int) Math.round(gx[i] / unit);
+            int py = (int) Math.round(gy[i] / unit);
+            // kolejne pierścienie wokół węzła
+            for (int ring = 0; occupied.containsKey(key(px, py)); ring++) {
+                int[] free = freeOnRing(px, py, ring + 1);
+                if (free != null) {
+                    px = free[0];
+                    py = free[1];
+                }
+            }
+            gx[i] = px;
+            gy[i] = py;
+            occupied.put(key(px, py), i);
+        }
+    }
+
+    private int[] freeOnRing(int cx, int cy, int ring){
+        for (int dx = -ring; dx <= ring; dx++) {
+            for (int dy = -ring; dy <= ring; dy++) {
+                if (Math.max(Math.abs(dx), Math.abs(dy)) != ring) continue;
+                if (!occupied.containsKey(key(cx + dx, cy + dy))) return new int[]{cx + dx, cy + dy};
+            }
+        }
+        return null;
+    }
+
+    /**Metoda udostępniająca położenia z ostatniej rundy we współrzędnych świata*/
+    private void publish(){
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, gx[i]);
+            minY = Math.min(minY, gy[i]);
+        }
+        int[] positions = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            positions[2 * i] = (gx[i] - minX) * gridSpacing + MARGIN;
+            positions[2 * i + 1] = (gy[i] - minY) * gridSpacing + MARGIN;
+        }
+        published = positions;
+    }
+
+    private boolean adjacent(int e, int f){
+        return edgeA[e] == edgeA[f] || edgeA[e] == edgeB[f] || edgeB[e] == edgeA[f] || edgeB[e] == edgeB[f];
+    }
+
+    private static int cell(int x){
+        return Math.floorDiv(x, CELL_SIZE);
+    }
+
+    private static long region(int x, int y){
+        return key(Math.floorDiv(x, REGION_SIZE), Math.floorDiv(y, REGION_SIZE));
+    }
+
+    private static long key(int x, int y){
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**Metoda zwracająca kierunek wektora jako numer oktantu 0..7 (0 - w prawo, 2 - w dół)*/
+    private static int octant(double dx, double dy){
+        return Math.floorMod((int) Math.round(Math.atan2(dy, dx) / (Math.PI / 4)), 8);
+    }
+
+    private static int octantDistance(int a, int b){
+        int d = Math.abs(a - b);
+        return Math.min(d, 8 - d);
+    }
+
+    private static int gcd(int a, int b){
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**Metoda sprawdzająca czy odcinki mają punkt wspólny*/
+    private static boolean intersects(long x1, long y1, long x2, long y2, long x3, long y3, long x4, long y4){
+        long d1 = orientation(x3, y3, x4, y4, x1, y1);
+        long d2 = orientation(x3, y3, x4, y4, x2, y2);
+        long d3 = orientation(x1, y1, x2, y2, x3, y3);
+        long d4 = orientation(x1, y1, x2, y2, x4, y4);
+        if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) return true;
+        return (d1 == 0 && onSegment(x1, y1, x3, y3, x4, y4)) || (d2 == 0 && onSegment(x2, y2, x3, y3, x4, y4))
+            || (d3 == 0 && onSegment(x3, y3, x1, y1, x2, y2)) || (d4 == 0 && onSegment(x4, y4, x1, y1, x2, y2));
+    }
+
+    private static long orientation(long ax, long ay, long bx, long by, long px, long py){
+        return Long.signum((bx - ax) * (py - ay) - (by - ay) * (px - ax));
+    }
+
+    /**Metoda sprawdzająca czy punkt (px, py) leży na odcinku (a, b)*/
+    private static boolean onSegment(long px, long py, long ax, long ay, long bx, long by){
+        return orientation(ax, ay, bx, by, px, py) == 0
+            && px >= Math.min(ax, bx) && px <= Math.max(ax, bx) && py >= Math.min(ay, by) && py <= Math.max(ay, by);
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: ContractionHierarchy.java
+ *
+ *  Klasa ContractionHierarchy przechowuje hierarchię skrótów
+ *  (contraction hierarchy) wyliczoną dla sieci komunikacji
+ *  miejskiej, która przyspiesza wyszukiwanie najkrótszych tras.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Hierarchia skrótów dla migawki sieci (<code>NetworkSnapshot</code>). <br>
+ * Podczas przetwarzania wstępnego przystanki są kolejno "ściągane" (kontrahowane) w kolejności
+ * wyznaczonej przez różnicę krawędzi: po usunięciu przystanku dodawane są skróty między jego
+ * sąsiadami, o ile nie istnieje równie krótka ścieżka omijająca go (ścieżka świadka). Przystanki
+ * tworzące zbiór niezależny (żadne dwa nie sąsiadują) są ściągane równolegle w puli
+ * <code>ForkJoinPool</code>. <br>
+ * Wynikiem jest graf "w górę": dla każdego przystanku lista łuków do przystanków o wyższej randze,
+ * zapisana w układzie CSR. Zapytania wykonuje <code>HierarchyQuery</code>. <br>
+ * Hierarchię można zapisać do pliku obok pliku sieci (<code>fileFor</code>) i wczytać ponownie;
+ * przy odczycie sprawdzana jest zgodność z migawką sieci.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import data.NetworkSnapshot;
+
+public final class ContractionHierarchy {
+
+    /**Rozszerzenie pliku z hierarchią, dopisywane do nazwy pliku sieci*/
+    public static final String FILE_SUFFIX = ".ch";
+
+    private static final int MAGIC = 0x43484731;
+    private static final int VERSION = 1;
+
+    /**Skrót migawki sieci, dla której zbudowano hierarchię*/
+    private final long fingerprint;
+    /**Ranga (kolejność ściągnięcia) przystanków*/
+    private final int[] rank;
+    /**Łuki w górę w układzie CSR*/
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final float[] upWeights;
+    /**Przystanek pośredni skrótu lub -1 dla połączenia z oryginalnej sieci*/
+    private final int[] upMiddle;
+
+    private ContractionHierarchy(long fingerprint, int[] rank, int[] upOffsets, int[] upTargets,
+                                 float[] upWeights, int[] upMiddle) {
+        this.fingerprint = fingerprint;
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddle = upMiddle;
+    }
+
+    /**Metoda budująca hierarchię z wykorzystaniem wspólnej puli wątków*/
+    public static ContractionHierarchy build(NetworkSnapshot network){
+        return build(network, ForkJoinPool.commonPool());
+    }
+
+    /**Metoda budująca hierarchię z wykorzystaniem podanej puli wątków*/
+    public static ContractionHierarchy build(NetworkSnapshot network, ForkJoinPool pool){
+        Contractor contractor = new Contractor(network);
+        try {
+            pool.submit(contractor::contractAll).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Przerwano budowę hierarchii skrótów", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Błąd podczas budowy hierarchii skrótów", e.getCause());
+        }
+        return contractor.toHierarchy(network.fingerprint());
+    }
+
+    /**Metoda zwracająca ścieżkę pliku hierarchii dla podanego pliku sieci*/
+    public static Path fileFor(Path networkFile){
+        return networkFile.resolveSibling(networkFile.getFileName() + FILE_SUFFIX);
+    }
+
+    /**Metoda zapisująca hierarchię do pliku*/
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(rank.length);
+            out.writeInt(upTargets.length);
+            for (int value : rank) out.writeInt(value);
+            for (int value : upOffsets) out.writeInt(value);
+            for (int value : upTargets) out.writeInt(value);
+            for (float value : upWeights) out.writeFloat(value);
+            for (int value : upMiddle) out.writeInt(value);
+        }
+    }
+
+    /**Metoda wczytująca hierarchię z pliku i sprawdzająca jej zgodność z migawką sieci*/
+    public static ContractionHierarchy load(Path file, NetworkSnapshot network) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException("Plik " + file + " nie zawiera hierarchii skrótów");
+            if (in.readInt() != VERSION) throw new IOException("Nieobsługiwana wersja pliku " + file);
+            long fingerprint = in.readLong();
+            if (fingerprint != network.fingerprint()) {
+                throw new IOException("Hierarchia skrótów w pliku " + file + " nie odpowiada bieżącej sieci");
+            }
+            int n = in.readInt();
+            int m = in.readInt();
+            int[] rank = new int[n];
+            int[] upOffsets = new int[n + 1];
+            int[] upTargets = new int[m];
+            float[] upWeights = new float[m];
+            int[] upMiddle = new int[m];
+            for (int i = 0; i < n; i++) rank[i] = in.readInt();
+            for (int i = 0; i <= n; i++) upOffsets[i] = in.readInt();
+            for (int i = 0; i < m; i++) upTargets[i] = in.readInt();
+            for (int i = 0; i < m; i++) upWeights[i] = in.readFloat();
+            for (int i = 0; i < m; i++) upMiddle[i] = in.readInt();
+            return new ContractionHierarchy(fingerprint, rank, upOffsets, upTargets, upWeights, upMiddle);
+        }
+    }
+
+    /**Metoda wczytująca hierarchię z pliku obok pliku sieci albo budująca ją i zapisująca, gdy plik
+     * nie istnieje lub jest nieaktualny*/
+    public static ContractionHierarchy loadOrBuild(Path networkFile, NetworkSnapshot network) throws IOException {
+        Path file = fileFor(networkFile);
+        if (Files.exists(file)) {
+            try {
+                return load(file, network);
+            } catch (IOException e) {
+                // plik nieaktualny lub uszkodzony - hierarchia zostanie zbudowana ponownie
+            }
+        }
+        ContractionHierarchy hierarchy = build(network);
+        hierarchy.save(file);
+        return hierarchy;
+    }
+
+    /**Metoda zwracająca liczbę przystanków*/
+    public int nodeCount(){
+        return rank.length;
+    }
+    /**Metoda zwracająca liczbę łuków w górę (połączeń i skrótów)*/
+    public int edgeCount(){
+        return upTargets.length;
+    }
+    /**Metoda zwracająca rangę przystanku*/
+    public int rank(int id){
+        return rank[id];
+    }
+    /**Metoda sprawdzająca czy hierarchia została zbudowana dla podanej migawki sieci*/
+    public boolean matches(NetworkSnapshot network){
+        return network.nodeCount() == rank.length && network.fingerprint() == fingerprint;
+    }
+
+    int firstUpEdge(int id){
+        return upOffsets[id];
+    }
+    int endUpEdge(int id){
+        return upOffsets[id + 1];
+    }
+    int upTarget(int edge){
+        return upTargets[edge];
+    }
+    float upWeight(int edge){
+        return upWeights[edge];
+    }
+    int upMiddle(int edge){
+        return upMiddle[edge];
+    }
+
+    /**
+     * Pomocnicza klasa przechowująca stan przetwarzania wstępnego: graf nakładkowy
+     * (połączenia i dotychczasowe skróty między jeszcze nieściągniętymi przystankami),
+     * priorytety oraz łuki w górę zebrane dla ściągniętych przystanków.
+     */
+    private static final class Contractor {
+        /**Maksymalna liczba przystanków rozliczanych w jednym wyszukiwaniu świadka*/
+        private static final int WITNESS_SETTLE_LIMIT = 50;
+        /**Stopień, powyżej którego priorytet sąsiada ściągniętego przystanku jest tylko korygowany
+         * o liczbę usuniętych sąsiadów zamiast ponownej symulacji - w gęstym rdzeniu hierarchii
+         * pełne przeliczanie kosztowałoby kwadratowo wiele wyszukiwań świadka na każdą partię*/
+        private static final int DENSE_DEGREE = 32;
+
+        private final int n;
+        private final int[][] adjTarget;
+        private final float[][] adjWeight;
+        private final int[][] adjMiddle;
+        private final int[] adjSize;
+        private final boolean[] contracted;
+        private final boolean[] blocked;
+        private final int[] priority;
+        private final int[] deletedNeighbors;
+        private final int[] rank;
+        private final int[][] upTarget;
+        private final float[][] upWeight;
+        private final int[][] upMiddle;
+        private final ThreadLocal<WitnessSearch> searches;
+
+        Contractor(NetworkSnapshot network) {
+            n = network.nodeCount();
+            adjTarget = new int[n][];
+            adjWeight = new float[n][];
+            adjMiddle = new int[n][];
+            adjSize = new int[n];
+            for (int u = 0; u < n; u++) {
+                int degree = Math.max(1, network.degree(u));
+                adjTarget[u] = new int[degree];
+                adjWeight[u] = new float[degree];
+                adjMiddle[u] = new int[degree];
+                for (int e = network.firstEdge(u); e < network.endEdge(u); e++) {
+                    int v = network.target(e);
+                    if (v != u) addHalf(u, v, network.weight(e), -1);
+                }
+            }
+            contracted = new boolean[n];
+            blocked = new boolean[n];
+            priority = new int[n];
+            deletedNeighbors = new int[n];
+            rank = new int[n];
+            upTarget = new int[n][];
+            upWeight = new float[n][];
+            upMiddle = new int[n][];
+            searches = ThreadLocal.withInitial(() -> new WitnessSearch(n));
+        }
+
+        /**Metoda ściągająca wszystkie przystanki partiami niezależnych przystanków*/
+        void contractAll(){
+            IntStream.range(0, n).parallel().forEach(v -> priority[v] = computePriority(v));
+            int[] remaining = IntStream.range(0, n).toArray();
+            int nextRank = 0;
+            boolean[] touched = new boolean[n];
+            while (remaining.length > 0) {
+                int[] batch = Arrays.stream(remaining).parallel().filter(this::isLocalMinimum).toArray();
+                for (int v : batch) {
+                    blocked[v] = true;
+                }
+                Shortcuts[] shortcuts = new Shortcuts[batch.length];
+                IntStream.range(0, batch.length).parallel()
+                        .forEach(i -> shortcuts[i] = findShortcuts(batch[i], searches.get()));
+
+                int touchedCount = 0;
+                int[] touchedList = new int[16];
+                for (int v : batch) {
+                    rank[v] = nextRank++;
+                    contracted[v] = true;
+                    collectUpwardEdges(v);
+                    int[] targets = adjTarget[v];
+                    for (int i = 0; i < adjSize[v]; i++) {
+                        int u = targets[i];
+                        if (contracted[u]) continue;
+                        deletedNeighbors[u]++;
+                        if (!touched[u]) {
+                            touched[u] = true;
+                            if (touchedCount == touchedList.length) touchedList = Arrays.copyOf(touchedList, touchedCount * 2);
+                            touchedList[touchedCount++] = u;
+                        }
+                    }
+                    adjTarget[v] = null;
+                    adjWeight[v] = null;
+                    adjMiddle[v] = null;
+                    adjSize[v] = 0;
+                }
+                for (Shortcuts s : shortcuts) {
+                    for (int i = 0; i < s.size; i++) {
+                        addHalf(s.from[i], s.to[i], s.weight[i], s.middle);
+                        addHalf(s.to[i], s.from[i], s.weight[i], s.middle);
+                    }
+                }
+                int[] affected = Arrays.copyOf(touchedList, touchedCount);
+                for (int u : affected) {
+                    touched[u] = false;
+                    compact(u);
+                }
+                Arrays.stream(affected).parallel().forEach(u -> {
+                    if (adjSize[u] <= DENSE_DEGREE) {
+                        priority[u] = computePriority(u);
+                    } else {
+                        priority[u] += 1;
+                    }
+                });
+                remaining = Arrays.stream(remaining).filter(v -> !contracted[v]).toArray();
+            }
+        }
+
+        /**Metoda sprawdzająca czy przystanek ma najmniejszy priorytet wśród nieściągniętych sąsiadów*/
+        private boolean isLocalMinimum(int v){
+            int[] targets = adjTarget[v];
+            for (int i = 0; i < adjSize[v]; i++) {
+                int u = targets[i];
+                if (contracted[u]) continue;
+                if (priority[u] < priority[v] || (priority[u] == priority[v] && tieBreak(u) < tieBreak(v))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int tieBreak(int v){
+            int h = v * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        /**Metoda wyliczająca priorytet przystanku: różnica krawędzi powiększona o liczbę ściągniętych sąsiadów*/
+        private int computePriority(int v){
+            Shortcuts shortcuts = findShortcuts(v, searches.get());
+            int degree = 0;
+            for (int i = 0; i < adjSize[v]; i++) {
+                if (!contracted[adjTarget[v][i]]) degree++;
+            }
+            return 2 * (shortcuts.size - degree) + deletedNeighbors[v];
+        }
+
+        /**Metoda wyznaczająca skróty potrzebne po ściągnięciu przystanku v*/
+        private Shortcuts findShortcuts(int v, WitnessSearch search){
+            int[] targets = adjTarget[v];
+            float[] weights = adjWeight[v];
+            int size = adjSize[v];
+            Shortcuts result = new Shortcuts(v);
+            for (int i = 0; i < size; i++) {
+                int u = targets[i];
+                if (contracted[u]) continue;
+                float maxVia = -1f;
+                for (int j = i + 1; j < size; j++) {
+                    if (!contracted[targets[j]] && weights[j] > maxVia) maxVia = weights[j];
+                }
+                if (maxVia < 0f) continue;
+                search.run(this, u, v, weights[i] + maxVia);
+                for (int j = i + 1; j < size; j++) {
+                    int w = targets[j];
+                    if (contracted[w]) continue;
+                    float via = weights[i] + weights[j];
+                    if (search.distance(w) > via) {
+                        result.add(u, w, via);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**Metoda zapamiętująca łuki w górę ściąganego przystanku*/
+        private void collectUpwardEdges(int v){
+            int count = 0;
+            for (int i = 0; i < adjSize[v]; i++) {
+                if (!contracted[adjTarget[v][i]]) count++;
+            }
+            upTarget[v] = new int[count];
+            upWeight[v] = new float[count];
+            upMiddle[v] = new int[count];
+            int k = 0;
+            for (int i = 0; i < adjSize[v]; i++) {
+                if (contracted[adjTarget[v][i]]) continue;
+                upTarget[v][k] = adjTarget[v][i];
+                upWeight[v][k] = adjWeight[v][i];
+                upMiddle[v][k++] = adjMiddle[v][i];
+            }
+        }
+
+        /**Metoda dodająca łuk u -> v do grafu nakładkowego lub skracająca istniejący*/
+        private void addHalf(int u, int v, float weight, int middle){
+            int[] targets = adjTarget[u];
+            int size = adjSize[u];
+            for (int i = 0; i < size; i++) {
+                if (targets[i] == v) {
+                    if (weight < adjWeight[u][i]) {
+                        adjWeight[u][i] = weight;
+                        adjMiddle[u][i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (size == targets.length) {
+                int capacity = Math.max(4, size * 2);
+                adjTarget[u] = Arrays.copyOf(targets, capacity);
+                adjWeight[u] = Arrays.copyOf(adjWeight[u], capacity);
+                adjMiddle[u] = Arrays.copyOf(adjMiddle[u], capacity);
+            }
+            adjTarget[u][size] = v;
+            adjWeight[u][size] = weight;
+            adjMiddle[u][size] = middle;
+            adjSize[u] = size + 1;
+        }
+
+        /**Metoda usuwająca z listy sąsiedztwa łuki prowadzące do ściągniętych przystanków*/
+        private void compact(int u){
+            int k = 0;
+            for (int i = 0; i < adjSize[u]; i++) {
+                int v = adjTarget[u][i];
+                if (contracted[v]) continue;
+                adjTarget[u][k] = v;
+                adjWeight[u][k] = adjWeight[u][i];
+                adjMiddle[u][k++] = adjMiddle[u][i];
+            }
+            adjSize[u] = k;
+        }
+
+        ContractionHierarchy toHierarchy(long fingerprint){
+            int[] offsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] = offsets[v] + upTarget[v].length;
+            }
+            int m = offsets[n];
+            int[] targets = new int[m];
+            float[] weights = new float[m];
+            int[] middles = new int[m];
+            for (int v = 0; v < n; v++) {
+                System.arraycopy(upTarget[v], 0, targets, offsets[v], upTarget[v].length);
+                System.arraycopy(upWeight[v], 0, weights, offsets[v], upWeight[v].length);
+                System.arraycopy(upMiddle[v], 0, middles, offsets[v], upMiddle[v].length);
+            }
+            return new ContractionHierarchy(fingerprint, rank, offsets, targets, weights, middles);
+        }
+    }
+
+    /**Pomocnicza klasa przechowująca skróty wyznaczone dla jednego przystanku*/
+    private static final class Shortcuts {
+        final int middle;
+        int[] from = new int[4];
+        int[] to = new int[4];
+        float[] weight = new float[4];
+        int size;
+
+        Shortcuts(int middle) {
+            this.middle = middle;
+        }
+
+        void add(int u, int w, float via){
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                weight = Arrays.copyOf(weight, size * 2);
+            }
+            from[size] = u;
+            to[size] = w;
+            weight[size++] = via;
+        }
+    }
+
+    /**
+     * Ograniczone wyszukiwanie świadka (Dijkstra) w grafie nakładkowym, pomijające ściągany
+     * przystanek, przystanki już ściągnięte oraz przystanki ściągane w tej samej partii.
+     * Każdy wątek posiada własną instancję.
+     */
+    private static final class WitnessSearch {
+        private final float[] distance;
+        private final int[] reached;
+        private final IntMinHeap heap;
+        private int generation;
+
+        WitnessSearch(int n) {
+            distance = new float[n];
+            reached = new int[n];
+            heap = new IntMinHeap(n);
+        }
+
+        void run(Contractor graph, int source, int skipped, float limit){
+            if (++generation == 0) {
+                Arrays.fill(reached, 0);
+                generation = 1;
+            }
+            heap.clear();
+            distance[source] = 0f;
+            reached[source] = generation;
+            heap.insertOrDecrease(source, 0f);
+            int settled = 0;
+            while (!heap.isEmpty() && settled < Contractor.WITNESS_SETTLE_LIMIT) {
+                if (heap.peekKey() > limit) break;
+                int u = heap.poll();
+                settled++;
+                float du = distance[u];
+                int[] targets = graph.adjTarget[u];
+                float[] weights = graph.adjWeight[u];
+                for (int i = 0, size = graph.adjSize[u]; i < size; i++) {
+                    int v = targets[i];
+                    if (v == skipped || graph.contracted[v] || graph.blocked[v]) continue;
+                    float dv = du + weights[i];
+                    if (reached[v] != generation || dv < distance[v]) {
+                        reached[v] = generation;
+                        distance[v] = dv;
+                        heap.insertOrDecrease(v, dv);
+                    }
+                }
+            }
+        }
+
+        float distance(int v){
+            return reached[v] == generation ? distance[v] : Float.POSITIVE_INFINITY;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: CostMatrix.java
+ *
+ *  Klasa CostMatrix przechowuje macierz kosztów przejazdu
+ *  między wszystkimi parami przystanków sieci.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Macierz najkrótszych kosztów przejazdu "każdy z każdym" dla migawki sieci. <br>
+ * Każdy wiersz wyznaczany jest osobnym przeszukiwaniem Dijkstry z jednego przystanku;
+ * przeszukiwania rozdzielane są między wątki puli <code>ForkJoinPool</code> (podział zakresu
+ * przystanków początkowych metodą dziel i zwyciężaj). Wyniki zapisywane są do zwartej tablicy
+ * <code>float</code> na stercie albo - dla sieci, których macierz nie mieści się w pamięci -
+ * do pliku odwzorowanego w pamięci. Brak połączenia oznaczany jest wartością
+ * <code>Float.POSITIVE_INFINITY</code>. <br>
+ * Postęp obliczeń zgłaszany jest do <code>ProgressListener</code>, który może też je przerwać. <br>
+ * Nagłówek pliku macierzy zapisywany jest dopiero po wyznaczeniu i utrwaleniu wszystkich wierszy,
+ * a plik przerwanych lub nieudanych obliczeń jest usuwany - <code>open</code> nie przyjmie
+ * niedokończonej macierzy.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import data.NetworkSnapshot;
+import util.ProgressListener;
+
+public final class CostMatrix {
+
+    /**Rozszerzenie pliku z macierzą, dopisywane do nazwy pliku sieci*/
+    public static final String FILE_SUFFIX = ".matrix";
+
+    private static final int MAGIC = 0x434d5431;
+    /**Rozmiar nagłówka pliku macierzy (wiersze zaczynają się za nim)*/
+    private static final int HEADER_SIZE = 64;
+    /**Liczba przystanków początkowych, poniżej której zadanie nie jest dalej dzielone*/
+    private static final int SPLIT_THRESHOLD = 8;
+
+    private final int size;
+    private final long fingerprint;
+    /**Macierz na stercie (wierszami) lub null dla macierzy w pliku*/
+    private final float[] values;
+    /**Fragmenty pliku odwzorowane w pamięci, każdy obejmuje rowsPerChunk wierszy*/
+    private final MappedByteBuffer[] chunks;
+    private final int rowsPerChunk;
+
+    private CostMatrix(int size, long fingerprint, float[] values, MappedByteBuffer[] chunks, int rowsPerChunk) {
+        this.size = size;
+        this.fingerprint = fingerprint;
+        this.values = values;
+        this.chunks = chunks;
+        this.rowsPerChunk = rowsPerChunk;
+    }
+
+    /**Metoda wyznaczająca macierz na stercie z wykorzystaniem wspólnej puli wątków*/
+    public static CostMatrix compute(NetworkSnapshot network, ProgressListener listener){
+        long cells = (long) network.nodeCount() * network.nodeCount();
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Macierz " + network.nodeCount() + " x " + network.nodeCount()
+                    + " nie mieści się w tablicy - należy użyć wersji zapisującej do pliku");
+        }
+        CostMatrix matrix = new CostMatrix(network.nodeCount(), network.fingerprint(), new float[(int) cells], null, 0);
+        matrix.fill(network, ForkJoinPool.commonPool(), listener);
+        return matrix;
+    }
+
+    /**Metoda wyznaczająca macierz zapisywaną do pliku odwzorowanego w pamięci*/
+    public static CostMatrix compute(NetworkSnapshot network, Path file, ForkJoinPool pool,
+                                     ProgressListener listener) throws IOException {
+        CostMatrix matrix = map(file, network.nodeCount(), network.fingerprint(), true);
+        try {
+            matrix.fill(network, pool, listener);
+            for (MappedByteBuffer chunk : matrix.chunks) {
+                chunk.force();
+            }
+            writeHeader(file, matrix.size, matrix.fingerprint);
+        }
+        catch (IOException | RuntimeException | Error e) {
+            // plik bez nagłówka i tak zostałby odrzucony przez open() - usunięcie zwalnia miejsce na dysku
+            try {
+                Files.deleteIfExists(file);
+            }
+            catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        return matrix;
+    }
+
+    /**Metoda zwracająca ścieżkę pliku macierzy dla podanego pliku sieci*/
+    public static Path fileFor(Path networkFile){
+        return networkFile.resolveSibling(networkFile.getFileName() + FILE_SUFFIX);
+    }
+
+    /**Metoda zwracająca rozmiar pliku macierzy dla sieci o podanej liczbie przystanków (w bajtach)*/
+    public static long fileSize(int size){
+        return HEADER_SIZE + (long) size * size * Float.BYTES;
+    }
+
+    /**Metoda otwierająca wcześniej wyznaczoną macierz zapisaną w pliku*/
+    public static CostMatrix open(Path file, NetworkSnapshot network) throws IOException {
+        return map(file, network.nodeCount(), network.fingerprint(), false);
+    }
+
+    /**Metoda zwracająca liczbę przystanków (wymiar macierzy)*/
+    public int size(){
+        return size;
+    }
+
+    /**Metoda sprawdzająca czy macierz została wyznaczona dla podanej migawki sieci*/
+    public boolean matches(NetworkSnapshot network){
+        return network.nodeCount() == size && network.fingerprint() == fingerprint;
+    }
+
+    /**Metoda zwracająca koszt przejazdu z przystanku <code>from</code> do <code>to</code>*/
+    public float get(int from, int to){
+        if (values != null) {
+            return values[from * size + to];
+        }
+        MappedByteBuffer chunk = chunks[from / rowsPerChunk];
+        long offset = ((long) (from % rowsPerChunk) * size + to) * Float.BYTES;
+        return chunk.getFloat((int) offset);
+    }
+
+    /**Metoda kopiująca wiersz macierzy (koszty z jednego przystanku) do podanej tablicy*/
+    public void getRow(int from, float[] row){
+        if (values != null) {
+            System.arraycopy(values, from * size, row, 0, size);
+            return;
+        }
+        ByteBuffer chunk = chunks[from / rowsPerChunk].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        chunk.position((from % rowsPerChunk) * size * Float.BYTES);
+        chunk.asFloatBuffer().get(row, 0, size);
+    }
+
+    private void putRow(int from, float[] row){
+        if (values != null) {
+            System.arraycopy(row, 0, values, from * size, size);
+            return;
+        }
+        ByteBuffer chunk = chunks[from / rowsPerChunk].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        chunk.position((from % rowsPerChunk) * size * Float.BYTES);
+        chunk.asFloatBuffer().put(row, 0, size);
+    }
+
+    private void fill(NetworkSnapshot network, ForkJoinPool pool, ProgressListener listener){
+        AtomicLong done = new AtomicLong();
+        ThreadLocal<SingleSource> searches = ThreadLocal.withInitial(() -> new SingleSource(network));
+        pool.invoke(new RowTask(0, size, searches, done, listener));
+    }
+
+    private static CostMatrix map(Path file, int size, long fingerprint, boolean create) throws IOException {
+        long rowBytes = (long) size * Float.BYTES;
+        int rowsPerChunk = (int) Math.max(1, (Integer.MAX_VALUE - HEADER_SIZE) / Math.max(1, rowBytes));
+        int chunkCount = Math.max(1, (size + rowsPerChunk - 1) / rowsPerChunk);
+        MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+        StandardOpenOption[] options = create
+                ? new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                           StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            // nowy plik pozostaje bez nagłówka (zera) do zakończenia obliczeń - zob. writeHeader
+            if (!create) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                header.flip();
+                if (header.remaining() < 16 || header.getInt() != MAGIC) {
+                    throw new IOException("Plik " + file + " nie zawiera macierzy kosztów");
+                }
+                if (header.getInt() != size || header.getLong() != fingerprint) {
+                    throw new IOException("Macierz kosztów w pliku " + file + " nie odpowiada bieżącej sieci");
+                }
+            }
+            FileChannel.MapMode mode = create ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            for (int c = 0; c < chunkCount; c++) {
+                int rows = Math.min(rowsPerChunk, size - c * rowsPerChunk);
+                long position = HEADER_SIZE + (long) c * rowsPerChunk * rowBytes;
+                chunks[c] = channel.map(mode, position, Math.max(0, rows) * rowBytes);
+                chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        return new CostMatrix(size, fingerprint, null, chunks, rowsPerChunk);
+    }
+
+    /**Metoda zapisująca nagłówek pliku wyznaczonej macierzy - od tej chwili plik przyjmuje <code>open</code>*/
+    private static void writeHeader(Path file, int size, long fingerprint) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(size).putLong(fingerprint).rewind();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+    }
+
+    /**Zadanie wyznaczające wiersze macierzy z podanego zakresu przystanków początkowych*/
+    private final class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final transient ThreadLocal<SingleSource> searches;
+        private final AtomicLong done;
+        private final transient ProgressListener listener;
+
+        RowTask(int from, int to, ThreadLocal<SingleSource> searches, AtomicLong done, ProgressListener listener) {
+            this.from = from;
+            this.to = to;
+            this.searches = searches;
+            this.done = done;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(from, middle, searches, done, listener),
+                          new RowTask(middle, to, searches, done, listener));
+                return;
+            }
+            SingleSource search = searches.get();
+            for (int source = from; source < to; source++) {
+                if (listener.isCancelled()) {
+                    throw new CancellationException("Przerwano wyznaczanie macierzy kosztów");
+                }
+                putRow(source, search.run(source));
+            }
+            listener.progress(done.addAndGet(to - from), size);
+        }
+    }
+
+    /**Pełne przeszukiwanie Dijkstry z jednego przystanku; każdy wątek używa własnej instancji*/
+    private static final class SingleSource {
+        private final NetworkSnapshot network;
+        private final float[] distance;
+        private final boolean[] settled;
+        private final IntMinHeap heap;
+
+        SingleSource(NetworkSnapshot network) {
+            this.network = network;
+            int n = network.nodeCount();
+            distance = new float[n];
+            settled = new boolean[n];
+            heap = new IntMinHeap(n);
+        }
+
+        float[] run(int source){
+            Arrays.fill(distance, Float.POSITIVE_INFINITY);
+            Arrays.fill(settled, false);
+            distance[source] = 0f;
+            heap.insertOrDecrease(source, 0f);
+            while (!heap.isEmpty()) {
+                int u = heap.poll();
+                settled[u] = true;
+                float du = distance[u];
+                for (int e = network.firstEdge(u), end = network.endEdge(u); e < end; e++) {
+                    int v = network.target(e);
+                    if (settled[v]) continue;
+                    float dv = du + network.weight(e);
+                    if (dv < distance[v]) {
+                        distance[v] = dv;
+                        heap.insertOrDecrease(v, dv);
+                    }
+                }
+            }
+            return distance;
+        }
+    }
+}
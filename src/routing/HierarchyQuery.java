@@ -0,0 +1,275 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: HierarchyQuery.java
+ *
+ *  Klasa HierarchyQuery wyznacza najkrótsze trasy z użyciem
+ *  hierarchii skrótów (ContractionHierarchy).
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Zapytania o najkrótszą trasę z użyciem hierarchii skrótów. <br>
+ * Z przystanku początkowego i docelowego uruchamiane są dwa przeszukiwania (Dijkstra),
+ * które poruszają się wyłącznie po łukach prowadzących do przystanków o wyższej randze.
+ * Najkrótsza trasa przechodzi przez przystanek o najwyższej randze, w którym spotykają
+ * się oba przeszukiwania. Przystanki, do których prowadzi krótsza droga przez przystanek o wyższej
+ * randze, nie są rozwijane (stall-on-demand). Skróty na znalezionej trasie są rozwijane do oryginalnych
+ * połączeń. Zapytanie o przystanki podane nazwą rozpoczyna i kończy przeszukiwania jednocześnie
+ * na wszystkich peronach, tak jak <code>JourneyPlanner</code>. <br>
+ * Hierarchia i migawka sieci mogą być współdzielone, ale każdy wątek powinien używać
+ * własnego obiektu zapytań.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import data.NetworkSnapshot;
+import data.Node;
+
+public final class HierarchyQuery {
+
+    private final ContractionHierarchy hierarchy;
+    private final NetworkSnapshot network;
+    /**Identyfikatory przystanków pogrupowane według znormalizowanej nazwy*/
+    private final Map<String, int[]> stopsByName;
+
+    private final float[] forwardDistance;
+    private final float[] backwardDistance;
+    /**Łuk w górę, którym osiągnięto przystanek, oraz przystanek, z którego on wychodzi*/
+    private final int[] forwardParent;
+    private final int[] backwardParent;
+    private final int[] forwardNode;
+    private final int[] backwardNode;
+    private final int[] forwardReached;
+    private final int[] backwardReached;
+    private final IntMinHeap forwardHeap;
+    private final IntMinHeap backwardHeap;
+    private int generation;
+
+    private float bestDistance;
+    private int meetingNode;
+
+    /**Konstruktor obiektu zapytań dla hierarchii zbudowanej dla podanej migawki sieci*/
+    public HierarchyQuery(ContractionHierarchy hierarchy, NetworkSnapshot network) {
+        if (!hierarchy.matches(network)) {
+            throw new IllegalArgumentException("Hierarchia skrótów nie odpowiada podanej sieci");
+        }
+        this.hierarchy = hierarchy;
+        this.network = network;
+        int n = network.nodeCount();
+        forwardDistance = new float[n];
+        backwardDistance = new float[n];
+        forwardParent = new int[n];
+        backwardParent = new int[n];
+        forwardNode = new int[n];
+        backwardNode = new int[n];
+        forwardReached = new int[n];
+        backwardReached = new int[n];
+        forwardHeap = new IntMinHeap(n);
+        backwardHeap = new IntMinHeap(n);
+        stopsByName = JourneyPlanner.groupByName(network);
+    }
+
+    /**Metoda zwracająca długość najkrótszej trasy między przystankami
+     * lub <code>Float.POSITIVE_INFINITY</code>, gdy trasa nie istnieje*/
+    public float distance(int source, int target){
+        search(new int[]{source}, new int[]{target});
+        return bestDistance;
+    }
+
+    /**Metoda wyznaczająca trasę między przystankami o podanych nazwach (z dowolnego peronu do dowolnego peronu).
+     * Zwraca <code>null</code>, gdy któregoś przystanku nie ma lub trasa nie istnieje.*/
+    public Journey plan(String from, String to){
+        int[] sources = stopsByName.get(Node.normalizeName(from));
+        int[] targets = stopsByName.get(Node.normalizeName(to));
+        if (sources == null || targets == null) return null;
+        return plan(sources, targets);
+    }
+
+    /**Metoda wyznaczająca najkrótszą trasę między przystankami.
+     * Zwraca <code>null</code>, gdy któregoś przystanku nie ma w sieci lub trasa nie istnieje.*/
+    public Journey plan(Node from, Node to){
+        int source = network.indexOf(from);
+        int target = network.indexOf(to);
+        if (source < 0 || target < 0) return null;
+        return plan(source, target);
+    }
+
+    /**Metoda wyznaczająca najkrótszą trasę między przystankami o podanych identyfikatorach*/
+    public Journey plan(int source, int target){
+        return plan(new int[]{source}, new int[]{target});
+    }
+
+    private Journey plan(int[] sources, int[] targets){
+        search(sources, targets);
+        if (meetingNode < 0) return null;
+
+        // odcinek od przystanku początkowego do punktu spotkania (łuki w górę przeszukiwania w przód)
+        List<Integer> path = new ArrayList<>();
+        List<Integer> chain = new ArrayList<>();
+        int source = meetingNode;
+        for (; forwardParent[source] >= 0; source = forwardNode[source]) {
+            chain.add(source);
+        }
+        path.add(source);
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            int v = chain.get(i);
+            expand(forwardNode[v], v, forwardParent[v], path);
+        }
+        // odcinek od punktu spotkania do celu (łuki w górę przeszukiwania wstecz, rozwijane odwrotnie)
+        for (int v = meetingNode; backwardParent[v] >= 0; v = backwardNode[v]) {
+            List<Integer> segment = new ArrayList<>();
+            segment.add(backwardNode[v]);
+            expand(backwardNode[v], v, backwardParent[v], segment);
+            for (int i = segment.size() - 2; i >= 0; i--) {
+                path.add(segment.get(i));
+            }
+        }
+
+        List<Node> stops = new ArrayList<>(path.size());
+        int[] lines = new int[path.size() - 1];
+        for (int i = 0; i < path.size(); i++) {
+            stops.add(network.node(path.get(i)));
+            if (i > 0) lines[i - 1] = lineBetween(path.get(i - 1), path.get(i));
+        }
+        return new Journey(stops, lines, bestDistance);
+    }
+
+    private void search(int[] sources, int[] targets){
+        if (++generation == 0) {
+            Arrays.fill(forwardReached, 0);
+            Arrays.fill(backwardReached, 0);
+            generation = 1;
+        }
+        forwardHeap.clear();
+        backwardHeap.clear();
+        bestDistance = Float.POSITIVE_INFINITY;
+        meetingNode = -1;
+
+        for (int source : sources) {
+            reach(forwardDistance, forwardParent, forwardNode, forwardReached, forwardHeap, source, 0f, -1, -1);
+        }
+        for (int target : targets) {
+            reach(backwardDistance, backwardParent, backwardNode, backwardReached, backwardHeap, target, 0f, -1, -1);
+        }
+
+        while (true) {
+            float forwardKey = forwardHeap.isEmpty() ? Float.POSITIVE_INFINITY : forwardHeap.peekKey();
+            float backwardKey = backwardHeap.isEmpty() ? Float.POSITIVE_INFINITY : backwardHeap.peekKey();
+            if (Math.min(forwardKey, backwardKey) >= bestDistance) break;
+            if (forwardKey <= backwardKey) {
+                step(forwardDistance, forwardParent, forwardNode, forwardReached, forwardHeap, backwardDistance, backwardReached);
+            } else {
+                step(backwardDistance, backwardParent, backwardNode, backwardReached, backwardHeap, forwardDistance, forwardReached);
+            }
+        }
+    }
+
+    private void step(float[] distance, int[] parent, int[] parentNode, int[] reached, IntMinHeap heap,
+                      float[] otherDistance, int[] otherReached){
+        int u = heap.poll();
+        float du = distance[u];
+        if (otherReached[u] == generation && du + otherDistance[u] < bestDistance) {
+            bestDistance = du + otherDistance[u];
+            meetingNode = u;
+        }
+        if (isStalled(u, du, distance, reached)) return;
+        for (int e = hierarchy.firstUpEdge(u), end = hierarchy.endUpEdge(u); e < end; e++) {
+            int v = hierarchy.upTarget(e);
+            float dv = du + hierarchy.upWeight(e);
+            if (reached[v] != generation || dv < distance[v]) {
+                reach(distance, parent, parentNode, reached, heap, v, dv, e, u);
+            }
+        }
+    }
+
+    /**Metoda sprawdzająca czy przystanek można pominąć (stall-on-demand): jeśli do u prowadzi
+     * krótsza droga z osiągniętego już przystanku o wyższej randze, to u nie leży na najkrótszej
+     * ścieżce w górę i nie trzeba przeglądać jego łuków*/
+    private boolean isStalled(int u, float du, float[] distance, int[] reached){
+        for (int e = hierarchy.firstUpEdge(u), end = hierarchy.endUpEdge(u); e < end; e++) {
+            int w = hierarchy.upTarget(e);
+            if (reached[w] == generation && distance[w] + hierarchy.upWeight(e) < du) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reach(float[] distance, int[] parent, int[] parentNode, int[] reached, IntMinHeap heap,
+                       int v, float dv, int edge, int from){
+        reached[v] = generation;
+        distance[v] = dv;
+        parent[v] = edge;
+        parentNode[v] = from;
+        heap.insertOrDecrease(v, dv);
+    }
+
+    /**Metoda rozwijająca łuk (być może skrót) a-b i dopisująca do listy przystanki od a (wyłącznie) do b*/
+    private void expand(int a, int b, int edge, List<Integer> out){
+        int[] stackFrom = new int[16];
+        int[] stackTo = new int[16];
+        int[] stackEdge = new int[16];
+        stackFrom[0] = a;
+        stackTo[0] = b;
+        stackEdge[0] = edge;
+        int top = 1;
+        while (top > 0) {
+            top--;
+            int from = stackFrom[top];
+            int to = stackTo[top];
+            int e = stackEdge[top];
+            int middle = hierarchy.upMiddle(e);
+            if (middle < 0) {
+                out.add(to);
+                continue;
+            }
+            if (top + 2 > stackFrom.length) {
+                stackFrom = Arrays.copyOf(stackFrom, stackFrom.length * 2);
+                stackTo = Arrays.copyOf(stackTo, stackTo.length * 2);
+                stackEdge = Arrays.copyOf(stackEdge, stackEdge.length * 2);
+            }
+            stackFrom[top] = middle;
+            stackTo[top] = to;
+            stackEdge[top++] = findUpEdge(middle, to);
+            stackFrom[top] = from;
+            stackTo[top] = middle;
+            stackEdge[top++] = findUpEdge(from, middle);
+        }
+    }
+
+    /**Metoda odnajdująca łuk w górę łączący przystanki a i b (zapisany przy przystanku o niższej randze)*/
+    private int findUpEdge(int a, int b){
+        int low = hierarchy.rank(a) < hierarchy.rank(b) ? a : b;
+        int high = low == a ? b : a;
+        int best = -1;
+        for (int e = hierarchy.firstUpEdge(low), end = hierarchy.endUpEdge(low); e < end; e++) {
+            if (hierarchy.upTarget(e) == high && (best < 0 || hierarchy.upWeight(e) < hierarchy.upWeight(best))) {
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    /**Metoda zwracająca numer linii najkrótszego połączenia między sąsiednimi przystankami*/
+    private int lineBetween(int a, int b){
+        int line = NetworkSnapshot.TRANSFER;
+        float best = Float.POSITIVE_INFINITY;
+        for (int e = network.firstEdge(a), end = network.endEdge(a); e < end; e++) {
+            if (network.target(e) == b && network.weight(e) < best) {
+                best = network.weight(e);
+                line = network.line(e);
+            }
+        }
+        return line;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: IntMinHeap.java
+ *
+ *  Klasa IntMinHeap implementuje kopiec binarny
+ *  identyfikatorów przystanków uporządkowany według
+ *  priorytetów typu float.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Kopiec binarny (min) na tablicach prymitywnych, przechowujący identyfikatory 0..n-1. <br>
+ * Każdy identyfikator może wystąpić w kopcu co najwyżej raz, a jego priorytet można
+ * zmniejszyć w czasie logarytmicznym. Kopiec nie alokuje pamięci po utworzeniu,
+ * dzięki czemu może być wielokrotnie wykorzystywany przez kolejne zapytania.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import java.util.Arrays;
+
+public final class IntMinHeap {
+
+    /**Identyfikatory w porządku kopca*/
+    private final int[] heap;
+    /**Priorytety identyfikatorów w porządku kopca*/
+    private final float[] keys;
+    /**Pozycja identyfikatora w kopcu lub -1, gdy go w nim nie ma*/
+    private final int[] position;
+    /**Liczba elementów w kopcu*/
+    private int size;
+
+    /**Konstruktor kopca dla identyfikatorów z zakresu 0..capacity-1*/
+    public IntMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new float[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**Metoda sprawdzająca czy kopiec jest pusty*/
+    public boolean isEmpty(){
+        return size == 0;
+    }
+    /**Metoda zwracająca liczbę elementów kopca*/
+    public int size(){
+        return size;
+    }
+    /**Metoda sprawdzająca czy identyfikator znajduje się w kopcu*/
+    public boolean contains(int id){
+        return position[id] >= 0;
+    }
+    /**Metoda zwracająca najmniejszy priorytet w kopcu*/
+    public float peekKey(){
+        return keys[0];
+    }
+    /**Metoda wstawiająca identyfikator lub zmniejszająca jego priorytet.
+     * Zwiększenie priorytetu elementu już obecnego w kopcu jest ignorowane.*/
+    public void insertOrDecrease(int id, float key){
+        int i = position[id];
+        if (i < 0) {
+            i = size++;
+        } else if (key >= keys[i]) {
+            return;
+        }
+        siftUp(i, id, key);
+    }
+    /**Metoda usuwająca z kopca i zwracająca identyfikator o najmniejszym priorytecie*/
+    public int poll(){
+        int top = heap[0];
+        position[top] = -1;
+        int last = --size;
+        if (last > 0) {
+            siftDown(0, heap[last], keys[last]);
+        }
+        return top;
+    }
+    /**Metoda opróżniająca kopiec w czasie proporcjonalnym do liczby jego elementów*/
+    public void clear(){
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i, int id, float key){
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            place(i, heap[parent], keys[parent]);
+            i = parent;
+        }
+        place(i, id, key);
+    }
+
+    private void siftDown(int i, int id, float key){
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && keys[right] < keys[child]) {
+                child = right;
+            }
+            if (key <= keys[child]) break;
+            place(i, heap[child], keys[child]);
+            i = child;
+        }
+        place(i, id, key);
+    }
+
+    private void place(int i, int id, float key){
+        heap[i] = id;
+        keys[i] = key;
+        position[id] = i;
+    }
+}
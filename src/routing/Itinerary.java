@@ -0,0 +1,120 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Itinerary.java
+ *
+ *  Klasa Itinerary reprezentuje plan podróży zgodny
+ *  z rozkładem jazdy: ciąg przejazdów i przejść pieszych.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Klasa reprezentuje plan podróży wyznaczony na podstawie rozkładów jazdy. <br>
+ * Plan składa się z odcinków (<code>Leg</code>): przejazdów konkretnym kursem linii
+ * oraz przejść między przystankami o tej samej nazwie.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import java.util.Collections;
+import java.util.List;
+
+import data.NetworkSnapshot;
+import data.Node;
+import data.Schedule;
+
+public final class Itinerary {
+
+    /**Kolejne odcinki podróży*/
+    private final List<Leg> legs;
+
+    /**Konstruktor planu podróży*/
+    Itinerary(List<Leg> legs) {
+        this.legs = Collections.unmodifiableList(legs);
+    }
+
+    /**Metoda zwracająca kolejne odcinki podróży*/
+    public List<Leg> getLegs() {
+        return legs;
+    }
+    /**Metoda zwracająca czas dotarcia do celu (w sekundach od północy)*/
+    public int getArrival() {
+        return legs.get(legs.size() - 1).getArrival();
+    }
+    /**Metoda zwracająca liczbę przejazdów (kursów) w planie podróży*/
+    public int getTrips() {
+        int trips = 0;
+        for (Leg leg : legs) {
+            if (!leg.isWalk()) trips++;
+        }
+        return trips;
+    }
+
+    /**Przedefiniowana metoda toString zwracająca opis kolejnych odcinków podróży*/
+    @Override
+    public String toString(){
+        StringBuilder text = new StringBuilder();
+        for (Leg leg : legs) {
+            text.append(leg).append("\n");
+        }
+        text.append("Przyjazd: ").append(Schedule.formatTime(getArrival()));
+        return text.toString();
+    }
+
+    /**
+     * Odcinek podróży - przejazd kursem linii lub przejście piesze.
+     */
+    public static final class Leg {
+        /**Numer linii lub <code>NetworkSnapshot.TRANSFER</code> dla przejścia*/
+        private final int line;
+        private final Node from;
+        private final Node to;
+        private final int departure;
+        private final int arrival;
+
+        Leg(int line, Node from, Node to, int departure, int arrival) {
+            this.line = line;
+            this.from = from;
+            this.to = to;
+            this.departure = departure;
+            this.arrival = arrival;
+        }
+
+        /**Metoda zwracająca numer linii odcinka*/
+        public int getLine() {
+            return line;
+        }
+        /**Metoda sprawdzająca czy odcinek jest przejściem pieszym*/
+        public boolean isWalk() {
+            return line == NetworkSnapshot.TRANSFER;
+        }
+        /**Metoda zwracająca przystanek początkowy odcinka*/
+        public Node getFrom() {
+            return from;
+        }
+        /**Metoda zwracająca przystanek końcowy odcinka*/
+        public Node getTo() {
+            return to;
+        }
+        /**Metoda zwracająca czas odjazdu (w sekundach od północy)*/
+        public int getDeparture() {
+            return departure;
+        }
+        /**Metoda zwracająca czas przyjazdu (w sekundach od północy)*/
+        public int getArrival() {
+            return arrival;
+        }
+
+        /**Przedefiniowana metoda toString zwracająca opis odcinka*/
+        @Override
+        public String toString(){
+            String kind = isWalk() ? "Przejście" : "Linia " + line;
+            return kind + ": " + from.getName() + " " + Schedule.formatTime(departure)
+                    + " -> " + to.getName() + " " + Schedule.formatTime(arrival);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Journey.java
+ *
+ *  Klasa Journey reprezentuje wyznaczoną trasę przejazdu
+ *  pomiędzy przystankami sieci komunikacji miejskiej.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Klasa reprezentuje trasę przejazdu jako ciąg kolejnych przystanków wraz z numerami linii,
+ * którymi pokonywane są poszczególne odcinki. Odcinki przesiadkowe oznaczone są numerem
+ * <code>NetworkSnapshot.TRANSFER</code>.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import java.util.Collections;
+import java.util.List;
+
+import data.NetworkSnapshot;
+import data.Node;
+
+public final class Journey {
+
+    /**Kolejne przystanki trasy*/
+    private final List<Node> stops;
+    /**Numery linii dla kolejnych odcinków (o jeden element krótsza od listy przystanków)*/
+    private final int[] lines;
+    /**Całkowity koszt trasy*/
+    private final float cost;
+
+    /**Konstruktor trasy*/
+    Journey(List<Node> stops, int[] lines, float cost) {
+        this.stops = Collections.unmodifiableList(stops);
+        this.lines = lines;
+        this.cost = cost;
+    }
+
+    /**Metoda zwracająca kolejne przystanki trasy*/
+    public List<Node> getStops() {
+        return stops;
+    }
+    /**Metoda zwracająca numer linii, którą pokonywany jest odcinek o podanym indeksie*/
+    public int getLine(int hop) {
+        return lines[hop];
+    }
+    /**Metoda zwracająca liczbę odcinków trasy*/
+    public int getHopCount() {
+        return lines.length;
+    }
+    /**Metoda zwracająca całkowity koszt trasy (długość wraz z karami za przesiadki)*/
+    public float getCost() {
+        return cost;
+    }
+    /**Metoda zwracająca liczbę przesiadek na trasie*/
+    public int getTransfers() {
+        int transfers = 0;
+        for (int line : lines) {
+            if (line == NetworkSnapshot.TRANSFER) transfers++;
+        }
+        return transfers;
+    }
+
+    /**Przedefiniowana metoda toString zwracająca opis trasy z podziałem na linie*/
+    @Override
+    public String toString(){
+        StringBuilder text = new StringBuilder();
+        int hop = 0;
+        while (hop < lines.length) {
+            int line = lines[hop];
+            int end = hop;
+            while (end < lines.length && lines[end] == line) end++;
+            if (line == NetworkSnapshot.TRANSFER) {
+                text.append("Przesiadka: ");
+            } else {
+                text.append("Linia ").append(line).append(": ");
+            }
+            text.append(stops.get(hop).getName()).append(" -> ").append(stops.get(end).getName()).append("\n");
+            hop = end;
+        }
+        text.append("Koszt: ").append(Math.round(cost)).append(", przesiadki: ").append(getTransfers());
+        return text.toString();
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: JourneyPlanner.java
+ *
+ *  Klasa JourneyPlanner wyznacza najkrótsze trasy przejazdu
+ *  w sieci złożonej ze wszystkich linii komunikacji miejskiej
+ *  za pomocą algorytmu A*.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Planer podróży działający na migawce sieci (<code>NetworkSnapshot</code>) uzupełnionej
+ * o przesiadki między przystankami o tej samej nazwie. <br>
+ * Kosztem odcinka jest jego euklidesowa długość, a przesiadki dodatkowo obciążone są
+ * konfigurowalną karą. Heurystyką A* jest odległość w linii prostej do najbliższego
+ * przystanku docelowego - żaden łuk nie jest krótszy od odcinka łączącego jego końce,
+ * więc heurystyka jest dopuszczalna i spójna. <br>
+ * Stan wyszukiwania (odległości, poprzedniki, kopiec) jest alokowany raz i unieważniany
+ * numerem generacji, więc koszt zapytania zależy wyłącznie od przeszukanego fragmentu sieci.
+ * Obiekt nie jest bezpieczny wątkowo - każdy wątek powinien używać własnego planera
+ * (migawka sieci może być współdzielona).
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.Graph;
+import data.NetworkSnapshot;
+import data.Node;
+
+public final class JourneyPlanner {
+
+    /**Domyślna kara za przesiadkę (w jednostkach długości połączeń)*/
+    public static final float DEFAULT_TRANSFER_PENALTY = 50f;
+
+    /**Sieć wraz z łukami przesiadkowymi*/
+    private final NetworkSnapshot network;
+    /**Identyfikatory przystanków pogrupowane według znormalizowanej nazwy*/
+    private final Map<String, int[]> stopsByName;
+
+    /**Najlepszy znany koszt dotarcia do przystanku*/
+    private final float[] distance;
+    /**Łuk, którym dotarto do przystanku*/
+    private final int[] parentEdge;
+    /**Przystanek, z którego dotarto do przystanku*/
+    private final int[] parentNode;
+    /**Generacja, w której przystanek został osiągnięty*/
+    private final int[] reached;
+    /**Generacja, w której przystanek został ostatecznie rozliczony*/
+    private final int[] settled;
+    /**Generacja, w której przystanek jest celem zapytania*/
+    private final int[] target;
+    private final IntMinHeap heap;
+    private int generation;
+
+    /**Konstruktor planera dla podanych linii komunikacji*/
+    public JourneyPlanner(List<Graph> lines, float transferPenalty) {
+        this(NetworkSnapshot.of(lines).withTransfers(transferPenalty));
+    }
+
+    /**Konstruktor planera dla gotowej migawki sieci (łuki przesiadkowe powinny już być dodane)*/
+    public JourneyPlanner(NetworkSnapshot network) {
+        this.network = network;
+        int n = network.nodeCount();
+        this.distance = new float[n];
+        this.parentEdge = new int[n];
+        this.parentNode = new int[n];
+        this.reached = new int[n];
+        this.settled = new int[n];
+        this.target = new int[n];
+        this.heap = new IntMinHeap(n);
+        this.stopsByName = groupByName(network);
+    }
+
+    /**Metoda grupująca identyfikatory przystanków migawki według znormalizowanej nazwy (bez przystanków bez nazwy)*/
+    static Map<String, int[]> groupByName(NetworkSnapshot network){
+        Map<String, List<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < network.nodeCount(); i++) {
+            String name = network.node(i).getNormalizedName();
+            if (name.isEmpty()) continue;
+            groups.computeIfAbsent(name, key -> new ArrayList<>(2)).add(i);
+        }
+        Map<String, int[]> stopsByName = new HashMap<>(groups.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : groups.entrySet()) {
+            List<Integer> ids = entry.getValue();
+            int[] array = new int[ids.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = ids.get(i);
+            }
+            stopsByName.put(entry.getKey(), array);
+        }
+        return stopsByName;
+    }
+
+    /**Metoda zwracająca sieć, na której działa planer*/
+    public NetworkSnapshot getNetwork() {
+        return network;
+    }
+
+    /**Metoda wyznaczająca trasę między przystankami o podanych nazwach.
+     * Trasa może zaczynać się i kończyć na dowolnym peronie o danej nazwie.
+     * Zwraca <code>null</code>, gdy któregoś przystanku nie ma lub trasa nie istnieje.*/
+    public Journey plan(String from, String to){
+        int[] sources = stopsByName.get(Node.normalizeName(from));
+        int[] targets = stopsByName.get(Node.normalizeName(to));
+        if (sources == null || targets == null) return null;
+        return search(sources, targets);
+    }
+
+    /**Metoda wyznaczająca trasę między dwoma przystankami.
+     * Zwraca <code>null</code>, gdy któregoś przystanku nie ma w sieci lub trasa nie istnieje.*/
+    public Journey plan(Node from, Node to){
+        int source = network.indexOf(from);
+        int destination = network.indexOf(to);
+        if (source < 0 || destination < 0) return null;
+        return search(new int[]{source}, new int[]{destination});
+    }
+
+    private Journey search(int[] sources, int[] targets){
+        int stamp = nextGeneration();
+        heap.clear();
+        for (int t : targets) {
+            target[t] = stamp;
+        }
+        for (int s : sources) {
+            distance[s] = 0f;
+            parentEdge[s] = -1;
+            parentNode[s] = -1;
+            reached[s] = stamp;
+            heap.insertOrDecrease(s, heuristic(s, targets));
+        }
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled[u] = stamp;
+            if (target[u] == stamp) {
+                return buildJourney(u);
+            }
+            float du = distance[u];
+            for (int e = network.firstEdge(u), end = network.endEdge(u); e < end; e++) {
+                int v = network.target(e);
+                if (settled[v] == stamp) continue;
+                float dv = du + network.weight(e);
+                if (reached[v] != stamp || dv < distance[v]) {
+                    reached[v] = stamp;
+                    distance[v] = dv;
+                    parentEdge[v] = e;
+                    parentNode[v] = u;
+                    heap.insertOrDecrease(v, dv + heuristic(v, targets));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**Metoda zwracająca odległość w linii prostej do najbliższego celu*/
+    private float heuristic(int v, int[] targets){
+        float vx = network.x(v);
+        float vy = network.y(v);
+        float best = Float.POSITIVE_INFINITY;
+        for (int t : targets) {
+            float dx = network.x(t) - vx;
+            float dy = network.y(t) - vy;
+            float d = dx * dx + dy * dy;
+            if (d < best) best = d;
+        }
+        return (float) Math.sqrt(best);
+    }
+
+    private Journey buildJourney(int last){
+        List<Node> stops = new ArrayList<>();
+        List<Integer> lines = new ArrayList<>();
+        for (int v = last; v >= 0; v = parentNode[v]) {
+            stops.add(network.node(v));
+            if (parentEdge[v] >= 0) {
+                lines.add(network.line(parentEdge[v]));
+            }
+        }
+        Collections.reverse(stops);
+        Collections.reverse(lines);
+        int[] lineArray = new int[lines.size()];
+        for (int i = 0; i < lineArray.length; i++) {
+            lineArray[i] = lines.get(i);
+        }
+        return new Journey(stops, lineArray, distance[last]);
+    }
+
+    private int nextGeneration(){
+        if (++generation == 0) {
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+            Arrays.fill(target, 0);
+            generation = 1;
+        }
+        return generation;
+    }
+}
@@ -0,0 +1,492 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: TimetableRouter.java
+ *
+ *  Klasa TimetableRouter wyznacza najwcześniejszy przyjazd
+ *  do przystanku docelowego na podstawie rozkładów jazdy
+ *  linii, algorytmem RAPTOR (Round-bAsed Public Transit Optimized Router).
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Wyszukiwarka połączeń zgodnych z rozkładem jazdy. <br>
+ * Rozkłady wszystkich linii (<code>Graph.getSchedules()</code>) są przepisywane do płaskich
+ * tablic: przystanki tras, czasy przyjazdów i odjazdów kolejnych kursów oraz listy tras
+ * przejeżdżających przez każdy przystanek. Kursy jednej trasy są posortowane według czasu
+ * odjazdu i nie wyprzedzają się nawzajem - kursy wyprzedzające trafiają do osobnej trasy. <br>
+ * Zapytanie działa rundami: w rundzie <code>k</code> wyznaczane są najwcześniejsze przyjazdy
+ * osiągalne przy użyciu co najwyżej <code>k</code> kursów, a skanowane są tylko trasy
+ * przejeżdżające przez przystanki poprawione w poprzedniej rundzie. Pomiędzy przystankami
+ * o tej samej nazwie można przejść pieszo w stałym czasie przesiadki. <br>
+ * Stan zapytania jest alokowany raz, więc obiekt nie jest bezpieczny wątkowo.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.Graph;
+import data.NetworkSnapshot;
+import data.Node;
+import data.Schedule;
+
+public final class TimetableRouter {
+
+    /**Domyślny czas przejścia między przystankami o tej samej nazwie (w sekundach)*/
+    public static final int DEFAULT_TRANSFER_TIME = 120;
+    /**Domyślna maksymalna liczba kursów w jednej podróży*/
+    public static final int DEFAULT_MAX_TRIPS = 5;
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final byte CARRIED = 0;
+    private static final byte SOURCE = 1;
+    private static final byte TRIP = 2;
+    private static final byte WALK = 3;
+
+    /**Przystanki w kolejności identyfikatorów*/
+    private final Node[] stops;
+    private final Map<Node, Integer> stopIds;
+    private final Map<String, int[]> stopsByName;
+    /**Przejścia piesze w układzie CSR*/
+    private final int[] walkOffsets;
+    private final int[] walkTargets;
+    private final int transferTime;
+
+    /**Numery linii tras*/
+    private final int[] routeLine;
+    /**Początki list przystanków tras w tablicy routeStops (długość liczba tras + 1)*/
+    private final int[] routeStopOffsets;
+    private final int[] routeStops;
+    private final int[] routeTripCount;
+    /**Początki czasów kursów tras w tablicach arrivals i departures*/
+    private final int[] routeTimeOffsets;
+    /**Czasy przyjazdów i odjazdów - dla trasy r, kursu t i pozycji i
+     * pod indeksem routeTimeOffsets[r] + t * długość + i*/
+    private final int[] arrivals;
+    private final int[] departures;
+    /**Trasy przejeżdżające przez przystanki (CSR) wraz z pozycją przystanku na trasie*/
+    private final int[] stopRouteOffsets;
+    private final int[] stopRoutes;
+    private final int[] stopRoutePositions;
+
+    /**Stan zapytania*/
+    private final int maxRounds;
+    private final int[] arrival;
+    private final int[] best;
+    private final byte[] labelKind;
+    private final int[] labelFrom;
+    private final int[] labelRoute;
+    private final int[] labelTrip;
+    private final boolean[] marked;
+    private final int[] markedList;
+    private int markedCount;
+    private final int[] routeQueuePosition;
+    private final int[] routeQueue;
+    private final int[] target;
+    private int generation;
+
+    /**Konstruktor wyszukiwarki z domyślnym czasem przesiadki i liczbą kursów*/
+    public TimetableRouter(List<Graph> lines) {
+        this(lines, DEFAULT_TRANSFER_TIME, DEFAULT_MAX_TRIPS);
+    }
+
+    /**Konstruktor wyszukiwarki dla linii posiadających rozkład jazdy*/
+    public TimetableRouter(List<Graph> lines, int transferTime, int maxTrips) {
+        if (transferTime < 0) throw new IllegalArgumentException("Czas przesiadki nie może być ujemny");
+        if (maxTrips < 1) throw new IllegalArgumentException("Podróż musi obejmować co najmniej jeden kurs");
+        this.transferTime = transferTime;
+        this.maxRounds = maxTrips;
+
+        stopIds = new IdentityHashMap<>();
+        List<Node> stopList = new ArrayList<>();
+        List<RouteData> routes = new ArrayList<>();
+        for (Graph line : lines) {
+            for (Schedule schedule : line.getSchedules()) {
+                if (schedule.getTripCount() == 0) continue;
+                int[] pattern = new int[schedule.getStops().size()];
+                for (int i = 0; i < pattern.length; i++) {
+                    Node stop = schedule.getStops().get(i);
+                    Integer id = stopIds.get(stop);
+                    if (id == null) {
+                        id = stopList.size();
+                        stopIds.put(stop, id);
+                        stopList.add(stop);
+                    }
+                    pattern[i] = id;
+                }
+                splitIntoRoutes(line.getNumber(), pattern, schedule, routes);
+            }
+        }
+        stops = stopList.toArray(new Node[0]);
+        int n = stops.length;
+
+        Map<String, List<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            // przystanki bez nazwy nie są węzłami przesiadkowymi - nie ma między nimi przejść
+            String name = stops[i].getNormalizedName();
+            if (name.isEmpty()) continue;
+            groups.computeIfAbsent(name, key -> new ArrayList<>(2)).add(i);
+        }
+        stopsByName = new HashMap<>(groups.size() * 2);
+        walkOffsets = new int[n + 1];
+        for (List<Integer> group : groups.values()) {
+            for (int id : group) {
+                walkOffsets[id + 1] = group.size() - 1;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            walkOffsets[i + 1] += walkOffsets[i];
+        }
+        walkTargets = new int[walkOffsets[n]];
+        for (Map.Entry<String, List<Integer>> entry : groups.entrySet()) {
+            List<Integer> group = entry.getValue();
+            int[] ids = new int[group.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = group.get(i);
+            }
+            stopsByName.put(entry.getKey(), ids);
+            for (int from : ids) {
+                int e = walkOffsets[from];
+                for (int to : ids) {
+                    if (to != from) walkTargets[e++] = to;
+                }
+            }
+        }
+
+        int routeCount = routes.size();
+        routeLine = new int[routeCount];
+        routeStopOffsets = new int[routeCount + 1];
+        routeTripCount = new int[routeCount];
+        routeTimeOffsets = new int[routeCount + 1];
+        for (int r = 0; r < routeCount; r++) {
+            RouteData route = routes.get(r);
+            routeLine[r] = route.line;
+            routeTripCount[r] = route.arrivals.size();
+            routeStopOffsets[r + 1] = routeStopOffsets[r] + route.stops.length;
+            routeTimeOffsets[r + 1] = routeTimeOffsets[r] + route.stops.length * routeTripCount[r];
+        }
+        routeStops = new int[routeStopOffsets[routeCount]];
+        arrivals = new int[routeTimeOffsets[routeCount]];
+        departures = new int[routeTimeOffsets[routeCount]];
+        stopRouteOffsets = new int[n + 1];
+        for (int r = 0; r < routeCount; r++) {
+            RouteData route = routes.get(r);
+            System.arraycopy(route.stops, 0, routeStops, routeStopOffsets[r], route.stops.length);
+            for (int t = 0; t < routeTripCount[r]; t++) {
+                int base = routeTimeOffsets[r] + t * route.stops.length;
+                System.arraycopy(route.arrivals.get(t), 0, arrivals, base, route.stops.length);
+                System.arraycopy(route.departures.get(t), 0, departures, base, route.stops.length);
+            }
+            for (int stop : route.stops) {
+                stopRouteOffsets[stop + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            stopRouteOffsets[i + 1] += stopRouteOffsets[i];
+        }
+        stopRoutes = new int[stopRouteOffsets[n]];
+        stopRoutePositions = new int[stopRouteOffsets[n]];
+        int[] fill = Arrays.copyOf(stopRouteOffsets, n);
+        for (int r = 0; r < routeCount; r++) {
+            for (int i = routeStopOffsets[r]; i < routeStopOffsets[r + 1]; i++) {
+                int e = fill[routeStops[i]]++;
+                stopRoutes[e] = r;
+                stopRoutePositions[e] = i - routeStopOffsets[r];
+            }
+        }
+
+        arrival = new int[(maxRounds + 1) * n];
+        best = new int[n];
+        labelKind = new byte[(maxRounds + 1) * n];
+        labelFrom = new int[(maxRounds + 1) * n];
+        labelRoute = new int[(maxRounds + 1) * n];
+        labelTrip = new int[(maxRounds + 1) * n];
+        marked = new boolean[n];
+        markedList = new int[n];
+        routeQueuePosition = new int[routeCount];
+        Arrays.fill(routeQueuePosition, -1);
+        routeQueue = new int[routeCount];
+        target = new int[n];
+    }
+
+    /**Metoda zwracająca liczbę przystanków objętych rozkładami*/
+    public int getStopCount() {
+        return stops.length;
+    }
+    /**Metoda zwracająca liczbę tras (wariantów linii o wspólnej kolejności przystanków)*/
+    public int getRouteCount() {
+        return routeLine.length;
+    }
+
+    /**Metoda wyznaczająca podróż o najwcześniejszym przyjeździe między przystankami o podanych
+     * nazwach, przy odjeździe nie wcześniejszym niż <code>departureTime</code> (sekundy od północy).
+     * Zwraca <code>null</code>, gdy dojazd nie jest możliwy.*/
+    public Itinerary route(String from, int departureTime, String to){
+        int[] sources = stopsByName.get(Node.normalizeName(from));
+        int[] targets = stopsByName.get(Node.normalizeName(to));
+        if (sources == null || targets == null) return null;
+        return search(sources, departureTime, targets);
+    }
+
+    /**Metoda wyznaczająca podróż o najwcześniejszym przyjeździe między dwoma przystankami.
+     * Zwraca <code>null</code>, gdy dojazd nie jest możliwy.*/
+    public Itinerary route(Node from, int departureTime, Node to){
+        Integer source = stopIds.get(from);
+        Integer destination = stopIds.get(to);
+        if (source == null || destination == null) return null;
+        return search(new int[]{source}, departureTime, new int[]{destination});
+    }
+
+    private Itinerary search(int[] sources, int departureTime, int[] targets){
+        int n = stops.length;
+        if (++generation == 0) {
+            Arrays.fill(target, 0);
+            generation = 1;
+        }
+        int stamp = generation;
+        for (int t : targets) {
+            target[t] = stamp;
+        }
+        Arrays.fill(best, INFINITY);
+        Arrays.fill(arrival, 0, n, INFINITY);
+        Arrays.fill(labelKind, 0, n, CARRIED);
+        markedCount = 0;
+        int bestTarget = INFINITY;
+
+        for (int s : sources) {
+            arrival[s] = departureTime;
+            best[s] = departureTime;
+            labelKind[s] = SOURCE;
+            mark(s);
+            if (target[s] == stamp) bestTarget = departureTime;
+        }
+        bestTarget = relaxWalks(0, bestTarget, stamp);
+
+        for (int k = 1; k <= maxRounds && markedCount > 0; k++) {
+            int row = k * n;
+            System.arraycopy(arrival, row - n, arrival, row, n);
+            Arrays.fill(labelKind, row, row + n, CARRIED);
+
+            int queued = 0;
+            for (int m = 0; m < markedCount; m++) {
+                int stop = markedList[m];
+                marked[stop] = false;
+                for (int e = stopRouteOffsets[stop]; e < stopRouteOffsets[stop + 1]; e++) {
+                    int r = stopRoutes[e];
+                    int position = stopRoutePositions[e];
+                    if (routeQueuePosition[r] < 0) {
+                        routeQueue[queued++] = r;
+                        routeQueuePosition[r] = position;
+                    } else if (position < routeQueuePosition[r]) {
+                        routeQueuePosition[r] = position;
+                    }
+                }
+            }
+            markedCount = 0;
+
+            for (int q = 0; q < queued; q++) {
+                int r = routeQueue[q];
+                bestTarget = scanRoute(r, routeQueuePosition[r], k, bestTarget, stamp);
+                routeQueuePosition[r] = -1;
+            }
+            bestTarget = relaxWalks(k, bestTarget, stamp);
+        }
+
+        if (bestTarget == INFINITY) return null;
+        int bestRound = -1;
+        int bestStop = -1;
+        for (int k = 0; k <= maxRounds && bestRound < 0; k++) {
+            for (int t : targets) {
+                if (arrival[k * n + t] == bestTarget) {
+                    bestRound = k;
+                    bestStop = t;
+                    break;
+                }
+            }
+        }
+        return buildItinerary(bestStop, bestRound);
+    }
+
+    /**Metoda przeglądająca trasę od podanej pozycji w rundzie k*/
+    private int scanRoute(int r, int firstPosition, int k, int bestTarget, int stamp){
+        int n = stops.length;
+        int row = k * n;
+        int previousRow = row - n;
+        int stopBase = routeStopOffsets[r];
+        int length = routeStopOffsets[r + 1] - stopBase;
+        int trip = -1;
+        int tripBase = 0;
+        int boardPosition = -1;
+        for (int i = firstPosition; i < length; i++) {
+            int stop = routeStops[stopBase + i];
+            if (trip >= 0) {
+                int a = arrivals[tripBase + i];
+                if (a < best[stop] && a < bestTarget) {
+                    arrival[row + stop] = a;
+                    best[stop] = a;
+                    labelKind[row + stop] = TRIP;
+                    labelFrom[row + stop] = boardPosition;
+                    labelRoute[row + stop] = r;
+                    labelTrip[row + stop] = trip;
+                    mark(stop);
+                    if (target[stop] == stamp) bestTarget = a;
+                }
+            }
+            int ready = arrival[previousRow + stop];
+            if (ready != INFINITY && (trip < 0 || ready <= departures[tripBase + i])) {
+                int earlier = earliestTrip(r, i, ready, trip < 0 ? routeTripCount[r] : trip);
+                if (earlier >= 0 && earlier != trip) {
+                    trip = earlier;
+                    tripBase = routeTimeOffsets[r] + trip * length;
+                    boardPosition = i;
+                }
+            }
+        }
+        return bestTarget;
+    }
+
+    /**Metoda zwracająca najwcześniejszy kurs (spośród kursów o indeksie mniejszym niż <code>limit</code>)
+     * odjeżdżający z pozycji i nie wcześniej niż o czasie <code>time</code>, lub -1*/
+    private int earliestTrip(int r, int i, int time, int limit){
+        int length = routeStopOffsets[r + 1] - routeStopOffsets[r];
+        int base = routeTimeOffsets[r] + i;
+        int low = 0;
+        int high = limit;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departures[base + middle * length] >= time) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low < limit ? low : -1;
+    }
+
+    /**Metoda wykonująca przejścia piesze z przystanków poprawionych w rundzie k*/
+    private int relaxWalks(int k, int bestTarget, int stamp){
+        int row = k * stops.length;
+        int count = markedCount;
+        for (int m = 0; m < count; m++) {
+            int stop = markedList[m];
+            int a = arrival[row + stop] + transferTime;
+            for (int e = walkOffsets[stop]; e < walkOffsets[stop + 1]; e++) {
+                int to = walkTargets[e];
+                if (a < best[to] && a < bestTarget) {
+                    arrival[row + to] = a;
+                    best[to] = a;
+                    labelKind[row + to] = WALK;
+                    labelFrom[row + to] = stop;
+                    mark(to);
+                    if (target[to] == stamp) bestTarget = a;
+                }
+            }
+        }
+        return bestTarget;
+    }
+
+    private void mark(int stop){
+        if (!marked[stop]) {
+            marked[stop] = true;
+            markedList[markedCount++] = stop;
+        }
+    }
+
+    private Itinerary buildItinerary(int stop, int k){
+        int n = stops.length;
+        List<Itinerary.Leg> legs = new ArrayList<>();
+        while (true) {
+            int label = k * n + stop;
+            byte kind = labelKind[label];
+            if (kind == CARRIED) {
+                k--;
+            } else if (kind == WALK) {
+                int from = labelFrom[label];
+                legs.add(new Itinerary.Leg(NetworkSnapshot.TRANSFER, stops[from], stops[stop],
+                        arrival[k * n + from], arrival[label]));
+                stop = from;
+            } else if (kind == TRIP) {
+                int r = labelRoute[label];
+                int length = routeStopOffsets[r + 1] - routeStopOffsets[r];
+                int boardPosition = labelFrom[label];
+                int from = routeStops[routeStopOffsets[r] + boardPosition];
+                int departure = departures[routeTimeOffsets[r] + labelTrip[label] * length + boardPosition];
+                legs.add(new Itinerary.Leg(routeLine[r], stops[from], stops[stop], departure, arrival[label]));
+                stop = from;
+                k--;
+            } else {
+                break;
+            }
+        }
+        if (legs.isEmpty()) return null;
+        Collections.reverse(legs);
+        return new Itinerary(legs);
+    }
+
+    /**Metoda dzieląca kursy linii na trasy, w których kursy nie wyprzedzają się nawzajem*/
+    private static void splitIntoRoutes(int line, int[] pattern, Schedule schedule, List<RouteData> routes){
+        Integer[] order = new Integer[schedule.getTripCount()];
+        for (int t = 0; t < order.length; t++) {
+            order[t] = t;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(schedule.getDeparture(a, 0), schedule.getDeparture(b, 0)));
+
+        List<RouteData> variants = new ArrayList<>();
+        for (int t : order) {
+            int[] arrivalTimes = new int[pattern.length];
+            int[] departureTimes = new int[pattern.length];
+            for (int i = 0; i < pattern.length; i++) {
+                arrivalTimes[i] = schedule.getArrival(t, i);
+                departureTimes[i] = schedule.getDeparture(t, i);
+            }
+            RouteData variant = null;
+            for (RouteData candidate : variants) {
+                if (candidate.canAppend(arrivalTimes, departureTimes)) {
+                    variant = candidate;
+                    break;
+                }
+            }
+            if (variant == null) {
+                variant = new RouteData(line, pattern);
+                variants.add(variant);
+            }
+            variant.arrivals.add(arrivalTimes);
+            variant.departures.add(departureTimes);
+        }
+        routes.addAll(variants);
+    }
+
+    /**Pomocnicza klasa przechowująca trasę podczas budowy tablic*/
+    private static final class RouteData {
+        final int line;
+        final int[] stops;
+        final List<int[]> arrivals = new ArrayList<>();
+        final List<int[]> departures = new ArrayList<>();
+
+        RouteData(int line, int[] stops) {
+            this.line = line;
+            this.stops = stops;
+        }
+
+        /**Metoda sprawdzająca czy kurs nie wyprzedza ostatniego kursu trasy na żadnym przystanku*/
+        boolean canAppend(int[] arrivalTimes, int[] departureTimes){
+            int[] lastArrivals = arrivals.get(arrivals.size() - 1);
+            int[] lastDepartures = departures.get(departures.size() - 1);
+            for (int i = 0; i < stops.length; i++) {
+                if (arrivalTimes[i] < lastArrivals[i] || departureTimes[i] < lastDepartures[i]) return false;
+            }
+            return true;
+        }
+    }
+}
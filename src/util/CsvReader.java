@@ -0,0 +1,252 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: CsvReader.java
+ *
+ *  Klasa CsvReader odczytuje kolejne rekordy pliku CSV
+ *  bez wczytywania całego pliku do pamięci.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Strumieniowy czytnik plików CSV (RFC 4180). <br>
+ * Pola oddzielone są przecinkami, rekordy znakami końca linii (LF lub CRLF); pole ujęte
+ * w cudzysłów może zawierać przecinki, znaki końca linii i podwojone cudzysłowy. Znacznik
+ * BOM na początku pliku oraz puste linie są pomijane. <br>
+ * Czytnik przechowuje w pamięci tylko bieżący rekord - pola odczytywane są metodami
+ * <code>get</code>, <code>getInt</code>, <code>getTime</code> i <code>fieldEquals</code>,
+ * z których tylko pierwsza tworzy obiekt <code>String</code>.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class CsvReader implements Closeable {
+
+    private final Reader in;
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+    private boolean started;
+    /**Znaki bieżącego rekordu oraz granice jego pól*/
+    private char[] record = new char[256];
+    private int length;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    /**Konstruktor czytnika odczytującego znaki z podanego strumienia*/
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**Metoda odczytująca kolejny rekord; zwraca <code>false</code> na końcu pliku*/
+    public boolean next() throws IOException {
+        if (!started) {
+            started = true;
+            if (peek() == '\uFEFF') position++;
+        }
+        while (true) {
+            length = 0;
+            count = 0;
+            int c = peek();
+            if (c < 0) return false;
+            if (c == '\r' || c == '\n') {
+                // pusta linia
+                position++;
+                continue;
+            }
+            readRecord();
+            return true;
+        }
+    }
+
+    /**Metoda odczytująca wiersz nagłówka i zwracająca numery kolumn według ich nazw*/
+    public Map<String, Integer> readHeader() throws IOException {
+        Map<String, Integer> columns = new HashMap<>();
+        if (!next()) return columns;
+        for (int i = 0; i < count; i++) {
+            columns.putIfAbsent(get(i).trim(), i);
+        }
+        return columns;
+    }
+
+    /**Metoda zwracająca liczbę pól bieżącego rekordu*/
+    public int getFieldCount(){
+        return count;
+    }
+
+    /**Metoda zwracająca pole bieżącego rekordu (pusty napis, gdy rekord nie ma tylu pól)*/
+    public String get(int index){
+        if (index < 0 || index >= count) return "";
+        return new String(record, starts[index], ends[index] - starts[index]);
+    }
+
+    /**Metoda sprawdzająca czy pole jest puste (lub rekord nie ma tylu pól)*/
+    public boolean isEmpty(int index){
+        return index < 0 || index >= count || starts[index] == ends[index];
+    }
+
+    /**Metoda porównująca pole z napisem bez tworzenia nowego obiektu*/
+    public boolean fieldEquals(int index, String value){
+        if (index < 0 || index >= count) return value.isEmpty();
+        int start = starts[index];
+        int fieldLength = ends[index] - start;
+        if (fieldLength != value.length()) return false;
+        for (int i = 0; i < fieldLength; i++) {
+            if (record[start + i] != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**Metoda zwracająca pole jako liczbę całkowitą (odstępy na brzegach są pomijane)
+     * lub <code>missing</code>, gdy pole jest puste*/
+    public int getInt(int index, int missing){
+        if (index < 0 || index >= count) return missing;
+        int start = starts[index];
+        int end = ends[index];
+        while (start < end && record[start] == ' ') start++;
+        while (end > start && record[end - 1] == ' ') end--;
+        if (start == end) return missing;
+        boolean negative = record[start] == '-';
+        if (negative || record[start] == '+') start++;
+        if (start == end) throw new NumberFormatException("Nieprawidłowa liczba: " + get(index));
+        // zakres sprawdzany po dopisaniu każdej cyfry - wartość nie przekracza zakresu typu long
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = record[i];
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Nieprawidłowa liczba: " + get(index));
+            }
+            value = value * 10 + (c - '0');
+            if (value > limit) {
+                throw new NumberFormatException("Liczba poza zakresem: " + get(index));
+            }
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**Metoda zwracająca pole jako liczbę rzeczywistą lub <code>missing</code>, gdy pole jest puste*/
+    public double getDouble(int index, double missing){
+        String value = get(index).trim();
+        return value.isEmpty() ? missing : Double.parseDouble(value);
+    }
+
+    /**Metoda zwracająca pole w postaci czasu GTFS "G:MM:SS" lub "GG:MM:SS" (godziny mogą przekraczać 24)
+     * w sekundach od północy albo <code>missing</code>, gdy pole jest puste*/
+    public int getTime(int index, int missing){
+        if (index < 0 || index >= count) return missing;
+        int start = starts[index];
+        int end = ends[index];
+        while (start < end && record[start] == ' ') start++;
+        while (end > start && record[end - 1] == ' ') end--;
+        if (start == end) return missing;
+        int seconds = 0;
+        int part = 0;
+        int parts = 1;
+        for (int i = start; i < end; i++) {
+            char c = record[i];
+            if (c == ':') {
+                seconds = seconds * 60 + part;
+                part = 0;
+                parts++;
+            }
+            else if (c >= '0' && c <= '9' && part < 100000) {
+                part = part * 10 + (c - '0');
+            }
+            else {
+                throw new NumberFormatException("Nieprawidłowy czas: " + get(index));
+            }
+        }
+        if (parts != 3) throw new NumberFormatException("Nieprawidłowy czas: " + get(index));
+        return seconds * 60 + part;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readRecord() throws IOException {
+        while (true) {
+            int start = length;
+            int c = peek();
+            if (c == '"') {
+                position++;
+                while (true) {
+                    c = read();
+                    if (c < 0) break;
+                    if (c == '"') {
+                        if (peek() != '"') break;
+                        position++;
+                    }
+                    append((char) c);
+                }
+                // znaki między cudzysłowem zamykającym a separatorem są dołączane do pola
+                c = read();
+                while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+                    append((char) c);
+                    c = read();
+                }
+            }
+            else {
+                c = read();
+                while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+                    append((char) c);
+                    c = read();
+                }
+            }
+            addField(start, length);
+            if (c == ',') continue;
+            if (c == '\r' && peek() == '\n') position++;
+            return;
+        }
+    }
+
+    private void addField(int start, int end){
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    private void append(char c){
+        if (length == record.length) record = Arrays.copyOf(record, length * 2);
+        record[length++] = c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0) return false;
+        position = 0;
+        limit = n;
+        return true;
+    }
+}
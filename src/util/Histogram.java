@@ -0,0 +1,119 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Histogram.java
+ *
+ *  Klasa Histogram zlicza rozkład czasów (lub innych wartości)
+ *  operacji bez blokowania wątków.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Histogram wartości nieujemnych (zwykle czasów w nanosekundach) o przedziałach logarytmicznych. <br>
+ * Każda potęga dwójki podzielona jest na cztery przedziały, więc percentyle wyznaczane są z błędem
+ * względnym najwyżej 25%, a histogram zajmuje stałą pamięć (256 liczników) niezależnie od liczby
+ * pomiarów. Zapis pomiaru to kilka operacji atomowych bez blokad - histogram może być używany
+ * jednocześnie przez wątek zdarzeń Swing i wątki robocze i pozostawać włączony cały czas.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Histogram {
+
+    /**Liczba bitów podziału każdej potęgi dwójki (4 przedziały)*/
+    private static final int SUB_BITS = 2;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = 64 * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**Metoda zapisująca pomiar (wartości ujemne traktowane są jak zero)*/
+    public void record(long value){
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(value));
+        count.increment();
+        total.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // ponowienie - inny wątek zapisał większą wartość
+        }
+    }
+
+    /**Metoda zwracająca liczbę pomiarów*/
+    public long getCount(){
+        return count.sum();
+    }
+
+    /**Metoda zwracająca sumę pomiarów*/
+    public long getTotal(){
+        return total.sum();
+    }
+
+    /**Metoda zwracająca średnią pomiarów (0, gdy nie ma pomiarów)*/
+    public double getMean(){
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**Metoda zwracająca największy pomiar*/
+    public long getMax(){
+        return max.get();
+    }
+
+    /**Metoda zwracająca przybliżony percentyl <code>q</code> (0..1) - górną granicę przedziału,
+     * w którym się znajduje (nie większą niż największy pomiar)*/
+    public long getPercentile(double q){
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(q * n));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**Metoda zerująca histogram*/
+    public void reset(){
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    /**Numer przedziału wartości: wykładnik najstarszego bitu i dwa kolejne bity*/
+    static int index(long value){
+        if (value < SUB) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB - 1);
+        return (exponent - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /**Największa wartość należąca do przedziału*/
+    static long upperBound(int index){
+        if (index < SUB) return index;
+        int exponent = index / SUB + SUB_BITS - 1;
+        int sub = index % SUB;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((long) (SUB + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: Metrics.java
+ *
+ *  Klasa Metrics przechowuje pomiary wydajności programu
+ *  (czasy operacji, liczniki i bieżące wartości).
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Rejestr pomiarów wydajności działający przez cały czas pracy programu. <br>
+ * Histogramy (<code>Histogram</code>) zbierają czasy operacji w nanosekundach, liczniki - sumy
+ * (np. liczbę zapisanych bajtów), a wartości bieżące - stan programu (np. liczbę wyświetlanych
+ * przystanków). Elementy rejestru tworzone są przy pierwszym użyciu nazwy; klasy mierzące
+ * przechowują zwykle histogram w polu statycznym, więc pomiar nie przeszukuje rejestru. <br>
+ * Szczegóły pojedynczych operacji (np. który plik był zapisywany) zgłaszane są dodatkowo jako
+ * zdarzenia JFR (<code>PerformanceEvents</code>), rejestrowane tylko w czasie nagrywania.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Metrics {
+
+    /**Nazwy pomiarów programu*/
+    public static final String PAINT = "gui.paint";
+    public static final String FIND_NODE = "gui.findNode";
+    public static final String FIND_CONNECTION = "gui.findConnection";
+    public static final String MERGE = "gui.setGraphs";
+    public static final String LOAD = "io.load";
+    public static final String SAVE = "io.save";
+    public static final String LINE_LOAD = "io.lineLoad";
+    public static final String NODES = "network.nodes";
+    public static final String CONNECTIONS = "network.connections";
+    /**Przyrostek licznika bajtów operacji wejścia-wyjścia (np. "io.save.bytes")*/
+    public static final String BYTES = ".bytes";
+
+    private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**Metoda zwracająca histogram o podanej nazwie (tworzony przy pierwszym użyciu)*/
+    public static Histogram histogram(String name){
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**Metoda zwiększająca licznik o podanej nazwie*/
+    public static void count(String name, long delta){
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    /**Metoda zwracająca wartość licznika*/
+    public static long getCount(String name){
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**Metoda ustawiająca wartość bieżącą o podanej nazwie*/
+    public static void setGauge(String name, long value){
+        gauges.computeIfAbsent(name, key -> new AtomicLong()).set(value);
+    }
+
+    /**Metoda zwracająca wartość bieżącą*/
+    public static long getGauge(String name){
+        AtomicLong gauge = gauges.get(name);
+        return gauge == null ? 0 : gauge.get();
+    }
+
+    /**Metoda zerująca histogramy i liczniki (wartości bieżące pozostają)*/
+    public static void reset(){
+        histograms.values().forEach(Histogram::reset);
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    /**Metoda zwracająca raport wszystkich pomiarów (czasy w milisekundach; dla operacji z licznikiem
+     * bajtów również przepustowość)*/
+    public static String report(){
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-20s %8s %9s %9s %9s %9s %9s%n", "Pomiar", "Liczba", "Średnio", "p50", "p95", "p99", "Maks."));
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            report.append(String.format("%-20s %8d %9.3f %9.3f %9.3f %9.3f %9.3f", entry.getKey(), histogram.getCount(),
+                    histogram.getMean() / 1e6, histogram.getPercentile(0.5) / 1e6, histogram.getPercentile(0.95) / 1e6,
+                    histogram.getPercentile(0.99) / 1e6, histogram.getMax() / 1e6));
+            long bytes = getCount(entry.getKey() + BYTES);
+            if (bytes > 0 && histogram.getTotal() > 0) {
+                report.append(String.format("  %.1f MB/s", bytes / 1e6 / (histogram.getTotal() / 1e9)));
+            }
+            report.append(System.lineSeparator());
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            report.append(String.format("%-20s %d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(gauges).entrySet()) {
+            report.append(String.format("%-20s %d%n", entry.getKey(), entry.getValue().get()));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: PerformanceEvents.java
+ *
+ *  Klasa PerformanceEvents zawiera zdarzenia JFR (Java Flight Recorder)
+ *  opisujące rysowanie, wyszukiwanie i operacje na plikach.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Zdarzenia JFR programu - widoczne w nagraniu (np. <code>java -XX:StartFlightRecording ...</code>
+ * lub <code>jcmd &lt;pid&gt; JFR.start</code>) w kategorii "Komunikacja miejska". <br>
+ * Zdarzenie, którego nagrywanie jest wyłączone, nie jest zapisywane, a jego utworzenie kosztuje
+ * tyle co utworzenie pustego obiektu, więc zdarzenia mogą pozostawać w kodzie przez cały czas.
+ * Pola zdarzeń wypełniane są dopiero, gdy <code>shouldCommit</code> zwróci <code>true</code>.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+public final class PerformanceEvents {
+
+    private PerformanceEvents() {
+    }
+
+    /**Rysowanie panelu edytora*/
+    @Name("komunikacja.Paint")
+    @Label("Rysowanie panelu")
+    @Category({"Komunikacja miejska", "Interfejs"})
+    public static final class Paint extends Event {
+        @Label("Przystanki")
+        public int nodes;
+        @Label("Połączenia")
+        public int connections;
+        @Label("Odświeżany obszar")
+        @Description("Liczba pikseli odświeżanego obszaru panelu")
+        public long area;
+    }
+
+    /**Wyszukanie przystanku lub połączenia pod kursorem - zapisywane tylko, gdy trwa dłużej niż 1 ms*/
+    @Name("komunikacja.HitTest")
+    @Label("Wyszukanie elementu pod kursorem")
+    @Category({"Komunikacja miejska", "Interfejs"})
+    @Threshold("1 ms")
+    public static final class HitTest extends Event {
+        @Label("Rodzaj elementu")
+        public String kind;
+        @Label("Znaleziono")
+        public boolean found;
+    }
+
+    /**Zastąpienie linii panelu i połączenie ich w widok wszystkich linii*/
+    @Name("komunikacja.Merge")
+    @Label("Łączenie linii")
+    @Category({"Komunikacja miejska", "Interfejs"})
+    public static final class Merge extends Event {
+        @Label("Linie")
+        public int lines;
+        @Label("Przystanki")
+        public int nodes;
+    }
+
+    /**Odczyt lub zapis pliku sieci*/
+    @Name("komunikacja.FileTransfer")
+    @Label("Odczyt lub zapis sieci")
+    @Category({"Komunikacja miejska", "Pliki"})
+    public static final class FileTransfer extends Event {
+        @Label("Operacja")
+        public String operation;
+        @Label("Plik")
+        public String path;
+        @Label("Rozmiar")
+        @DataAmount
+        public long bytes;
+        @Label("Linie")
+        public int lines;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ *  Program: Edytor grafu - komunikacja miejska
+ *     Plik: ProgressListener.java
+ *
+ *  Interfejs ProgressListener pozwala śledzić postęp
+ *  długotrwałych operacji i przerywać je.
+ *
+ *    Autor: Maciej Demucha
+ *     Data:  grudzień 2021 r.
+ */
+
+/**
+ * Słuchacz postępu długotrwałych operacji (obliczeń, odczytu i zapisu plików). <br>
+ * Metoda <code>progress</code> może być wywoływana z dowolnego wątku roboczego, dlatego
+ * implementacje powinny być bezpieczne wątkowo. Operacja, której słuchacz zgłasza
+ * przerwanie (<code>isCancelled</code>), kończy się wyjątkiem
+ * <code>java.util.concurrent.CancellationException</code>.
+ *
+ * @author Maciej Demucha
+ * @version 28 grudnia 2021 r.
+ */
+
+package util;
+
+public interface ProgressListener {
+
+    /**Słuchacz ignorujący postęp, używany gdy wywołujący go nie potrzebuje*/
+    ProgressListener NONE = (done, total) -> { };
+
+    /**Metoda informująca o wykonaniu <code>done</code> z <code>total</code> jednostek pracy*/
+    void progress(long done, long total);
+
+    /**Metoda zwracająca <code>true</code>, gdy operacja powinna zostać przerwana*/
+    default boolean isCancelled() {
+        return false;
+    }
+}